@@ -0,0 +1,110 @@
+package piuk.blockchain.android.data.coinswebsocket;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import piuk.blockchain.android.data.coinswebsocket.models.BtcBchResponse;
+import piuk.blockchain.android.data.coinswebsocket.models.EthResponse;
+import piuk.blockchain.android.data.coinswebsocket.models.SocketResponse;
+import piuk.blockchain.android.data.coinswebsocket.strategy.SocketMessageDecoder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a recorded capture of coins websocket frames, repeated up to 10k frames, with {@link
+ * SocketMessageDecoder} against the way they were parsed before: into a {@link SocketResponse} and
+ * then again into the response type of their coin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketMessageDecoderBenchmark {
+
+    private static final int FRAME_COUNT = 10000;
+
+    private final Gson gson = new Gson();
+    private final SocketMessageDecoder decoder = new SocketMessageDecoder(gson);
+
+    private String[] frames;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> capture = readCapture();
+        frames = new String[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            frames[i] = capture.get(i % capture.size());
+        }
+
+        for (String frame : capture) {
+            if (decoder.decode(frame).isEmpty() == (parseTwice(frame) != null)) {
+                throw new IllegalStateException("Decoders disagree on " + frame);
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseTwice(Blackhole blackhole) {
+        for (String frame : frames) {
+            blackhole.consume(parseTwice(frame));
+        }
+    }
+
+    @Benchmark
+    public void decodeOnce(Blackhole blackhole) {
+        for (String frame : frames) {
+            blackhole.consume(decoder.decode(frame));
+        }
+    }
+
+    private Object parseTwice(String frame) {
+        SocketResponse response = gson.fromJson(frame, SocketResponse.class);
+        if ("on_change".equals(response.getOp()) && response.getChecksum() != null) {
+            return response;
+        }
+        if (response.getCoin() == null) {
+            return null;
+        }
+        switch (response.getCoin()) {
+            case BTC:
+            case BCH:
+                return gson.fromJson(frame, BtcBchResponse.class).getTransaction();
+            case ETH:
+                return gson.fromJson(frame, EthResponse.class);
+            default:
+                return null;
+        }
+    }
+
+    private List<String> readCapture() throws IOException {
+        List<String> capture = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            getClass().getClassLoader().getResourceAsStream("coinswebsocket/capture.jsonl"),
+            Charset.forName("UTF-8")))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    capture.add(line);
+                }
+            }
+        }
+        return capture;
+    }
+}
@@ -1,16 +1,26 @@
 package com.blockchain.koin.modules
 
+import android.content.Context
 import android.os.Build
+import com.blockchain.network.diagnostics.NetworkDiagnostics
+import com.blockchain.network.diagnostics.NetworkDiagnosticsInterceptor
 import com.blockchain.network.modules.OkHttpInterceptors
 import com.facebook.stetho.okhttp3.StethoInterceptor
+import okhttp3.Cache
 import org.koin.dsl.module.applicationContext
 import piuk.blockchain.android.BuildConfig
 import piuk.blockchain.androidcore.data.api.EnvironmentConfig
-import piuk.blockchain.androidcore.data.api.interceptors.ApiInterceptor
 import piuk.blockchain.androidcore.data.api.interceptors.UserAgentInterceptor
+import java.io.File
+
+private const val HTTP_CACHE_SIZE = 10L * 1024 * 1024
 
 val apiInterceptorsModule = applicationContext {
 
+    bean { NetworkDiagnostics() }
+
+    bean { Cache(File(get<Context>().cacheDir, "http"), HTTP_CACHE_SIZE) }
+
     bean {
         val env: EnvironmentConfig = get()
         if (env.shouldShowDebugMenu()) {
@@ -18,8 +28,8 @@ val apiInterceptorsModule = applicationContext {
                 listOf(
                     // Stetho for debugging network ops via Chrome
                     StethoInterceptor(),
-                    // Add logging for debugging purposes
-                    ApiInterceptor(),
+                    // Per endpoint stats for the debug menu, and sampled logging
+                    NetworkDiagnosticsInterceptor(get()),
                     // Add header in all requests
                     UserAgentInterceptor(BuildConfig.VERSION_NAME, Build.VERSION.RELEASE)
                 )
@@ -3,6 +3,7 @@ package com.blockchain.koin.modules
 import android.content.Context
 import com.blockchain.activities.StartSwap
 import com.blockchain.network.websocket.Options
+import com.blockchain.network.websocket.ConnectionStats
 import com.blockchain.network.websocket.autoRetry
 import com.blockchain.network.websocket.debugLog
 import com.blockchain.network.websocket.newBlockchainWebSocket
@@ -127,7 +128,8 @@ val applicationModule = applicationContext {
             context = get(),
             payloadManager = get(),
             accessState = get(),
-            prefs = get()
+            prefs = get(),
+            transactionHistoryCache = get()
         )
     }
 
@@ -211,7 +213,7 @@ val applicationModule = applicationContext {
 
         factory { KycStatusHelper(get(), get(), get(), get()) }
 
-        factory { TransactionListDataManager(get(), get(), get(), get(), get(), get(), get()) }
+        factory { TransactionListDataManager(get(), get(), get(), get(), get(), get(), get(), get()) }
 
         factory {
             FingerprintHelper(
@@ -269,6 +271,7 @@ val applicationModule = applicationContext {
         bean {
             CoinsWebSocketStrategy(
                 coinsWebSocket = get(),
+                connectionStats = get("coins"),
                 ethDataManager = get(),
                 swipeToReceiveHelper = get(),
                 stringUtils = get(),
@@ -276,6 +279,7 @@ val applicationModule = applicationContext {
                 erc20Account = get("pax"),
                 payloadDataManager = get(),
                 bchDataManager = get(),
+                transactionHistoryCache = get(),
                 rxBus = get(),
                 prefs = get(),
                 currencyFormatManager = get(),
@@ -290,10 +294,14 @@ val applicationModule = applicationContext {
 
         factory {
             OkHttpClient()
-                .newBlockchainWebSocket(options = Options(url = BuildConfig.COINS_WEBSOCKET_URL))
-                .autoRetry().debugLog("COIN_SOCKET")
+                .newBlockchainWebSocket(
+                    options = Options(url = BuildConfig.COINS_WEBSOCKET_URL, pingIntervalMillis = 30_000)
+                )
+                .autoRetry(stats = get("coins")).debugLog("COIN_SOCKET")
         }
 
+        bean("coins") { ConnectionStats() }
+
         factory {
             BuySellBuildOrderPresenter(
                 coinifyDataManager = get(),
@@ -416,7 +424,8 @@ val applicationModule = applicationContext {
         factory {
             ChartsDataManager(
                 historicPriceApi = get(),
-                rxBus = get()
+                rxBus = get(),
+                priceSeriesCache = get()
             )
         }
 
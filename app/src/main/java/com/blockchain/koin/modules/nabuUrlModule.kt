@@ -9,7 +9,8 @@ val nabuUrlModule = applicationContext {
     bean("nabu") {
         Options(
             name = "Nabu",
-            url = BuildConfig.NABU_WEBSOCKET_URL
+            url = BuildConfig.NABU_WEBSOCKET_URL,
+            pingIntervalMillis = 30_000
         )
     }
 }
@@ -2,6 +2,7 @@ package com.blockchain.koin.modules
 
 import info.blockchain.wallet.ApiCode
 import info.blockchain.wallet.BlockchainFramework
+import info.blockchain.wallet.api.EndpointRegistry
 import info.blockchain.wallet.api.FeeApi
 import info.blockchain.wallet.api.FeeEndpoints
 import info.blockchain.wallet.api.WalletApi
@@ -12,15 +13,14 @@ import info.blockchain.wallet.settings.SettingsManager
 import org.koin.dsl.module.applicationContext
 import piuk.blockchain.android.data.fingerprint.FingerprintAuth
 import piuk.blockchain.android.data.fingerprint.FingerprintAuthImpl
-import retrofit2.Retrofit
 
 val serviceModule = applicationContext {
 
     bean { SettingsManager(get()) }
 
-    bean { get<Retrofit>("explorer").create(WalletExplorerEndpoints::class.java) }
+    bean { get<EndpointRegistry>().get(get("explorer"), WalletExplorerEndpoints::class.java) }
 
-    bean { get<Retrofit>("api").create(FeeEndpoints::class.java) }
+    bean { get<EndpointRegistry>().get(get("api"), FeeEndpoints::class.java) }
 
     factory { WalletApi(get(), get()) }
 
@@ -37,5 +37,5 @@ val serviceModule = applicationContext {
 
     factory { FingerprintAuthImpl() as FingerprintAuth }
 
-    factory { EthAccountApi(get()) }
+    factory { EthAccountApi(get(), get()) }
 }
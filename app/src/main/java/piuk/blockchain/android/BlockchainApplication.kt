@@ -15,6 +15,7 @@ import com.google.android.play.core.missingsplits.MissingSplitsManagerFactory
 import info.blockchain.wallet.BlockchainFramework
 import info.blockchain.wallet.FrameworkInterface
 import info.blockchain.wallet.api.Environment
+import info.blockchain.wallet.crypto.KeyDerivation
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.plugins.RxJavaPlugins
 import org.bitcoinj.core.NetworkParameters
@@ -95,6 +96,9 @@ open class BlockchainApplication : Application(), FrameworkInterface {
         // Pass objects to JAR - TODO: Remove this and use DI/Koin
         BlockchainFramework.init(this)
 
+        // Keep derived AES keys for the session, wiped on logout
+        KeyDerivation.setCacheEnabled(true)
+
         UncaughtExceptionHandler.install(appUtils)
 
         RxJavaPlugins.setErrorHandler { throwable -> Timber.tag(RX_ERROR_TAG).e(throwable) }
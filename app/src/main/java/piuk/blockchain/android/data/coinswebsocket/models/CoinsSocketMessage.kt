@@ -0,0 +1,30 @@
+package piuk.blockchain.android.data.coinswebsocket.models
+
+/**
+ * A coins websocket frame, decoded once into the shape its handler needs.
+ */
+sealed class CoinsSocketMessage {
+
+    /**
+     * Identifies the event behind the frame, as the same event is sent once per subscription it
+     * matches. Null if the frame can't be told apart from others.
+     */
+    abstract val dedupeKey: String?
+
+    data class WalletChanged(val checksum: String) : CoinsSocketMessage() {
+        override val dedupeKey: String
+            get() = "wallet:$checksum"
+    }
+
+    data class BtcBchTransaction(val coin: Coin, val transaction: BtcTransaction) : CoinsSocketMessage() {
+        override val dedupeKey: String?
+            get() = transaction.hash?.let { "$coin:$it" }
+    }
+
+    data class Eth(val response: EthResponse) : CoinsSocketMessage() {
+        // A transaction is sent again as its state changes, and each state is handled on its own
+        override val dedupeKey: String?
+            get() = response.transaction?.let { "${Coin.ETH}:${it.hash}:${it.state}" }
+                ?: response.tokenTransfer?.let { "${Entity.TokenTransfer}:${it.transactionHash}:${it.logIndex}" }
+    }
+}
@@ -30,7 +30,8 @@ data class EthResponse(
 data class BtcTransaction(
     val inputs: List<Input> = emptyList(),
     @SerializedName("out") val outputs: List<Output> = emptyList(),
-    val hash: String?
+    val hash: String?,
+    val time: Long? = null
 )
 
 data class Output(
@@ -1,6 +1,7 @@
 package piuk.blockchain.android.data.coinswebsocket.strategy
 
 import com.blockchain.network.websocket.ConnectionEvent
+import com.blockchain.network.websocket.ConnectionStats
 import com.blockchain.network.websocket.WebSocket
 import com.google.gson.Gson
 import info.blockchain.balance.CryptoCurrency
@@ -11,21 +12,23 @@ import info.blockchain.wallet.exceptions.DecryptionException
 import info.blockchain.wallet.multiaddress.TransactionSummary
 import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.Scheduler
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.rxkotlin.plusAssign
+import io.reactivex.schedulers.Schedulers
 import org.web3j.utils.Convert
 import piuk.blockchain.android.R
 import piuk.blockchain.android.data.coinswebsocket.models.Parameters
-import piuk.blockchain.android.data.coinswebsocket.models.BtcBchResponse
+import piuk.blockchain.android.data.coinswebsocket.models.BtcTransaction
 import piuk.blockchain.android.data.coinswebsocket.models.Coin
 import piuk.blockchain.android.data.coinswebsocket.models.CoinWebSocketInput
+import piuk.blockchain.android.data.coinswebsocket.models.CoinsSocketMessage
 import piuk.blockchain.android.data.coinswebsocket.models.Entity
 import piuk.blockchain.android.data.coinswebsocket.models.EthResponse
 import piuk.blockchain.android.data.coinswebsocket.models.EthTransaction
 import piuk.blockchain.android.data.coinswebsocket.models.Input
 import piuk.blockchain.android.data.coinswebsocket.models.Output
 import piuk.blockchain.android.data.coinswebsocket.models.SocketRequest
-import piuk.blockchain.android.data.coinswebsocket.models.SocketResponse
 import piuk.blockchain.android.data.coinswebsocket.models.TransactionState
 import piuk.blockchain.android.data.coinswebsocket.service.MessagesSocketHandler
 import piuk.blockchain.android.data.rxjava.RxUtil
@@ -44,6 +47,7 @@ import piuk.blockchain.androidcore.data.events.TransactionsUpdatedEvent
 import piuk.blockchain.androidcore.data.events.WalletAndTransactionsUpdatedEvent
 import piuk.blockchain.androidcore.data.payload.PayloadDataManager
 import piuk.blockchain.androidcore.data.rxjava.RxBus
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import piuk.blockchain.androidcore.data.websockets.WebSocketReceiveEvent
 import piuk.blockchain.androidcore.utils.PersistentPrefs
 import piuk.blockchain.androidcore.utils.extensions.applySchedulers
@@ -51,10 +55,13 @@ import piuk.blockchain.androidcore.utils.rxjava.IgnorableDefaultObserver
 import piuk.blockchain.android.util.AppUtil
 import timber.log.Timber
 import java.math.BigDecimal
+import java.math.BigInteger
 import java.util.Locale
+import java.util.concurrent.Executors
 
 class CoinsWebSocketStrategy(
     private val coinsWebSocket: WebSocket<String, String>,
+    private val connectionStats: ConnectionStats,
     private val ethDataManager: EthDataManager,
     private val swipeToReceiveHelper: SwipeToReceiveHelper,
     private val stringUtils: StringUtils,
@@ -66,12 +73,38 @@ class CoinsWebSocketStrategy(
     private val currencyFormatManager: CurrencyFormatManager,
     private val erc20Account: Erc20Account,
     private val payloadDataManager: PayloadDataManager,
-    private val bchDataManager: BchDataManager
+    private val bchDataManager: BchDataManager,
+    private val transactionHistoryCache: TransactionHistoryCache,
+    deltaScheduler: Scheduler = Schedulers.computation(),
+    private val messageScheduler: Scheduler = Schedulers.from(Executors.newSingleThreadExecutor())
 ) {
 
     private var coinWebSocketInput: CoinWebSocketInput? = null
     private val compositeDisposable = CompositeDisposable()
     private var messagesSocketHandler: MessagesSocketHandler? = null
+    private val messageDecoder = SocketMessageDecoder(gson)
+
+    // Keys of recent messages, only touched on the message scheduler
+    private val recentMessages = object : LinkedHashMap<String, Boolean>() {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Boolean>?) =
+            size > MAX_RECENT_MESSAGES
+    }
+
+    private val btcDeltas = TransactionDeltaEngine(
+        applyDelta = { payloadDataManager.applyTransactionDelta(it) },
+        reconcile = { payloadDataManager.reconcileBalances() },
+        fullRefresh = { payloadDataManager.updateAllTransactions() },
+        onUpdated = { rxBus.emitEvent(ActionEvent::class.java, WalletAndTransactionsUpdatedEvent()) },
+        scheduler = deltaScheduler
+    )
+
+    private val bchDeltas = TransactionDeltaEngine(
+        applyDelta = { bchDataManager.applyTransactionDelta(it) },
+        reconcile = { bchDataManager.reconcileBalances() },
+        fullRefresh = { bchDataManager.getWalletTransactions(50, 0).ignoreElements() },
+        onUpdated = { rxBus.emitEvent(ActionEvent::class.java, WalletAndTransactionsUpdatedEvent()) },
+        scheduler = deltaScheduler
+    )
 
     fun setMessagesHandler(messagesSocketHandler: MessagesSocketHandler) {
         this.messagesSocketHandler = messagesSocketHandler
@@ -84,6 +117,9 @@ class CoinsWebSocketStrategy(
     }
 
     private fun subscribeToEvents() {
+        compositeDisposable += btcDeltas.start()
+        compositeDisposable += bchDeltas.start()
+
         compositeDisposable += coinsWebSocket.connectionEvents.subscribe {
             when (it) {
                 is ConnectionEvent.Connected -> run {
@@ -93,21 +129,32 @@ class CoinsWebSocketStrategy(
             }
         }
 
-        compositeDisposable += coinsWebSocket.responses.distinctUntilChanged().subscribe { response ->
-            val socketResponse = gson.fromJson(response, SocketResponse::class.java)
-            if (socketResponse.op == "on_change") checkForWalletChange(socketResponse.checksum)
-            when (socketResponse.coin) {
-                Coin.ETH -> handleEthTransaction(response)
-                Coin.BTC -> handleBtcTransaction(response)
-                Coin.BCH -> handleBchTransaction(response)
-                else -> {
+        compositeDisposable += connectionStats.connectionChanges.subscribe {
+            Timber.d("Coins socket connections: %s", it)
+        }
+
+        compositeDisposable += coinsWebSocket.responses
+            .observeOn(messageScheduler)
+            .flatMapIterable { messageDecoder.decode(it) }
+            .filter { isNewMessage(it) }
+            .subscribe { message ->
+                when (message) {
+                    is CoinsSocketMessage.WalletChanged -> checkForWalletChange(message.checksum)
+                    is CoinsSocketMessage.BtcBchTransaction -> when (message.coin) {
+                        Coin.BCH -> handleBchTransaction(message.transaction)
+                        else -> handleBtcTransaction(message.transaction)
+                    }
+                    is CoinsSocketMessage.Eth -> handleEthTransaction(message.response)
                 }
             }
-        }
     }
 
-    private fun checkForWalletChange(checksum: String?) {
-        if (checksum == null) return
+    private fun isNewMessage(message: CoinsSocketMessage): Boolean {
+        val key = message.dedupeKey ?: return true
+        return recentMessages.put(key, true) == null
+    }
+
+    private fun checkForWalletChange(checksum: String) {
         val localChecksum = payloadDataManager.payloadChecksum
         val isSameChecksum = checksum == localChecksum
 
@@ -139,10 +186,12 @@ class CoinsWebSocketStrategy(
         outputs: List<Output>,
         hash: String?,
         containsAddress: (address: String) -> Boolean?
-    ): Pair<String?, BigDecimal> {
+    ): TransactionChange {
         var value = 0.toBigDecimal()
         var totalValue = 0.toBigDecimal()
         var inAddr: String? = null
+        val delta = HashMap<String, BigInteger>()
+        var spendsOwnCoins = false
 
         inputs.forEach { input ->
             input.prevOut?.let { output ->
@@ -151,9 +200,13 @@ class CoinsWebSocketStrategy(
                 }
                 if (output.xpub != null) {
                     totalValue -= value
+                    delta.add(output.xpub, -value)
+                    spendsOwnCoins = true
                 } else if (output.addr != null) {
                     if (containsAddress(output.addr) == true) {
                         totalValue -= value
+                        delta.add(output.addr, -value)
+                        spendsOwnCoins = true
                     } else if (inAddr == null) {
                         inAddr = output.addr
                     }
@@ -173,36 +226,39 @@ class CoinsWebSocketStrategy(
             }
             if (output.xpub != null) {
                 totalValue += value
+                delta.add(output.xpub, value)
             } else if (output.addr != null && containsAddress(output.addr) == true) {
                 totalValue += value
+                delta.add(output.addr, value)
             }
         }
-        return inAddr to totalValue
+        return TransactionChange(inAddr, totalValue, delta, spendsOwnCoins)
     }
 
-    private fun handleBtcTransaction(response: String) {
-        val btcResponse = gson.fromJson(response, BtcBchResponse::class.java)
-        val transaction = btcResponse.transaction ?: return
+    private fun HashMap<String, BigInteger>.add(key: String, value: BigDecimal) {
+        put(key, (get(key) ?: BigInteger.ZERO) + value.toBigInteger())
+    }
 
-        handleTransactionInputsAndOutputs(transaction.inputs,
+    private fun handleBtcTransaction(transaction: BtcTransaction) {
+        val containsAddress = { x: String -> payloadDataManager.wallet?.containsLegacyAddress(x) }
+        val change = handleTransactionInputsAndOutputs(transaction.inputs,
             transaction.outputs,
-            transaction.hash) { x ->
-            payloadDataManager.wallet?.containsLegacyAddress(x)
-        }
+            transaction.hash,
+            containsAddress)
 
-        updateBtcBalancesAndTransactions()
+        applyTransaction(btcDeltas, CryptoCurrency.BTC, transaction, change, containsAddress)
     }
 
-    private fun handleBchTransaction(response: String) {
-        val bchResponse = gson.fromJson(response, BtcBchResponse::class.java)
-        val transaction = bchResponse.transaction ?: return
+    private fun handleBchTransaction(transaction: BtcTransaction) {
+        val containsAddress = { x: String -> bchDataManager.getLegacyAddressStringList().contains(x) }
+        val change = handleTransactionInputsAndOutputs(transaction.inputs,
+            transaction.outputs,
+            transaction.hash,
+            containsAddress)
 
-        val (inAddr, totalValue) =
-            handleTransactionInputsAndOutputs(transaction.inputs, transaction.outputs, transaction.hash) { x ->
-                bchDataManager.getLegacyAddressStringList().contains(x)
-            }
+        applyTransaction(bchDeltas, CryptoCurrency.BCH, transaction, change, containsAddress)
 
-        updateBchBalancesAndTransactions()
+        val (inAddr, totalValue) = change
 
         val title = stringUtils.getString(R.string.app_name)
 
@@ -220,6 +276,62 @@ class CoinsWebSocketStrategy(
         }
     }
 
+    /**
+     * Incoming transactions are applied to the balances and the stored history straight away, with
+     * one reconciliation per burst instead of a full refresh per transaction. Spends are left to the
+     * reconciliation, as the balance was already lowered if the spend was sent from this device.
+     */
+    private fun applyTransaction(
+        engine: TransactionDeltaEngine,
+        currency: CryptoCurrency,
+        transaction: BtcTransaction,
+        change: TransactionChange,
+        containsAddress: (address: String) -> Boolean?
+    ) {
+        val hash = transaction.hash
+        if (hash == null || change.spendsOwnCoins) {
+            engine.requestReconciliation()
+        } else if (engine.apply(hash, change.delta) && change.totalValue > BigDecimal.ZERO) {
+            addPendingTransaction(currency, transaction.toPendingSummary(hash, change.totalValue, containsAddress))
+        }
+    }
+
+    private fun addPendingTransaction(currency: CryptoCurrency, summary: TransactionSummary) {
+        val guid = payloadDataManager.wallet?.guid ?: return
+        val password = payloadDataManager.tempPassword ?: return
+        compositeDisposable += Completable.fromAction {
+            transactionHistoryCache.walletStore(currency, guid, password).addPending(summary)
+        }.subscribeOn(Schedulers.io())
+            .subscribe({}, { Timber.e(it) })
+    }
+
+    /**
+     * Like the summaries built from the full history, a received transaction lists only the outputs
+     * paid to this wallet, leaving out the sender's change.
+     */
+    private fun BtcTransaction.toPendingSummary(
+        hash: String,
+        totalValue: BigDecimal,
+        containsAddress: (address: String) -> Boolean?
+    ) =
+        TransactionSummary().also { summary ->
+            summary.hash = hash
+            summary.direction = TransactionSummary.Direction.RECEIVED
+            summary.total = totalValue.toBigInteger()
+            summary.time = time ?: System.currentTimeMillis() / 1000
+            inputs.mapNotNull { it.prevOut }.forEach { prevOut ->
+                prevOut.addr?.let { summary.inputsMap[it] = prevOut.value?.toBigInteger() ?: BigInteger.ZERO }
+            }
+            outputs.filter { it.xpub != null || it.addr?.let(containsAddress) == true }.forEach { output ->
+                output.addr?.let { summary.outputsMap[it] = output.value?.toBigInteger() ?: BigInteger.ZERO }
+            }
+            val fee = inputs.sumOfValues { it.prevOut?.value } - outputs.sumOfValues { it.value }
+            summary.fee = fee.toBigInteger().max(BigInteger.ZERO)
+        }
+
+    private fun <T> List<T>.sumOfValues(value: (T) -> BigDecimal?): BigDecimal =
+        fold(BigDecimal.ZERO) { sum, item -> sum + (value(item) ?: BigDecimal.ZERO) }
+
     private fun updateBtcBalancesAndTransactions() {
         payloadDataManager.updateAllBalances()
             .andThen(payloadDataManager.updateAllTransactions())
@@ -227,16 +339,7 @@ class CoinsWebSocketStrategy(
             .subscribe(IgnorableDefaultObserver<Any>())
     }
 
-    private fun updateBchBalancesAndTransactions() {
-        bchDataManager.updateAllBalances()
-            .andThen(bchDataManager.getWalletTransactions(50, 0))
-            .doOnComplete { rxBus.emitEvent(ActionEvent::class.java, WalletAndTransactionsUpdatedEvent()) }
-            .subscribe(IgnorableDefaultObserver<List<TransactionSummary>>())
-    }
-
-    private fun handleEthTransaction(response: String) {
-        val ethResponse = gson.fromJson(response, EthResponse::class.java)
-
+    private fun handleEthTransaction(ethResponse: EthResponse) {
         if (ethResponse.transaction != null && ethResponse.isEthButNotReferredToPax()) {
             val transaction: EthTransaction = ethResponse.transaction
             if (transaction.state == TransactionState.CONFIRMED &&
@@ -551,4 +654,15 @@ class CoinsWebSocketStrategy(
 
     private fun PayloadDataManager.totalAccounts(): Int =
         wallet?.hdWallets?.get(0)?.accounts?.size ?: 0
-}
\ No newline at end of file
+
+    companion object {
+        private const val MAX_RECENT_MESSAGES = 500
+    }
+
+    private data class TransactionChange(
+        val inAddr: String?,
+        val totalValue: BigDecimal,
+        val delta: Map<String, BigInteger>,
+        val spendsOwnCoins: Boolean
+    )
+}
@@ -0,0 +1,112 @@
+package piuk.blockchain.android.data.coinswebsocket.strategy
+
+import com.google.gson.Gson
+import com.google.gson.JsonElement
+import com.google.gson.JsonParseException
+import com.google.gson.internal.bind.TypeAdapters
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import piuk.blockchain.android.data.coinswebsocket.models.BtcTransaction
+import piuk.blockchain.android.data.coinswebsocket.models.Coin
+import piuk.blockchain.android.data.coinswebsocket.models.CoinsSocketMessage
+import piuk.blockchain.android.data.coinswebsocket.models.Entity
+import piuk.blockchain.android.data.coinswebsocket.models.EthResponse
+import piuk.blockchain.android.data.coinswebsocket.models.EthTransaction
+import piuk.blockchain.android.data.coinswebsocket.models.TokenTransfer
+import timber.log.Timber
+import java.io.IOException
+import java.io.StringReader
+
+/**
+ * Decodes coins websocket frames in a single pass. The fields which select the handler are read
+ * as they stream past, and the transaction is decoded straight into the type of its coin, so no
+ * frame is parsed twice and fields no handler reads are skipped.
+ */
+class SocketMessageDecoder(gson: Gson) {
+
+    private val coinAdapter = gson.getAdapter(Coin::class.java)
+    private val entityAdapter = gson.getAdapter(Entity::class.java)
+    private val btcTransactionAdapter = gson.getAdapter(BtcTransaction::class.java)
+    private val ethTransactionAdapter = gson.getAdapter(EthTransaction::class.java)
+    private val tokenTransferAdapter = gson.getAdapter(TokenTransfer::class.java)
+
+    /**
+     * @return The messages in the frame, in the order they're handled: an `on_change` frame may
+     * also carry a transaction. Empty if the frame isn't handled or can't be read.
+     */
+    fun decode(frame: String): List<CoinsSocketMessage> =
+        try {
+            JsonReader(StringReader(frame)).use { read(it) }
+        } catch (e: IOException) {
+            Timber.e(e, "Unreadable websocket frame")
+            emptyList()
+        } catch (e: IllegalStateException) {
+            Timber.e(e, "Unreadable websocket frame")
+            emptyList()
+        } catch (e: JsonParseException) {
+            Timber.e(e, "Unreadable websocket frame")
+            emptyList()
+        }
+
+    private fun read(reader: JsonReader): List<CoinsSocketMessage> {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) return emptyList()
+
+        var coin: Coin? = null
+        var entity: Entity? = null
+        var op: String? = null
+        var checksum: String? = null
+        var tokenTransfer: TokenTransfer? = null
+        var btcTransaction: BtcTransaction? = null
+        var ethTransaction: EthTransaction? = null
+        // Only kept as a tree if the transaction comes before the coin it's for
+        var transactionTree: JsonElement? = null
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "coin" -> coin = coinAdapter.read(reader)
+                "entity" -> entity = entityAdapter.read(reader)
+                "op" -> op = reader.nextStringOrNull()
+                "checksum" -> checksum = reader.nextStringOrNull()
+                "tokenTransfer" -> tokenTransfer = tokenTransferAdapter.read(reader)
+                "transaction" -> when (coin) {
+                    Coin.BTC, Coin.BCH -> btcTransaction = btcTransactionAdapter.read(reader)
+                    Coin.ETH -> ethTransaction = ethTransactionAdapter.read(reader)
+                    null -> transactionTree = TypeAdapters.JSON_ELEMENT.read(reader)
+                    else -> reader.skipValue()
+                }
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        if (transactionTree != null) {
+            when (coin) {
+                Coin.BTC, Coin.BCH -> btcTransaction = btcTransactionAdapter.fromJsonTree(transactionTree)
+                Coin.ETH -> ethTransaction = ethTransactionAdapter.fromJsonTree(transactionTree)
+            }
+        }
+
+        val walletChanged = checksum?.takeIf { op == OP_ON_CHANGE }?.let { CoinsSocketMessage.WalletChanged(it) }
+        val coinMessage = when (coin) {
+            Coin.BTC, Coin.BCH -> btcTransaction?.let { CoinsSocketMessage.BtcBchTransaction(coin, it) }
+            Coin.ETH -> CoinsSocketMessage.Eth(
+                EthResponse(transaction = ethTransaction, entity = entity, tokenTransfer = tokenTransfer)
+            )
+            else -> null
+        }
+        return listOfNotNull(walletChanged, coinMessage)
+    }
+
+    private fun JsonReader.nextStringOrNull(): String? =
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            null
+        } else {
+            nextString()
+        }
+
+    companion object {
+        private const val OP_ON_CHANGE = "on_change"
+    }
+}
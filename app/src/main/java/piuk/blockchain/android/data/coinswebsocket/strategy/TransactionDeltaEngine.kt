@@ -0,0 +1,90 @@
+package piuk.blockchain.android.data.coinswebsocket.strategy
+
+import io.reactivex.Completable
+import io.reactivex.Scheduler
+import io.reactivex.Single
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.subjects.PublishSubject
+import timber.log.Timber
+import java.math.BigInteger
+import java.util.concurrent.TimeUnit
+
+/**
+ * Applies the balance changes of transactions pushed over the coins websocket straight away, and
+ * folds a burst of transactions into a single reconciliation with the server once none has arrived
+ * for [debounceMillis]. Only if the fetched balances don't match the applied changes are the
+ * transactions refreshed in full.
+ *
+ * @param applyDelta Applies signed amounts, keyed by address or xPub, to the local balances
+ * @param reconcile Fetches all balances and emits whether they matched the local ones
+ * @param fullRefresh Refreshes transactions after a mismatch
+ * @param onUpdated Called once a reconciliation is done
+ */
+class TransactionDeltaEngine(
+    private val applyDelta: (Map<String, BigInteger>) -> Unit,
+    private val reconcile: () -> Single<Boolean>,
+    private val fullRefresh: () -> Completable,
+    private val onUpdated: () -> Unit,
+    private val debounceMillis: Long = DEBOUNCE_MILLIS,
+    private val scheduler: Scheduler = Schedulers.computation()
+) {
+
+    private val pending = PublishSubject.create<Unit>()
+
+    // Hashes already applied, so a transaction sent again, e.g. once confirmed, isn't counted twice
+    private val applied = object : LinkedHashMap<String, Boolean>() {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Boolean>?) =
+            size > MAX_APPLIED_HASHES
+    }
+
+    /**
+     * Starts reconciling after bursts. At most one reconciliation runs at a time.
+     */
+    fun start(): Disposable =
+        pending.debounce(debounceMillis, TimeUnit.MILLISECONDS, scheduler)
+            .concatMapCompletable { reconcileNow() }
+            .subscribe()
+
+    /**
+     * Applies [delta] unless the transaction [hash] has been applied already, and schedules a
+     * reconciliation.
+     *
+     * @return False if the transaction had been applied already
+     */
+    @Synchronized
+    fun apply(hash: String, delta: Map<String, BigInteger>): Boolean {
+        if (applied.put(hash, true) != null) return false
+        applyDelta(delta)
+        pending.onNext(Unit)
+        return true
+    }
+
+    /**
+     * Schedules a reconciliation without changing local balances, for changes which can't be
+     * applied directly.
+     */
+    @Synchronized
+    fun requestReconciliation() {
+        pending.onNext(Unit)
+    }
+
+    private fun reconcileNow(): Completable =
+        reconcile()
+            .flatMapCompletable { matches ->
+                if (matches) {
+                    Completable.complete()
+                } else {
+                    Timber.d("Balances differ from websocket updates, refreshing transactions")
+                    fullRefresh()
+                }
+            }
+            .doOnComplete { onUpdated() }
+            .doOnError { Timber.e(it) }
+            .onErrorComplete()
+
+    companion object {
+        const val DEBOUNCE_MILLIS = 1500L
+        private const val MAX_APPLIED_HASHES = 500
+    }
+}
@@ -2,6 +2,8 @@ package piuk.blockchain.android.data.datamanagers
 
 import com.blockchain.sunriver.XlmDataManager
 import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.multiaddress.TransactionHistoryStore
+import info.blockchain.wallet.multiaddress.TransactionSummary
 import info.blockchain.wallet.payload.PayloadManager
 import io.reactivex.Observable
 import io.reactivex.Single
@@ -14,6 +16,7 @@ import piuk.blockchain.androidcore.data.currency.CurrencyState
 import piuk.blockchain.androidcore.data.erc20.Erc20Account
 import piuk.blockchain.androidcore.data.erc20.FeedErc20Transfer
 import piuk.blockchain.androidcore.data.ethereum.EthDataManager
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import piuk.blockchain.androidcore.data.transactions.TransactionListStore
 import piuk.blockchain.androidcore.data.transactions.models.BtcDisplayable
 import piuk.blockchain.androidcore.data.transactions.models.Displayable
@@ -30,7 +33,8 @@ class TransactionListDataManager(
     private val xlmDataManager: XlmDataManager,
     private val paxAccount: Erc20Account,
     private val transactionListStore: TransactionListStore,
-    private val currencyState: CurrencyState
+    private val currencyState: CurrencyState,
+    private val transactionHistoryCache: TransactionHistoryCache
 ) {
     fun fetchTransactions(
         itemAccount: ItemAccount,
@@ -63,35 +67,89 @@ class TransactionListDataManager(
         limit: Int,
         offset: Int
     ): Observable<List<Displayable>> =
-        when (itemAccount.type) {
-            ItemAccount.TYPE.ALL_ACCOUNTS_AND_LEGACY -> getAllTransactionsObservable(
-                limit,
-                offset
-            )
-            ItemAccount.TYPE.ALL_LEGACY -> getLegacyObservable(limit, offset)
-            ItemAccount.TYPE.SINGLE_ACCOUNT -> getAccountObservable(
-                itemAccount.address!!,
-                limit,
-                offset
-            )
-        }
+        fetchStoredTransactions(
+            btcHistoryStore(itemAccount),
+            btcPageFetcher(itemAccount),
+            limit,
+            offset
+        ) { BtcDisplayable(it) }
 
     private fun fetchBchTransactions(
         itemAccount: ItemAccount,
         limit: Int,
         offset: Int
     ): Observable<List<Displayable>> =
+        fetchStoredTransactions(
+            bchHistoryStore(itemAccount),
+            bchPageFetcher(itemAccount),
+            limit,
+            offset
+        ) { BchDisplayable(it) }
+
+    /**
+     * For the first page, emits the stored history straight away if there is any, then the history
+     * once it has caught up with the network. Later pages by offset, and every page while there is no
+     * password to open the store with, go straight to the network.
+     */
+    private fun fetchStoredTransactions(
+        store: TransactionHistoryStore?,
+        fetcher: TransactionHistoryStore.PageFetcher,
+        limit: Int,
+        offset: Int,
+        toDisplayable: (TransactionSummary) -> Displayable
+    ): Observable<List<Displayable>> {
+        if (store == null || offset > 0) {
+            return Observable.fromCallable { fetcher.fetch(limit, offset).map(toDisplayable) }
+        }
+
+        val stored = Observable.fromCallable { store.getTransactions(Long.MAX_VALUE, limit).map(toDisplayable) }
+            .filter { it.isNotEmpty() }
+        val synced = Observable.fromCallable {
+            store.sync(fetcher, limit)
+            store.getTransactions(Long.MAX_VALUE, limit, fetcher).map(toDisplayable)
+        }
+        return Observable.concat(stored, synced)
+    }
+
+    private fun btcHistoryStore(itemAccount: ItemAccount) = historyStore(CryptoCurrency.BTC, itemAccount)
+
+    private fun bchHistoryStore(itemAccount: ItemAccount) = historyStore(CryptoCurrency.BCH, itemAccount)
+
+    private fun historyStore(currency: CryptoCurrency, itemAccount: ItemAccount): TransactionHistoryStore? {
+        val password = payloadManager.tempPassword ?: return null
+        return transactionHistoryCache.store(currency, historyContext(itemAccount), password)
+    }
+
+    private fun historyContext(itemAccount: ItemAccount): String {
+        val guid = payloadManager.payload?.guid
+        return when (itemAccount.type) {
+            ItemAccount.TYPE.ALL_ACCOUNTS_AND_LEGACY -> TransactionHistoryCache.walletContext(guid)
+            ItemAccount.TYPE.ALL_LEGACY -> "$guid:imported"
+            ItemAccount.TYPE.SINGLE_ACCOUNT -> "$guid:${itemAccount.address!!}"
+        }
+    }
+
+    private fun btcPageFetcher(itemAccount: ItemAccount): TransactionHistoryStore.PageFetcher =
+        when (itemAccount.type) {
+            ItemAccount.TYPE.ALL_ACCOUNTS_AND_LEGACY -> TransactionHistoryStore.PageFetcher { limit, offset ->
+                payloadManager.getAllTransactions(limit, offset)
+            }
+            ItemAccount.TYPE.ALL_LEGACY -> TransactionHistoryStore.PageFetcher { limit, offset ->
+                payloadManager.getImportedAddressesTransactions(limit, offset)
+            }
+            ItemAccount.TYPE.SINGLE_ACCOUNT -> {
+                val address = itemAccount.address!!
+                TransactionHistoryStore.PageFetcher { limit, offset ->
+                    payloadManager.getAccountTransactions(address, limit, offset)
+                }
+            }
+        }
+
+    private fun bchPageFetcher(itemAccount: ItemAccount): TransactionHistoryStore.PageFetcher =
         when (itemAccount.type) {
-            ItemAccount.TYPE.ALL_ACCOUNTS_AND_LEGACY -> getBchAllTransactionsObservable(
-                limit,
-                offset
-            )
-            ItemAccount.TYPE.ALL_LEGACY -> getBchLegacyObservable(limit, offset)
-            ItemAccount.TYPE.SINGLE_ACCOUNT -> getBchAccountObservable(
-                itemAccount.address!!,
-                limit,
-                offset
-            )
+            ItemAccount.TYPE.ALL_ACCOUNTS_AND_LEGACY -> bchDataManager.walletTransactionsFetcher()
+            ItemAccount.TYPE.ALL_LEGACY -> bchDataManager.importedAddressTransactionsFetcher()
+            ItemAccount.TYPE.SINGLE_ACCOUNT -> bchDataManager.addressTransactionsFetcher(itemAccount.address!!)
         }
 
     /**
@@ -193,31 +251,6 @@ class TransactionListDataManager(
             .forEach { pendingMap.remove(it.hash) }
     }
 
-    private fun getAllTransactionsObservable(
-        limit: Int,
-        offset: Int
-    ): Observable<List<Displayable>> =
-        Observable.fromCallable {
-            payloadManager.getAllTransactions(limit, offset)
-                .map { BtcDisplayable(it) }
-        }
-
-    private fun getLegacyObservable(limit: Int, offset: Int): Observable<List<Displayable>> =
-        Observable.fromCallable {
-            payloadManager.getImportedAddressesTransactions(limit, offset)
-                .map { BtcDisplayable(it) }
-        }
-
-    private fun getAccountObservable(
-        address: String,
-        limit: Int,
-        offset: Int
-    ): Observable<List<Displayable>> =
-        Observable.fromCallable {
-            payloadManager.getAccountTransactions(address, limit, offset)
-                .map { BtcDisplayable(it) }
-        }
-
     private fun getEthereumObservable(): Observable<List<Displayable>> =
         ethDataManager.getLatestBlock()
             .flatMap { latestBlock ->
@@ -255,25 +288,6 @@ class TransactionListDataManager(
         }
     }
 
-    private fun getBchAllTransactionsObservable(
-        limit: Int,
-        offset: Int
-    ): Observable<List<Displayable>> =
-        bchDataManager.getWalletTransactions(limit, offset)
-            .mapList { BchDisplayable(it) }
-
-    private fun getBchLegacyObservable(limit: Int, offset: Int): Observable<List<Displayable>> =
-        bchDataManager.getImportedAddressTransactions(limit, offset)
-            .mapList { BchDisplayable(it) }
-
-    private fun getBchAccountObservable(
-        address: String,
-        limit: Int,
-        offset: Int
-    ): Observable<List<Displayable>> =
-        bchDataManager.getAddressTransactions(address, limit, offset)
-            .mapList { BchDisplayable(it) }
-
     private fun <T, R> Observable<List<T>>.mapList(func: (T) -> R): Observable<List<R>> {
         return flatMapIterable { list ->
             list.map { func(it) }
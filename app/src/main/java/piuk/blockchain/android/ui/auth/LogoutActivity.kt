@@ -4,6 +4,7 @@ import android.content.Intent
 import android.os.Bundle
 import androidx.appcompat.app.AppCompatActivity
 import com.blockchain.swap.nabu.datamanagers.NabuDataManager
+import info.blockchain.wallet.crypto.KeyDerivation
 import org.koin.android.ext.android.inject
 import piuk.blockchain.androidcore.data.bitcoincash.BchDataManager
 import piuk.blockchain.androidcore.data.erc20.Erc20Account
@@ -13,6 +14,7 @@ import piuk.blockchain.androidbuysell.datamanagers.BuyDataManager
 import piuk.blockchain.androidbuysell.datamanagers.CoinifyDataManager
 import piuk.blockchain.androidbuysell.services.BuyConditions
 import piuk.blockchain.androidcore.data.access.AccessState
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import com.blockchain.swap.shapeshift.ShapeShiftDataManager
 import piuk.blockchain.android.data.coinswebsocket.service.CoinsWebSocketService
 import piuk.blockchain.androidcore.data.walletoptions.WalletOptionsState
@@ -32,6 +34,7 @@ class LogoutActivity : AppCompatActivity() {
     private val osUtil: OSUtil by inject()
     private val loginState: AccessState by inject()
     private val prefs: PersistentPrefs by inject()
+    private val transactionHistoryCache: TransactionHistoryCache by inject()
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -64,6 +67,8 @@ class LogoutActivity : AppCompatActivity() {
 
         buyConditions.wipe()
         walletOptionsState.wipe()
+        KeyDerivation.wipeCache()
+        transactionHistoryCache.release()
 
         loginState.isLoggedIn = false
         finishAffinity()
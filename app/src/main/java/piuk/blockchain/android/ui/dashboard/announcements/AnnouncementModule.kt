@@ -34,7 +34,8 @@ val dashboardAnnouncementsModule = applicationContext {
                 mainScheduler = AndroidSchedulers.mainThread(),
                 availableAnnouncements = availableAnnouncements,
                 orderAdapter = get(),
-                dismissRecorder = get()
+                dismissRecorder = get(),
+                queries = get()
             )
         }
 
@@ -44,7 +45,7 @@ val dashboardAnnouncementsModule = applicationContext {
             )
         }.bind(AnnouncementConfigAdapter::class)
 
-        factory {
+        bean {
             AnnouncementQueries(
                 nabuToken = get(),
                 settings = get(),
@@ -1,7 +1,10 @@
 package piuk.blockchain.android.ui.dashboard.announcements
 
 import com.blockchain.swap.nabu.datamanagers.NabuDataManager
+import com.blockchain.swap.nabu.models.nabu.NabuCountryResponse
+import com.blockchain.swap.nabu.models.nabu.NabuUser
 import com.blockchain.swap.nabu.models.nabu.Scope
+import com.blockchain.swap.nabu.models.nabu.TiersJson
 import com.blockchain.swap.nabu.models.nabu.goldTierComplete
 import com.blockchain.swap.nabu.models.nabu.kycVerified
 import com.blockchain.swap.nabu.NabuToken
@@ -9,21 +12,42 @@ import com.blockchain.swap.nabu.service.TierService
 import io.reactivex.Single
 import io.reactivex.rxkotlin.Singles
 import piuk.blockchain.androidcore.data.settings.SettingsDataManager
+import java.util.concurrent.atomic.AtomicReference
 
+/**
+ * Between [startCheck] and [endCheck] the user, tiers, settings and country list are fetched at
+ * most once and shared by every query, so announcement rules checked together make one request for
+ * each. Outside a check each query fetches what it needs. If checks overlap, queries use the
+ * snapshot of the latest one, which stays until that check ends.
+ */
 class AnnouncementQueries(
     private val nabuToken: NabuToken,
     private val settings: SettingsDataManager,
     private val nabu: NabuDataManager,
     private val tierService: TierService
 ) {
+
+    private val snapshot = AtomicReference<Snapshot?>()
+
+    private val current: Snapshot
+        get() = snapshot.get() ?: Snapshot()
+
+    /**
+     * @return The snapshot of this check, to pass to [endCheck]
+     */
+    fun startCheck(): Snapshot =
+        Snapshot().also { snapshot.set(it) }
+
+    fun endCheck(check: Snapshot) {
+        snapshot.compareAndSet(check, null)
+    }
+
     // Attempt to figure out if KYC/swap etc is allowed based on location...
     fun canKyc(): Single<Boolean> {
-
+        val snapshot = current
         return Singles.zip(
-            settings.getSettings()
-                .map { it.countryCode }
-                .singleOrError(),
-            nabu.getCountriesList(Scope.None)
+            snapshot.countryCode,
+            snapshot.countries
         ).map { (country, list) ->
             list.any { it.code == country && it.isKycAllowed }
         }.onErrorReturn { false }
@@ -31,31 +55,50 @@ class AnnouncementQueries(
 
     // Have we moved past kyc tier 1 - silver?
     fun isKycGoldStartedOrComplete(): Single<Boolean> {
-        return nabuToken.fetchNabuToken()
-            .flatMap { token -> nabu.getUser(token) }
+        return current.user
             .map { it.tierInProgressOrCurrentTier == 2 }
             .onErrorReturn { false }
     }
 
     // Have we been through the Gold KYC process? ie are we Tier2InReview, Tier2Approved or Tier2Failed (cf TierJson)
     fun isGoldComplete(): Single<Boolean> =
-        tierService.tiers()
+        current.tiers
             .map { it.combinedState in goldTierComplete }
 
     fun isTier1Or2Verified(): Single<Boolean> =
-        tierService.tiers().map { it.combinedState in kycVerified }
+        current.tiers.map { it.combinedState in kycVerified }
 
     fun isEligibleForStxSignup(): Single<Boolean> {
-        return nabuToken.fetchNabuToken()
-            .flatMap { token -> nabu.getUser(token) }
+        return current.user
             .map { it.currentTier == 2 && !it.isStxAirdropRegistered }
             .onErrorReturn { false }
     }
 
     fun isRegistedForStxAirdrop(): Single<Boolean> {
-        return nabuToken.fetchNabuToken()
-            .flatMap { token -> nabu.getUser(token) }
+        return current.user
             .map { it.isStxAirdropRegistered }
             .onErrorReturn { false }
     }
+
+    inner class Snapshot internal constructor() {
+
+        internal val user: Single<NabuUser> by lazy {
+            nabuToken.fetchNabuToken()
+                .flatMap { token -> nabu.getUser(token) }
+                .cache()
+        }
+
+        internal val tiers: Single<TiersJson> by lazy { tierService.tiers().cache() }
+
+        internal val countryCode: Single<String> by lazy {
+            settings.getSettings()
+                .map { it.countryCode }
+                .singleOrError()
+                .cache()
+        }
+
+        internal val countries: Single<List<NabuCountryResponse>> by lazy {
+            nabu.getCountriesList(Scope.None).cache()
+        }
+    }
 }
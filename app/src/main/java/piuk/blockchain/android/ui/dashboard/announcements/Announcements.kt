@@ -10,7 +10,9 @@ import io.reactivex.Single
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.rxkotlin.plusAssign
 import io.reactivex.rxkotlin.subscribeBy
+import io.reactivex.schedulers.Schedulers
 import timber.log.Timber
+import java.util.concurrent.TimeUnit
 
 interface AnnouncementHost {
     val disposables: CompositeDisposable
@@ -44,11 +46,19 @@ abstract class AnnouncementRule(private val dismissRecorder: DismissRecorder) {
     fun isDismissed(): Boolean = dismissEntry.isDismissed
 }
 
+/**
+ * Rules are checked at the same time, against one snapshot of the [queries] they share. A rule which
+ * fails, or does not answer within [ruleTimeoutMillis], is skipped. The rule shown is still the first
+ * in the configured order which says it should show, and checks of the rules after it are cancelled.
+ */
 class AnnouncementList(
     private val mainScheduler: Scheduler,
     private val orderAdapter: AnnouncementConfigAdapter,
     private val availableAnnouncements: List<AnnouncementRule>,
-    private val dismissRecorder: DismissRecorder
+    private val dismissRecorder: DismissRecorder,
+    private val queries: AnnouncementQueries,
+    private val ruleScheduler: Scheduler = Schedulers.io(),
+    private val ruleTimeoutMillis: Long = TimeUnit.SECONDS.toMillis(5)
 ) {
     fun checkLatest(host: AnnouncementHost, disposables: CompositeDisposable) {
         host.dismissAnnouncementCard()
@@ -70,19 +80,28 @@ class AnnouncementList(
             .doOnSuccess { it.show(host) }
 
     private fun getNextAnnouncement(): Maybe<AnnouncementRule> =
-        orderAdapter.announcementConfig
-            .doOnSuccess { dismissRecorder.setPeriod(it.interval) }
-            .map { buildAnnouncementList(it.order) }
-            .flattenAsObservable { it }
-            .concatMap { a ->
-                Observable.defer {
-                    a.shouldShow()
-                        .filter { it }
-                        .map { a }
-                        .toObservable()
-                }
+        Maybe.defer {
+            val check = queries.startCheck()
+            orderAdapter.announcementConfig
+                .doOnSuccess { dismissRecorder.setPeriod(it.interval) }
+                .map { buildAnnouncementList(it.order) }
+                .flattenAsObservable { it }
+                .concatMapEager { it.check() }
+                .firstElement()
+                .doFinally { queries.endCheck(check) }
+        }
+
+    private fun AnnouncementRule.check(): Observable<AnnouncementRule> =
+        Single.defer { shouldShow() }
+            .subscribeOn(ruleScheduler)
+            .timeout(ruleTimeoutMillis, TimeUnit.MILLISECONDS)
+            .onErrorReturn {
+                Timber.e(it, "Announcement %s not checked", name)
+                false
             }
-            .firstElement()
+            .filter { it }
+            .map { this }
+            .toObservable()
 
     internal fun dismissKeys(): List<String> = availableAnnouncements.map { it.dismissKey }
 
@@ -8,6 +8,8 @@ import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import com.blockchain.logging.CrashLogger
+import com.blockchain.network.diagnostics.NetworkDiagnostics
+import com.blockchain.swap.nabu.datamanagers.NabuTokenRefreshDiagnostics
 import io.reactivex.disposables.CompositeDisposable
 import kotlinx.android.synthetic.main.dialog_debug_options.*
 import org.koin.android.ext.android.get
@@ -28,6 +30,8 @@ class DebugOptionsBottomDialog : BottomSheetDialogFragment() {
     private val appUtil: AppUtil by inject()
     private val loginState: AccessState by inject()
     private val crashLogger: CrashLogger by inject()
+    private val networkDiagnostics: NetworkDiagnostics by inject()
+    private val tokenRefreshDiagnostics: NabuTokenRefreshDiagnostics by inject()
 
     override fun onCreateView(
         inflater: LayoutInflater,
@@ -45,9 +49,40 @@ class DebugOptionsBottomDialog : BottomSheetDialogFragment() {
 
         btn_store_linkId.setOnClickListener { prefs.pitToWalletLinkId = "11111111-2222-3333-4444-55556666677" }
 
+        btn_reset_network_stats.setOnClickListener { onResetNetworkStats() }
+        showNetworkStats()
+        showTokenRefreshStats()
+
         firebase_token.text = prefs.firebaseToken
     }
 
+    private fun showNetworkStats() {
+        network_stats.text = networkDiagnostics.stats.joinToString("\n") {
+            "${it.endpoint}\n  ${it.responses} / ${it.failures} failed, " +
+                "${latency(it.latencyPercentileMillis(0.5))} / ${latency(it.latencyPercentileMillis(0.95))}, " +
+                "${it.bytesReceived / 1024} KB"
+        }.ifEmpty { "No calls recorded" }
+    }
+
+    private fun showTokenRefreshStats() {
+        val stats = tokenRefreshDiagnostics.stats
+        val succeeded = stats.refreshes - stats.failures
+        token_refresh_stats.text =
+            "${stats.refreshes} refreshed / ${stats.failures} failed, " +
+                "${stats.coalesced} joined one in flight, ${stats.proactive} ahead of expiry\n" +
+                "last ${stats.lastLatencyMillis} ms, " +
+                "average ${if (succeeded > 0) stats.totalLatencyMillis / succeeded else 0} ms"
+    }
+
+    private fun latency(upperBoundMillis: Long?) =
+        upperBoundMillis?.let { "<= $it ms" } ?: "slow"
+
+    private fun onResetNetworkStats() {
+        networkDiagnostics.reset()
+        showNetworkStats()
+        context?.toast("Network stats reset")
+    }
+
     private fun onRndDeviceId() {
         prefs.qaRandomiseDeviceId = true
         context?.toast("Device ID randomisation enabled")
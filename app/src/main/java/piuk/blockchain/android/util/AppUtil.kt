@@ -6,13 +6,15 @@ import android.content.pm.PackageManager
 import android.hardware.Camera
 import info.blockchain.wallet.payload.PayloadManagerWiper
 import piuk.blockchain.androidcore.data.access.AccessState
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import piuk.blockchain.androidcore.utils.PersistentPrefs
 
 class AppUtil(
     private val context: Context,
     private var payloadManager: PayloadManagerWiper,
     private var accessState: AccessState,
-    private val prefs: PersistentPrefs
+    private val prefs: PersistentPrefs,
+    private val transactionHistoryCache: TransactionHistoryCache
 ) {
     val isSane: Boolean
         get() {
@@ -54,6 +56,7 @@ class AppUtil(
         payloadManager.wipe()
         prefs.clear()
         accessState.forgetWallet()
+        transactionHistoryCache.wipe()
     }
 
     fun clearCredentialsAndRestart(launcherActivity: Class<*>) {
@@ -2,21 +2,32 @@ package piuk.blockchain.android.data.coinswebsocket
 
 import com.blockchain.android.testutils.rxInit
 import com.blockchain.network.websocket.ConnectionEvent
+import com.blockchain.network.websocket.ConnectionStats
 import com.blockchain.network.websocket.WebSocket
 import com.google.gson.Gson
 import com.nhaarman.mockito_kotlin.any
+import com.nhaarman.mockito_kotlin.argumentCaptor
 import com.nhaarman.mockito_kotlin.mock
 import com.nhaarman.mockito_kotlin.never
+import com.nhaarman.mockito_kotlin.times
 import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.whenever
 import info.blockchain.balance.CryptoCurrency
 import info.blockchain.wallet.ethereum.Erc20TokenData
 import info.blockchain.wallet.ethereum.EthereumWallet
 import info.blockchain.wallet.ethereum.data.EthAddressResponseMap
+import info.blockchain.wallet.multiaddress.TransactionHistoryStore
+import info.blockchain.wallet.multiaddress.TransactionSummary
 import info.blockchain.wallet.payload.data.Wallet
 import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.schedulers.TestScheduler
 import io.reactivex.subjects.PublishSubject
+import java.util.concurrent.TimeUnit
 import org.amshove.kluent.`it returns`
+import org.amshove.kluent.`should equal`
 import org.amshove.kluent.mock
 import org.junit.Before
 import org.junit.Rule
@@ -32,6 +43,7 @@ import piuk.blockchain.androidcore.data.ethereum.EthDataManager
 import piuk.blockchain.androidcore.data.ethereum.models.CombinedEthModel
 import piuk.blockchain.androidcore.data.payload.PayloadDataManager
 import piuk.blockchain.androidcore.data.rxjava.RxBus
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import piuk.blockchain.androidcore.utils.PersistentPrefs
 
 class CoinsWebSocketStrategyTest {
@@ -76,9 +88,10 @@ class CoinsWebSocketStrategyTest {
     private val payloadDataManager: PayloadDataManager = mock {
         on { updateAllBalances() } `it returns` Completable.complete()
         on { updateAllTransactions() } `it returns` Completable.complete()
+        on { reconcileBalances() } `it returns` Single.just(true)
         on { payloadChecksum } `it returns` "741cd20c1f076c6393a07a2dc7b072188cd4e3ecea3184a1e6a5ed387daadb193245"
         on { tempPassword } `it returns` "2333"
-        on { wallet } `it returns` Wallet()
+        on { wallet } `it returns` Wallet().apply { guid = "1234" }
         on {
             initializeAndDecrypt(
                 any(),
@@ -91,17 +104,27 @@ class CoinsWebSocketStrategyTest {
     private val bchDataManager: BchDataManager = mock {
         on { updateAllBalances() } `it returns` Completable.complete()
         on { getWalletTransactions(any(), any()) } `it returns` Observable.just(emptyList())
+        on { reconcileBalances() } `it returns` Single.just(true)
     }
 
     private val prefs: PersistentPrefs = mock {
         on { getValue(PersistentPrefs.KEY_WALLET_GUID, "") } `it returns` "1234"
     }
 
+    private val historyStore: TransactionHistoryStore = mock()
+
+    private val transactionHistoryCache: TransactionHistoryCache = mock {
+        on { walletStore(any(), any(), any()) } `it returns` historyStore
+    }
+
+    private val deltaScheduler = TestScheduler()
+
     private val mockWebSocket: WebSocket<String, String> = mock()
     private val webSocket = FakeWebSocket(mockWebSocket)
 
     private val strategy = CoinsWebSocketStrategy(
         coinsWebSocket = webSocket,
+        connectionStats = ConnectionStats(),
         ethDataManager = ethDataManager,
         swipeToReceiveHelper = swipeToReceiveHelper,
         stringUtils = stringUtils,
@@ -113,7 +136,10 @@ class CoinsWebSocketStrategyTest {
         accessState = mock(),
         appUtil = mock(),
         prefs = prefs,
-        rxBus = rxBus
+        rxBus = rxBus,
+        transactionHistoryCache = transactionHistoryCache,
+        deltaScheduler = deltaScheduler,
+        messageScheduler = Schedulers.trampoline()
     )
 
     @Before
@@ -132,6 +158,17 @@ class CoinsWebSocketStrategyTest {
             "Received Ether 0.00604741 ETH from 0x4058a004dd718babab47e14dd0d744742e5b9903")
     }
 
+    @Test
+    fun `repeated eth transaction should be handled once per state`() {
+        webSocket.send(pendingEthTransaction)
+        webSocket.send(pendingEthTransaction)
+        webSocket.send(confirmedEtheTransaction)
+        webSocket.send(confirmedEtheTransaction)
+
+        verify(ethDataManager, times(2)).fetchEthAddress()
+        verify(messagesSocketHandler).triggerNotification(any(), any(), any())
+    }
+
     @Test
     fun `notification should not be triggered on pending eth transaction`() {
         webSocket.send(pendingEthTransaction)
@@ -164,19 +201,68 @@ class CoinsWebSocketStrategyTest {
     }
 
     @Test
-    fun `btc transaction should be update btc balance and transactions`() {
+    fun `btc transaction should be applied and reconciled once quiet`() {
         webSocket.send(btcTransaction)
         verify(mockWebSocket).open()
-        verify(payloadDataManager).updateAllBalances()
+        verify(payloadDataManager).applyTransactionDelta(any())
+        verify(payloadDataManager, never()).reconcileBalances()
+
+        deltaScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+        verify(payloadDataManager).reconcileBalances()
+        verify(payloadDataManager, never()).updateAllBalances()
+        verify(payloadDataManager, never()).updateAllTransactions()
+    }
+
+    @Test
+    fun `burst of btc transactions should be reconciled once`() {
+        (1..30).forEach {
+            webSocket.send(btcTransaction.replace(BTC_TX_HASH, "$BTC_TX_HASH$it"))
+        }
+        deltaScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+
+        verify(payloadDataManager, times(30)).applyTransactionDelta(any())
+        verify(payloadDataManager).reconcileBalances()
+        verify(payloadDataManager, never()).updateAllTransactions()
+    }
+
+    @Test
+    fun `btc balance mismatch should refresh transactions`() {
+        whenever(payloadDataManager.reconcileBalances()).thenReturn(Single.just(false))
+
+        webSocket.send(btcTransaction)
+        deltaScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+
+        verify(payloadDataManager).reconcileBalances()
         verify(payloadDataManager).updateAllTransactions()
     }
 
     @Test
-    fun `bch transaction should be update bch balance and transactions`() {
+    fun `received btc transaction is stored as pending with only the outputs paid to the wallet`() {
+        webSocket.send(
+            btcTransaction.replace(
+                "\"addr\":\"1At9jiwzVsRJAtN9hkqpgHsaCTJZSfgWAm\"",
+                "\"addr\":\"1At9jiwzVsRJAtN9hkqpgHsaCTJZSfgWAm\",\"xpub\":\"xpub6CUGRUonZSQ4TWtTMmzXdrXDtyPWKiK\""
+            )
+        )
+
+        argumentCaptor<TransactionSummary>().apply {
+            verify(historyStore).addPending(capture())
+            firstValue.direction `should equal` TransactionSummary.Direction.RECEIVED
+            firstValue.total `should equal` 27577.toBigInteger()
+            firstValue.outputsMap `should equal` hashMapOf("1At9jiwzVsRJAtN9hkqpgHsaCTJZSfgWAm" to 27577.toBigInteger())
+        }
+    }
+
+    @Test
+    fun `bch transaction should be applied and reconciled once quiet`() {
         webSocket.send(bchTransaction)
         verify(mockWebSocket).open()
-        verify(bchDataManager).updateAllBalances()
-        verify(bchDataManager).getWalletTransactions(50, 0)
+        verify(bchDataManager).applyTransactionDelta(any())
+
+        deltaScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+        verify(bchDataManager).reconcileBalances()
+        verify(bchDataManager, never()).updateAllBalances()
+        verify(bchDataManager, never()).getWalletTransactions(50, 0)
     }
 
     @Test
@@ -189,6 +275,15 @@ class CoinsWebSocketStrategyTest {
         verify(messagesSocketHandler).showToast(R.string.wallet_updated)
     }
 
+    @Test
+    fun `changed payload carrying a transaction is handled as both`() {
+        webSocket.send(
+            btcTransaction.replaceFirst("{", "{\"op\":\"on_change\",\"checksum\":\"1234\",")
+        )
+        verify(payloadDataManager).updateAllBalances()
+        verify(payloadDataManager).applyTransactionDelta(any())
+    }
+
     private class FakeWebSocket(mock: WebSocket<String, String>) : WebSocket<String, String> by mock {
         private val _sendSubject = PublishSubject.create<String>()
 
@@ -237,6 +332,8 @@ class CoinsWebSocketStrategyTest {
                 "a004dd718babab47e14dd0d744742e5b9903\",\"to\":\"0x4058a004dd718babab47e14dd0d744742e5b9903\",\"val" +
                 "ue\":1210000000000000000,\"decimals\":18,\"timestamp\":0}}"
 
+    private val BTC_TX_HASH = "154d477ea8fdfb401a97894ce6d511fc905bdf126d4b8256ba04dd3877f0896a"
+
     private val btcTransaction = "{\"coin\":\"btc\",\"entity\":\"xpub\",\"transaction\":" +
             "{\"lock_time\":0,\"ver\":1,\"size\":225,\"inputs\":[{\"address\":\"1Cox48WAm4NKTYbSjQ8DEswpaBNCfFwo9x" +
             "\",\"value\":66456,\"sequence\":4294967295,\"prev_out\":{\"spent\":true,\"tx_index\":1099871852,\"type" +
@@ -0,0 +1,105 @@
+package piuk.blockchain.android.data.coinswebsocket
+
+import com.google.gson.Gson
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.junit.Test
+import piuk.blockchain.android.data.coinswebsocket.models.Coin
+import piuk.blockchain.android.data.coinswebsocket.models.CoinsSocketMessage
+import piuk.blockchain.android.data.coinswebsocket.models.Entity
+import piuk.blockchain.android.data.coinswebsocket.models.TransactionState
+import piuk.blockchain.android.data.coinswebsocket.strategy.SocketMessageDecoder
+import java.math.BigDecimal
+import java.math.BigInteger
+
+class SocketMessageDecoderTest {
+
+    private val decoder = SocketMessageDecoder(Gson())
+
+    private val btcTransaction = "{\"hash\":\"abc\",\"time\":1573045879,\"inputs\":[{\"address\":\"1A\"," +
+            "\"value\":1000,\"prev_out\":{\"spent\":true,\"addr\":\"1A\",\"value\":1000}}]," +
+            "\"out\":[{\"spent\":false,\"addr\":\"1B\",\"value\":900}]}"
+
+    @Test
+    fun `btc transaction`() {
+        val message = decoder.decode("{\"coin\":\"btc\",\"entity\":\"xpub\",\"transaction\":$btcTransaction}").single()
+
+        message as CoinsSocketMessage.BtcBchTransaction
+        message.coin `should be` Coin.BTC
+        message.transaction.hash `should equal` "abc"
+        message.transaction.time `should equal` 1573045879L
+        message.transaction.inputs.single().prevOut!!.addr `should equal` "1A"
+        message.transaction.outputs.single().value `should equal` BigDecimal(900)
+        message.dedupeKey `should equal` "BTC:abc"
+    }
+
+    @Test
+    fun `transaction before its coin`() {
+        val message = decoder.decode("{\"transaction\":$btcTransaction,\"entity\":\"xpub\",\"coin\":\"bch\"}").single()
+
+        message as CoinsSocketMessage.BtcBchTransaction
+        message.coin `should be` Coin.BCH
+        message.transaction.hash `should equal` "abc"
+    }
+
+    @Test
+    fun `eth transaction`() {
+        val message = decoder.decode("{\"coin\":\"eth\",\"entity\":\"account\",\"transaction\":{\"hash\":\"0x1\"," +
+                "\"blockHash\":\"0x2\",\"blockNumber\":8381040,\"from\":\"0xa\",\"to\":\"0xb\"," +
+                "\"value\":\"6047410000000000\",\"nonce\":171,\"state\":\"confirmed\"}}").single()
+
+        message as CoinsSocketMessage.Eth
+        message.response.entity `should be` Entity.Account
+        message.response.transaction!!.value `should equal` BigInteger("6047410000000000")
+        message.response.transaction!!.state `should be` TransactionState.CONFIRMED
+        message.dedupeKey `should equal` "ETH:0x1:CONFIRMED"
+    }
+
+    @Test
+    fun `token transfer`() {
+        val message = decoder.decode("{\"coin\":\"eth\",\"entity\":\"token_account\",\"param\":{\"accountAddress" +
+                "\":\"0xa\"},\"tokenTransfer\":{\"blockHash\":\"0x2\",\"transactionHash\":\"0x3\",\"blockNumber\":" +
+                "8362036,\"tokenHash\":\"0x4\",\"logIndex\":67,\"from\":\"0xa\",\"to\":\"0xb\"," +
+                "\"value\":1210000000000000000,\"decimals\":18,\"timestamp\":0}}").single()
+
+        message as CoinsSocketMessage.Eth
+        message.response.entity `should be` Entity.TokenAccount
+        message.response.transaction `should equal` null
+        message.response.tokenTransfer!!.value `should equal` BigInteger("1210000000000000000")
+        message.dedupeKey `should equal` "TokenTransfer:0x3:67"
+    }
+
+    @Test
+    fun `wallet change`() {
+        decoder.decode("{\"checksum\":\"741c\",\"op\":\"on_change\",\"guid\":\"9e27\"}") `should equal`
+                listOf(CoinsSocketMessage.WalletChanged("741c"))
+    }
+
+    @Test
+    fun `wallet change with a transaction`() {
+        val messages = decoder.decode("{\"op\":\"on_change\",\"checksum\":\"741c\",\"coin\":\"btc\"," +
+                "\"entity\":\"xpub\",\"transaction\":$btcTransaction}")
+
+        messages.size `should equal` 2
+        messages[0] `should equal` CoinsSocketMessage.WalletChanged("741c")
+        (messages[1] as CoinsSocketMessage.BtcBchTransaction).transaction.hash `should equal` "abc"
+    }
+
+    @Test
+    fun `unhandled frames`() {
+        assertNothingDecoded("{\"success\": true, \"entity\":\"none\", \"coin\":\"none\", \"message\": \"pong\"}")
+        assertNothingDecoded("{\"coin\":\"btc\",\"entity\":\"xpub\"}")
+        assertNothingDecoded("[]")
+    }
+
+    @Test
+    fun `malformed frames`() {
+        assertNothingDecoded("{\"coin\":\"btc\",\"transaction\":{\"hash\":")
+        assertNothingDecoded("{\"coin\":\"btc\",\"transaction\":{\"out\":[{\"value\":\"x\"}]}}")
+        assertNothingDecoded("")
+    }
+
+    private fun assertNothingDecoded(frame: String) {
+        decoder.decode(frame) `should equal` emptyList<CoinsSocketMessage>()
+    }
+}
@@ -0,0 +1,114 @@
+package piuk.blockchain.android.data.coinswebsocket
+
+import io.reactivex.Completable
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import org.amshove.kluent.`should equal`
+import org.junit.After
+import org.junit.Test
+import piuk.blockchain.android.data.coinswebsocket.strategy.TransactionDeltaEngine
+import java.math.BigInteger
+import java.util.concurrent.TimeUnit
+
+class TransactionDeltaEngineTest {
+
+    private val scheduler = TestScheduler()
+    private val applied = mutableListOf<Map<String, BigInteger>>()
+    private var reconciliations = 0
+    private var fullRefreshes = 0
+    private var updates = 0
+    private var balancesMatch = true
+
+    private val engine = TransactionDeltaEngine(
+        applyDelta = { applied += it },
+        reconcile = { Single.fromCallable { reconciliations++; balancesMatch } },
+        fullRefresh = { Completable.fromAction { fullRefreshes++ } },
+        onUpdated = { updates++ },
+        debounceMillis = 1000,
+        scheduler = scheduler
+    )
+
+    private val disposable = engine.start()
+
+    @After
+    fun tearDown() {
+        disposable.dispose()
+    }
+
+    @Test
+    fun `deltas are applied straight away`() {
+        engine.apply("hash", mapOf("xpub" to 10.toBigInteger())) `should equal` true
+
+        applied `should equal` listOf(mapOf("xpub" to 10.toBigInteger()))
+        reconciliations `should equal` 0
+        updates `should equal` 0
+    }
+
+    @Test
+    fun `a burst is reconciled once`() {
+        (1..30).forEach {
+            engine.apply("hash$it", mapOf("xpub" to it.toBigInteger()))
+            scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+        }
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+
+        applied.size `should equal` 30
+        reconciliations `should equal` 1
+        fullRefreshes `should equal` 0
+        updates `should equal` 1
+    }
+
+    @Test
+    fun `the same transaction is applied once`() {
+        engine.apply("hash", mapOf("xpub" to 10.toBigInteger())) `should equal` true
+        engine.apply("hash", mapOf("xpub" to 10.toBigInteger())) `should equal` false
+
+        applied.size `should equal` 1
+    }
+
+    @Test
+    fun `mismatched balances fall back to a full refresh`() {
+        balancesMatch = false
+
+        engine.apply("hash", mapOf("xpub" to 10.toBigInteger()))
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+
+        reconciliations `should equal` 1
+        fullRefreshes `should equal` 1
+        updates `should equal` 1
+    }
+
+    @Test
+    fun `reconciliation can be requested without a delta`() {
+        engine.requestReconciliation()
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+
+        applied.size `should equal` 0
+        reconciliations `should equal` 1
+    }
+
+    @Test
+    fun `a failed reconciliation doesn't stop later ones`() {
+        val failing = TransactionDeltaEngine(
+            applyDelta = {},
+            reconcile = {
+                reconciliations++
+                if (reconciliations == 1) Single.error(Exception()) else Single.just(true)
+            },
+            fullRefresh = { Completable.complete() },
+            onUpdated = { updates++ },
+            debounceMillis = 1000,
+            scheduler = scheduler
+        )
+        val disposable = failing.start()
+
+        failing.requestReconciliation()
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+        failing.requestReconciliation()
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+        disposable.dispose()
+
+        reconciliations `should equal` 2
+        updates `should equal` 1
+    }
+}
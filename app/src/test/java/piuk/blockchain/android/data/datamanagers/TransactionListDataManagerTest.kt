@@ -19,7 +19,9 @@ import io.reactivex.Observable
 import io.reactivex.Single
 import junit.framework.Assert.assertFalse
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import piuk.blockchain.android.testutils.RxTest
@@ -28,6 +30,7 @@ import piuk.blockchain.androidcore.data.bitcoincash.BchDataManager
 import piuk.blockchain.androidcore.data.currency.CurrencyState
 import piuk.blockchain.androidcore.data.ethereum.EthDataManager
 import piuk.blockchain.androidcore.data.ethereum.models.CombinedEthModel
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import piuk.blockchain.androidcore.data.transactions.TransactionListStore
 import piuk.blockchain.androidcore.data.transactions.models.BtcDisplayable
 import piuk.blockchain.androidcore.data.transactions.models.Displayable
@@ -59,6 +62,8 @@ class TransactionListDataManagerTest : RxTest() {
     @Mock
     private lateinit var paxAccount: Erc20Account
     private val transactionListStore = TransactionListStore()
+    @get:Rule
+    val historyFolder = TemporaryFolder()
     private lateinit var subject: TransactionListDataManager
 
     @Before
@@ -71,7 +76,8 @@ class TransactionListDataManagerTest : RxTest() {
             xlmDataManager,
             paxAccount,
             transactionListStore,
-            currencyState)
+            currencyState,
+            TransactionHistoryCache(historyFolder.root))
     }
 
     @Test
@@ -218,6 +224,41 @@ class TransactionListDataManagerTest : RxTest() {
         testObserver.assertNoErrors()
     }
 
+    @Test
+    fun fetchTransactionsEmitsStoredHistoryBeforeSync() {
+        // Arrange
+        val old = TransactionSummary().apply {
+            confirmations = 1
+            blockHeight = 100
+            direction = TransactionSummary.Direction.RECEIVED
+            fee = BigInteger.ONE
+            total = BigInteger.TEN
+            hash = "old"
+            time = 1000L
+        }
+        val new = TransactionSummary().apply {
+            direction = TransactionSummary.Direction.RECEIVED
+            fee = BigInteger.ONE
+            total = BigInteger.TEN
+            hash = "new"
+            time = 2000L
+        }
+        val itemAccount = ItemAccount()
+        itemAccount.type = ItemAccount.TYPE.ALL_ACCOUNTS_AND_LEGACY
+        `when`(currencyState.cryptoCurrency).thenReturn(CryptoCurrency.BTC)
+        `when`(payloadManager.tempPassword).thenReturn("password")
+        `when`(payloadManager.getAllTransactions(10, 0)).thenReturn(listOf(old))
+        subject.fetchTransactions(itemAccount, 10, 0).test()
+        `when`(payloadManager.getAllTransactions(10, 0)).thenReturn(listOf(new, old))
+        // Act
+        val testObserver = subject.fetchTransactions(itemAccount, 10, 0)
+            .map { list -> list.map { it.hash } }
+            .test()
+        // Assert
+        testObserver.assertComplete()
+        testObserver.assertValues(listOf("old"), listOf("new", "old"))
+    }
+
     @Test
     fun getTransactionList() {
         // Arrange
@@ -1,5 +1,6 @@
 package piuk.blockchain.android.ui.dashboard.announcements
 
+import com.nhaarman.mockito_kotlin.inOrder
 import com.nhaarman.mockito_kotlin.mock
 import com.nhaarman.mockito_kotlin.never
 import com.nhaarman.mockito_kotlin.verify
@@ -9,9 +10,11 @@ import io.reactivex.Scheduler
 import io.reactivex.Single
 import io.reactivex.schedulers.Schedulers
 import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.SingleSubject
 import org.amshove.kluent.`it returns`
 import org.amshove.kluent.`it throws`
 import org.junit.Test
+import java.util.concurrent.TimeUnit
 import kotlin.test.assertEquals
 
 class AnnouncementListTest {
@@ -19,16 +22,21 @@ class AnnouncementListTest {
     private val host: AnnouncementHost = mock()
     private val orderAdapter: AnnouncementConfigAdapter = mock()
     private val dismissRecorder: DismissRecorder = mock()
+    private val queries: AnnouncementQueries = mock()
 
     private fun createAnnouncementList(
         availableAnnouncements: List<AnnouncementRule>,
-        scheduler: Scheduler = Schedulers.trampoline()
+        scheduler: Scheduler = Schedulers.trampoline(),
+        ruleTimeoutMillis: Long = 5_000
     ) =
         AnnouncementList(
             mainScheduler = scheduler,
             orderAdapter = orderAdapter,
             availableAnnouncements = availableAnnouncements,
-            dismissRecorder = dismissRecorder
+            dismissRecorder = dismissRecorder,
+            queries = queries,
+            ruleScheduler = Schedulers.trampoline(),
+            ruleTimeoutMillis = ruleTimeoutMillis
         )
 
     @Test
@@ -210,6 +218,122 @@ class AnnouncementListTest {
             .assertNoErrors()
     }
 
+    @Test
+    fun `checks all announcements at once but shows the first in order`() {
+
+        val order = listOf("one", "two", "three")
+        whenever(orderAdapter.announcementConfig).thenReturn(Single.just(AnnounceConfig(order, INTERVAL)))
+
+        val first = SingleSubject.create<Boolean>()
+        val available = listOf(
+            pendingAnnouncement("one", first),
+            announcement("two"),
+            announcement("three")
+        )
+
+        val test = createAnnouncementList(available)
+            .showNextAnnouncement(host)
+            .test()
+            .assertNoValues()
+
+        verify(available[1]).shouldShow()
+        verify(available[2]).shouldShow()
+
+        first.onSuccess(true)
+
+        test.assertValue(available[0])
+            .assertComplete()
+        verify(available[0]).show(host)
+        verify(available[1], never()).show(host)
+    }
+
+    @Test
+    fun `shows the next announcement once earlier ones say they should not`() {
+
+        val order = listOf("one", "two")
+        whenever(orderAdapter.announcementConfig).thenReturn(Single.just(AnnounceConfig(order, INTERVAL)))
+
+        val first = SingleSubject.create<Boolean>()
+        val available = listOf(
+            pendingAnnouncement("one", first),
+            announcement("two")
+        )
+
+        val test = createAnnouncementList(available)
+            .showNextAnnouncement(host)
+            .test()
+
+        first.onSuccess(false)
+
+        test.assertValue(available[1])
+            .assertComplete()
+        verify(available[1]).show(host)
+    }
+
+    @Test
+    fun `skips announcements which fail to check`() {
+
+        val order = listOf("one", "two")
+        whenever(orderAdapter.announcementConfig).thenReturn(Single.just(AnnounceConfig(order, INTERVAL)))
+
+        val available = listOf(
+            pendingAnnouncement("one", Single.error(RuntimeException())),
+            announcement("two")
+        )
+
+        createAnnouncementList(available)
+            .showNextAnnouncement(host)
+            .test()
+            .assertValue(available[1])
+            .assertNoErrors()
+    }
+
+    @Test
+    fun `skips announcements which do not answer in time`() {
+
+        val order = listOf("one", "two")
+        whenever(orderAdapter.announcementConfig).thenReturn(Single.just(AnnounceConfig(order, INTERVAL)))
+
+        val available = listOf(
+            pendingAnnouncement("one", Single.never()),
+            announcement("two")
+        )
+
+        createAnnouncementList(available, ruleTimeoutMillis = 50)
+            .showNextAnnouncement(host)
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValue(available[1])
+            .assertNoErrors()
+    }
+
+    @Test
+    fun `queries are shared for the length of one check`() {
+
+        val order = listOf("one")
+        whenever(orderAdapter.announcementConfig).thenReturn(Single.just(AnnounceConfig(order, INTERVAL)))
+
+        val available = listOf(announcement("one"))
+        val check: AnnouncementQueries.Snapshot = mock()
+        whenever(queries.startCheck()).thenReturn(check)
+
+        createAnnouncementList(available)
+            .showNextAnnouncement(host)
+            .test()
+
+        inOrder(queries, available[0]) {
+            verify(queries).startCheck()
+            verify(available[0]).shouldShow()
+            verify(queries).endCheck(check)
+        }
+    }
+
+    private fun pendingAnnouncement(announcementName: String, result: Single<Boolean>): AnnouncementRule =
+        mock {
+            on { shouldShow() } `it returns` result
+            on { name } `it returns` announcementName
+        }
+
     private fun announcement(announcementName: String): AnnouncementRule =
         mock {
             on { shouldShow() } `it returns` Single.just(true)
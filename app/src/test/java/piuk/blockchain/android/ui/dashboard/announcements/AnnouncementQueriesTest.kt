@@ -9,6 +9,7 @@ import com.blockchain.swap.nabu.datamanagers.NabuDataManager
 import com.blockchain.swap.nabu.service.TierService
 import com.nhaarman.mockito_kotlin.whenever
 import io.reactivex.Single
+import org.amshove.kluent.`should be`
 import org.amshove.kluent.mock
 import org.junit.Before
 import org.junit.Test
@@ -140,4 +141,63 @@ class AnnouncementQueriesTest {
             .assertValueCount(1)
             .assertComplete()
     }
+
+    @Test
+    fun `tiers are fetched once during a check`() {
+        var fetches = 0
+        whenever(tierService.tiers()).thenReturn(
+            Single.fromCallable {
+                fetches++
+                TiersJson(
+                    listOf(
+                        TierJson(0, "", KycTierState.None, sampleLimits),
+                        TierJson(0, "", KycTierState.Verified, sampleLimits),
+                        TierJson(0, "", KycTierState.Verified, sampleLimits)
+                    )
+                )
+            }
+        )
+
+        val check = subject.startCheck()
+        subject.isTier1Or2Verified().test().assertValue(true)
+        subject.isGoldComplete().test().assertValue(true)
+        subject.endCheck(check)
+
+        fetches `should be` 1
+
+        subject.isTier1Or2Verified().test().assertValue(true)
+        subject.isTier1Or2Verified().test().assertValue(true)
+
+        fetches `should be` 3
+    }
+
+    @Test
+    fun `an earlier check ending leaves the snapshot of a later one`() {
+        var fetches = 0
+        whenever(tierService.tiers()).thenReturn(
+            Single.fromCallable {
+                fetches++
+                TiersJson(
+                    listOf(
+                        TierJson(0, "", KycTierState.None, sampleLimits),
+                        TierJson(0, "", KycTierState.Verified, sampleLimits),
+                        TierJson(0, "", KycTierState.None, sampleLimits)
+                    )
+                )
+            }
+        )
+
+        val first = subject.startCheck()
+        val second = subject.startCheck()
+        subject.isTier1Or2Verified().test().assertValue(true)
+        subject.endCheck(first)
+        subject.isGoldComplete().test().assertValue(false)
+
+        fetches `should be` 1
+
+        subject.endCheck(second)
+        subject.isTier1Or2Verified().test().assertValue(true)
+
+        fetches `should be` 2
+    }
 }
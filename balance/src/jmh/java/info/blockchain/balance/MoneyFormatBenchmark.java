@@ -0,0 +1,93 @@
+package info.blockchain.balance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats 100k crypto and fiat values with {@link CryptoCurrencyFormatter} and {@link FiatValue}, against
+ * the {@link DecimalFormat} set up they used before {@link FixedPointFormat}, which went through a double.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyFormatBenchmark {
+
+    private static final int VALUE_COUNT = 100000;
+
+    private CryptoValue[] cryptoValues;
+    private FiatValue[] fiatValues;
+
+    private CryptoCurrencyFormatter cryptoFormatter;
+    private DecimalFormat legacyCryptoFormat;
+    private DecimalFormat legacyFiatFormat;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        cryptoValues = new CryptoValue[VALUE_COUNT];
+        fiatValues = new FiatValue[VALUE_COUNT];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            cryptoValues[i] = CryptoValue.Companion.bitcoinFromSatoshis(random.nextInt(Integer.MAX_VALUE));
+            fiatValues[i] = FiatValue.Companion.fromMinor("USD", random.nextInt(Integer.MAX_VALUE));
+        }
+
+        cryptoFormatter = new CryptoCurrencyFormatter(Locale.US);
+
+        legacyCryptoFormat = (DecimalFormat) NumberFormat.getInstance(Locale.US);
+        legacyCryptoFormat.setMinimumFractionDigits(1);
+        legacyCryptoFormat.setMaximumFractionDigits(CryptoCurrency.BTC.getDp());
+        legacyCryptoFormat.setRoundingMode(RoundingMode.DOWN);
+
+        legacyFiatFormat = (DecimalFormat) NumberFormat.getCurrencyInstance(Locale.US);
+        legacyFiatFormat.setCurrency(Currency.getInstance("USD"));
+        legacyFiatFormat.setRoundingMode(RoundingMode.DOWN);
+    }
+
+    @Benchmark
+    public void legacyCrypto(Blackhole blackhole) {
+        for (CryptoValue value : cryptoValues) {
+            blackhole.consume(legacyCryptoFormat.format(value.toBigDecimal().doubleValue()));
+        }
+    }
+
+    @Benchmark
+    public void fixedPointCrypto(Blackhole blackhole) {
+        for (CryptoValue value : cryptoValues) {
+            blackhole.consume(cryptoFormatter.format(value, FormatPrecision.Short));
+        }
+    }
+
+    @Benchmark
+    public void legacyFiat(Blackhole blackhole) {
+        for (FiatValue value : fiatValues) {
+            blackhole.consume(legacyFiatFormat.format(value.toBigDecimal()));
+        }
+    }
+
+    @Benchmark
+    public void fixedPointFiat(Blackhole blackhole) {
+        for (FiatValue value : fiatValues) {
+            blackhole.consume(value.toStringWithSymbol(Locale.US));
+        }
+    }
+}
@@ -1,12 +1,8 @@
 package info.blockchain.balance
 
-import java.math.BigDecimal
-import java.math.RoundingMode
-import java.text.DecimalFormat
-import java.text.NumberFormat
+import java.math.BigInteger
 import java.util.Locale
 import java.util.concurrent.ConcurrentHashMap
-import kotlin.math.max
 
 enum class FormatPrecision {
     /**
@@ -37,63 +33,53 @@ private fun getFormatter(locale: Locale) =
     formatterMap.getOrPut(locale) { CryptoCurrencyFormatter(locale) }
 
 class CryptoCurrencyFormatter(locale: Locale) {
-    private val btcFormat = createCryptoDecimalFormat(locale, CryptoCurrency.BTC.dp)
-    private val bchFormat = createCryptoDecimalFormat(locale, CryptoCurrency.BCH.dp)
-    private val ethFormat = createCryptoDecimalFormat(locale, CryptoCurrency.ETHER.dp)
-    private val ethShortFormat = createCryptoDecimalFormat(locale, CryptoCurrency.ETHER.userDp)
-    private val xlmFormat = createCryptoDecimalFormat(locale, CryptoCurrency.XLM.dp)
-    private val paxShortFormat = createCryptoDecimalFormat(locale, CryptoCurrency.PAX.userDp)
-    private val paxFormat = createCryptoDecimalFormat(locale, CryptoCurrency.PAX.dp)
+
+    private val format = FixedPointFormat[locale]
 
     fun format(
         cryptoValue: CryptoValue,
         precision: FormatPrecision = FormatPrecision.Short
     ): String =
-        cryptoValue.currency.decimalFormat(precision).formatWithoutUnit(cryptoValue.toBigDecimal())
+        buildFormatted { appendWithoutUnit(cryptoValue, precision) }.toWebZero()
 
     fun formatWithUnit(
         cryptoValue: CryptoValue,
         precision: FormatPrecision = FormatPrecision.Short
     ) =
-        cryptoValue.currency.decimalFormat(precision).formatWithUnit(
-            cryptoValue.toBigDecimal(),
-            cryptoValue.currency.symbol
+        buildFormatted {
+            appendWithoutUnit(cryptoValue, precision)
+            if (isWebZero()) setLength(1)
+            append(' ').append(cryptoValue.currency.symbol)
+        }
+
+    private fun StringBuilder.appendWithoutUnit(cryptoValue: CryptoValue, precision: FormatPrecision) {
+        val currency = cryptoValue.currency
+        format.appendTo(
+            this,
+            cryptoValue.amount.max(BigInteger.ZERO),
+            currency.dp,
+            minFractionDigits = 1,
+            maxFractionDigits = currency.maxFractionDigits(precision)
         )
+    }
 
-    private fun CryptoCurrency.decimalFormat(displayMode: FormatPrecision) = when (this) {
-        CryptoCurrency.BTC -> btcFormat
-        CryptoCurrency.BCH -> bchFormat
-        CryptoCurrency.ETHER -> when (displayMode) {
-            FormatPrecision.Short -> ethShortFormat
-            FormatPrecision.Full -> ethFormat
-        }
-        CryptoCurrency.XLM -> xlmFormat
+    private fun CryptoCurrency.maxFractionDigits(displayMode: FormatPrecision) = when (this) {
+        CryptoCurrency.BTC,
+        CryptoCurrency.BCH,
+        CryptoCurrency.XLM -> dp
+        CryptoCurrency.ETHER,
         CryptoCurrency.PAX -> when (displayMode) {
-            FormatPrecision.Short -> paxShortFormat
-            FormatPrecision.Full -> paxFormat
+            FormatPrecision.Short -> userDp
+            FormatPrecision.Full -> dp
         }
         CryptoCurrency.STX -> TODO("STUB: STX NOT IMPLEMENTED")
     }
-
-    private fun DecimalFormat.formatWithUnit(value: BigDecimal, symbol: String) =
-        "${formatWithoutUnit(value)} $symbol"
-
-    private fun DecimalFormat.formatWithoutUnit(value: BigDecimal) =
-        format(value.toPositiveDouble()).toWebZero()
 }
 
-private fun BigDecimal.toPositiveDouble() = this.toDouble().toPositiveDouble()
-
-private fun Double.toPositiveDouble() = max(this, 0.0)
-
 /**
  * Replace 0.0 with 0 to match web
  */
-private fun String.toWebZero() = if (this == "0.0" || this == "0,0" || this == "0.00") "0" else this
+private fun String.toWebZero() = if (isWebZero()) "0" else this
 
-private fun createCryptoDecimalFormat(locale: Locale, maxDigits: Int) =
-    (NumberFormat.getInstance(locale) as DecimalFormat).apply {
-        minimumFractionDigits = 1
-        maximumFractionDigits = maxDigits
-        roundingMode = RoundingMode.DOWN
-    }
+private fun CharSequence.isWebZero() =
+    "0.0".contentEquals(this) || "0,0".contentEquals(this) || "0.00".contentEquals(this)
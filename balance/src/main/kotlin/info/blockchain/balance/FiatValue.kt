@@ -11,24 +11,40 @@ import java.util.concurrent.ConcurrentHashMap
 
 private data class Key(val locale: Locale, val currencyCode: String, val includeSymbol: Boolean)
 
-private object FiatFormat {
-
-    private val cache: MutableMap<Key, NumberFormat> = ConcurrentHashMap()
-
-    operator fun get(key: Key) = cache.getOrPut(key) {
-        val currencyInstance = Currency.getInstance(key.currencyCode)
-        val fmt = NumberFormat.getCurrencyInstance(key.locale) as DecimalFormat
-        fmt.apply {
-            decimalFormatSymbols =
-                decimalFormatSymbols.apply {
-                    currency = currencyInstance
-                    if (!key.includeSymbol) {
-                        currencySymbol = ""
+private class FiatFormat private constructor(format: DecimalFormat) {
+
+    private val fixedPoint = FixedPointFormat(format)
+    private val fractionDigits = format.maximumFractionDigits
+    private val positivePrefix = format.positivePrefix
+    private val positiveSuffix = format.positiveSuffix
+    private val negativePrefix = format.negativePrefix
+    private val negativeSuffix = format.negativeSuffix
+
+    fun format(valueMinor: Long): String = buildFormatted {
+        append(if (valueMinor < 0) negativePrefix else positivePrefix)
+        fixedPoint.appendTo(this, valueMinor, fractionDigits, fractionDigits, fractionDigits)
+        append(if (valueMinor < 0) negativeSuffix else positiveSuffix)
+    }
+
+    companion object {
+
+        private val cache: MutableMap<Key, FiatFormat> = ConcurrentHashMap()
+
+        operator fun get(key: Key) = cache.getOrPut(key) {
+            val currencyInstance = Currency.getInstance(key.currencyCode)
+            val fmt = NumberFormat.getCurrencyInstance(key.locale) as DecimalFormat
+            fmt.apply {
+                decimalFormatSymbols =
+                    decimalFormatSymbols.apply {
+                        currency = currencyInstance
+                        if (!key.includeSymbol) {
+                            currencySymbol = ""
+                        }
                     }
-                }
-            minimumFractionDigits = currencyInstance.defaultFractionDigits
-            maximumFractionDigits = currencyInstance.defaultFractionDigits
-            roundingMode = RoundingMode.DOWN
+                minimumFractionDigits = currencyInstance.defaultFractionDigits
+                maximumFractionDigits = currencyInstance.defaultFractionDigits
+            }
+            FiatFormat(fmt)
         }
     }
 }
@@ -51,11 +67,11 @@ data class FiatValue private constructor(
     val valueMinor: Long = value.movePointRight(maxDecimalPlaces).toLong()
 
     override fun toStringWithSymbol(locale: Locale): String =
-        FiatFormat[Key(locale, currencyCode, includeSymbol = true)].format(value)
+        FiatFormat[Key(locale, currencyCode, includeSymbol = true)].format(valueMinor)
 
     override fun toStringWithoutSymbol(locale: Locale): String =
         FiatFormat[Key(locale, currencyCode, includeSymbol = false)]
-            .format(value)
+            .format(valueMinor)
             .trim()
 
     operator fun plus(other: FiatValue): FiatValue {
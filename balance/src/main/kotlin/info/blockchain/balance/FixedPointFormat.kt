@@ -0,0 +1,192 @@
+package info.blockchain.balance
+
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.text.DecimalFormat
+import java.text.NumberFormat
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Formats amounts held as a whole number of minor units, Satoshi/Wei/cents for example, straight to
+ * text with the digits and separators of a locale. Rounds down, like the [DecimalFormat]s it replaces.
+ *
+ * Unlike [DecimalFormat], instances hold no mutable state so can be shared between threads, and
+ * amounts are never converted to a double on the way so keep all their precision.
+ */
+class FixedPointFormat internal constructor(format: DecimalFormat) {
+
+    val decimalSeparator: Char
+
+    private val groupingSeparator: Char
+
+    private val groupingSize: Int = if (format.isGroupingUsed) format.groupingSize.toInt() else 0
+
+    private val zeroDigit: Char
+
+    private val decimalSeparatorAlwaysShown = format.isDecimalSeparatorAlwaysShown
+
+    init {
+        val symbols = format.decimalFormatSymbols
+        zeroDigit = symbols.zeroDigit
+        if (format.toPattern().contains(CURRENCY_SIGN)) {
+            // Currency patterns use the monetary separators, and not every platform exposes the
+            // monetary grouping separator, so take both from a sample formatted by [format] itself
+            val separators = sampleSeparators(format)
+            decimalSeparator = separators.last()
+            groupingSeparator = if (groupingSize > 0) separators.first() else symbols.groupingSeparator
+        } else {
+            decimalSeparator = symbols.decimalSeparator
+            groupingSeparator = symbols.groupingSeparator
+        }
+    }
+
+    /**
+     * The non-digit characters of 10^groupingSize + 0.5 formatted without prefix or suffix, which are
+     * the grouping separator, if grouping is used, followed by the decimal separator.
+     */
+    private fun sampleSeparators(format: DecimalFormat): String {
+        val sample = (format.clone() as DecimalFormat).apply {
+            positivePrefix = ""
+            positiveSuffix = ""
+            minimumIntegerDigits = 1
+            minimumFractionDigits = 1
+            maximumFractionDigits = 1
+        }.format(BigDecimal.TEN.pow(groupingSize).add(BigDecimal("0.5")))
+        return sample.filter { it !in zeroDigit..zeroDigit + 9 }
+    }
+
+    /**
+     * Appends the absolute value of [minor], ignoring its sign.
+     *
+     * @param decimalPlaces Minor units per major unit, as a power of ten
+     * @param minFractionDigits Trailing zeros are dropped down to this many fraction digits
+     * @param maxFractionDigits Further digits are dropped
+     */
+    fun appendTo(
+        out: StringBuilder,
+        minor: Long,
+        decimalPlaces: Int,
+        minFractionDigits: Int,
+        maxFractionDigits: Int
+    ): StringBuilder {
+        if (minor == Long.MIN_VALUE || decimalPlaces >= POWERS_OF_TEN.size) {
+            return appendTo(out, BigInteger.valueOf(minor), decimalPlaces, minFractionDigits, maxFractionDigits)
+        }
+        val absolute = Math.abs(minor)
+        val unit = POWERS_OF_TEN[decimalPlaces]
+
+        appendWhole(out, absolute / unit)
+
+        val droppedDigits = decimalPlaces - Math.min(maxFractionDigits, decimalPlaces)
+        var fraction = absolute % unit / POWERS_OF_TEN[droppedDigits]
+        var fractionDigits = decimalPlaces - droppedDigits
+        while (fractionDigits > minFractionDigits && fraction % 10 == 0L) {
+            fraction /= 10
+            fractionDigits--
+        }
+        appendSeparator(out, fractionDigits)
+        for (i in fractionDigits - 1 downTo 0) {
+            out.append(digit(fraction / POWERS_OF_TEN[i] % 10))
+        }
+        return out
+    }
+
+    /**
+     * Appends the absolute value of [minor], ignoring its sign.
+     *
+     * @see appendTo
+     */
+    fun appendTo(
+        out: StringBuilder,
+        minor: BigInteger,
+        decimalPlaces: Int,
+        minFractionDigits: Int,
+        maxFractionDigits: Int
+    ): StringBuilder {
+        if (minor.bitLength() < 63 && decimalPlaces < POWERS_OF_TEN.size) {
+            return appendTo(out, minor.toLong(), decimalPlaces, minFractionDigits, maxFractionDigits)
+        }
+        val digits = minor.abs().toString()
+        val wholeDigits = digits.length - decimalPlaces
+
+        if (wholeDigits <= 0) {
+            out.append(zeroDigit)
+        } else {
+            for (i in 0 until wholeDigits) {
+                appendGrouped(out, digits[i] - '0', wholeDigits - 1 - i)
+            }
+        }
+
+        var fractionDigits = Math.min(maxFractionDigits, decimalPlaces)
+        while (fractionDigits > minFractionDigits && fractionDigit(digits, wholeDigits, fractionDigits - 1) == 0) {
+            fractionDigits--
+        }
+        appendSeparator(out, fractionDigits)
+        for (i in 0 until fractionDigits) {
+            out.append(digit(fractionDigit(digits, wholeDigits, i).toLong()))
+        }
+        return out
+    }
+
+    private fun appendSeparator(out: StringBuilder, fractionDigits: Int) {
+        if (fractionDigits > 0 || decimalSeparatorAlwaysShown) {
+            out.append(decimalSeparator)
+        }
+    }
+
+    private fun appendWhole(out: StringBuilder, whole: Long) {
+        var length = 1
+        while (length < POWERS_OF_TEN.size && whole >= POWERS_OF_TEN[length]) length++
+        for (i in length - 1 downTo 0) {
+            appendGrouped(out, (whole / POWERS_OF_TEN[i] % 10).toInt(), i)
+        }
+    }
+
+    private fun appendGrouped(out: StringBuilder, digit: Int, digitsAfter: Int) {
+        out.append(digit(digit.toLong()))
+        if (groupingSize > 0 && digitsAfter > 0 && digitsAfter % groupingSize == 0) {
+            out.append(groupingSeparator)
+        }
+    }
+
+    private fun fractionDigit(digits: String, wholeDigits: Int, index: Int): Int {
+        val position = wholeDigits + index
+        return if (position < 0) 0 else digits[position] - '0'
+    }
+
+    private fun digit(value: Long) = zeroDigit + value.toInt()
+
+    companion object {
+
+        private const val CURRENCY_SIGN = '\u00A4'
+
+        private val POWERS_OF_TEN = LongArray(19).apply {
+            this[0] = 1
+            for (i in 1 until size) this[i] = this[i - 1] * 10
+        }
+
+        private val cache: MutableMap<Locale, FixedPointFormat> = ConcurrentHashMap()
+
+        /**
+         * The format of plain numbers in [locale].
+         */
+        operator fun get(locale: Locale): FixedPointFormat = cache.getOrPut(locale) {
+            FixedPointFormat(NumberFormat.getInstance(locale) as DecimalFormat)
+        }
+    }
+}
+
+internal val formatBuilders = object : ThreadLocal<StringBuilder>() {
+    override fun initialValue() = StringBuilder(32)
+}
+
+/**
+ * Builds a string in this thread's reusable [StringBuilder].
+ */
+internal inline fun buildFormatted(build: StringBuilder.() -> Unit): String =
+    formatBuilders.get().run {
+        setLength(0)
+        build()
+        toString()
+    }
@@ -49,7 +49,7 @@ interface Money {
      */
     fun toStringParts(locale: Locale = Locale.getDefault()) = toStringWithoutSymbol(locale)
         .let {
-            val index = it.lastIndexOf(LocaleDecimalFormat[locale].decimalFormatSymbols.decimalSeparator)
+            val index = it.lastIndexOf(FixedPointFormat[locale].decimalSeparator)
             if (index != -1) {
                 Parts(
                     symbol = symbol(locale),
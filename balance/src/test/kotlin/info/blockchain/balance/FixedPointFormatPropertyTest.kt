@@ -0,0 +1,152 @@
+package info.blockchain.balance
+
+import org.amshove.kluent.`should equal`
+import org.junit.Test
+import java.math.BigInteger
+import java.math.RoundingMode
+import java.text.DecimalFormat
+import java.text.NumberFormat
+import java.util.Currency
+import java.util.Locale
+import java.util.Random
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+/**
+ * Compares [FixedPointFormat] based formatting with the [DecimalFormat] based formatting it replaced,
+ * over random amounts in every available locale.
+ */
+class FixedPointFormatPropertyTest {
+
+    private val random = Random(20200301)
+
+    private val locales = Locale.getAvailableLocales().filter { it.language.isNotEmpty() }
+
+    private val cryptoCurrencies = CryptoCurrency.values().filter { it != CryptoCurrency.STX }
+
+    @Test
+    fun `crypto values format as before`() {
+        locales.forEach { locale ->
+            cryptoCurrencies.forEach { currency ->
+                FormatPrecision.values().forEach { precision ->
+                    repeat(20) {
+                        val value = CryptoValue(currency, randomAmount())
+                        value.format(locale, precision) `should equal` legacyFormat(value, locale, precision)
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `crypto values format with unit as before`() {
+        listOf(Locale.US, Locale.FRANCE, Locale.GERMANY, Locale("ar", "EG")).forEach { locale ->
+            cryptoCurrencies.forEach { currency ->
+                (listOf(BigInteger.ZERO, BigInteger.ONE) + List(20) { randomAmount() }).forEach {
+                    val value = CryptoValue(currency, it)
+                    value.formatWithUnit(locale) `should equal`
+                        "${legacyFormat(value, locale, FormatPrecision.Short)} ${currency.symbol}"
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `negative crypto values format as zero`() {
+        CryptoValue(CryptoCurrency.BTC, (-12345).toBigInteger()).format(Locale.US) `should equal` "0"
+    }
+
+    @Test
+    fun `crypto values keep full precision`() {
+        CryptoValue(CryptoCurrency.ETHER, "123456789123456789123456789".toBigInteger())
+            .format(Locale.US, FormatPrecision.Full) `should equal` "123,456,789.123456789123456789"
+        CryptoValue(CryptoCurrency.ETHER, "999999999999999999".toBigInteger())
+            .format(Locale.US, FormatPrecision.Short) `should equal` "0.99999999"
+        CryptoValue(CryptoCurrency.XLM, Long.MAX_VALUE.toBigInteger())
+            .format(Locale.US) `should equal` "922,337,203,685.4775807"
+    }
+
+    @Test
+    fun `fiat values format as before`() {
+        val currencies = listOf("USD", "EUR", "GBP", "JPY", "KWD", "INR", "CHF", "BRL")
+        locales.forEach { locale ->
+            currencies.forEach { currencyCode ->
+                repeat(10) {
+                    assertFiatFormatsAsBefore(currencyCode, locale, random.nextLong() % 1_000_000_000_000L)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `fiat values use the monetary separators`() {
+        // Locales whose monetary separators differ from their plain number separators
+        listOf(Locale("de", "AT"), Locale("fr", "CH")).forEach { locale ->
+            listOf("EUR", "CHF", "USD").forEach { currencyCode ->
+                listOf(0L, 5L, 123456L, -123456789L, 123456789012L).forEach { minor ->
+                    assertFiatFormatsAsBefore(currencyCode, locale, minor)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `formatting is safe across threads`() {
+        val values = List(2000) { CryptoValue(CryptoCurrency.BTC, randomAmount()) }
+        val expected = values.map { legacyFormat(it, Locale.GERMANY, FormatPrecision.Short) }
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            executor.invokeAll(List(8) { Callable { values.map { it.format(Locale.GERMANY) } } })
+                .forEach { it.get() `should equal` expected }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    /**
+     * Amounts of up to 15 significant digits, which the legacy formatter's conversion to double keeps.
+     */
+    private fun randomAmount(): BigInteger {
+        val digits = 1 + random.nextInt(15)
+        val significant = (random.nextLong() and Long.MAX_VALUE) % BigInteger.TEN.pow(digits).toLong()
+        return significant.toBigInteger() * BigInteger.TEN.pow(random.nextInt(4))
+    }
+
+    private fun legacyFormat(value: CryptoValue, locale: Locale, precision: FormatPrecision): String {
+        val maxDigits = when (value.currency) {
+            CryptoCurrency.ETHER, CryptoCurrency.PAX ->
+                if (precision == FormatPrecision.Short) value.currency.userDp else value.currency.dp
+            else -> value.currency.dp
+        }
+        val format = (NumberFormat.getInstance(locale) as DecimalFormat).apply {
+            minimumFractionDigits = 1
+            maximumFractionDigits = maxDigits
+            roundingMode = RoundingMode.DOWN
+        }
+        return format.format(Math.max(value.toBigDecimal().toDouble(), 0.0))
+            .let { if (it == "0.0" || it == "0,0" || it == "0.00") "0" else it }
+    }
+
+    private fun assertFiatFormatsAsBefore(currencyCode: String, locale: Locale, minor: Long) {
+        val value = FiatValue.fromMinor(currencyCode, minor)
+        value.toStringWithSymbol(locale) `should equal`
+            legacyFiatFormat(currencyCode, locale, true).format(value.toBigDecimal())
+        value.toStringWithoutSymbol(locale) `should equal`
+            legacyFiatFormat(currencyCode, locale, false).format(value.toBigDecimal()).trim()
+    }
+
+    private fun legacyFiatFormat(currencyCode: String, locale: Locale, includeSymbol: Boolean): DecimalFormat {
+        val currencyInstance = Currency.getInstance(currencyCode)
+        return (NumberFormat.getCurrencyInstance(locale) as DecimalFormat).apply {
+            decimalFormatSymbols = decimalFormatSymbols.apply {
+                currency = currencyInstance
+                if (!includeSymbol) {
+                    currencySymbol = ""
+                }
+            }
+            minimumFractionDigits = currencyInstance.defaultFractionDigits
+            maximumFractionDigits = currencyInstance.defaultFractionDigits
+            roundingMode = RoundingMode.DOWN
+        }
+    }
+}
@@ -113,6 +113,7 @@ object Versions {
     const val json = "20140107"
     const val espresso = "3.2.0"
     const val jacoco = "0.8.1"
+    const val jmh = "1.21"
     const val androidxTesting = "1.1.1"
 }
 
@@ -243,4 +244,8 @@ object Libraries {
     const val okHttpMock = "com.squareup.okhttp3:mockwebserver:${Versions.okHttp}"
     const val mockWebServer = "com.github.fabric8io:mockwebserver:${Versions.mockWebServer}"
     const val jacoco = "org.jacoco:org.jacoco.core:${Versions.jacoco}"
+
+    // Benchmarking
+    const val jmhCore = "org.openjdk.jmh:jmh-core:${Versions.jmh}"
+    const val jmhGenerator = "org.openjdk.jmh:jmh-generator-annprocess:${Versions.jmh}"
 }
@@ -0,0 +1,114 @@
+package com.blockchain.network.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.PublishSubject;
+
+/**
+ * Routes 10 seconds of traffic at 500 messages a second, spread across the open channels of one
+ * socket, through one {@link ChannelAwareWebSocketKt#channelMessageFilter} per channel against a
+ * shared {@link WebSocketChannelDemultiplexer}. Each call handles the whole 10 seconds, so its time
+ * over 10 seconds is the share of one core the routing takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelDemultiplexerBenchmark {
+
+    private static final int MESSAGES_PER_SECOND = 500;
+    private static final int SECONDS = 10;
+
+    @Param({"1", "5", "20"})
+    public int channels;
+
+    private String[] frames;
+
+    @Setup
+    public void setUp() {
+        frames = new String[MESSAGES_PER_SECOND * SECONDS];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = "{\"seqnum\":" + i + ",\"channel\":\"channel" + (i % channels) + "\",\"event\":\"updated\","
+                    + "\"rates\":[{\"pair\":\"BTC-USD\",\"price\":\"8000." + i + "\"},"
+                    + "{\"pair\":\"ETH-USD\",\"price\":\"180." + i + "\"}]}";
+        }
+
+        int filtered = filterPerChannel();
+        int demultiplexed = demultiplexer();
+        if (filtered != frames.length || demultiplexed != frames.length) {
+            throw new IllegalStateException("Routed " + filtered + " and " + demultiplexed + " of " + frames.length);
+        }
+    }
+
+    @Benchmark
+    public int filterPerChannel() {
+        PublishSubject<String> source = PublishSubject.create();
+        WebSocketReceive<String> socket = receive(source);
+        Counter counter = new Counter();
+        CompositeDisposable disposables = new CompositeDisposable();
+        for (int i = 0; i < channels; i++) {
+            disposables.add(ChannelAwareWebSocketKt.channelMessageFilter(socket, "channel" + i, true)
+                    .getResponses()
+                    .subscribe(counter));
+        }
+        return route(source, disposables, counter);
+    }
+
+    @Benchmark
+    public int demultiplexer() {
+        PublishSubject<String> source = PublishSubject.create();
+        WebSocketChannelDemultiplexer demultiplexer = new WebSocketChannelDemultiplexer(receive(source));
+        Counter counter = new Counter();
+        CompositeDisposable disposables = new CompositeDisposable();
+        for (int i = 0; i < channels; i++) {
+            disposables.add(demultiplexer.channel("channel" + i, true)
+                    .getResponses()
+                    .subscribe(counter));
+        }
+        return route(source, disposables, counter);
+    }
+
+    private int route(PublishSubject<String> source, CompositeDisposable disposables, Counter counter) {
+        for (String frame : frames) {
+            source.onNext(frame);
+        }
+        disposables.dispose();
+        return counter.count;
+    }
+
+    private static WebSocketReceive<String> receive(final Observable<String> source) {
+        return new WebSocketReceive<String>() {
+            @Override
+            public Observable<String> getResponses() {
+                return source;
+            }
+        };
+    }
+
+    private static class Counter implements Consumer<String> {
+
+        int count;
+
+        @Override
+        public void accept(String message) {
+            count++;
+        }
+    }
+}
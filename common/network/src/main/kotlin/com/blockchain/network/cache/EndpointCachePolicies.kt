@@ -0,0 +1,109 @@
+package com.blockchain.network.cache
+
+import okhttp3.Cache
+import okhttp3.CacheControl
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.util.concurrent.TimeUnit
+
+data class CachePolicy(
+    /**
+     * How long a response is served from the cache without asking the server. Once it is older the
+     * cached response is revalidated, with If-None-Match when the server sent an ETag, so 0 means
+     * revalidate every time.
+     */
+    val maxAgeSeconds: Int,
+    /**
+     * How old a cached response may be to be served when the server cannot be reached, 0 for never
+     */
+    val maxStaleSeconds: Int = 0
+)
+
+/**
+ * Caching for the GET endpoints of one Retrofit instance, whatever Cache-Control headers the
+ * server sends. Each policy applies to the requests whose path ends with its pattern; responses of
+ * other endpoints are never stored.
+ */
+class EndpointCachePolicies(vararg policies: Pair<String, CachePolicy>) {
+
+    private val policies = policies.map { (pattern, policy) -> Regex("$pattern$") to policy }
+
+    fun policyFor(request: Request): CachePolicy? =
+        if (request.method == "GET") {
+            policies.firstOrNull { (pattern, _) -> pattern.containsMatchIn(request.url.encodedPath) }?.second
+        } else {
+            null
+        }
+
+    /**
+     * A client sharing the connections of [client], which applies these policies with [cache].
+     * [client] itself is left without a cache.
+     */
+    fun applyTo(client: OkHttpClient, cache: Cache): OkHttpClient =
+        client.newBuilder()
+            .cache(cache)
+            .addInterceptor(StaleWhenOfflineInterceptor())
+            .addNetworkInterceptor(MaxAgeInterceptor())
+            .build()
+
+    /**
+     * Replaces the server's caching headers with the policy's max-age, on fresh responses and on
+     * the 304s which confirm a cached one. Responses of endpoints without a policy are marked
+     * no-store, so OkHttp doesn't cache them on its own, e.g. from Last-Modified.
+     */
+    private inner class MaxAgeInterceptor : Interceptor {
+
+        override fun intercept(chain: Interceptor.Chain): Response {
+            val response = chain.proceed(chain.request())
+            val policy = policyFor(chain.request())
+            val confirmed = response.isSuccessful || response.code == HttpURLConnection.HTTP_NOT_MODIFIED
+            return when {
+                policy == null ->
+                    response.newBuilder()
+                        .header("Cache-Control", "no-store")
+                        .build()
+                confirmed ->
+                    response.newBuilder()
+                        .removeHeader("Pragma")
+                        .header("Cache-Control", "public, max-age=${policy.maxAgeSeconds}")
+                        .build()
+                else -> response
+            }
+        }
+    }
+
+    /**
+     * Serves a cached response, within the policy's max-stale, when the call fails to reach the
+     * server. The original error is thrown if nothing suitable is cached.
+     */
+    private inner class StaleWhenOfflineInterceptor : Interceptor {
+
+        override fun intercept(chain: Interceptor.Chain): Response {
+            val request = chain.request()
+            return try {
+                chain.proceed(request)
+            } catch (e: IOException) {
+                val policy = policyFor(request)?.takeIf { it.maxStaleSeconds > 0 } ?: throw e
+                val cached = chain.proceed(
+                    request.newBuilder()
+                        .cacheControl(
+                            CacheControl.Builder()
+                                .onlyIfCached()
+                                .maxStale(policy.maxStaleSeconds, TimeUnit.SECONDS)
+                                .build()
+                        )
+                        .build()
+                )
+                if (cached.code == HttpURLConnection.HTTP_GATEWAY_TIMEOUT) {
+                    cached.close()
+                    throw e
+                }
+                cached
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.blockchain.network.diagnostics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+data class EndpointStats(
+    /**
+     * Method, host and path of the endpoint, with identifiers in the path replaced by `{id}`
+     */
+    val endpoint: String,
+    /**
+     * Requests which got a response
+     */
+    val responses: Long,
+    /**
+     * Requests which failed without a response
+     */
+    val failures: Long,
+    /**
+     * Responses by HTTP status code
+     */
+    val statusCodes: Map<Int, Long>,
+    /**
+     * Request body bytes sent, where the length was known
+     */
+    val bytesSent: Long,
+    /**
+     * Response body bytes read by callers, counted as they stream through
+     */
+    val bytesReceived: Long,
+    /**
+     * Responses by time to the response headers, counted in the buckets bounded by
+     * [NetworkDiagnostics.LATENCY_BUCKETS_MILLIS] and a last bucket for anything slower
+     */
+    val latencyHistogram: List<Long>
+) {
+    /**
+     * Upper bound of the bucket holding the given fraction of responses, or null if the
+     * fraction falls in the last, unbounded, bucket or there were no responses.
+     */
+    fun latencyPercentileMillis(fraction: Double): Long? {
+        val target = Math.ceil(responses * fraction).toLong().coerceAtLeast(1)
+        var seen = 0L
+        latencyHistogram.forEachIndexed { bucket, count ->
+            seen += count
+            if (seen >= target) {
+                return NetworkDiagnostics.LATENCY_BUCKETS_MILLIS.getOrNull(bucket)
+            }
+        }
+        return null
+    }
+}
+
+/**
+ * Collects [EndpointStats] for the calls seen by [NetworkDiagnosticsInterceptor].
+ */
+class NetworkDiagnostics {
+
+    private val endpoints = ConcurrentHashMap<String, EndpointRecorder>()
+
+    val stats: List<EndpointStats>
+        get() = endpoints.values.map { it.stats() }.sortedByDescending { it.responses + it.failures }
+
+    fun reset() = endpoints.clear()
+
+    internal fun endpoint(endpoint: String): EndpointRecorder =
+        endpoints.getOrPut(endpoint) { EndpointRecorder(endpoint) }
+
+    internal class EndpointRecorder(private val endpoint: String) {
+
+        private val responses = AtomicLong()
+        private val failures = AtomicLong()
+        private val statusCodes = ConcurrentHashMap<Int, AtomicLong>()
+        private val bytesSent = AtomicLong()
+        private val bytesReceived = AtomicLong()
+        private val latencyHistogram = AtomicLongArray(LATENCY_BUCKETS_MILLIS.size + 1)
+
+        fun sent(bytes: Long) {
+            if (bytes > 0) bytesSent.addAndGet(bytes)
+        }
+
+        fun responded(code: Int, latencyMillis: Long) {
+            responses.incrementAndGet()
+            statusCodes.getOrPut(code) { AtomicLong() }.incrementAndGet()
+            val bucket = LATENCY_BUCKETS_MILLIS.indexOfFirst { latencyMillis <= it }
+            latencyHistogram.incrementAndGet(if (bucket < 0) LATENCY_BUCKETS_MILLIS.size else bucket)
+        }
+
+        fun failed() {
+            failures.incrementAndGet()
+        }
+
+        fun received(bytes: Long) {
+            bytesReceived.addAndGet(bytes)
+        }
+
+        fun stats() = EndpointStats(
+            endpoint = endpoint,
+            responses = responses.get(),
+            failures = failures.get(),
+            statusCodes = statusCodes.mapValues { it.value.get() },
+            bytesSent = bytesSent.get(),
+            bytesReceived = bytesReceived.get(),
+            latencyHistogram = List(latencyHistogram.length()) { latencyHistogram.get(it) }
+        )
+    }
+
+    companion object {
+        val LATENCY_BUCKETS_MILLIS = listOf(50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L)
+    }
+}
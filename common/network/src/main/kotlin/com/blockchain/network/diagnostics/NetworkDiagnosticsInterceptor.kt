@@ -0,0 +1,114 @@
+package com.blockchain.network.diagnostics
+
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import okio.ForwardingSource
+import okio.buffer
+import timber.log.Timber
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Records [EndpointStats] for every call into [diagnostics] without reading the response body on
+ * the caller's behalf: received bytes are counted as the caller streams them.
+ *
+ * One call in [sampleEvery], and every call which does not succeed, is also logged along with the
+ * first [peekBytes] of its response body. Peeking buffers that prefix and leaves the body to be read
+ * as normal.
+ */
+class NetworkDiagnosticsInterceptor(
+    private val diagnostics: NetworkDiagnostics,
+    private val sampleEvery: Int = 20,
+    private val peekBytes: Long = 2048,
+    private val nanoTime: () -> Long = System::nanoTime
+) : Interceptor {
+
+    private val calls = AtomicLong()
+
+    @Throws(IOException::class)
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val recorder = diagnostics.endpoint(endpointOf(request))
+        val sampled = calls.getAndIncrement() % sampleEvery == 0L
+
+        request.body?.let { recorder.sent(it.contentLength()) }
+
+        val startTime = nanoTime()
+        val response = try {
+            chain.proceed(request)
+        } catch (e: IOException) {
+            recorder.failed()
+            Timber.e("%s %s failed: %s", request.method, request.url, e.message)
+            throw e
+        }
+        val latencyMillis = TimeUnit.NANOSECONDS.toMillis(nanoTime() - startTime)
+        recorder.responded(response.code, latencyMillis)
+
+        if (sampled || !response.isSuccessful) {
+            log(response, latencyMillis)
+        }
+
+        val body = response.body ?: return response
+        return response.newBuilder()
+            .body(CountingResponseBody(body, recorder))
+            .build()
+    }
+
+    private fun log(response: Response, latencyMillis: Long) {
+        val prefix = try {
+            response.peekBody(peekBytes).string()
+        } catch (e: IOException) {
+            "IOException reading response body"
+        }
+        val request = response.request
+        if (response.isSuccessful || response.code == 101) {
+            Timber.v("%s %s: %d in %d ms\n%s", request.method, request.url, response.code, latencyMillis, prefix)
+        } else {
+            Timber.e("%s %s: %d in %d ms\n%s", request.method, request.url, response.code, latencyMillis, prefix)
+        }
+    }
+
+    private class CountingResponseBody(
+        private val body: ResponseBody,
+        private val recorder: NetworkDiagnostics.EndpointRecorder
+    ) : ResponseBody() {
+
+        private val source: BufferedSource by lazy {
+            object : ForwardingSource(body.source()) {
+                override fun read(sink: Buffer, byteCount: Long): Long =
+                    super.read(sink, byteCount).also {
+                        if (it > 0) recorder.received(it)
+                    }
+            }.buffer()
+        }
+
+        override fun contentType(): MediaType? = body.contentType()
+
+        override fun contentLength(): Long = body.contentLength()
+
+        override fun source(): BufferedSource = source
+
+        override fun close() = body.close()
+    }
+
+    companion object {
+
+        private val ID_SEGMENT = Regex("(?=.*\\d)[^/]{16,}|\\d+")
+
+        /**
+         * Groups calls to the same endpoint, replacing path segments which look like identifiers
+         * (addresses, hashes, uuids or numbers) with `{id}`.
+         */
+        internal fun endpointOf(request: Request): String =
+            request.url.pathSegments.joinToString(
+                separator = "/",
+                prefix = "${request.method} ${request.url.host}/"
+            ) { if (ID_SEGMENT.matches(it)) "{id}" else it }
+    }
+}
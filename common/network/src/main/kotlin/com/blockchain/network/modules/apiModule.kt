@@ -107,7 +107,7 @@ val apiModule = applicationContext {
     bean("nabu") {
         Retrofit.Builder()
             .baseUrl(get<EnvironmentUrls>().nabuApi)
-            .client(get())
+            .client(nabuCachePolicies.applyTo(get(), get()))
             .addConverterFactory(get<MoshiConverterFactory>())
             .addCallAdapterFactory(get<RxJava2CallAdapterFactory>())
             .build()
@@ -116,7 +116,7 @@ val apiModule = applicationContext {
     bean("api") {
         Retrofit.Builder()
             .baseUrl(get<EnvironmentUrls>().apiUrl)
-            .client(get())
+            .client(apiCachePolicies.applyTo(get(), get()))
             .addConverterFactory(get<JacksonConverterFactory>())
             .addCallAdapterFactory(get<RxJava2CallAdapterFactory>())
             .build()
@@ -125,7 +125,7 @@ val apiModule = applicationContext {
     bean("explorer") {
         Retrofit.Builder()
             .baseUrl(get<EnvironmentUrls>().explorerUrl)
-            .client(get())
+            .client(explorerCachePolicies.applyTo(get(), get()))
             .addConverterFactory(get<JacksonConverterFactory>())
             .addCallAdapterFactory(get<RxJava2CallAdapterFactory>())
             .build()
@@ -0,0 +1,28 @@
+package com.blockchain.network.modules
+
+import com.blockchain.network.cache.CachePolicy
+import com.blockchain.network.cache.EndpointCachePolicies
+
+private const val MINUTE = 60
+private const val HOUR = 60 * MINUTE
+private const val DAY = 24 * HOUR
+
+/*
+ * Cache policies for the slowly changing endpoints behind the Retrofit instances in apiModule. Only
+ * these instances get the HTTP cache, the others always go to the network.
+ */
+
+internal val apiCachePolicies = EndpointCachePolicies(
+    "/mempool/fees/[a-z]+" to CachePolicy(maxAgeSeconds = MINUTE, maxStaleSeconds = DAY),
+    "/price/indexes" to CachePolicy(maxAgeSeconds = MINUTE, maxStaleSeconds = DAY),
+    "/price/index-series" to CachePolicy(maxAgeSeconds = 5 * MINUTE, maxStaleSeconds = 7 * DAY)
+)
+
+internal val explorerCachePolicies = EndpointCachePolicies(
+    "/Resources/wallet-options\\.json" to CachePolicy(maxAgeSeconds = HOUR, maxStaleSeconds = 7 * DAY)
+)
+
+internal val nabuCachePolicies = EndpointCachePolicies(
+    "/countries" to CachePolicy(maxAgeSeconds = DAY, maxStaleSeconds = 30 * DAY),
+    "/countries/[^/]+/states" to CachePolicy(maxAgeSeconds = DAY, maxStaleSeconds = 30 * DAY)
+)
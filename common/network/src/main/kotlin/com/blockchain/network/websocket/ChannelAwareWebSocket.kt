@@ -8,6 +8,11 @@ import io.reactivex.subjects.PublishSubject
 
 interface ChannelAwareWebSocket {
     fun openChannel(name: String, params: JsonSerializable? = null): WebSocketChannel<String>
+
+    /**
+     * Messages on channel [name], without subscribing to it.
+     */
+    fun channel(name: String, throwErrors: Boolean = true): WebSocketReceive<String>
 }
 
 interface WebSocketChannel<INCOMING> : WebSocketReceive<INCOMING> {
@@ -20,23 +25,27 @@ private class WebSocketChannelAdapter(private val underlingSocket: StringWebSock
     private val outAdapter = Moshi.Builder()
         .build().adapter(SubscribeUnsubscribeJson::class.java)
 
+    private val demultiplexer = underlingSocket.channelDemultiplexer()
+
     override fun openChannel(name: String, params: JsonSerializable?): WebSocketChannel<String> {
         underlingSocket.send(outAdapter.toJson(SubscribeUnsubscribeJson(name, "subscribe", params)))
-        return underlingSocket.asChannel(name, outAdapter)
+        return underlingSocket.asChannel(name, demultiplexer.channel(name, throwErrors = true), outAdapter)
     }
+
+    override fun channel(name: String, throwErrors: Boolean): WebSocketReceive<String> =
+        demultiplexer.channel(name, throwErrors)
 }
 
 class ErrorFromServer(val fullJson: String) : Exception("Server returned error")
 
 private fun StringWebSocket.asChannel(
     name: String,
+    channelMessages: WebSocketReceive<String>,
     outAdapter: JsonAdapter<SubscribeUnsubscribeJson>
 ): WebSocketChannel<String> {
 
     return object : WebSocketChannel<String> {
 
-        val channelMessageFilter = this@asChannel.channelMessageFilter(name, throwErrors = true)
-
         private val closed = PublishSubject.create<Any>()
 
         override fun close(params: JsonSerializable?) {
@@ -45,12 +54,14 @@ private fun StringWebSocket.asChannel(
         }
 
         override val responses: Observable<String>
-            get() = channelMessageFilter.responses.takeUntil(closed)
+            get() = channelMessages.responses.takeUntil(closed)
     }
 }
 
 /**
  * Filters messages to those that match the channel name and are not subscribe/unsubscribe messages.
+ * Every message is parsed for each filter, so to receive several channels of one socket use a
+ * [WebSocketChannelDemultiplexer].
  */
 fun WebSocketReceive<String>.channelMessageFilter(name: String, throwErrors: Boolean = true): WebSocketReceive<String> {
 
@@ -74,11 +85,11 @@ fun WebSocketReceive<String>.channelMessageFilter(name: String, throwErrors: Boo
                 else -> true
             }
         }
-
-        private val incomingAdapter = Moshi.Builder().build().adapter(IncomingMessage::class.java)
     }
 }
 
+private val incomingAdapter = Moshi.Builder().build().adapter(IncomingMessage::class.java)
+
 private class IncomingMessage(
     val channel: String,
     val event: String
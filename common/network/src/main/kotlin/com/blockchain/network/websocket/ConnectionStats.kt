@@ -0,0 +1,79 @@
+package com.blockchain.network.websocket
+
+import io.reactivex.Observable
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counters of a connection kept open by [autoRetry].
+ *
+ * The same instance is handed to [autoRetry] and to whoever reports on the connection, so the stats
+ * can be read however the returned socket is wrapped afterwards.
+ */
+class ConnectionStats {
+
+    data class Sample(
+        val connects: Long,
+        val failures: Long,
+        val disconnects: Long,
+        /**
+         * From losing the connection to the last time it was connected again, null if it never was
+         */
+        val reconnectLatencyMillis: Long?,
+        val messagesPerSecond: Double
+    )
+
+    private val connects = AtomicLong()
+    private val failures = AtomicLong()
+    private val disconnects = AtomicLong()
+    private val messages = AtomicLong()
+
+    @Volatile
+    private var reconnectLatencyMillis: Long? = null
+
+    /**
+     * The counters, sampled every second
+     */
+    val samples: Observable<Sample>
+        get() = Observable.defer {
+            var previousMessages = messages.get()
+            Observable.interval(1, TimeUnit.SECONDS)
+                .map {
+                    val count = messages.get()
+                    Sample(
+                        connects = connects.get(),
+                        failures = failures.get(),
+                        disconnects = disconnects.get(),
+                        reconnectLatencyMillis = reconnectLatencyMillis,
+                        messagesPerSecond = (count - previousMessages).toDouble()
+                    ).also { previousMessages = count }
+                }
+        }
+
+    /**
+     * The [samples] in which the connection was opened or lost since the one before
+     */
+    val connectionChanges: Observable<Sample>
+        get() = samples.distinctUntilChanged { previous, sample ->
+            previous.connects == sample.connects &&
+                previous.failures == sample.failures &&
+                previous.disconnects == sample.disconnects
+        }
+
+    internal fun connected(reconnectLatencyMillis: Long?) {
+        connects.incrementAndGet()
+        reconnectLatencyMillis?.let { this.reconnectLatencyMillis = it }
+    }
+
+    internal fun failed() {
+        failures.incrementAndGet()
+    }
+
+    internal fun disconnected() {
+        disconnects.incrementAndGet()
+    }
+
+    internal fun received() {
+        messages.incrementAndGet()
+    }
+}
@@ -6,6 +6,7 @@ import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.Response
 import okhttp3.WebSocketListener
+import java.util.concurrent.TimeUnit
 
 class Options(
     val url: String,
@@ -13,7 +14,11 @@ class Options(
     /**
      * Used in close reason message text
      */
-    val name: String = "Unnamed"
+    val name: String = "Unnamed",
+    /**
+     * Interval of protocol level pings, a missed pong fails the connection. 0 to not ping
+     */
+    val pingIntervalMillis: Long = 0
 )
 
 /**
@@ -35,11 +40,19 @@ fun OkHttpClient.newBlockchainWebSocket(
 private const val STATUS_CODE_NORMAL_CLOSURE = 1000
 
 private class OkHttpWebSocket(
-    private val client: OkHttpClient,
+    client: OkHttpClient,
     private val options: Options,
     private val listener: WebSocket.Listener<String>?
 ) : WebSocket<String, String> {
 
+    private val client = if (options.pingIntervalMillis > 0) {
+        client.newBuilder()
+            .pingInterval(options.pingIntervalMillis, TimeUnit.MILLISECONDS)
+            .build()
+    } else {
+        client
+    }
+
     override fun open() {
         socket = client.newWebSocket(
             options.toRequest(),
@@ -0,0 +1,126 @@
+package com.blockchain.network.websocket
+
+import com.squareup.moshi.JsonReader
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
+import io.reactivex.rxkotlin.plusAssign
+import okio.Buffer
+
+/**
+ * Keeps track of the subscriptions sent down a socket.
+ */
+interface SubscriptionTracker<OUTGOING> {
+
+    /**
+     * @return True if [message] subscribes or unsubscribes, false for any other message
+     */
+    fun track(message: OUTGOING): Boolean
+
+    /**
+     * Subscribe messages for the subscriptions currently held, in the order they were sent
+     */
+    val active: List<OUTGOING>
+}
+
+/**
+ * Sends the [subscriptions] held again each time [readyEvent] happens, as a reopened connection
+ * starts without any. While not ready, subscription messages are only tracked, to be sent once it
+ * is.
+ */
+fun <OUTGOING, INCOMING> WebSocket<OUTGOING, INCOMING>.replaySubscriptions(
+    subscriptions: SubscriptionTracker<OUTGOING>,
+    readyEvent: ConnectionEvent = ConnectionEvent.Connected
+): WebSocket<OUTGOING, INCOMING> = ReplaySubscriptionsWebSocket(this, subscriptions, readyEvent)
+
+private class ReplaySubscriptionsWebSocket<OUTGOING, INCOMING>(
+    private val inner: WebSocket<OUTGOING, INCOMING>,
+    private val subscriptions: SubscriptionTracker<OUTGOING>,
+    private val readyEvent: ConnectionEvent
+) : WebSocket<OUTGOING, INCOMING> by inner {
+
+    private val connections = CompositeDisposable()
+
+    private var ready = false
+
+    override fun open() {
+        connections.clear()
+        connections += watchEvents()
+        inner.open()
+    }
+
+    private fun watchEvents(): Disposable =
+        connectionEvents
+            .subscribe {
+                when {
+                    it === readyEvent -> onReady()
+                    it is ConnectionEvent.Failure || it === ConnectionEvent.ClientDisconnect -> synchronized(this) {
+                        ready = false
+                    }
+                }
+            }
+
+    @Synchronized
+    private fun onReady() {
+        ready = true
+        subscriptions.active.forEach { inner.send(it) }
+    }
+
+    override fun close() {
+        synchronized(this) {
+            ready = false
+        }
+        connections.clear()
+        inner.close()
+    }
+
+    @Synchronized
+    override fun send(message: OUTGOING) {
+        if (!subscriptions.track(message) || ready) {
+            inner.send(message)
+        }
+    }
+}
+
+/**
+ * Tracks the channel subscriptions of a [ChannelAwareWebSocket]. An unsubscribe ends all
+ * subscriptions to its channel.
+ */
+class ChannelSubscriptions : SubscriptionTracker<String> {
+
+    private val channels = LinkedHashMap<String, MutableSet<String>>()
+
+    @Synchronized
+    override fun track(message: String): Boolean {
+        val reader = JsonReader.of(Buffer().writeUtf8(message))
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return false
+
+        var action: String? = null
+        var channel: String? = null
+        reader.beginObject()
+        while (reader.hasNext() && (action == null || channel == null)) {
+            when (reader.selectName(names)) {
+                0 -> action = reader.nextString()
+                1 -> channel = reader.nextString()
+                else -> {
+                    reader.skipName()
+                    reader.skipValue()
+                }
+            }
+        }
+
+        if (channel == null) return false
+        when (action) {
+            "subscribe" -> channels.getOrPut(channel) { mutableSetOf() }.add(message)
+            "unsubscribe" -> channels.remove(channel)
+            else -> return false
+        }
+        return true
+    }
+
+    override val active: List<String>
+        @Synchronized get() = channels.values.flatten()
+
+    companion object {
+        private val names = JsonReader.Options.of("action", "channel")
+    }
+}
@@ -1,49 +1,173 @@
 package com.blockchain.network.websocket
 
+import io.reactivex.Completable
+import io.reactivex.Observable
 import io.reactivex.disposables.CompositeDisposable
-import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.SerialDisposable
 import io.reactivex.rxkotlin.plusAssign
+import io.reactivex.schedulers.Schedulers
+import java.util.Random
 import java.util.concurrent.TimeUnit
 
-fun WebSocketConnection.autoRetry(): WebSocketConnection = RetryingConnection(this)
+/**
+ * How a lost connection is reopened.
+ *
+ * Delays use decorrelated jitter: each is picked at random between [baseDelayMillis] and three times
+ * the previous delay, capped at [maxDelayMillis], so clients dropped together don't all come back
+ * at once.
+ *
+ * @param maxAttempts Attempts in a row after which retrying stops, null to never stop
+ * @param idleTimeoutMillis Reopen if nothing is received for this long while connected, 0 to never.
+ * Only for sockets whose server sends application messages regularly. Ping and pong frames, e.g. with
+ * [Options.pingIntervalMillis] set, are handled inside OkHttp and never count as activity; OkHttp fails
+ * the socket itself when a pong is missed.
+ */
+class RetryPolicy(
+    val baseDelayMillis: Long = 1000,
+    val maxDelayMillis: Long = 60_000,
+    val maxAttempts: Int? = null,
+    val idleTimeoutMillis: Long = 0,
+    private val random: Random = Random()
+) {
+    fun nextDelay(previousDelayMillis: Long): Long {
+        val upper = Math.max(baseDelayMillis, previousDelayMillis * 3)
+        val delay = baseDelayMillis + (random.nextDouble() * (upper - baseDelayMillis)).toLong()
+        return Math.min(maxDelayMillis, delay)
+    }
+}
 
-fun <OUTGOING, INCOMING> WebSocket<OUTGOING, INCOMING>.autoRetry(): WebSocket<OUTGOING, INCOMING> =
-    this + (this as WebSocketConnection).autoRetry()
+/**
+ * @param stats Counted into as the connection is opened, lost and receives messages
+ */
+fun WebSocketConnection.autoRetry(
+    policy: RetryPolicy = RetryPolicy(),
+    stats: ConnectionStats = ConnectionStats()
+): WebSocketConnection =
+    RetryingConnection(this, policy, stats, Observable.never<Any>())
+
+/**
+ * @param stats Counted into as the connection is opened, lost and receives messages
+ */
+fun <OUTGOING, INCOMING> WebSocket<OUTGOING, INCOMING>.autoRetry(
+    policy: RetryPolicy = RetryPolicy(),
+    stats: ConnectionStats = ConnectionStats()
+): WebSocket<OUTGOING, INCOMING> =
+    this + RetryingConnection(this, policy, stats, Observable.defer { responses })
 
 private class RetryingConnection(
-    private val inner: WebSocketConnection
+    private val inner: WebSocketConnection,
+    private val policy: RetryPolicy,
+    private val stats: ConnectionStats,
+    private val messages: Observable<*>
 ) : WebSocketConnection by inner {
 
     private val connections = CompositeDisposable()
+    private val retry = SerialDisposable()
+    private val idleCheck = SerialDisposable()
+
+    private var retryPending = false
+    private var attempts = 0
+    private var delayMillis = 0L
+    private var lostAt: Long? = null
 
-    private val timeoutTimes = listOf(1000L, 2000L, 4000L)
+    @Volatile
+    private var lastActivity = 0L
 
     override fun open() {
-        resetEvents(0)
+        synchronized(this) {
+            stopRetrying()
+            attempts = 0
+            delayMillis = 0
+        }
+        connections.clear()
+        connections += connectionEvents.subscribe { onEvent(it) }
+        connections += messages.subscribe({ onMessage() }, {})
         inner.open()
     }
 
-    private fun resetEvents(timeoutIndex: Int) {
-        connections.clear()
-        connections += watchEvents(timeoutIndex)
-    }
-
-    private fun watchEvents(timeoutIndex: Int): Disposable =
-        connectionEvents
-            .throttleWithTimeout(timeoutTimes[timeoutIndex], TimeUnit.MILLISECONDS)
-            .subscribe {
-                when (it) {
-                    is ConnectionEvent.Failure -> {
-                        resetEvents(Math.min(timeoutIndex + 1, timeoutTimes.size - 1))
-                        inner.open()
-                    }
-                    ConnectionEvent.ClientDisconnect -> inner.open()
-                    ConnectionEvent.Connected -> resetEvents(0)
-                }
-            }
-
     override fun close() {
         connections.clear()
+        synchronized(this) {
+            stopRetrying()
+            idleCheck.set(null)
+        }
         inner.close()
     }
+
+    @Synchronized
+    private fun onEvent(event: ConnectionEvent) {
+        lastActivity = now()
+        when (event) {
+            ConnectionEvent.Connected -> onConnected()
+            is ConnectionEvent.Failure -> onConnectionLost { stats.failed() }
+            ConnectionEvent.ClientDisconnect -> onConnectionLost { stats.disconnected() }
+        }
+    }
+
+    private fun onMessage() {
+        lastActivity = now()
+        stats.received()
+    }
+
+    private fun onConnected() {
+        stats.connected(lostAt?.let { now() - it })
+        lostAt = null
+        stopRetrying()
+        attempts = 0
+        delayMillis = 0
+        scheduleIdleCheck(policy.idleTimeoutMillis)
+    }
+
+    private inline fun onConnectionLost(count: () -> Unit) {
+        // A lost connection may be reported more than once
+        if (retryPending) return
+        count()
+        idleCheck.set(null)
+        if (lostAt == null) lostAt = now()
+
+        val maxAttempts = policy.maxAttempts
+        if (maxAttempts != null && attempts >= maxAttempts) return
+
+        attempts++
+        delayMillis = policy.nextDelay(delayMillis)
+        retryPending = true
+        retry.set(
+            Completable.timer(delayMillis, TimeUnit.MILLISECONDS)
+                .subscribe { reopen() }
+        )
+    }
+
+    private fun reopen() {
+        synchronized(this) {
+            if (!retryPending) return
+            retryPending = false
+        }
+        inner.open()
+    }
+
+    private fun stopRetrying() {
+        retryPending = false
+        retry.set(null)
+    }
+
+    private fun scheduleIdleCheck(delayMillis: Long) {
+        if (policy.idleTimeoutMillis <= 0) return
+        idleCheck.set(
+            Completable.timer(delayMillis, TimeUnit.MILLISECONDS)
+                .subscribe { checkIdle() }
+        )
+    }
+
+    @Synchronized
+    private fun checkIdle() {
+        val idleMillis = now() - lastActivity
+        if (idleMillis < policy.idleTimeoutMillis) {
+            scheduleIdleCheck(policy.idleTimeoutMillis - idleMillis)
+        } else {
+            inner.close()
+            onConnectionLost { stats.failed() }
+        }
+    }
+
+    private fun now() = Schedulers.computation().now(TimeUnit.MILLISECONDS)
 }
@@ -0,0 +1,105 @@
+package com.blockchain.network.websocket
+
+import com.squareup.moshi.JsonReader
+import io.reactivex.BackpressureStrategy
+import io.reactivex.Observable
+import io.reactivex.Scheduler
+import io.reactivex.subjects.PublishSubject
+import okio.Buffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+fun WebSocketReceive<String>.channelDemultiplexer() = WebSocketChannelDemultiplexer(this)
+
+/**
+ * Routes the messages of one socket to its channels. Each message's envelope is read once, however
+ * many channels are open, and the message is handed to the receivers of its channel only.
+ *
+ * Receivers share a single subscription to the socket, made when the first subscribes.
+ */
+class WebSocketChannelDemultiplexer(source: WebSocketReceive<String>) {
+
+    private val routes = ConcurrentHashMap<String, CopyOnWriteArrayList<Route>>()
+
+    // Emits no messages, it routes them, and passes on the end of the socket's stream
+    private val router: Observable<String> = Observable.defer { source.responses }
+        .doOnNext { route(it) }
+        .doOnComplete { routes.values.forEach { channel -> channel.forEach { it.messages.onComplete() } } }
+        .ignoreElements()
+        .toObservable<String>()
+        .share()
+
+    /**
+     * Messages on channel [name] which are not subscribe/unsubscribe messages.
+     *
+     * @param throwErrors If true, an error message for the channel ends its receivers with [ErrorFromServer],
+     * otherwise error messages are dropped
+     */
+    fun channel(name: String, throwErrors: Boolean = true): WebSocketReceive<String> =
+        object : WebSocketReceive<String> {
+            override val responses: Observable<String>
+                get() = Observable.defer {
+                    val route = Route(throwErrors)
+                    val channel = routes.getOrPut(name) { CopyOnWriteArrayList() }
+                    channel.add(route)
+                    Observable.merge(route.messages, router)
+                        .doFinally { channel.remove(route) }
+                }
+        }
+
+    private fun route(json: String) {
+        val envelope = readEnvelope(json) ?: return
+        val channel = routes[envelope.channel] ?: return
+        when (envelope.event) {
+            "subscribed", "unsubscribed" -> return
+            "error" -> channel.forEach { if (it.throwErrors) it.messages.onError(ErrorFromServer(json)) }
+            else -> channel.forEach { it.messages.onNext(json) }
+        }
+    }
+
+    private fun readEnvelope(json: String): Envelope? {
+        val reader = JsonReader.of(Buffer().writeUtf8(json))
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return null
+
+        var channel: String? = null
+        var event: String? = null
+        reader.beginObject()
+        while (reader.hasNext() && (channel == null || event == null)) {
+            when (reader.selectName(envelopeNames)) {
+                0 -> channel = reader.nextStringOrNull()
+                1 -> event = reader.nextStringOrNull()
+                else -> {
+                    reader.skipName()
+                    reader.skipValue()
+                }
+            }
+        }
+        return channel?.let { Envelope(it, event) }
+    }
+
+    private fun JsonReader.nextStringOrNull(): String? =
+        if (peek() == JsonReader.Token.NULL) nextNull<String>() else nextString()
+
+    private class Route(val throwErrors: Boolean) {
+        val messages = PublishSubject.create<String>()
+    }
+
+    private class Envelope(val channel: String, val event: String?)
+
+    companion object {
+        private val envelopeNames = JsonReader.Options.of("channel", "event")
+    }
+}
+
+/**
+ * Delivers messages on [scheduler], keeping only the latest one while the receiver is busy. For
+ * channels such as rates and quotes, where a newer message replaces any older one.
+ */
+fun <INCOMING> WebSocketReceive<INCOMING>.conflateOn(scheduler: Scheduler): WebSocketReceive<INCOMING> =
+    object : WebSocketReceive<INCOMING> {
+        override val responses: Observable<INCOMING>
+            get() = this@conflateOn.responses
+                .toFlowable(BackpressureStrategy.LATEST)
+                .observeOn(scheduler, false, 1)
+                .toObservable()
+    }
@@ -0,0 +1,157 @@
+package com.blockchain.network.cache
+
+import okhttp3.Cache
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.IOException
+
+class EndpointCachePoliciesTest {
+
+    @get:Rule
+    val cacheDirectory = TemporaryFolder()
+
+    private val server = MockWebServer()
+
+    private val policies = EndpointCachePolicies(
+        "/Resources/wallet-options\\.json" to CachePolicy(maxAgeSeconds = 3600, maxStaleSeconds = 86400),
+        "/mempool/fees/[a-z]+" to CachePolicy(maxAgeSeconds = 0),
+        "/countries" to CachePolicy(maxAgeSeconds = 3600)
+    )
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `fresh responses are served from the cache across launches`() {
+        server.enqueue(MockResponse().setBody("{\"options\":1}").setHeader("Cache-Control", "no-cache"))
+
+        repeat(3) {
+            launch { get("/Resources/wallet-options.json") `should equal` "{\"options\":1}" }
+        }
+
+        server.requestCount `should be` 1
+    }
+
+    @Test
+    fun `stale responses are revalidated with their etag`() {
+        server.enqueue(MockResponse().setBody("{\"regular\":10}").setHeader("ETag", "\"v1\""))
+        server.enqueue(MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""))
+
+        launch { get("/mempool/fees/btc") `should equal` "{\"regular\":10}" }
+        launch { get("/mempool/fees/btc") `should equal` "{\"regular\":10}" }
+
+        server.requestCount `should be` 2
+        server.takeRequest().getHeader("If-None-Match") `should be` null
+        server.takeRequest().getHeader("If-None-Match") `should equal` "\"v1\""
+    }
+
+    @Test
+    fun `cached responses are served when the server cannot be reached`() {
+        server.enqueue(MockResponse().setBody("{\"options\":1}"))
+        launch { get("/Resources/wallet-options.json?stale") }
+
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START))
+        launch {
+            get("/Resources/wallet-options.json?stale", noCache = true) `should equal` "{\"options\":1}"
+        }
+    }
+
+    @Test(expected = IOException::class)
+    fun `endpoints without max-stale fail when the server cannot be reached`() {
+        server.enqueue(MockResponse().setBody("[]"))
+        launch { get("/countries", noCache = true) }
+
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START))
+        launch { get("/countries", noCache = true) }
+    }
+
+    @Test
+    fun `other endpoints are not stored whatever the server's headers`() {
+        server.enqueue(MockResponse().setBody("{}").setHeader("Cache-Control", "max-age=3600"))
+        server.enqueue(MockResponse().setBody("{}").setHeader("Last-Modified", "Mon, 01 Jan 2018 00:00:00 GMT"))
+        server.enqueue(MockResponse().setBody("{}"))
+
+        launch {
+            repeat(3) { get("/multiaddr") }
+        }
+
+        server.requestCount `should be` 3
+        server.takeRequest()
+        server.takeRequest()
+        server.takeRequest().getHeader("If-Modified-Since") `should be` null
+    }
+
+    @Test
+    fun `the client the policies are applied to is left without a cache`() {
+        val client = OkHttpClient()
+        val cache = Cache(cacheDirectory.root, 1024 * 1024)
+
+        policies.applyTo(client, cache).cache `should be` cache
+        client.cache `should be` null
+        cache.close()
+    }
+
+    @Test
+    fun `posts are not cached`() {
+        server.enqueue(MockResponse().setBody("{}"))
+        server.enqueue(MockResponse().setBody("{}"))
+
+        repeat(2) {
+            launch {
+                newCall(
+                    Request.Builder()
+                        .url(server.url("/countries"))
+                        .post("{}".toRequestBody("application/json".toMediaType()))
+                        .build()
+                ).execute().close()
+            }
+        }
+
+        server.requestCount `should be` 2
+    }
+
+    /**
+     * Runs [block] with a new client and a cache opened on the same directory, as after a cold start.
+     */
+    private fun launch(block: OkHttpClient.() -> Unit) {
+        val cache = Cache(cacheDirectory.root, 1024 * 1024)
+        try {
+            policies.applyTo(
+                OkHttpClient.Builder()
+                    .retryOnConnectionFailure(false)
+                    .build(),
+                cache
+            ).block()
+        } finally {
+            cache.close()
+        }
+    }
+
+    private fun OkHttpClient.get(path: String, noCache: Boolean = false): String {
+        val request = Request.Builder().url(server.url(path))
+        if (noCache) {
+            // Forces the call to the server, to show which responses are served when it fails
+            request.header("Cache-Control", "no-cache")
+        }
+        return newCall(request.build()).execute().use { it.body!!.string() }
+    }
+}
@@ -0,0 +1,148 @@
+package com.blockchain.network.diagnostics
+
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+class NetworkDiagnosticsInterceptorTest {
+
+    private val server = MockWebServer()
+    private val diagnostics = NetworkDiagnostics()
+
+    private var nanos = 0L
+    private var latencyMillis = 0L
+
+    private fun client(sampleEvery: Int = 1_000, peekBytes: Long = 16) =
+        OkHttpClient.Builder()
+            .addInterceptor(
+                NetworkDiagnosticsInterceptor(diagnostics, sampleEvery, peekBytes) {
+                    nanos.also { nanos += TimeUnit.MILLISECONDS.toNanos(latencyMillis) }
+                }
+            )
+            .build()
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `response bodies are counted as they are read`() {
+        val body = "x".repeat(100_000)
+        server.enqueue(MockResponse().setBody(body))
+
+        val response = client().newCall(get("/multiaddr")).execute()
+
+        stats().bytesReceived `should equal` 0L
+        response.body!!.string() `should equal` body
+        stats().bytesReceived `should equal` 100_000L
+    }
+
+    @Test
+    fun `sampled responses are peeked without consuming the body`() {
+        val body = "{\"payload\":\"" + "x".repeat(10_000) + "\"}"
+        server.enqueue(MockResponse().setBody(body))
+
+        val response = client(sampleEvery = 1).newCall(get("/metadata")).execute()
+
+        response.body!!.string() `should equal` body
+        stats().bytesReceived `should equal` body.length.toLong()
+    }
+
+    @Test
+    fun `status codes and latencies are recorded per endpoint`() {
+        server.enqueue(MockResponse().setResponseCode(200))
+        server.enqueue(MockResponse().setResponseCode(500))
+        server.enqueue(MockResponse().setResponseCode(200))
+
+        latencyMillis = 40
+        client().newCall(get("/unspent")).execute().close()
+        latencyMillis = 300
+        client().newCall(get("/unspent")).execute().close()
+        latencyMillis = 20_000
+        client().newCall(get("/unspent")).execute().close()
+
+        stats().apply {
+            endpoint `should equal` "GET ${server.hostName}/unspent"
+            responses `should equal` 3L
+            failures `should equal` 0L
+            statusCodes `should equal` mapOf(200 to 2L, 500 to 1L)
+            latencyHistogram `should equal` listOf(1L, 0L, 0L, 1L, 0L, 0L, 0L, 0L, 1L)
+            latencyPercentileMillis(0.5) `should equal` 500L
+            latencyPercentileMillis(0.99) `should be` null
+        }
+    }
+
+    @Test
+    fun `request bytes are recorded`() {
+        server.enqueue(MockResponse())
+
+        client().newCall(
+            Request.Builder()
+                .url(server.url("/pushtx"))
+                .post("tx=0100".toRequestBody("application/x-www-form-urlencoded".toMediaType()))
+                .build()
+        ).execute().close()
+
+        stats().bytesSent `should equal` 7L
+    }
+
+    @Test
+    fun `calls without a response are counted as failures`() {
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START))
+
+        try {
+            client().newCall(get("/multiaddr")).execute()
+        } catch (e: IOException) {
+            // Expected
+        }
+
+        stats().failures `should equal` 1L
+        stats().responses `should equal` 0L
+    }
+
+    @Test
+    fun `identifiers in paths are grouped`() {
+        listOf(
+            "/metadata/1ErzrzB1FE1YyQ7LADMzye9J3Q8QeR1mja",
+            "/nabu-gateway/users/5b47394c-f0d1-416e-8e9d-d63a91709d03",
+            "/rawtx/123456"
+        ).map {
+            NetworkDiagnosticsInterceptor.endpointOf(Request.Builder().url("https://api.blockchain.info$it").build())
+        } `should equal` listOf(
+            "GET api.blockchain.info/metadata/{id}",
+            "GET api.blockchain.info/nabu-gateway/users/{id}",
+            "GET api.blockchain.info/rawtx/{id}"
+        )
+    }
+
+    @Test
+    fun `stats can be reset`() {
+        server.enqueue(MockResponse())
+        client().newCall(get("/multiaddr")).execute().close()
+
+        diagnostics.reset()
+
+        diagnostics.stats `should equal` emptyList()
+    }
+
+    private fun get(path: String) = Request.Builder().url(server.url(path)).build()
+
+    private fun stats() = diagnostics.stats.single()
+}
@@ -0,0 +1,107 @@
+package com.blockchain.network.websocket
+
+import com.nhaarman.mockito_kotlin.inOrder
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.never
+import com.nhaarman.mockito_kotlin.reset
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.verifyNoMoreInteractions
+import org.amshove.kluent.`should equal`
+import org.junit.Test
+
+class ReplaySubscriptionsWebSocketTest {
+
+    private val sendReceive = mock<WebSocketSendReceive<String, String>>()
+    private val connection = MockConnection()
+    private val webSocket = (sendReceive + connection)
+        .replaySubscriptions(ChannelSubscriptions(), readyEvent = ConnectionEvent.Authenticated)
+
+    private val subscribeRates = "{\"action\":\"subscribe\",\"channel\":\"rates\",\"params\":{\"pair\":\"BTC-USD\"}}"
+    private val subscribeQuotes = "{\"channel\":\"quotes\",\"action\":\"subscribe\"}"
+    private val unsubscribeQuotes = "{\"action\":\"unsubscribe\",\"channel\":\"quotes\"}"
+
+    @Test
+    fun `subscriptions wait until ready`() {
+        webSocket.open()
+        webSocket.send(subscribeRates)
+        connection.simulateSuccess()
+
+        verify(sendReceive, never()).send(subscribeRates)
+
+        connection.simulateAuthenticated()
+        verify(sendReceive).send(subscribeRates)
+    }
+
+    @Test
+    fun `other messages are sent straight away`() {
+        webSocket.open()
+        webSocket.send("{\"action\":\"ping\"}")
+
+        verify(sendReceive).send("{\"action\":\"ping\"}")
+    }
+
+    @Test
+    fun `subscriptions are sent again once ready after reconnecting`() {
+        webSocket.open()
+        connection.simulateAuthenticated()
+        webSocket.send(subscribeRates)
+        webSocket.send(subscribeQuotes)
+        webSocket.send(unsubscribeQuotes)
+        reset(sendReceive)
+
+        connection.simulateFailure()
+        connection.simulateSuccess()
+        connection.simulateAuthenticated()
+
+        verify(sendReceive).send(subscribeRates)
+        verifyNoMoreInteractions(sendReceive)
+    }
+
+    @Test
+    fun `subscriptions sent while reconnecting are sent once`() {
+        webSocket.open()
+        connection.simulateAuthenticated()
+        webSocket.send(subscribeRates)
+        connection.simulateDisconnect()
+        webSocket.send(subscribeQuotes)
+        connection.simulateAuthenticated()
+
+        inOrder(sendReceive) {
+            verify(sendReceive, times(2)).send(subscribeRates)
+            verify(sendReceive).send(subscribeQuotes)
+        }
+        verify(sendReceive, times(1)).send(subscribeQuotes)
+    }
+
+    @Test
+    fun `not replayed after close`() {
+        webSocket.open()
+        connection.simulateAuthenticated()
+        webSocket.send(subscribeRates)
+        webSocket.close()
+
+        connection.simulateAuthenticated()
+
+        verify(sendReceive, times(1)).send(subscribeRates)
+    }
+
+    @Test
+    fun `channel subscriptions are tracked`() {
+        ChannelSubscriptions().apply {
+            track(subscribeRates) `should equal` true
+            track(subscribeQuotes) `should equal` true
+            track(subscribeRates) `should equal` true
+            track("{\"action\":\"subscribe\",\"channel\":\"rates\",\"params\":{\"pair\":\"ETH-USD\"}}")
+            track(unsubscribeQuotes) `should equal` true
+            track("{\"action\":\"ping\"}") `should equal` false
+            track("{\"channel\":\"rates\"}") `should equal` false
+            track("[]") `should equal` false
+
+            active `should equal` listOf(
+                subscribeRates,
+                "{\"action\":\"subscribe\",\"channel\":\"rates\",\"params\":{\"pair\":\"ETH-USD\"}}"
+            )
+        }
+    }
+}
@@ -2,14 +2,19 @@ package com.blockchain.network.websocket
 
 import com.blockchain.testutils.rxInit
 import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.never
 import com.nhaarman.mockito_kotlin.times
 import com.nhaarman.mockito_kotlin.verify
 import io.reactivex.Observable
+import io.reactivex.disposables.Disposables
 import io.reactivex.schedulers.TestScheduler
 import io.reactivex.subjects.PublishSubject
 import io.reactivex.subjects.Subject
+import org.amshove.kluent.`it returns`
+import org.amshove.kluent.`should equal`
 import org.junit.Rule
 import org.junit.Test
+import java.util.Random
 import java.util.concurrent.TimeUnit
 
 class RetryingConnectionTest {
@@ -53,6 +58,7 @@ class RetryingConnectionTest {
         connection.simulateDisconnect()
         testScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
         verify(connection.mock, times(2)).open()
+        connection.simulateSuccess()
         connection.simulateDisconnect()
         testScheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
         verify(connection.mock, times(2)).open()
@@ -123,7 +129,7 @@ class RetryingConnectionFailingConnectionDelayTest {
     @Test
     fun `if the underlying socket fails, we retry after 1 second delay`() {
         val connection = MockConnection()
-        connection.autoRetry().open()
+        connection.autoRetry(RetryPolicy(random = FixedRandom(1.0))).open()
         connection.simulateFailure()
         testScheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
         verify(connection.mock, times(1)).open()
@@ -132,87 +138,222 @@ class RetryingConnectionFailingConnectionDelayTest {
     }
 
     @Test
-    fun `if the underlying socket fails twice, we retry after a 2 second delay`() {
+    fun `each delay is up to three times the last, capped`() {
         val connection = MockConnection()
-        connection.autoRetry().open()
-        connection.simulateFailure()
-
-        testScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
-        verify(connection.mock, times(2)).open()
+        connection.autoRetry(RetryPolicy(maxDelayMillis = 20_000, random = FixedRandom(1.0))).open()
+
+        listOf(1000L, 3000L, 9000L, 20_000L, 20_000L).forEachIndexed { index, delay ->
+            connection.simulateFailure()
+            testScheduler.advanceTimeBy(delay - 1, TimeUnit.MILLISECONDS)
+            verify(connection.mock, times(index + 1)).open()
+            testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+            verify(connection.mock, times(index + 2)).open()
+        }
+    }
 
-        connection.simulateFailure()
-        testScheduler.advanceTimeBy(1999, TimeUnit.MILLISECONDS)
-        verify(connection.mock, times(2)).open()
-        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
-        verify(connection.mock, times(3)).open()
+    @Test
+    fun `delays are picked between the base delay and the upper bound`() {
+        val connection = MockConnection()
+        connection.autoRetry(RetryPolicy(random = FixedRandom(0.5))).open()
+
+        // 1000, then 1000 + 0.5 * (3000 - 1000), then 1000 + 0.5 * (6000 - 1000)
+        listOf(1000L, 2000L, 3500L).forEachIndexed { index, delay ->
+            connection.simulateFailure()
+            testScheduler.advanceTimeBy(delay - 1, TimeUnit.MILLISECONDS)
+            verify(connection.mock, times(index + 1)).open()
+            testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+            verify(connection.mock, times(index + 2)).open()
+        }
     }
 
     @Test
-    fun `if the underlying socket fails 3 times, we retry after a 4 second delay`() {
+    fun `after a successful connection, the timer resets`() {
         val connection = MockConnection()
-        connection.autoRetry().open()
+        connection.autoRetry(RetryPolicy(random = FixedRandom(1.0))).open()
         connection.simulateFailure()
         testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
 
         connection.simulateFailure()
-        testScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
-
-        verify(connection.mock, times(3)).open()
+        testScheduler.advanceTimeBy(3, TimeUnit.SECONDS)
 
         connection.simulateFailure()
-        testScheduler.advanceTimeBy(3999, TimeUnit.MILLISECONDS)
-        verify(connection.mock, times(3)).open()
+        testScheduler.advanceTimeBy(9, TimeUnit.SECONDS)
+        verify(connection.mock, times(4)).open()
 
-        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+        connection.simulateSuccess()
+        testScheduler.advanceTimeBy(10, TimeUnit.SECONDS)
+
+        connection.simulateFailure()
+        testScheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
         verify(connection.mock, times(4)).open()
+        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+        verify(connection.mock, times(5)).open()
     }
 
     @Test
-    fun `if the underlying socket fails 4 times, we remain on a 4 second delay`() {
+    fun `retrying stops after the maximum attempts in a row`() {
         val connection = MockConnection()
-        connection.autoRetry().open()
-        connection.simulateFailure()
+        connection.autoRetry(RetryPolicy(maxAttempts = 2, random = FixedRandom(0.0))).open()
+
+        repeat(3) {
+            connection.simulateFailure()
+            testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+        }
+
+        testScheduler.advanceTimeBy(1, TimeUnit.MINUTES)
+        verify(connection.mock, times(3)).open()
+    }
+}
+
+class RetryingConnectionIdleTimeoutTest {
+
+    private val testScheduler = TestScheduler()
+
+    @get:Rule
+    val rx = rxInit {
+        computation(testScheduler)
+    }
+
+    private val connection = MockConnection()
+    private val messages = PublishSubject.create<String>()
+    private val webSocket = mock<WebSocketSendReceive<String, String>> {
+        on { responses } `it returns` messages
+    } + connection
+
+    @Test
+    fun `an idle connection is closed and reopened`() {
+        webSocket.autoRetry(RetryPolicy(idleTimeoutMillis = 30_000, random = FixedRandom(0.0))).open()
+        connection.simulateSuccess()
+
+        testScheduler.advanceTimeBy(29, TimeUnit.SECONDS)
+        verify(connection.mock, never()).close()
         testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+        verify(connection.mock).close()
 
-        connection.simulateFailure()
-        testScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+        verify(connection.mock, times(2)).open()
+    }
 
-        connection.simulateFailure()
-        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS)
+    @Test
+    fun `messages keep the connection open`() {
+        webSocket.autoRetry(RetryPolicy(idleTimeoutMillis = 30_000)).open()
+        connection.simulateSuccess()
 
-        verify(connection.mock, times(4)).open()
+        repeat(10) {
+            testScheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+            messages.onNext("message")
+        }
 
-        connection.simulateFailure()
-        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS)
+        verify(connection.mock, never()).close()
+        verify(connection.mock, times(1)).open()
+    }
 
-        verify(connection.mock, times(5)).open()
+    @Test
+    fun `no idle timeout by default`() {
+        webSocket.autoRetry().open()
+        connection.simulateSuccess()
+
+        testScheduler.advanceTimeBy(1, TimeUnit.HOURS)
+
+        verify(connection.mock, never()).close()
     }
+}
+
+class RetryingConnectionStatsTest {
+
+    private val testScheduler = TestScheduler()
+
+    @get:Rule
+    val rx = rxInit {
+        computation(testScheduler)
+    }
+
+    private val connection = MockConnection()
+    private val messages = PublishSubject.create<String>()
+    private val webSocket = mock<WebSocketSendReceive<String, String>> {
+        on { responses } `it returns` messages
+    } + connection
 
     @Test
-    fun `after a successful connection, the timer resets`() {
-        val connection = MockConnection()
-        connection.autoRetry().open()
-        connection.simulateFailure()
+    fun `counters are sampled every second`() {
+        val stats = ConnectionStats()
+        val samples = stats.samples.test()
+        val retrying = webSocket.autoRetry(RetryPolicy(random = FixedRandom(0.0)), stats)
+
+        retrying.open()
+        connection.simulateSuccess()
+        repeat(5) { messages.onNext("message") }
         testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
 
         connection.simulateFailure()
-        testScheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+        testScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+        connection.simulateDisconnect()
+        testScheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        testScheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        connection.simulateSuccess()
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
 
-        connection.simulateFailure()
-        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS)
-        verify(connection.mock, times(4)).open()
+        samples.values().first() `should equal` ConnectionStats.Sample(
+            connects = 1,
+            failures = 0,
+            disconnects = 0,
+            reconnectLatencyMillis = null,
+            messagesPerSecond = 5.0
+        )
+        samples.values().last() `should equal` ConnectionStats.Sample(
+            connects = 2,
+            failures = 1,
+            disconnects = 1,
+            reconnectLatencyMillis = 2000,
+            messagesPerSecond = 0.0
+        )
+    }
+
+    @Test
+    fun `stats are counted however the socket is wrapped afterwards`() {
+        val stats = ConnectionStats()
+        val samples = stats.samples.test()
 
+        webSocket.autoRetry(stats = stats)
+            .afterOpen { Disposables.empty() }
+            .open()
         connection.simulateSuccess()
-        testScheduler.advanceTimeBy(10, TimeUnit.SECONDS)
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+        samples.values().single().connects `should equal` 1L
+    }
+
+    @Test
+    fun `an idle timeout counts as a failure`() {
+        val stats = ConnectionStats()
+        val samples = stats.samples.test()
 
+        webSocket.autoRetry(RetryPolicy(idleTimeoutMillis = 30_000, random = FixedRandom(0.0)), stats).open()
+        connection.simulateSuccess()
+        testScheduler.advanceTimeBy(30, TimeUnit.SECONDS)
+
+        samples.values().last().failures `should equal` 1L
+    }
+
+    @Test
+    fun `connection changes are only sampled when the connection opens or is lost`() {
+        val stats = ConnectionStats()
+        val changes = stats.connectionChanges.test()
+
+        webSocket.autoRetry(RetryPolicy(random = FixedRandom(0.0)), stats).open()
+        connection.simulateSuccess()
+        testScheduler.advanceTimeBy(5, TimeUnit.SECONDS)
         connection.simulateFailure()
-        testScheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
-        verify(connection.mock, times(4)).open()
-        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
-        verify(connection.mock, times(5)).open()
+        testScheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+
+        changes.values().map { it.connects to it.failures } `should equal` listOf(1L to 0L, 1L to 1L)
     }
 }
 
+private class FixedRandom(private val value: Double) : Random() {
+    override fun nextDouble() = value
+}
+
 class MockConnection(val mock: WebSocketConnection = mock()) : WebSocketConnection by mock {
     private val subject: Subject<ConnectionEvent> = PublishSubject.create<ConnectionEvent>()
 
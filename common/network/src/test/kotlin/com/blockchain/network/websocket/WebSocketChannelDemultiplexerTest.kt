@@ -0,0 +1,94 @@
+package com.blockchain.network.websocket
+
+import com.nhaarman.mockito_kotlin.mock
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.PublishSubject
+import org.amshove.kluent.`it returns`
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.junit.Test
+
+class WebSocketChannelDemultiplexerTest {
+
+    private val frames = PublishSubject.create<String>()
+    private var subscriptions = 0
+
+    private val demultiplexer = mock<WebSocketReceive<String>> {
+        on { responses } `it returns` frames.doOnSubscribe { subscriptions++ }
+    }.channelDemultiplexer()
+
+    @Test
+    fun `frames are routed to their channel`() {
+        val one = demultiplexer.channel("one").responses.test()
+        val two = demultiplexer.channel("two").responses.test()
+        val alsoOne = demultiplexer.channel("one").responses.test()
+
+        frames.onNext("{\"seqnum\":1,\"channel\":\"one\",\"event\":\"updated\"}")
+        frames.onNext("{\"event\":\"updated\",\"channel\":\"two\"}")
+        frames.onNext("{\"channel\":\"three\"}")
+        frames.onNext("{\"channel\":\"one\",\"event\":\"subscribed\"}")
+        frames.onNext("{\"x\":{\"channel\":\"one\"}}")
+        frames.onNext("null")
+
+        one.values() `should equal` listOf("{\"seqnum\":1,\"channel\":\"one\",\"event\":\"updated\"}")
+        alsoOne.values() `should equal` one.values()
+        two.values() `should equal` listOf("{\"event\":\"updated\",\"channel\":\"two\"}")
+    }
+
+    @Test
+    fun `the socket is subscribed once`() {
+        demultiplexer.channel("one").responses.test()
+        demultiplexer.channel("two").responses.test()
+
+        subscriptions `should equal` 1
+    }
+
+    @Test
+    fun `the socket is released with the last receiver`() {
+        val one = demultiplexer.channel("one").responses.test()
+        val two = demultiplexer.channel("two").responses.test()
+
+        one.dispose()
+        frames.hasObservers() `should be` true
+        two.dispose()
+        frames.hasObservers() `should be` false
+    }
+
+    @Test
+    fun `an error ends the receivers of its channel which throw`() {
+        val throwing = demultiplexer.channel("one").responses.test()
+        val ignoring = demultiplexer.channel("one", throwErrors = false).responses.test()
+        val other = demultiplexer.channel("two").responses.test()
+
+        frames.onNext("{\"channel\":\"one\",\"event\":\"error\"}")
+        frames.onNext("{\"channel\":\"one\"}")
+        frames.onNext("{\"channel\":\"two\"}")
+
+        throwing.assertError { it is ErrorFromServer && it.fullJson == "{\"channel\":\"one\",\"event\":\"error\"}" }
+        ignoring.assertNoErrors().values() `should equal` listOf("{\"channel\":\"one\"}")
+        other.assertNoErrors().values() `should equal` listOf("{\"channel\":\"two\"}")
+    }
+
+    @Test
+    fun `receivers complete with the socket`() {
+        val one = demultiplexer.channel("one").responses.test()
+
+        frames.onComplete()
+
+        one.assertComplete()
+    }
+
+    @Test
+    fun `conflated receiver gets the latest message once it catches up`() {
+        val scheduler = TestScheduler()
+        val test = demultiplexer.channel("rates").conflateOn(scheduler).responses.test()
+
+        (1..5).forEach { frames.onNext("{\"channel\":\"rates\",\"seqnum\":$it}") }
+        scheduler.triggerActions()
+
+        test.values() `should equal` listOf(
+            "{\"channel\":\"rates\",\"seqnum\":1}",
+            "{\"channel\":\"rates\",\"seqnum\":5}"
+        )
+    }
+}
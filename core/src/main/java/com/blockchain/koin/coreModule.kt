@@ -2,6 +2,7 @@
 
 package com.blockchain.koin
 
+import android.content.Context
 import android.preference.PreferenceManager
 import com.blockchain.accounts.AccountList
 import com.blockchain.accounts.AsyncAllAccountList
@@ -49,6 +50,7 @@ import piuk.blockchain.androidcore.data.access.LogoutTimer
 import piuk.blockchain.androidcore.data.auth.AuthDataManager
 import piuk.blockchain.androidcore.data.auth.AuthService
 import piuk.blockchain.androidcore.data.bitcoincash.BchDataStore
+import piuk.blockchain.androidcore.data.charts.PriceSeriesCache
 import piuk.blockchain.androidcore.data.currency.CurrencyFormatManager
 import piuk.blockchain.androidcore.data.currency.CurrencyFormatUtil
 import piuk.blockchain.androidcore.data.currency.CurrencyState
@@ -79,6 +81,7 @@ import piuk.blockchain.androidcore.data.settings.SettingsService
 import piuk.blockchain.androidcore.data.settings.applyFlag
 import piuk.blockchain.androidcore.data.settings.datastore.SettingsDataStore
 import piuk.blockchain.androidcore.data.settings.datastore.SettingsMemoryStore
+import piuk.blockchain.androidcore.data.transactions.TransactionHistoryCache
 import piuk.blockchain.androidcore.data.transactions.TransactionListStore
 import piuk.blockchain.androidcore.data.walletoptions.WalletOptionsDataManager
 import piuk.blockchain.androidcore.data.walletoptions.WalletOptionsState
@@ -89,6 +92,7 @@ import piuk.blockchain.androidcore.utils.MetadataUtils
 import piuk.blockchain.androidcore.utils.PrefsUtil
 import piuk.blockchain.androidcore.utils.PersistentPrefs
 import piuk.blockchain.androidcore.utils.UUIDGenerator
+import java.io.File
 import java.util.UUID
 
 val coreModule = applicationContext {
@@ -203,7 +207,7 @@ val coreModule = applicationContext {
 
         factory { ExchangeRateDataManager(get(), get()) }
 
-        bean { ExchangeRateDataStore(get(), get()) }
+        bean { ExchangeRateDataStore(get(), get(), priceSeriesCache = get()) }
 
         factory {
             FiatExchangeRates(
@@ -216,6 +220,8 @@ val coreModule = applicationContext {
 
         bean { TransactionListStore() }
 
+        bean { TransactionHistoryCache(File(get<Context>().filesDir, "tx_history")) }
+
         factory { CurrencyFormatManager(get(), get(), get(), get(), get()) }
 
         factory {
@@ -244,6 +250,8 @@ val coreModule = applicationContext {
 
     factory { ExchangeRateService(get()) }
 
+    bean { PriceSeriesCache(get(), File(get<Context>().filesDir, "price_series")) }
+
     factory {
         DeviceIdGeneratorImpl(
             ctx = get(),
@@ -10,6 +10,7 @@ import info.blockchain.wallet.BitcoinCashWallet
 import info.blockchain.wallet.coin.GenericMetadataAccount
 import info.blockchain.wallet.coin.GenericMetadataWallet
 import info.blockchain.wallet.crypto.DeterministicAccount
+import info.blockchain.wallet.multiaddress.TransactionHistoryStore
 import info.blockchain.wallet.multiaddress.TransactionSummary
 import info.blockchain.wallet.payload.data.isArchived
 import io.reactivex.Completable
@@ -314,6 +315,33 @@ class BchDataManager(
         }
     }
 
+    /**
+     * Applies the balance changes of a transaction pushed over the websocket ahead of the next
+     * [reconcileBalances], without a network call.
+     *
+     * @param delta Signed amounts keyed by address or xPub
+     */
+    fun applyTransactionDelta(delta: Map<String, BigInteger>) {
+        bchDataStore.bchWallet?.applyTransactionDelta(delta)
+    }
+
+    /**
+     * Fetches all balances, as [updateAllBalances] does, and emits whether they match the balances
+     * the applied transaction deltas led to.
+     */
+    fun reconcileBalances(): Single<Boolean> {
+        val legacyAddresses = payloadDataManager.legacyAddresses
+            .filterNot { it.isWatchOnly || it.isArchived }
+            .map { it.address }
+            .toSet()
+
+        val xpubs = getActiveXpubs().toSet()
+
+        return rxPinning.callSingle<Boolean> {
+            bchDataStore.bchWallet!!.reconcileBalances(xpubs, legacyAddresses)
+        }
+    }
+
     fun getAddressBalance(address: String): BigInteger =
         bchDataStore.bchWallet?.getAddressBalance(address) ?: BigInteger.ZERO
 
@@ -352,6 +380,18 @@ class BchDataManager(
             Observable.fromCallable { fetchImportedAddressTransactions(limit, offset) }
         }.applySchedulers()
 
+    /**
+     * Blocking page fetchers for a [TransactionHistoryStore], not to be called on the main thread.
+     */
+    fun addressTransactionsFetcher(address: String) =
+        TransactionHistoryStore.PageFetcher { limit, offset -> fetchAddressTransactions(address, limit, offset) }
+
+    fun walletTransactionsFetcher() =
+        TransactionHistoryStore.PageFetcher { limit, offset -> fetchWalletTransactions(limit, offset) }
+
+    fun importedAddressTransactionsFetcher() =
+        TransactionHistoryStore.PageFetcher { limit, offset -> fetchImportedAddressTransactions(limit, offset) }
+
     /**
      * Returns all non-archived accounts
      * @return Generic account data that contains label and xpub/address
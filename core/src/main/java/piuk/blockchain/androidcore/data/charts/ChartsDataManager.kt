@@ -34,7 +34,11 @@ const val FIRST_XLM_ENTRY_TIME = 1409875200L
 typealias PriceSeries = List<PriceDatum>
 
 @Deprecated("Merge with ExchangeRateService")
-class ChartsDataManager(private val historicPriceApi: PriceApi, rxBus: RxBus) {
+class ChartsDataManager(
+    historicPriceApi: PriceApi,
+    rxBus: RxBus,
+    private val priceSeriesCache: PriceSeriesCache = PriceSeriesCache(historicPriceApi)
+) {
 
     private val rxPinning = RxPinning(rxBus)
 
@@ -53,11 +57,11 @@ class ChartsDataManager(private val historicPriceApi: PriceApi, rxBus: RxBus) {
         }
 
         return rxPinning.callSingle<PriceSeries> {
-            historicPriceApi.getHistoricPriceSeries(
-                cryptoCurrency.symbol,
+            priceSeriesCache.series(
+                cryptoCurrency,
                 fiatCurrency,
                 proposedStartTime,
-                timeInterval.intervalSeconds
+                timeInterval
             ).subscribeOn(Schedulers.io())
         }
     }
@@ -0,0 +1,227 @@
+package piuk.blockchain.androidcore.data.charts
+
+import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.prices.PriceApi
+import info.blockchain.wallet.prices.TimeInterval
+import info.blockchain.wallet.prices.data.PriceDatum
+import io.reactivex.Scheduler
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import timber.log.Timber
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.util.Arrays
+import java.util.concurrent.TimeUnit
+
+/**
+ * Keeps the historic price series fetched, per currency pair and interval, in memory and in [directory]
+ * if given. A request only downloads the prices after the newest one held, and requests made while the
+ * same series is being fetched share that fetch.
+ *
+ * Prices at a point in time are interpolated from the held series with an interval of at most
+ * [maxInterpolationInterval].
+ *
+ * Files are read and written outside the lock on the held series, which only guards publishing them,
+ * so lookups never wait on disk.
+ */
+class PriceSeriesCache(
+    private val priceApi: PriceApi,
+    private val directory: File? = null,
+    private val maxInterpolationInterval: TimeInterval = TimeInterval.TWO_HOURS,
+    private val scheduler: Scheduler = Schedulers.io()
+) {
+
+    private val series = HashMap<SeriesKey, CachedSeries?>()
+    private val fetches = HashMap<SeriesKey, Fetch>()
+    private val writeLock = Any()
+
+    /**
+     * @param start In epoch-seconds
+     * @return The prices from [start] up to now
+     */
+    fun series(
+        cryptoCurrency: CryptoCurrency,
+        fiat: String,
+        start: Long,
+        interval: TimeInterval
+    ): Single<PriceSeries> = Single.defer {
+        update(SeriesKey(cryptoCurrency.symbol, fiat, interval.intervalSeconds), start)
+            .map { it.slice(start) }
+    }
+
+    /**
+     * @param timeInSeconds In epoch-seconds
+     * @return The price interpolated from the held series, or null if none covers [timeInSeconds]
+     */
+    fun price(cryptoCurrency: CryptoCurrency, fiat: String, timeInSeconds: Long): Double? =
+        TimeInterval.values()
+            .asSequence()
+            .filter { it.intervalSeconds <= maxInterpolationInterval.intervalSeconds }
+            .mapNotNull { interval ->
+                load(SeriesKey(cryptoCurrency.symbol, fiat, interval.intervalSeconds))?.priceAt(timeInSeconds)
+            }
+            .firstOrNull()
+
+    private fun update(key: SeriesKey, start: Long): Single<CachedSeries> {
+        load(key)
+        synchronized(this) {
+            val cached = series[key]
+            val from = when {
+                cached == null || cached.from > start -> start
+                cached.newest + key.interval > now() -> return Single.just(cached)
+                else -> cached.newest + key.interval
+            }
+
+            fetches[key]?.let { if (it.from <= from) return it.result }
+
+            val fetch = Fetch(
+                from,
+                priceApi.getHistoricPriceSeries(key.symbol, key.fiat, from, key.interval)
+                    .map { store(key, from, it) }
+                    .cache()
+            )
+            fetches[key] = fetch
+            return fetch.result.doFinally { release(key, fetch) }
+        }
+    }
+
+    @Synchronized
+    private fun release(key: SeriesKey, fetch: Fetch) {
+        if (fetches[key] === fetch) fetches.remove(key)
+    }
+
+    private fun store(key: SeriesKey, from: Long, prices: PriceSeries): CachedSeries {
+        val merged = synchronized(this) {
+            CachedSeries.merge(series[key], from, prices).also { series[key] = it }
+        }
+        directory?.let { directory ->
+            // A series merged later is written by its own fetch, so an older one is never written over it
+            synchronized(writeLock) {
+                if (isHeld(key, merged)) write(File(directory, key.fileName), merged)
+            }
+        }
+        return merged
+    }
+
+    @Synchronized
+    private fun isHeld(key: SeriesKey, cachedSeries: CachedSeries) = series[key] === cachedSeries
+
+    private fun load(key: SeriesKey): CachedSeries? {
+        synchronized(this) {
+            if (series.containsKey(key)) return series[key]
+        }
+        val read = directory?.let { read(File(it, key.fileName)) }
+        synchronized(this) {
+            // Another caller may have loaded or fetched the series meanwhile
+            if (!series.containsKey(key)) series[key] = read
+            return series[key]
+        }
+    }
+
+    private fun read(file: File): CachedSeries? {
+        if (!file.exists()) return null
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { CachedSeries.read(it) }
+        } catch (e: IOException) {
+            Timber.e(e)
+            null
+        }
+    }
+
+    private fun write(file: File, cachedSeries: CachedSeries) {
+        try {
+            file.parentFile?.mkdirs()
+            val temp = File(file.parentFile, "${file.name}.tmp")
+            DataOutputStream(temp.outputStream().buffered()).use { cachedSeries.write(it) }
+            if (!temp.renameTo(file)) Timber.w("Unable to replace %s", file)
+        } catch (e: IOException) {
+            Timber.e(e)
+        }
+    }
+
+    private fun now() = scheduler.now(TimeUnit.SECONDS)
+
+    private data class SeriesKey(val symbol: String, val fiat: String, val interval: Int) {
+        val fileName get() = "${symbol.toLowerCase()}_${fiat.toLowerCase()}_$interval.bin"
+    }
+
+    private class Fetch(val from: Long, val result: Single<CachedSeries>)
+}
+
+/**
+ * A price series held as parallel arrays of epoch-second timestamps and prices, in time order.
+ *
+ * @param from The earliest time prices were fetched from, which may be before the first price
+ */
+internal class CachedSeries(
+    val from: Long,
+    private val times: LongArray,
+    private val prices: DoubleArray
+) {
+
+    val newest: Long get() = if (times.isEmpty()) from else times[times.size - 1]
+
+    fun slice(start: Long): PriceSeries {
+        val first = indexOf(start).let { if (it < 0) -it - 1 else it }
+        return (first until times.size).map { PriceDatum(timestamp = times[it], price = prices[it]) }
+    }
+
+    fun priceAt(time: Long): Double? {
+        if (times.isEmpty() || time < times[0] || time > times[times.size - 1]) return null
+        val index = indexOf(time)
+        if (index >= 0) return prices[index]
+
+        val after = -index - 1
+        val before = after - 1
+        val fraction = (time - times[before]).toDouble() / (times[after] - times[before])
+        return prices[before] + (prices[after] - prices[before]) * fraction
+    }
+
+    private fun indexOf(time: Long) = Arrays.binarySearch(times, time)
+
+    fun write(output: DataOutputStream) {
+        output.writeInt(VERSION)
+        output.writeLong(from)
+        output.writeInt(times.size)
+        times.forEach { output.writeLong(it) }
+        prices.forEach { output.writeDouble(it) }
+    }
+
+    companion object {
+
+        private const val VERSION = 1
+
+        fun read(input: DataInputStream): CachedSeries? {
+            if (input.readInt() != VERSION) return null
+            val from = input.readLong()
+            val size = input.readInt()
+            val times = LongArray(size) { input.readLong() }
+            val prices = DoubleArray(size) { input.readDouble() }
+            return CachedSeries(from, times, prices)
+        }
+
+        /**
+         * Replaces everything held from [from], or the first fetched price if earlier, with [fetched].
+         */
+        fun merge(held: CachedSeries?, from: Long, fetched: PriceSeries): CachedSeries {
+            val added = fetched.filter { it.price != null }.sortedBy { it.timestamp }
+            val replaceFrom = Math.min(from, added.firstOrNull()?.timestamp ?: from)
+            val kept = held?.let { it.times.count { time -> time < replaceFrom } } ?: 0
+            val size = kept + added.size
+
+            val times = LongArray(size)
+            val prices = DoubleArray(size)
+            if (held != null) {
+                System.arraycopy(held.times, 0, times, 0, kept)
+                System.arraycopy(held.prices, 0, prices, 0, kept)
+            }
+            added.forEachIndexed { index, datum ->
+                times[kept + index] = datum.timestamp
+                prices[kept + index] = datum.price!!
+            }
+            return CachedSeries(Math.min(held?.from ?: from, from), times, prices)
+        }
+    }
+}
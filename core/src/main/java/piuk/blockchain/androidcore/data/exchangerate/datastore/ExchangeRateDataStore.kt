@@ -1,82 +1,173 @@
 package piuk.blockchain.androidcore.data.exchangerate.datastore
 
 import info.blockchain.balance.CryptoCurrency
-import info.blockchain.wallet.prices.data.PriceDatum
 import io.reactivex.Completable
+import io.reactivex.Scheduler
 import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import piuk.blockchain.androidcore.data.charts.PriceSeriesCache
 import piuk.blockchain.androidcore.data.exchangerate.ExchangeRateService
 import piuk.blockchain.androidcore.utils.PersistentPrefs
 import timber.log.Timber
 import java.math.BigDecimal
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
+data class ExchangeRateCacheStats(
+    /**
+     * Updates answered with fresh tickers
+     */
+    val hits: Long,
+    /**
+     * Updates answered with stale tickers while they are fetched again
+     */
+    val staleHits: Long,
+    /**
+     * Updates which waited for tickers to be fetched
+     */
+    val misses: Long,
+    /**
+     * Times the tickers were fetched
+     */
+    val refreshes: Long,
+    /**
+     * Prices looked up without ticker data, so answered with the last known price
+     */
+    val lastKnownLookups: Long
+)
+
+/**
+ * Tickers are fetched at most once per [ttlMillis], concurrent updates share one fetch. Tickers up to
+ * [maxStaleMillis] old are used straight away while they are fetched again in the background.
+ *
+ * Historic prices come from the [priceSeriesCache] where it holds them, and are otherwise fetched and
+ * kept for the last [MAX_HISTORIC_PRICES] times asked for.
+ */
 class ExchangeRateDataStore(
     private val exchangeRateService: ExchangeRateService,
-    private val prefs: PersistentPrefs
+    prefs: PersistentPrefs,
+    private val priceSeriesCache: PriceSeriesCache? = null,
+    private val ttlMillis: Long = TimeUnit.MINUTES.toMillis(1),
+    private val maxStaleMillis: Long = TimeUnit.MINUTES.toMillis(10),
+    private val scheduler: Scheduler = Schedulers.io()
 ) {
 
-    // Ticker data
-    private var btcTickerData: Map<String, PriceDatum>? = null
-    private var ethTickerData: Map<String, PriceDatum>? = null
-    private var bchTickerData: Map<String, PriceDatum>? = null
-    private var xlmTickerData: Map<String, PriceDatum>? = null
-    private var paxTickerData: Map<String, PriceDatum>? = null
-
-    fun updateExchangeRates(): Completable = Single.merge(
-        exchangeRateService.getExchangeRateMap(CryptoCurrency.BTC)
-            .doOnSuccess { btcTickerData = it.toMap() },
-        exchangeRateService.getExchangeRateMap(CryptoCurrency.BCH)
-            .doOnSuccess { bchTickerData = it.toMap() },
-        exchangeRateService.getExchangeRateMap(CryptoCurrency.ETHER)
-            .doOnSuccess { ethTickerData = it.toMap() },
-        exchangeRateService.getExchangeRateMap(CryptoCurrency.XLM)
-            .doOnSuccess { xlmTickerData = it.toMap() }
-    ).mergeWith(exchangeRateService.getExchangeRateMap(CryptoCurrency.PAX)
-        .doOnSuccess { paxTickerData = it.toMap() }).ignoreElements()
-
-    fun getCurrencyLabels(): Array<String> = btcTickerData!!.keys.toTypedArray()
+    @Volatile
+    private var table = PriceTable.EMPTY
 
-    fun getLastPrice(cryptoCurrency: CryptoCurrency, currencyName: String): Double {
-        var currency = currencyName
-        if (currency.isEmpty()) {
-            currency = "USD"
-        }
+    private var refresh: Completable? = null
 
-        val tickerData = cryptoCurrency.tickerData()
+    private val lastKnownPrices = LastKnownPrices(prefs, scheduler, flushDelayMillis = 5_000)
 
-        val prefsKey = "LAST_KNOWN_${cryptoCurrency.symbol}_VALUE_FOR_CURRENCY_$currency"
+    private val historicPrices = object : LinkedHashMap<String, Double>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Double>?) =
+            size > MAX_HISTORIC_PRICES
+    }
 
-        val lastKnown = try {
-            prefs.getValue(prefsKey, "0.0").toDouble()
-        } catch (e: NumberFormatException) {
-            Timber.e(e)
-            prefs.setValue(prefsKey, "0.0")
-            0.0
-        }
+    private val hits = AtomicLong()
+    private val staleHits = AtomicLong()
+    private val misses = AtomicLong()
+    private val refreshes = AtomicLong()
+    private val lastKnownLookups = AtomicLong()
 
-        val lastPrice: Double? = tickerData?.get(currency)?.price
+    val stats: ExchangeRateCacheStats
+        get() = ExchangeRateCacheStats(
+            hits = hits.get(),
+            staleHits = staleHits.get(),
+            misses = misses.get(),
+            refreshes = refreshes.get(),
+            lastKnownLookups = lastKnownLookups.get()
+        )
 
-        if (lastPrice != null) {
-            prefs.setValue("$prefsKey$currency", lastPrice.toString())
+    fun updateExchangeRates(): Completable = Completable.defer {
+        val age = table.fetchedAt?.let { now() - it }
+        when {
+            age == null || age >= maxStaleMillis -> {
+                misses.incrementAndGet()
+                sharedRefresh()
+            }
+            age < ttlMillis -> {
+                hits.incrementAndGet()
+                Completable.complete()
+            }
+            else -> {
+                staleHits.incrementAndGet()
+                sharedRefresh()
+                    .subscribeOn(scheduler)
+                    .subscribe({}, { Timber.e(it) })
+                Completable.complete()
+            }
         }
+    }
+
+    @Synchronized
+    private fun sharedRefresh(): Completable =
+        refresh ?: fetchTickers()
+            .doOnTerminate { synchronized(this) { refresh = null } }
+            .cache()
+            .also { refresh = it }
 
-        return lastPrice ?: lastKnown
+    private fun fetchTickers(): Completable = Completable.defer {
+        refreshes.incrementAndGet()
+        val tickers = ConcurrentHashMap(table.tickers)
+        Single.merge(
+            TICKER_CURRENCIES.map { cryptoCurrency ->
+                exchangeRateService.getExchangeRateMap(cryptoCurrency)
+                    .doOnSuccess { tickers[cryptoCurrency] = it.toMap() }
+            }
+        ).ignoreElements()
+            .doOnComplete { table = PriceTable.of(tickers, now()) }
+            // Keep what did arrive, but as old as before so the next update tries again
+            .doOnError { table = PriceTable.of(tickers, table.fetchedAt) }
     }
 
-    private fun CryptoCurrency.tickerData() =
-        when (this) {
-            CryptoCurrency.BTC -> btcTickerData
-            CryptoCurrency.ETHER -> ethTickerData
-            CryptoCurrency.BCH -> bchTickerData
-            CryptoCurrency.XLM -> xlmTickerData
-            CryptoCurrency.PAX -> paxTickerData
-            CryptoCurrency.STX -> TODO("STUB: STX NOT IMPLEMENTED")
+    fun getCurrencyLabels(): Array<String> =
+        table.tickers[CryptoCurrency.BTC]!!.keys.toTypedArray()
+
+    fun getLastPrice(cryptoCurrency: CryptoCurrency, currencyName: String): Double {
+        if (cryptoCurrency == CryptoCurrency.STX) TODO("STUB: STX NOT IMPLEMENTED")
+
+        val currency = if (currencyName.isEmpty()) "USD" else currencyName
+        val lastPrice = table.price(cryptoCurrency, currency)
+
+        return if (lastPrice.isNaN()) {
+            lastKnownLookups.incrementAndGet()
+            lastKnownPrices.get(cryptoCurrency, currency)
+        } else {
+            lastKnownPrices.put(cryptoCurrency, currency, lastPrice)
+            lastPrice
         }
+    }
 
     fun getHistoricPrice(
         cryptoCurrency: CryptoCurrency,
         fiat: String,
         timeInSeconds: Long
-    ): Single<BigDecimal> =
-        exchangeRateService.getHistoricPrice(cryptoCurrency, fiat, timeInSeconds)
-            .map { it.toBigDecimal() }
+    ): Single<BigDecimal> = Single.defer {
+        val key = "${cryptoCurrency.symbol}:$fiat:$timeInSeconds"
+        val cached = synchronized(historicPrices) { historicPrices[key] }
+            ?: priceSeriesCache?.price(cryptoCurrency, fiat, timeInSeconds)
+
+        if (cached != null) {
+            Single.just(cached)
+        } else {
+            exchangeRateService.getHistoricPrice(cryptoCurrency, fiat, timeInSeconds)
+                .doOnSuccess { synchronized(historicPrices) { historicPrices[key] = it } }
+        }
+    }.map { it.toBigDecimal() }
+
+    private fun now() = scheduler.now(TimeUnit.MILLISECONDS)
+
+    companion object {
+        private const val MAX_HISTORIC_PRICES = 500
+
+        private val TICKER_CURRENCIES = listOf(
+            CryptoCurrency.BTC,
+            CryptoCurrency.BCH,
+            CryptoCurrency.ETHER,
+            CryptoCurrency.XLM,
+            CryptoCurrency.PAX
+        )
+    }
 }
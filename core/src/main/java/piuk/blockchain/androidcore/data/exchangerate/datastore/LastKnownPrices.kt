@@ -0,0 +1,65 @@
+package piuk.blockchain.androidcore.data.exchangerate.datastore
+
+import info.blockchain.balance.CryptoCurrency
+import io.reactivex.Completable
+import io.reactivex.Scheduler
+import piuk.blockchain.androidcore.utils.PersistentPrefs
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * The last price seen for each pair, used while there is no ticker data. Values are read from
+ * [prefs] once per pair and changes are written back in a batch [flushDelayMillis] after the first
+ * one, rather than on every lookup.
+ */
+internal class LastKnownPrices(
+    private val prefs: PersistentPrefs,
+    private val scheduler: Scheduler,
+    private val flushDelayMillis: Long
+) {
+
+    private val prices = ConcurrentHashMap<String, Double>()
+    private val pending = ConcurrentHashMap<String, Double>()
+    private val flushScheduled = AtomicBoolean()
+
+    fun get(cryptoCurrency: CryptoCurrency, fiat: String): Double {
+        val key = key(cryptoCurrency, fiat)
+        return prices[key] ?: read(key).also { prices[key] = it }
+    }
+
+    fun put(cryptoCurrency: CryptoCurrency, fiat: String, price: Double) {
+        val key = key(cryptoCurrency, fiat)
+        if (prices.put(key, price) != price) {
+            pending[key] = price
+            scheduleFlush()
+        }
+    }
+
+    fun flush() {
+        flushScheduled.set(false)
+        pending.keys.forEach { key ->
+            pending.remove(key)?.let { prefs.setValue(key, it.toString()) }
+        }
+    }
+
+    private fun scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            Completable.timer(flushDelayMillis, TimeUnit.MILLISECONDS, scheduler)
+                .subscribe({ flush() }, { Timber.e(it) })
+        }
+    }
+
+    private fun read(key: String): Double =
+        try {
+            prefs.getValue(key, "0.0").toDouble()
+        } catch (e: NumberFormatException) {
+            Timber.e(e)
+            prefs.setValue(key, "0.0")
+            0.0
+        }
+
+    private fun key(cryptoCurrency: CryptoCurrency, fiat: String) =
+        "LAST_KNOWN_${cryptoCurrency.symbol}_VALUE_FOR_CURRENCY_$fiat"
+}
@@ -0,0 +1,45 @@
+package piuk.blockchain.androidcore.data.exchangerate.datastore
+
+import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.prices.data.PriceDatum
+
+/**
+ * An immutable snapshot of the ticker prices, one row per [CryptoCurrency] and one column per fiat,
+ * so looking up a price reads a single double.
+ */
+internal class PriceTable private constructor(
+    private val columns: Map<String, Int>,
+    private val prices: DoubleArray,
+    val tickers: Map<CryptoCurrency, Map<String, PriceDatum>>,
+    val fetchedAt: Long?
+) {
+
+    /**
+     * @return The price, or NaN if there is none for the pair
+     */
+    fun price(cryptoCurrency: CryptoCurrency, fiat: String): Double {
+        val column = columns[fiat] ?: return Double.NaN
+        return prices[cryptoCurrency.ordinal * columns.size + column]
+    }
+
+    companion object {
+
+        val EMPTY = PriceTable(emptyMap(), DoubleArray(0), emptyMap(), null)
+
+        fun of(tickers: Map<CryptoCurrency, Map<String, PriceDatum>>, fetchedAt: Long?): PriceTable {
+            val columns = HashMap<String, Int>()
+            tickers.values.forEach { ticker ->
+                ticker.keys.forEach { fiat -> if (fiat !in columns) columns[fiat] = columns.size }
+            }
+
+            val prices = DoubleArray(CryptoCurrency.values().size * columns.size) { Double.NaN }
+            tickers.forEach { (cryptoCurrency, ticker) ->
+                val row = cryptoCurrency.ordinal * columns.size
+                ticker.forEach { (fiat, datum) ->
+                    datum.price?.let { prices[row + columns.getValue(fiat)] = it }
+                }
+            }
+            return PriceTable(columns, prices, tickers, fetchedAt)
+        }
+    }
+}
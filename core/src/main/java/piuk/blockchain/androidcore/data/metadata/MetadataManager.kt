@@ -2,15 +2,23 @@ package piuk.blockchain.androidcore.data.metadata
 
 import com.blockchain.serialization.Saveable
 import com.google.common.base.Optional
+import info.blockchain.wallet.BitcoinCashWallet
+import info.blockchain.wallet.ethereum.EthereumWallet
 import info.blockchain.wallet.exceptions.InvalidCredentialsException
+import info.blockchain.wallet.metadata.Metadata
+import info.blockchain.wallet.metadata.MetadataNodeFactory
 import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.Single
 import io.reactivex.schedulers.Schedulers
 import org.bitcoinj.core.NetworkParameters
+import org.bitcoinj.crypto.DeterministicKey
 import piuk.blockchain.androidcore.data.payload.PayloadDataManager
 import piuk.blockchain.androidcore.data.rxjava.RxBus
 import piuk.blockchain.androidcore.data.rxjava.RxPinning
 import piuk.blockchain.androidcore.utils.MetadataUtils
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Manages metadata nodes/keys derived from a user's wallet credentials.
@@ -25,14 +33,35 @@ import piuk.blockchain.androidcore.utils.MetadataUtils
  * derived from 'guid + sharedkey + wallet password'. This will allow us to retrieve these derived
  * keys with just a user's credentials and not derive them again.
  *
+ * The [Metadata] handle of each entry is derived once per session, and the entries read at login are
+ * fetched together as soon as the nodes are loaded. A prefetched entry is only handed out once, for
+ * the same node, and within [PREFETCH_TTL_MILLIS] of being fetched.
  */
 class MetadataManager(
     private val payloadDataManager: PayloadDataManager,
     private val metadataUtils: MetadataUtils,
-    rxBus: RxBus
+    rxBus: RxBus,
+    private val prefetchTypes: List<Int> = LOGIN_METADATA_TYPES,
+    private val currentTimeMillis: () -> Long = System::currentTimeMillis
 ) {
     private val rxPinning = RxPinning(rxBus)
 
+    private val handles = ConcurrentHashMap<Int, Metadata>()
+
+    @Volatile
+    private var handlesNode: DeterministicKey? = null
+
+    /**
+     * Entries fetched by [prefetch] and not yet asked for, each handed out once
+     */
+    private val prefetched = ConcurrentHashMap<Int, PrefetchedEntry>()
+
+    private class PrefetchedEntry(
+        val node: DeterministicKey,
+        val entry: Single<Optional<String>>,
+        val fetchedAt: Long
+    )
+
     fun attemptMetadataSetup() = initMetadataNodesObservable()
 
     fun decryptAndSetupMetadata(
@@ -47,33 +76,77 @@ class MetadataManager(
     fun fetchMetadata(metadataType: Int): Observable<Optional<String>> =
         rxPinning.call<Optional<String>> {
             payloadDataManager.getMetadataNodeFactory()
-                .map { nodeFactory ->
-                    metadataUtils.getMetadataNode(nodeFactory.metadataNode, metadataType)
-                        .metadataOptional
+                .flatMap { nodeFactory ->
+                    val node = nodeFactory.metadataNode
+                    takePrefetched(node, metadataType)?.toObservable()
+                        ?: Observable.fromCallable { read(node, metadataType) }
                 }
-            }.subscribeOn(Schedulers.io())
+        }.subscribeOn(Schedulers.io())
 
     fun saveToMetadata(data: String, metadataType: Int): Completable =
         rxPinning.call {
             payloadDataManager.getMetadataNodeFactory()
                 .flatMapCompletable {
                     Completable.fromCallable {
-                        metadataUtils.getMetadataNode(it.metadataNode, metadataType).putMetadata(data)
+                        write(it.metadataNode, metadataType, data)
                     }
                 }.subscribeOn(Schedulers.io())
         }
 
     fun saveToMetadata(saveable: Saveable): Completable =
-        rxPinning.call {
-            payloadDataManager.getMetadataNodeFactory()
-                .flatMapCompletable {
-                    Completable.fromCallable {
-                        metadataUtils.getMetadataNode(
-                            it.metadataNode,
-                            saveable.getMetadataType()
-                        ).putMetadata(saveable.toJson())
+        saveToMetadata(saveable.toJson(), saveable.getMetadataType())
+
+    /**
+     * Fetches the entries of [prefetchTypes] in parallel, to be handed to the first [fetchMetadata]
+     * of each type. A failed prefetch is fetched again when asked for.
+     */
+    private fun prefetch(nodeFactory: MetadataNodeFactory): Completable {
+        val node = nodeFactory.metadataNode
+        return Observable.fromIterable(prefetchTypes)
+            .map { type ->
+                val entry = Single.fromCallable { read(node, type) }
+                    .subscribeOn(Schedulers.io())
+                    .cache()
+                PrefetchedEntry(node, entry, currentTimeMillis()).also { prefetchedEntry ->
+                    prefetched[type] = prefetchedEntry
+                    entry.subscribe({}, { prefetched.remove(type, prefetchedEntry) })
+                }
+            }
+            .flatMapCompletable { it.entry.ignoreElement().onErrorComplete() }
+    }
+
+    /**
+     * Removes the prefetched entry of [metadataType], returning it if it was read from [node] recently
+     * enough to be served instead of reading it again.
+     */
+    private fun takePrefetched(node: DeterministicKey, metadataType: Int): Single<Optional<String>>? {
+        val prefetchedEntry = prefetched.remove(metadataType) ?: return null
+        val fresh = currentTimeMillis() - prefetchedEntry.fetchedAt < PREFETCH_TTL_MILLIS
+        return if (prefetchedEntry.node === node && fresh) prefetchedEntry.entry else null
+    }
+
+    private fun read(node: DeterministicKey, metadataType: Int): Optional<String> {
+        val handle = handle(node, metadataType)
+        return synchronized(handle) { handle.metadataOptional }
+    }
+
+    private fun write(node: DeterministicKey, metadataType: Int, data: String) {
+        prefetched.remove(metadataType)
+        val handle = handle(node, metadataType)
+        synchronized(handle) { handle.putMetadata(data) }
+    }
+
+    private fun handle(node: DeterministicKey, metadataType: Int): Metadata {
+        if (handlesNode !== node) {
+            synchronized(handles) {
+                if (handlesNode !== node) {
+                    handles.clear()
+                    prefetched.values.removeAll { it.node !== node }
+                    handlesNode = node
                 }
-            }.subscribeOn(Schedulers.io())
+            }
+        }
+        return handles.getOrPut(metadataType) { metadataUtils.getMetadataNode(node, metadataType) }
     }
 
     /**
@@ -100,11 +173,28 @@ class MetadataManager(
                 } else {
                     payloadDataManager.getMetadataNodeFactory()
                 }
-            }.flatMapCompletable { Completable.complete() }
+            }.flatMapCompletable { nodeFactory ->
+                Completable.fromAction {
+                    prefetch(nodeFactory).subscribe({}, { Timber.e(it) })
+                }
+            }
     }.subscribeOn(Schedulers.io())
 
     companion object {
         const val METADATA_TYPE_EXCHANGE = 3
+        const val PREFETCH_TTL_MILLIS = 60_000L
         const val METADATA_TYPE_SHAPE_SHIFT_EXTERNAL = 6
+        // Match NabuCredentialsMetadata.USER_CREDENTIALS_METADATA_NODE and XlmMetaData.MetaDataType
+        private const val METADATA_TYPE_NABU_CREDENTIALS = 10
+        private const val METADATA_TYPE_XLM = 11
+
+        private val LOGIN_METADATA_TYPES = listOf(
+            METADATA_TYPE_EXCHANGE,
+            EthereumWallet.METADATA_TYPE_EXTERNAL,
+            METADATA_TYPE_SHAPE_SHIFT_EXTERNAL,
+            BitcoinCashWallet.METADATA_TYPE_EXTERNAL,
+            METADATA_TYPE_NABU_CREDENTIALS,
+            METADATA_TYPE_XLM
+        )
     }
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ import info.blockchain.wallet.payment.SpendableUnspentOutputs
 import info.blockchain.wallet.util.PrivateKeyFactory
 import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.Single
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.schedulers.Schedulers
 import okhttp3.ResponseBody
@@ -247,6 +248,25 @@ class PayloadDataManager(
     fun updateAllBalances(): Completable = rxPinning.call { payloadService.updateAllBalances() }
         .applySchedulers()
 
+    /**
+     * Applies the balance changes of a transaction pushed over the websocket ahead of the next
+     * [reconcileBalances], without a network call.
+     *
+     * @param delta Signed amounts keyed by address or xPub
+     */
+    fun applyTransactionDelta(delta: Map<String, BigInteger>) =
+        payloadService.applyTransactionDelta(delta)
+
+    /**
+     * Returns a [Single] which fetches all balances, as [updateAllBalances] does, and emits whether
+     * they match the balances the applied transaction deltas led to. A mismatch means a change was
+     * missed and transactions should be refreshed too.
+     *
+     * @return A [Single] wrapping true if the balances matched
+     */
+    fun reconcileBalances(): Single<Boolean> = rxPinning.callSingle<Boolean> { payloadService.reconcileBalances() }
+        .applySchedulers()
+
     /**
      * Update notes for a specific transaction hash and then sync the payload to the server
      *
@@ -10,12 +10,14 @@ import info.blockchain.wallet.payload.data.LegacyAddress
 import info.blockchain.wallet.payload.data.Wallet
 import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.Single
 import io.reactivex.exceptions.Exceptions
 import okhttp3.ResponseBody
 import org.bitcoinj.core.ECKey
 import org.bitcoinj.core.NetworkParameters
 import piuk.blockchain.androidcore.utils.annotations.WebRequest
 import piuk.blockchain.androidcore.utils.rxjava.IgnorableDefaultObserver
+import java.math.BigInteger
 import java.util.LinkedHashMap
 
 class PayloadService(private val payloadManager: PayloadManager) {
@@ -192,6 +194,23 @@ class PayloadService(private val payloadManager: PayloadManager) {
         payloadManager.updateAllBalances()
     }
 
+    /**
+     * Applies the balance changes of a transaction pushed over the websocket.
+     *
+     * @param delta Signed amounts keyed by address or xPub
+     */
+    internal fun applyTransactionDelta(delta: Map<String, BigInteger>) =
+        payloadManager.applyTransactionDelta(delta)
+
+    /**
+     * Returns a [Single] which fetches all balances and emits whether they match the balances the
+     * applied transaction deltas led to.
+     */
+    @WebRequest
+    internal fun reconcileBalances(): Single<Boolean> = Single.fromCallable {
+        payloadManager.reconcileBalances()
+    }
+
     /**
      * Update notes for a specific transaction hash and then sync the payload to the server
      *
@@ -0,0 +1,70 @@
+package piuk.blockchain.androidcore.data.transactions
+
+import com.blockchain.utils.toHex
+import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.multiaddress.TransactionHistoryStore
+import timber.log.Timber
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * Hands out one [TransactionHistoryStore] per currency and context, e.g. all accounts of a wallet or a
+ * single xpub. Stores live in [directory] under a hash of the context so no addresses end up in file
+ * names, and their records are encrypted with a key derived from the wallet password.
+ *
+ * Stores are held for the session they were created in and dropped once the password changes, as
+ * each keeps encrypting with the password it was created with.
+ */
+class TransactionHistoryCache(private val directory: File) {
+
+    private val stores = HashMap<String, TransactionHistoryStore>()
+    private var password: String? = null
+
+    @Synchronized
+    fun store(currency: CryptoCurrency, context: String, password: String): TransactionHistoryStore {
+        if (password != this.password) {
+            stores.clear()
+            this.password = password
+        }
+        val name = fileName(currency, context)
+        return stores.getOrPut(name) { TransactionHistoryStore(File(directory, name), password) }
+    }
+
+    /**
+     * The store for all accounts and imported addresses of the wallet [guid].
+     */
+    fun walletStore(currency: CryptoCurrency, guid: String?, password: String): TransactionHistoryStore =
+        store(currency, walletContext(guid), password)
+
+    /**
+     * Drops the stores held in memory, with their decrypted history and the password, and keeps the
+     * stored history on disk. To be called when the session ends.
+     */
+    @Synchronized
+    fun release() {
+        stores.clear()
+        password = null
+    }
+
+    /**
+     * Deletes all stored history, to be called when the wallet is forgotten.
+     */
+    @Synchronized
+    fun wipe() {
+        stores.values.forEach { it.clear() }
+        release()
+        directory.listFiles()?.forEach {
+            if (!it.delete()) Timber.w("Unable to delete %s", it)
+        }
+    }
+
+    private fun fileName(currency: CryptoCurrency, context: String): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+            .digest(context.toByteArray(Charsets.UTF_8))
+        return "${currency.symbol.toLowerCase()}_${digest.toHex()}.jsonl"
+    }
+
+    companion object {
+        fun walletContext(guid: String?) = "$guid:all"
+    }
+}
@@ -11,8 +11,11 @@ import java.io.IOException
  * Simple wrapper class to allow mocking of metadata keys
  */
 class MetadataUtils {
+    /**
+     * Derives the entry's handle without fetching it, the magic hash comes with the first read
+     */
     @Throws(IOException::class, MetadataException::class)
     fun getMetadataNode(metaDataHDNode: DeterministicKey, type: Int): Metadata {
-        return Metadata.Builder(metaDataHDNode, type).build()
+        return Metadata.Builder(metaDataHDNode, type).buildWithoutFetch()
     }
 }
@@ -0,0 +1,141 @@
+package piuk.blockchain.androidcore.data.charts
+
+import com.nhaarman.mockito_kotlin.any
+import com.nhaarman.mockito_kotlin.eq
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.verifyNoMoreInteractions
+import com.nhaarman.mockito_kotlin.whenever
+import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.prices.PriceApi
+import info.blockchain.wallet.prices.TimeInterval
+import info.blockchain.wallet.prices.data.PriceDatum
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.SingleSubject
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.concurrent.TimeUnit
+
+class PriceSeriesCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val priceApi: PriceApi = mock()
+    private val scheduler = TestScheduler()
+    private lateinit var subject: PriceSeriesCache
+
+    @Before
+    fun setUp() {
+        subject = PriceSeriesCache(priceApi, folder.root, scheduler = scheduler)
+        scheduler.advanceTimeTo(NOW, TimeUnit.SECONDS)
+    }
+
+    @Test
+    fun `a series is fetched once while up to date`() {
+        givenSeries(START, prices(START, 1.0, 2.0, 3.0))
+
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+            .values().single() `should equal` prices(START, 1.0, 2.0, 3.0)
+        subject.series(CryptoCurrency.BTC, "USD", START + HOUR, TimeInterval.ONE_HOUR).test()
+            .values().single() `should equal` prices(START + HOUR, 2.0, 3.0)
+
+        verify(priceApi).getHistoricPriceSeries("BTC", "USD", START, HOUR.toInt())
+        verifyNoMoreInteractions(priceApi)
+    }
+
+    @Test
+    fun `only the missing tail is fetched`() {
+        givenSeries(START, prices(START, 1.0, 2.0, 3.0))
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+
+        scheduler.advanceTimeBy(2, TimeUnit.HOURS)
+        givenSeries(START + 3 * HOUR, prices(START + 3 * HOUR, 4.0, 5.0))
+
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+            .values().single() `should equal` prices(START, 1.0, 2.0, 3.0, 4.0, 5.0)
+        verify(priceApi).getHistoricPriceSeries("BTC", "USD", START + 3 * HOUR, HOUR.toInt())
+    }
+
+    @Test
+    fun `an earlier start fetches from there`() {
+        givenSeries(START, prices(START, 1.0, 2.0, 3.0))
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+        givenSeries(START - HOUR, prices(START - HOUR, 0.5, 1.0, 2.0, 3.0))
+
+        subject.series(CryptoCurrency.BTC, "USD", START - HOUR, TimeInterval.ONE_HOUR).test()
+            .values().single() `should equal` prices(START - HOUR, 0.5, 1.0, 2.0, 3.0)
+        verify(priceApi).getHistoricPriceSeries("BTC", "USD", START - HOUR, HOUR.toInt())
+    }
+
+    @Test
+    fun `requests made during a fetch share it`() {
+        val fetch = SingleSubject.create<List<PriceDatum>>()
+        whenever(priceApi.getHistoricPriceSeries(any(), any(), any(), any())).thenReturn(fetch)
+
+        val first = subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+        val later = subject.series(CryptoCurrency.BTC, "USD", START + 2 * HOUR, TimeInterval.ONE_HOUR).test()
+        fetch.onSuccess(prices(START, 1.0, 2.0, 3.0))
+
+        first.values().single() `should equal` prices(START, 1.0, 2.0, 3.0)
+        later.values().single() `should equal` prices(START + 2 * HOUR, 3.0)
+        verify(priceApi, times(1)).getHistoricPriceSeries(any(), any(), any(), any())
+    }
+
+    @Test
+    fun `series are kept between instances`() {
+        givenSeries(START, prices(START, 1.0, 2.0, 3.0))
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+
+        PriceSeriesCache(priceApi, folder.root, scheduler = scheduler)
+            .series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+            .values().single() `should equal` prices(START, 1.0, 2.0, 3.0)
+        verify(priceApi, times(1)).getHistoricPriceSeries(any(), any(), any(), any())
+    }
+
+    @Test
+    fun `a price is interpolated from the finest series held`() {
+        givenSeries(START, prices(START, 100.0, 200.0, 300.0))
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_HOUR).test()
+        givenSeries(START, prices(START, 110.0, 210.0, step = 900), interval = TimeInterval.FIFTEEN_MINUTES)
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.FIFTEEN_MINUTES).test()
+
+        subject.price(CryptoCurrency.BTC, "USD", START + 450) `should equal` 160.0
+        subject.price(CryptoCurrency.BTC, "USD", START + HOUR + HOUR / 4) `should equal` 225.0
+        subject.price(CryptoCurrency.BTC, "USD", START + 2 * HOUR) `should equal` 300.0
+        subject.price(CryptoCurrency.BTC, "USD", START - 1) `should be` null
+        subject.price(CryptoCurrency.BTC, "GBP", START) `should be` null
+    }
+
+    @Test
+    fun `coarse series are not interpolated`() {
+        givenSeries(START, prices(START, 100.0, 200.0, step = 86400), interval = TimeInterval.ONE_DAY)
+        subject.series(CryptoCurrency.BTC, "USD", START, TimeInterval.ONE_DAY).test()
+
+        subject.price(CryptoCurrency.BTC, "USD", START) `should be` null
+    }
+
+    private fun givenSeries(
+        from: Long,
+        series: List<PriceDatum>,
+        interval: TimeInterval = TimeInterval.ONE_HOUR
+    ) {
+        whenever(priceApi.getHistoricPriceSeries(eq("BTC"), eq("USD"), eq(from), eq(interval.intervalSeconds)))
+            .thenReturn(Single.just(series))
+    }
+
+    private fun prices(from: Long, vararg prices: Double, step: Long = HOUR) =
+        prices.mapIndexed { index, price -> PriceDatum(timestamp = from + index * step, price = price) }
+
+    companion object {
+        private const val HOUR = 3600L
+        private const val NOW = 1_500_000_000L
+        private const val START = NOW - 2 * HOUR
+    }
+}
@@ -0,0 +1,214 @@
+package piuk.blockchain.androidcore.data.exchangerate.datastore
+
+import com.nhaarman.mockito_kotlin.any
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.never
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.whenever
+import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.prices.data.PriceDatum
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.SingleSubject
+import org.amshove.kluent.`should equal`
+import org.junit.Before
+import org.junit.Test
+import piuk.blockchain.androidcore.data.charts.PriceSeriesCache
+import piuk.blockchain.androidcore.data.exchangerate.ExchangeRateService
+import piuk.blockchain.androidcore.utils.PersistentPrefs
+import java.util.concurrent.TimeUnit
+
+class ExchangeRateDataStoreTest {
+
+    private val exchangeRateService: ExchangeRateService = mock()
+    private val prefs: PersistentPrefs = mock {
+        on { getValue(any(), any<String>()) }.thenAnswer { it.arguments[1] }
+    }
+    private val scheduler = TestScheduler()
+
+    private val priceSeriesCache: PriceSeriesCache = mock()
+
+    private val subject = ExchangeRateDataStore(
+        exchangeRateService,
+        prefs,
+        priceSeriesCache,
+        ttlMillis = 60_000,
+        maxStaleMillis = 600_000,
+        scheduler = scheduler
+    )
+
+    @Before
+    fun setUp() {
+        givenPrices(8000.0)
+    }
+
+    @Test
+    fun `prices come from the tickers`() {
+        subject.updateExchangeRates().test().assertComplete()
+
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 8000.0
+        subject.getLastPrice(CryptoCurrency.ETHER, "GBP") `should equal` 160.0
+        subject.getLastPrice(CryptoCurrency.PAX, "") `should equal` 1.0
+        subject.getCurrencyLabels().toSet() `should equal` setOf("USD", "GBP")
+    }
+
+    @Test
+    fun `tickers are fetched once within the ttl`() {
+        subject.updateExchangeRates().test()
+        scheduler.advanceTimeBy(59, TimeUnit.SECONDS)
+        subject.updateExchangeRates().test().assertComplete()
+
+        verify(exchangeRateService, times(1)).getExchangeRateMap(CryptoCurrency.BTC)
+        subject.stats `should equal` ExchangeRateCacheStats(
+            hits = 1,
+            staleHits = 0,
+            misses = 1,
+            refreshes = 1,
+            lastKnownLookups = 0
+        )
+    }
+
+    @Test
+    fun `concurrent updates share one fetch`() {
+        val btc = SingleSubject.create<Map<String, PriceDatum>>()
+        whenever(exchangeRateService.getExchangeRateMap(CryptoCurrency.BTC)).thenReturn(btc)
+
+        val first = subject.updateExchangeRates().test()
+        val second = subject.updateExchangeRates().test()
+        first.assertNotComplete()
+        btc.onSuccess(tickers(8000.0))
+
+        first.assertComplete()
+        second.assertComplete()
+        verify(exchangeRateService, times(1)).getExchangeRateMap(CryptoCurrency.BTC)
+        subject.stats.refreshes `should equal` 1L
+    }
+
+    @Test
+    fun `stale tickers are used while fetched again`() {
+        subject.updateExchangeRates().test()
+        scheduler.advanceTimeBy(2, TimeUnit.MINUTES)
+        givenPrices(9000.0)
+
+        subject.updateExchangeRates().test().assertComplete()
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 8000.0
+
+        scheduler.triggerActions()
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 9000.0
+        subject.stats.staleHits `should equal` 1L
+        subject.stats.refreshes `should equal` 2L
+    }
+
+    @Test
+    fun `tickers past the stale limit are waited for`() {
+        subject.updateExchangeRates().test()
+        scheduler.advanceTimeBy(10, TimeUnit.MINUTES)
+        givenPrices(9000.0)
+
+        subject.updateExchangeRates().test().assertComplete()
+
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 9000.0
+        subject.stats.misses `should equal` 2L
+    }
+
+    @Test
+    fun `a failed fetch is tried again on the next update`() {
+        whenever(exchangeRateService.getExchangeRateMap(CryptoCurrency.XLM))
+            .thenReturn(Single.error(RuntimeException()))
+
+        subject.updateExchangeRates().test().assertError(RuntimeException::class.java)
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 8000.0
+
+        givenPrices(8000.0)
+        subject.updateExchangeRates().test().assertComplete()
+        subject.getLastPrice(CryptoCurrency.XLM, "USD") `should equal` 0.08
+        subject.stats.refreshes `should equal` 2L
+    }
+
+    @Test
+    fun `without tickers the last known price is read once`() {
+        whenever(prefs.getValue("LAST_KNOWN_BTC_VALUE_FOR_CURRENCY_USD", "0.0")).thenReturn("7000.0")
+
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 7000.0
+        subject.getLastPrice(CryptoCurrency.BTC, "USD") `should equal` 7000.0
+
+        verify(prefs, times(1)).getValue("LAST_KNOWN_BTC_VALUE_FOR_CURRENCY_USD", "0.0")
+        subject.stats.lastKnownLookups `should equal` 2L
+    }
+
+    @Test
+    fun `an unreadable last known price is reset`() {
+        whenever(prefs.getValue("LAST_KNOWN_ETH_VALUE_FOR_CURRENCY_EUR", "0.0")).thenReturn("x")
+
+        subject.getLastPrice(CryptoCurrency.ETHER, "EUR") `should equal` 0.0
+
+        verify(prefs).setValue("LAST_KNOWN_ETH_VALUE_FOR_CURRENCY_EUR", "0.0")
+    }
+
+    @Test
+    fun `prices looked up are saved in one batch`() {
+        subject.updateExchangeRates().test()
+        repeat(100) {
+            subject.getLastPrice(CryptoCurrency.BTC, "USD")
+            subject.getLastPrice(CryptoCurrency.BCH, "GBP")
+        }
+        verify(prefs, never()).setValue(any(), any<String>())
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+
+        verify(prefs, times(1)).setValue("LAST_KNOWN_BTC_VALUE_FOR_CURRENCY_USD", "8000.0")
+        verify(prefs, times(1)).setValue("LAST_KNOWN_BCH_VALUE_FOR_CURRENCY_GBP", "320.0")
+    }
+
+    @Test
+    fun `unchanged prices are not saved again`() {
+        subject.updateExchangeRates().test()
+        subject.getLastPrice(CryptoCurrency.BTC, "USD")
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+        subject.getLastPrice(CryptoCurrency.BTC, "USD")
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+
+        verify(prefs, times(1)).setValue("LAST_KNOWN_BTC_VALUE_FOR_CURRENCY_USD", "8000.0")
+    }
+
+    @Test
+    fun `historic prices come from the held series`() {
+        whenever(priceSeriesCache.price(CryptoCurrency.BTC, "USD", 1000L)).thenReturn(8100.5)
+
+        subject.getHistoricPrice(CryptoCurrency.BTC, "USD", 1000L).test()
+            .values().single() `should equal` 8100.5.toBigDecimal()
+        verify(exchangeRateService, never()).getHistoricPrice(any(), any(), any())
+    }
+
+    @Test
+    fun `historic prices not held are fetched once`() {
+        whenever(priceSeriesCache.price(any(), any(), any())).thenReturn(null)
+        whenever(exchangeRateService.getHistoricPrice(CryptoCurrency.ETHER, "USD", 1000L))
+            .thenReturn(Single.just(180.25))
+
+        repeat(3) {
+            subject.getHistoricPrice(CryptoCurrency.ETHER, "USD", 1000L).test()
+                .values().single() `should equal` 180.25.toBigDecimal()
+        }
+        verify(exchangeRateService, times(1)).getHistoricPrice(CryptoCurrency.ETHER, "USD", 1000L)
+    }
+
+    private fun givenPrices(btcUsd: Double) {
+        mapOf(
+            CryptoCurrency.BTC to 1.0,
+            CryptoCurrency.BCH to 0.05,
+            CryptoCurrency.ETHER to 0.025,
+            CryptoCurrency.XLM to 0.00001,
+            CryptoCurrency.PAX to 1 / 8000.0
+        ).forEach { (cryptoCurrency, ratio) ->
+            whenever(exchangeRateService.getExchangeRateMap(cryptoCurrency))
+                .thenReturn(Single.just(tickers(btcUsd * ratio)))
+        }
+    }
+
+    private fun tickers(usd: Double) = mapOf(
+        "USD" to PriceDatum(price = usd),
+        "GBP" to PriceDatum(price = usd * 0.8)
+    )
+}
@@ -1,6 +1,8 @@
 package piuk.blockchain.androidcore.data.metadata
 
+import com.google.common.base.Optional
 import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.times
 import com.nhaarman.mockito_kotlin.verify
 import com.nhaarman.mockito_kotlin.verifyNoMoreInteractions
 import com.nhaarman.mockito_kotlin.whenever
@@ -143,4 +145,119 @@ class MetadataManagerTest {
         verify(metadataUtils).getMetadataNode(node, type)
         verify(metadata).putMetadata(data)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `entry handles are derived once per type`() {
+        // Arrange
+        val type = 1337
+        val factory: MetadataNodeFactory = mock()
+        val node: DeterministicKey = mock()
+        val metadata: Metadata = mock()
+        whenever(payloadDataManager.getMetadataNodeFactory()).thenReturn(Observable.just(factory))
+        whenever(factory.metadataNode).thenReturn(node)
+        whenever(metadataUtils.getMetadataNode(node, type)).thenReturn(metadata)
+        whenever(metadata.metadataOptional).thenReturn(Optional.of("DATA"))
+        // Act
+        subject.saveToMetadata("DATA", type).test().assertComplete()
+        subject.fetchMetadata(type).test().assertValue(Optional.of("DATA"))
+        subject.fetchMetadata(type).test().assertValue(Optional.of("DATA"))
+        // Assert
+        verify(metadataUtils).getMetadataNode(node, type)
+        verify(metadata, times(2)).metadataOptional
+    }
+
+    @Test
+    fun `login entries are prefetched once nodes are loaded`() {
+        // Arrange
+        subject = MetadataManager(payloadDataManager, metadataUtils, rxBus, prefetchTypes = listOf(5, 7))
+        val factory: MetadataNodeFactory = mock()
+        val node: DeterministicKey = mock()
+        val eth: Metadata = mock()
+        val bch: Metadata = mock()
+        whenever(payloadDataManager.loadNodes()).thenReturn(Observable.just(true))
+        whenever(payloadDataManager.getMetadataNodeFactory()).thenReturn(Observable.just(factory))
+        whenever(factory.metadataNode).thenReturn(node)
+        whenever(metadataUtils.getMetadataNode(node, 5)).thenReturn(eth)
+        whenever(metadataUtils.getMetadataNode(node, 7)).thenReturn(bch)
+        whenever(eth.metadataOptional).thenReturn(Optional.of("ETH"))
+        whenever(bch.metadataOptional).thenReturn(Optional.of("BCH"))
+        // Act
+        subject.attemptMetadataSetup().test().assertComplete()
+        subject.fetchMetadata(5).test().assertValue(Optional.of("ETH"))
+        subject.fetchMetadata(7).test().assertValue(Optional.of("BCH"))
+        // Assert
+        verify(eth).metadataOptional
+        verify(bch).metadataOptional
+        verify(payloadDataManager, times(3)).getMetadataNodeFactory()
+    }
+
+    @Test
+    fun `a prefetched entry is not served for another node`() {
+        // Arrange
+        subject = MetadataManager(payloadDataManager, metadataUtils, rxBus, prefetchTypes = listOf(10))
+        val previousFactory: MetadataNodeFactory = mock()
+        val previousNode: DeterministicKey = mock()
+        val previous: Metadata = mock()
+        whenever(payloadDataManager.loadNodes()).thenReturn(Observable.just(true))
+        whenever(payloadDataManager.getMetadataNodeFactory()).thenReturn(Observable.just(previousFactory))
+        whenever(previousFactory.metadataNode).thenReturn(previousNode)
+        whenever(metadataUtils.getMetadataNode(previousNode, 10)).thenReturn(previous)
+        whenever(previous.metadataOptional).thenReturn(Optional.of("PREVIOUS WALLET"))
+        subject.attemptMetadataSetup().test().assertComplete()
+
+        val factory: MetadataNodeFactory = mock()
+        val node: DeterministicKey = mock()
+        val metadata: Metadata = mock()
+        whenever(payloadDataManager.getMetadataNodeFactory()).thenReturn(Observable.just(factory))
+        whenever(factory.metadataNode).thenReturn(node)
+        whenever(metadataUtils.getMetadataNode(node, 10)).thenReturn(metadata)
+        whenever(metadata.metadataOptional).thenReturn(Optional.absent())
+        // Act
+        val testObserver = subject.fetchMetadata(10).test()
+        // Assert
+        testObserver.assertValue(Optional.absent())
+        verify(metadata).metadataOptional
+    }
+
+    @Test
+    fun `a prefetched entry is read again once it is stale`() {
+        // Arrange
+        var now = 0L
+        subject = MetadataManager(payloadDataManager, metadataUtils, rxBus, listOf(5)) { now }
+        val factory: MetadataNodeFactory = mock()
+        val node: DeterministicKey = mock()
+        val metadata: Metadata = mock()
+        whenever(payloadDataManager.loadNodes()).thenReturn(Observable.just(true))
+        whenever(payloadDataManager.getMetadataNodeFactory()).thenReturn(Observable.just(factory))
+        whenever(factory.metadataNode).thenReturn(node)
+        whenever(metadataUtils.getMetadataNode(node, 5)).thenReturn(metadata)
+        whenever(metadata.metadataOptional).thenReturn(Optional.of("OLD"), Optional.of("NEW"))
+        subject.attemptMetadataSetup().test().assertComplete()
+        // Act
+        now = MetadataManager.PREFETCH_TTL_MILLIS
+        val testObserver = subject.fetchMetadata(5).test()
+        // Assert
+        testObserver.assertValue(Optional.of("NEW"))
+        verify(metadata, times(2)).metadataOptional
+    }
+
+    @Test
+    fun `a prefetched entry is read again after it is saved`() {
+        // Arrange
+        subject = MetadataManager(payloadDataManager, metadataUtils, rxBus, prefetchTypes = listOf(5))
+        val factory: MetadataNodeFactory = mock()
+        val node: DeterministicKey = mock()
+        val metadata: Metadata = mock()
+        whenever(payloadDataManager.loadNodes()).thenReturn(Observable.just(true))
+        whenever(payloadDataManager.getMetadataNodeFactory()).thenReturn(Observable.just(factory))
+        whenever(factory.metadataNode).thenReturn(node)
+        whenever(metadataUtils.getMetadataNode(node, 5)).thenReturn(metadata)
+        whenever(metadata.metadataOptional).thenReturn(Optional.of("OLD"), Optional.of("NEW"))
+        // Act
+        subject.attemptMetadataSetup().test().assertComplete()
+        subject.saveToMetadata("NEW", 5).test().assertComplete()
+        // Assert
+        subject.fetchMetadata(5).test().assertValue(Optional.of("NEW"))
+        verify(metadata, times(2)).metadataOptional
+    }
+}
@@ -0,0 +1,59 @@
+package piuk.blockchain.androidcore.data.transactions
+
+import info.blockchain.balance.CryptoCurrency
+import info.blockchain.wallet.multiaddress.TransactionSummary
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.amshove.kluent.`should not be`
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class TransactionHistoryCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val subject by lazy { TransactionHistoryCache(folder.root) }
+
+    @Test
+    fun `the same store is handed out for the same context and password`() {
+        subject.store(CryptoCurrency.BTC, "context", "password") `should be`
+            subject.store(CryptoCurrency.BTC, "context", "password")
+    }
+
+    @Test
+    fun `a changed password gets a new store`() {
+        val store = subject.store(CryptoCurrency.BTC, "context", "password")
+
+        subject.store(CryptoCurrency.BTC, "context", "changed") `should not be` store
+    }
+
+    @Test
+    fun `history stored under a changed password is readable with it`() {
+        subject.store(CryptoCurrency.BTC, "context", "password").addPending(pending("hash1"))
+        subject.store(CryptoCurrency.BTC, "context", "changed").addPending(pending("hash2"))
+
+        TransactionHistoryCache(folder.root).store(CryptoCurrency.BTC, "context", "changed")
+            .getTransactions(Long.MAX_VALUE, 10)
+            .map { it.hash } `should equal` listOf("hash2")
+    }
+
+    @Test
+    fun `release drops the stores and keeps the history on disk`() {
+        val store = subject.store(CryptoCurrency.BTC, "context", "password")
+        store.addPending(pending("hash"))
+
+        subject.release()
+
+        val reloaded = subject.store(CryptoCurrency.BTC, "context", "password")
+        reloaded `should not be` store
+        reloaded.size() `should equal` 1
+    }
+
+    private fun pending(hash: String) = TransactionSummary().apply {
+        this.hash = hash
+        time = 1000
+        direction = TransactionSummary.Direction.RECEIVED
+    }
+}
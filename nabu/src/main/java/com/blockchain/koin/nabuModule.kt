@@ -15,6 +15,8 @@ import com.blockchain.swap.nabu.datamanagers.NabuDataManager
 import com.blockchain.swap.nabu.datamanagers.NabuDataManagerImpl
 import com.blockchain.swap.nabu.datamanagers.NabuDataUserProvider
 import com.blockchain.swap.nabu.datamanagers.NabuDataUserProviderNabuDataManagerAdapter
+import com.blockchain.swap.nabu.datamanagers.NabuSessionTokenManager
+import com.blockchain.swap.nabu.datamanagers.NabuTokenRefreshDiagnostics
 import com.blockchain.swap.nabu.datamanagers.NabuUserReporter
 import com.blockchain.swap.nabu.datamanagers.NabuUserSyncUpdateUserWalletInfoWithJWT
 import com.blockchain.swap.nabu.datamanagers.UniqueAnalyticsNabuUserReporter
@@ -62,7 +64,8 @@ val nabuModule = applicationContext {
                 payloadDataManager = get(),
                 prefs = get(),
                 walletReporter = get("unique_id"),
-                userReporter = get("unique_user_analytics")
+                userReporter = get("unique_user_analytics"),
+                tokenManager = get()
             ) as NabuDataManager
         }
 
@@ -120,6 +123,9 @@ val nabuModule = applicationContext {
 
     bean { NabuSessionTokenStore() }
 
+    bean { NabuSessionTokenManager(get()) }
+        .bind(NabuTokenRefreshDiagnostics::class)
+
     bean { NabuService(get("nabu")) }
 
     bean { RetailWalletTokenService(get(), getProperty("api-code"), get("kotlin")) }
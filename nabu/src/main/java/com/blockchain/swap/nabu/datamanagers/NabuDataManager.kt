@@ -16,7 +16,6 @@ import com.blockchain.swap.nabu.models.tokenresponse.NabuSessionTokenResponse
 import com.blockchain.swap.nabu.service.NabuService
 import com.blockchain.swap.nabu.service.RetailWalletTokenService
 import com.blockchain.swap.nabu.stores.NabuSessionTokenStore
-import com.blockchain.utils.Optional
 import com.blockchain.veriff.VeriffApplicantAndToken
 import info.blockchain.wallet.exceptions.ApiException
 import io.reactivex.Completable
@@ -130,7 +129,8 @@ internal class NabuDataManagerImpl(
     private val userReporter: NabuUserReporter,
     private val walletReporter: WalletReporter,
     private val payloadDataManager: PayloadDataManager,
-    private val prefs: PersistentPrefs
+    private val prefs: PersistentPrefs,
+    private val tokenManager: NabuSessionTokenManager = NabuSessionTokenManager(nabuTokenStore)
 ) : NabuDataManager {
 
     private val guid
@@ -295,29 +295,22 @@ internal class NabuDataManagerImpl(
     private fun userRestored(throwable: Throwable) =
         (throwable as? NabuApiException?)?.getErrorStatusCode() == NabuErrorStatusCodes.AlreadyRegistered
 
-    // TODO: Refactor this logic into a reusable, thoroughly tested class - see AND-1335
     override fun <T> authenticate(
         offlineToken: NabuOfflineTokenResponse,
         singleFunction: (NabuSessionTokenResponse) -> Single<T>
     ): Single<T> =
-        currentToken(offlineToken)
-            .flatMap { tokenResponse ->
-                singleFunction(tokenResponse)
-                    .onErrorResumeNext { refreshOrReturnError(it, offlineToken, singleFunction) }
-            }
+        tokenManager.authenticate(
+            fetchToken = { refreshToken(offlineToken) },
+            isTokenRejected = ::unauthenticated,
+            call = singleFunction
+        )
 
     override fun invalidateToken() {
         nabuTokenStore.invalidate()
     }
 
     override fun currentToken(offlineToken: NabuOfflineTokenResponse): Single<NabuSessionTokenResponse> =
-        if (nabuTokenStore.requiresRefresh()) {
-            refreshToken(offlineToken)
-        } else {
-            nabuTokenStore.getAccessToken()
-                .map { (it as Optional.Some).element }
-                .singleOrError()
-        }
+        tokenManager.currentToken { refreshToken(offlineToken) }
 
     override fun linkWalletWithMercury(offlineTokenResponse: NabuOfflineTokenResponse): Single<String> =
         authenticate(offlineTokenResponse) {
@@ -350,19 +343,6 @@ internal class NabuDataManagerImpl(
             nabuService.fetchPitSendToAddressForCrypto(it, cryptoSymbol)
         }
 
-    private fun <T> refreshOrReturnError(
-        throwable: Throwable,
-        offlineToken: NabuOfflineTokenResponse,
-        singleFunction: (NabuSessionTokenResponse) -> Single<T>
-    ): SingleSource<T> =
-        if (unauthenticated(throwable)) {
-            refreshToken(offlineToken)
-                .doOnSubscribe { clearAccessToken() }
-                .flatMap { singleFunction(it) }
-        } else {
-            Single.error(throwable)
-        }
-
     private fun recoverOrReturnError(
         throwable: Throwable,
         offlineToken: NabuOfflineTokenResponse
@@ -0,0 +1,218 @@
+package com.blockchain.swap.nabu.datamanagers
+
+import com.blockchain.swap.nabu.models.tokenresponse.NabuSessionTokenResponse
+import com.blockchain.swap.nabu.stores.NabuSessionTokenStore
+import com.blockchain.utils.Optional
+import io.reactivex.Scheduler
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import timber.log.Timber
+import java.text.ParseException
+import java.text.SimpleDateFormat
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+data class NabuTokenRefreshStats(
+    /**
+     * Session tokens requested from Nabu
+     */
+    val refreshes: Long,
+    /**
+     * Requests for a new token which joined a refresh already in flight
+     */
+    val coalesced: Long,
+    /**
+     * Refreshes started because the stored token was about to expire
+     */
+    val proactive: Long,
+    /**
+     * Refreshes which failed
+     */
+    val failures: Long,
+    /**
+     * Time taken by the most recent successful refresh
+     */
+    val lastLatencyMillis: Long,
+    /**
+     * Time taken by all successful refreshes
+     */
+    val totalLatencyMillis: Long
+)
+
+/**
+ * Read by the debug menu to show how often the Nabu session token has been refreshed this session.
+ */
+interface NabuTokenRefreshDiagnostics {
+
+    val stats: NabuTokenRefreshStats
+}
+
+/**
+ * Hands out the stored Nabu session token and refreshes it with one request at a time, however many
+ * callers need a new one. Calls which fail because their token was rejected are retried once with
+ * the new token.
+ *
+ * A token which expires within [refreshAheadMillis] is still used while a new one is fetched in the
+ * background, so callers do not wait on a refresh until the token has actually expired.
+ */
+internal class NabuSessionTokenManager(
+    private val tokenStore: NabuSessionTokenStore,
+    private val refreshAheadMillis: Long = TimeUnit.MINUTES.toMillis(1),
+    private val scheduler: Scheduler = Schedulers.io()
+) : NabuTokenRefreshDiagnostics {
+
+    private var refresh: Single<NabuSessionTokenResponse>? = null
+
+    @Volatile
+    private var expiry: TokenExpiry? = null
+
+    private val refreshes = AtomicLong()
+    private val coalesced = AtomicLong()
+    private val proactive = AtomicLong()
+    private val failures = AtomicLong()
+    private val lastLatencyMillis = AtomicLong()
+    private val totalLatencyMillis = AtomicLong()
+
+    override val stats: NabuTokenRefreshStats
+        get() = NabuTokenRefreshStats(
+            refreshes = refreshes.get(),
+            coalesced = coalesced.get(),
+            proactive = proactive.get(),
+            failures = failures.get(),
+            lastLatencyMillis = lastLatencyMillis.get(),
+            totalLatencyMillis = totalLatencyMillis.get()
+        )
+
+    /**
+     * Runs [call] with the current token, and once more with a new token if [isTokenRejected] by
+     * the error it fails with.
+     *
+     * @param fetchToken Requests a new session token from Nabu and stores it
+     */
+    fun <T> authenticate(
+        fetchToken: () -> Single<NabuSessionTokenResponse>,
+        isTokenRejected: (Throwable) -> Boolean,
+        call: (NabuSessionTokenResponse) -> Single<T>
+    ): Single<T> =
+        currentToken(fetchToken)
+            .flatMap { token ->
+                call(token).onErrorResumeNext { error: Throwable ->
+                    if (isTokenRejected(error)) {
+                        replacementToken(token, fetchToken).flatMap(call)
+                    } else {
+                        Single.error(error)
+                    }
+                }
+            }
+
+    /**
+     * The stored token, or a new one if none is stored or it has expired.
+     */
+    fun currentToken(fetchToken: () -> Single<NabuSessionTokenResponse>): Single<NabuSessionTokenResponse> =
+        Single.defer {
+            val token = storedToken()
+            val expiresIn = token?.let { expiresInMillis(it) }
+            when {
+                token == null -> sharedRefresh(fetchToken, rejected = null)
+                expiresIn == null || expiresIn > refreshAheadMillis -> Single.just(token)
+                expiresIn > 0 -> {
+                    proactive.incrementAndGet()
+                    sharedRefresh(fetchToken, rejected = null)
+                        .subscribeOn(scheduler)
+                        .subscribe({}, { Timber.e(it) })
+                    Single.just(token)
+                }
+                else -> sharedRefresh(fetchToken, rejected = token)
+            }
+        }
+
+    /**
+     * A token to use in place of [rejected]. If another caller has stored a new token since
+     * [rejected] was handed out, that one is used rather than refreshing again.
+     */
+    fun replacementToken(
+        rejected: NabuSessionTokenResponse,
+        fetchToken: () -> Single<NabuSessionTokenResponse>
+    ): Single<NabuSessionTokenResponse> =
+        Single.defer {
+            val token = storedToken()
+            if (token != null && token != rejected && expiresInMillis(token)?.let { it > 0 } != false) {
+                Single.just(token)
+            } else {
+                sharedRefresh(fetchToken, rejected)
+            }
+        }
+
+    @Synchronized
+    private fun sharedRefresh(
+        fetchToken: () -> Single<NabuSessionTokenResponse>,
+        rejected: NabuSessionTokenResponse?
+    ): Single<NabuSessionTokenResponse> {
+        refresh?.let {
+            coalesced.incrementAndGet()
+            return it
+        }
+        if (rejected != null && storedToken() == rejected) {
+            tokenStore.invalidate()
+        }
+        return timedRefresh(fetchToken)
+            .doFinally { synchronized(this) { refresh = null } }
+            .cache()
+            .also { refresh = it }
+    }
+
+    private fun timedRefresh(fetchToken: () -> Single<NabuSessionTokenResponse>) =
+        Single.defer {
+            refreshes.incrementAndGet()
+            val started = now()
+            fetchToken()
+                .doOnSuccess {
+                    val latency = now() - started
+                    lastLatencyMillis.set(latency)
+                    totalLatencyMillis.addAndGet(latency)
+                    Timber.d("Nabu session token refreshed in %d ms", latency)
+                }
+                .doOnError { failures.incrementAndGet() }
+        }
+
+    private fun storedToken(): NabuSessionTokenResponse? =
+        if (tokenStore.requiresRefresh()) {
+            null
+        } else {
+            (tokenStore.getAccessToken().blockingFirst(Optional.None) as? Optional.Some)?.element
+        }
+
+    /**
+     * @return Null if the token's expiry is not known
+     */
+    private fun expiresInMillis(token: NabuSessionTokenResponse): Long? {
+        val known = expiry?.takeIf { it.token == token }
+            ?: TokenExpiry(token, parseExpiry(token.expiresAt)).also { expiry = it }
+        return known.expiresAtMillis?.let { it - now() }
+    }
+
+    private fun now() = scheduler.now(TimeUnit.MILLISECONDS)
+
+    private class TokenExpiry(val token: NabuSessionTokenResponse, val expiresAtMillis: Long?)
+
+    companion object {
+
+        private val EXPIRY_FORMATS = listOf("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", "yyyy-MM-dd'T'HH:mm:ss'Z'")
+
+        internal fun parseExpiry(expiresAt: String): Long? =
+            EXPIRY_FORMATS.asSequence()
+                .mapNotNull { pattern ->
+                    try {
+                        SimpleDateFormat(pattern, Locale.US)
+                            .apply { timeZone = TimeZone.getTimeZone("UTC") }
+                            .parse(expiresAt)
+                            .time
+                    } catch (e: ParseException) {
+                        null
+                    }
+                }
+                .firstOrNull()
+    }
+}
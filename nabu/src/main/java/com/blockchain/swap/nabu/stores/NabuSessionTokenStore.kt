@@ -7,6 +7,7 @@ import io.reactivex.Observable
 
 class NabuSessionTokenStore : NabuTokenStore, PersistentStore<NabuSessionTokenResponse> {
 
+    @Volatile
     private var token: Optional<NabuSessionTokenResponse> = Optional.None
 
     override fun store(data: NabuSessionTokenResponse): Observable<NabuSessionTokenResponse> {
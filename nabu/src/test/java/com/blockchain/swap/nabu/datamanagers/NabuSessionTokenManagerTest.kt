@@ -0,0 +1,189 @@
+package com.blockchain.swap.nabu.datamanagers
+
+import com.blockchain.swap.nabu.models.tokenresponse.NabuSessionTokenResponse
+import com.blockchain.swap.nabu.stores.NabuSessionTokenStore
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.SingleSubject
+import org.amshove.kluent.`should be`
+import org.amshove.kluent.`should equal`
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class NabuSessionTokenManagerTest {
+
+    private val tokenStore = NabuSessionTokenStore()
+    private val scheduler = TestScheduler()
+    private val subject = NabuSessionTokenManager(tokenStore, refreshAheadMillis = 60_000, scheduler = scheduler)
+
+    private var fetches = 0
+    private var nextToken: Single<NabuSessionTokenResponse> = Single.just(token("NEW"))
+
+    private val fetchToken: () -> Single<NabuSessionTokenResponse> = {
+        Single.defer {
+            fetches++
+            nextToken.flatMapObservable(tokenStore::store).singleOrError()
+        }
+    }
+
+    @Before
+    fun setUp() {
+        scheduler.advanceTimeTo(NOW, TimeUnit.MILLISECONDS)
+    }
+
+    @Test
+    fun `the stored token is used without refreshing`() {
+        tokenStore.store(token("OLD"))
+
+        subject.currentToken(fetchToken).test().values().single() `should equal` token("OLD")
+
+        fetches `should be` 0
+    }
+
+    @Test
+    fun `concurrent callers share one refresh`() {
+        val fetch = SingleSubject.create<NabuSessionTokenResponse>()
+        nextToken = fetch
+
+        val first = subject.currentToken(fetchToken).test()
+        val second = subject.currentToken(fetchToken).test()
+        first.assertNotComplete()
+        fetch.onSuccess(token("NEW"))
+
+        first.values().single() `should equal` token("NEW")
+        second.values().single() `should equal` token("NEW")
+        fetches `should be` 1
+        subject.stats.coalesced `should equal` 1L
+    }
+
+    @Test
+    fun `a rejected call is retried once with a new token`() {
+        tokenStore.store(token("OLD"))
+        val used = mutableListOf<String>()
+
+        subject.authenticate(fetchToken, { it is TokenRejected }) {
+            used += it.token
+            if (it.token == "OLD") Single.error(TokenRejected()) else Single.just(it.token)
+        }.test().values().single() `should equal` "NEW"
+
+        used `should equal` listOf("OLD", "NEW")
+        fetches `should be` 1
+    }
+
+    @Test
+    fun `calls rejected together share one refresh`() {
+        tokenStore.store(token("OLD"))
+        val fetch = SingleSubject.create<NabuSessionTokenResponse>()
+        nextToken = fetch
+        val call = { token: NabuSessionTokenResponse ->
+            if (token.token == "OLD") Single.error(TokenRejected()) else Single.just(token.token)
+        }
+
+        val first = subject.authenticate(fetchToken, { it is TokenRejected }, call).test()
+        val second = subject.authenticate(fetchToken, { it is TokenRejected }, call).test()
+        fetch.onSuccess(token("NEW"))
+
+        first.values().single() `should equal` "NEW"
+        second.values().single() `should equal` "NEW"
+        fetches `should be` 1
+    }
+
+    @Test
+    fun `a token stored since the rejection is used without refreshing`() {
+        tokenStore.store(token("NEWER"))
+
+        subject.replacementToken(token("OLD"), fetchToken).test().values().single() `should equal` token("NEWER")
+
+        fetches `should be` 0
+    }
+
+    @Test
+    fun `other errors are not retried`() {
+        tokenStore.store(token("OLD"))
+
+        subject.authenticate(fetchToken, { it is TokenRejected }) { Single.error<Int>(IllegalStateException()) }
+            .test()
+            .assertError(IllegalStateException::class.java)
+
+        fetches `should be` 0
+    }
+
+    @Test
+    fun `a token about to expire is used while a new one is fetched`() {
+        tokenStore.store(token("OLD", expiresAt = "2017-07-14T02:40:30.000Z"))
+
+        subject.currentToken(fetchToken).test().values().single().token `should equal` "OLD"
+        fetches `should be` 0
+
+        scheduler.triggerActions()
+
+        fetches `should be` 1
+        subject.currentToken(fetchToken).test().values().single().token `should equal` "NEW"
+        subject.stats.proactive `should equal` 1L
+    }
+
+    @Test
+    fun `an expired token is replaced before it is used`() {
+        tokenStore.store(token("OLD", expiresAt = "2017-07-14T02:39:59Z"))
+
+        subject.currentToken(fetchToken).test().values().single().token `should equal` "NEW"
+        fetches `should be` 1
+    }
+
+    @Test
+    fun `a failed refresh is tried again by the next caller`() {
+        nextToken = Single.error(IllegalStateException())
+        subject.currentToken(fetchToken).test().assertError(IllegalStateException::class.java)
+
+        nextToken = Single.just(token("NEW"))
+        subject.currentToken(fetchToken).test().values().single().token `should equal` "NEW"
+
+        fetches `should be` 2
+        subject.stats.failures `should equal` 1L
+    }
+
+    @Test
+    fun `refresh latency is recorded`() {
+        val fetch = SingleSubject.create<NabuSessionTokenResponse>()
+        nextToken = fetch
+
+        subject.currentToken(fetchToken).test()
+        scheduler.advanceTimeBy(250, TimeUnit.MILLISECONDS)
+        fetch.onSuccess(token("NEW"))
+
+        subject.stats `should equal` NabuTokenRefreshStats(
+            refreshes = 1,
+            coalesced = 0,
+            proactive = 0,
+            failures = 0,
+            lastLatencyMillis = 250,
+            totalLatencyMillis = 250
+        )
+    }
+
+    @Test
+    fun `expiry times are read as UTC`() {
+        NabuSessionTokenManager.parseExpiry("2017-07-14T02:40:00.000Z") `should equal` NOW
+        NabuSessionTokenManager.parseExpiry("2017-07-14T02:40:00Z") `should equal` NOW
+        NabuSessionTokenManager.parseExpiry("EXPIRES_AT") `should be` null
+    }
+
+    private class TokenRejected : RuntimeException()
+
+    private fun token(token: String, expiresAt: String = "") =
+        NabuSessionTokenResponse(
+            id = "ID",
+            userId = "USER_ID",
+            token = token,
+            isActive = true,
+            expiresAt = expiresAt,
+            insertedAt = "",
+            updatedAt = ""
+        )
+
+    companion object {
+        // 2017-07-14T02:40:00Z
+        private const val NOW = 1_500_000_000_000L
+    }
+}
@@ -7,6 +7,7 @@ import com.blockchain.network.modules.OkHttpInterceptors
 import com.nhaarman.mockito_kotlin.spy
 import info.blockchain.balance.CryptoCurrency
 import io.fabric8.mockwebserver.DefaultMockServer
+import okhttp3.Cache
 import okhttp3.OkHttpClient
 import org.koin.dsl.module.applicationContext
 
@@ -14,6 +15,8 @@ fun apiServerTestModule(server: DefaultMockServer) = applicationContext {
 
     bean { OkHttpClient() }
 
+    bean { Cache(createTempDir(), 1024 * 1024) }
+
     bean { OkHttpInterceptors(emptyList()) }
 
     bean {
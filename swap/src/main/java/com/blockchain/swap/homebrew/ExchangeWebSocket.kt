@@ -2,29 +2,35 @@ package com.blockchain.swap.homebrew
 
 import com.blockchain.swap.common.exchange.service.ExchangeRateStream
 import com.blockchain.swap.common.quote.ExchangeQuoteRequest
+import com.blockchain.network.websocket.ChannelAwareWebSocket
 import com.blockchain.network.websocket.WebSocket
 import com.blockchain.network.websocket.WebSocketChannel
 import com.blockchain.network.websocket.channelAware
-import com.blockchain.network.websocket.channelMessageFilter
+import com.blockchain.network.websocket.conflateOn
 import com.blockchain.network.websocket.toJsonReceive
 import com.blockchain.serialization.JsonSerializable
 import com.squareup.moshi.Moshi
 import info.blockchain.balance.CryptoCurrency
 import info.blockchain.balance.ExchangeRate
 import io.reactivex.Observable
+import io.reactivex.Scheduler
+import io.reactivex.schedulers.Schedulers
 import java.util.concurrent.atomic.AtomicReference
 
 private const val ChannelNameExchangeRate = "exchange_rate"
 
-class ExchangeWebSocket(underlyingSocket: WebSocket<String, String>, moshi: Moshi) :
-    ExchangeRateStream {
+class ExchangeWebSocket(
+    underlyingSocket: WebSocket<String, String>,
+    moshi: Moshi,
+    private val channelAware: ChannelAwareWebSocket = underlyingSocket.channelAware(),
+    messageScheduler: Scheduler = Schedulers.computation()
+) : ExchangeRateStream {
 
-    private val ratesSocket = underlyingSocket
-        .channelMessageFilter(ChannelNameExchangeRate, throwErrors = false)
+    private val ratesSocket = channelAware
+        .channel(ChannelNameExchangeRate, throwErrors = false)
+        .conflateOn(messageScheduler)
         .toJsonReceive<ExchangeRateJson>(moshi)
 
-    private val channelAware = underlyingSocket.channelAware()
-
     override fun updateQuoteRequest(quoteRequest: ExchangeQuoteRequest) {
         updateExchangeRatesParameters(quoteRequest.mapToExchangeRateSocketParameters())
     }
@@ -1,25 +1,42 @@
 package com.blockchain.swap.homebrew
 
+import com.blockchain.logging.Logger
+import com.blockchain.logging.NullLogger
 import com.blockchain.swap.common.quote.ExchangeQuoteRequest
+import com.blockchain.network.websocket.ChannelAwareWebSocket
 import com.blockchain.network.websocket.WebSocket
-import com.blockchain.network.websocket.toJsonSocket
+import com.blockchain.network.websocket.conflateOn
+import com.blockchain.network.websocket.toJsonReceive
 import com.squareup.moshi.Moshi
 import io.reactivex.Observable
+import io.reactivex.Scheduler
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
 
 import com.blockchain.swap.nabu.service.Quote
 import com.blockchain.swap.common.exchange.service.ExchangeRateStream
 import com.blockchain.swap.common.exchange.service.QuoteService
 import com.blockchain.swap.common.exchange.service.QuoteStream
 import com.blockchain.network.websocket.ConnectionEvent
+import com.blockchain.network.websocket.ConnectionStats
 import com.blockchain.network.websocket.WebSocketChannel
 import com.blockchain.network.websocket.channelAware
 import com.blockchain.network.websocket.openAsDisposable
 
-class QuoteWebSocketStream(underlyingSocket: WebSocket<String, String>, moshi: Moshi) :
-    QuoteStream {
+private const val ChannelNameConversion = "conversion"
 
-    private val socket = underlyingSocket.toJsonSocket<String, QuoteMessageJson>(moshi)
-    private val channelAware = underlyingSocket.channelAware()
+class QuoteWebSocketStream(
+    underlyingSocket: WebSocket<String, String>,
+    moshi: Moshi,
+    private val channelAware: ChannelAwareWebSocket = underlyingSocket.channelAware(),
+    messageScheduler: Scheduler = Schedulers.computation()
+) : QuoteStream {
+
+    private val socket = channelAware
+        .channel(ChannelNameConversion, throwErrors = false)
+        .conflateOn(messageScheduler)
+        .toJsonReceive<QuoteMessageJson>(moshi)
 
     override fun updateQuoteRequest(quoteRequest: ExchangeQuoteRequest) {
         updateSocketParameters(quoteRequest.mapToSocketParameters())
@@ -44,21 +61,29 @@ class QuoteWebSocketStream(underlyingSocket: WebSocket<String, String>, moshi: M
                 "conversionPair"
             )
         ) }
-        conversionChannel = channelAware.openChannel("conversion", newSocketParameters)
+        conversionChannel = channelAware.openChannel(ChannelNameConversion, newSocketParameters)
     }
 }
 
 class QuoteWebSocket(
     private val underlyingSocket: WebSocket<String, String>,
     moshi: Moshi,
+    messageScheduler: Scheduler = Schedulers.computation(),
+    channelAware: ChannelAwareWebSocket = underlyingSocket.channelAware(),
     private val quoteWebSocketStream: QuoteStream = QuoteWebSocketStream(
         underlyingSocket,
-        moshi
+        moshi,
+        channelAware,
+        messageScheduler
     ),
     private val exchangeRateStream: ExchangeRateStream = ExchangeWebSocket(
         underlyingSocket,
-        moshi
-    )
+        moshi,
+        channelAware,
+        messageScheduler
+    ),
+    private val connectionStats: ConnectionStats = ConnectionStats(),
+    private val logger: Logger = NullLogger
 ) : QuoteService,
     QuoteStream by quoteWebSocketStream,
     ExchangeRateStream by exchangeRateStream {
@@ -78,5 +103,8 @@ class QuoteWebSocket(
             }
         }
 
-    override fun openAsDisposable() = underlyingSocket.openAsDisposable()
+    override fun openAsDisposable(): Disposable = CompositeDisposable(
+        connectionStats.connectionChanges.subscribe { logger.d("Quote socket connections: $it") },
+        underlyingSocket.openAsDisposable()
+    )
 }
@@ -1,13 +1,18 @@
 package com.blockchain.swap.homebrew
 
+import com.blockchain.logging.Logger
 import com.blockchain.swap.common.exchange.service.QuoteService
 import com.blockchain.swap.common.exchange.service.QuoteServiceFactory
 import com.blockchain.swap.nabu.Authenticator
+import com.blockchain.network.websocket.ChannelSubscriptions
+import com.blockchain.network.websocket.ConnectionEvent
+import com.blockchain.network.websocket.ConnectionStats
 import com.blockchain.network.websocket.Options
 import com.blockchain.network.websocket.autoRetry
 import com.blockchain.network.websocket.bufferUntilAuthenticated
 import com.blockchain.network.websocket.debugLog
 import com.blockchain.network.websocket.newBlockchainWebSocket
+import com.blockchain.network.websocket.replaySubscriptions
 import com.squareup.moshi.Moshi
 import okhttp3.OkHttpClient
 
@@ -15,16 +20,19 @@ internal class QuoteWebSocketServiceFactory(
     private val nabuWebSocketOptions: Options,
     private val auth: Authenticator,
     private val moshi: Moshi,
-    private val okHttpClient: OkHttpClient
+    private val okHttpClient: OkHttpClient,
+    private val logger: Logger
 ) : QuoteServiceFactory {
 
     override fun createQuoteService(): QuoteService {
+        val stats = ConnectionStats()
         val socket = okHttpClient.newBlockchainWebSocket(nabuWebSocketOptions)
             .debugLog("Quotes")
-            .autoRetry()
+            .autoRetry(stats = stats)
             .authenticate(auth)
             .bufferUntilAuthenticated(limit = 10)
+            .replaySubscriptions(ChannelSubscriptions(), readyEvent = ConnectionEvent.Authenticated)
 
-        return QuoteWebSocket(socket, moshi)
+        return QuoteWebSocket(socket, moshi, connectionStats = stats, logger = logger)
     }
 }
@@ -18,6 +18,7 @@ val swapModule = applicationContext {
                 get("nabu"),
                 get(),
                 get(),
+                get(),
                 get()
             ) as QuoteServiceFactory
         }
@@ -15,6 +15,7 @@ import com.nhaarman.mockito_kotlin.verify
 import com.nhaarman.mockito_kotlin.verifyNoMoreInteractions
 import info.blockchain.balance.CryptoCurrency
 import info.blockchain.balance.ExchangeRate
+import io.reactivex.schedulers.Schedulers
 import io.reactivex.subjects.PublishSubject
 import org.amshove.kluent.`it returns`
 import org.amshove.kluent.`should be instance of`
@@ -183,6 +184,7 @@ class ExchangeRateWebSocketTest : AutoCloseKoinTest() {
         QuoteWebSocket(
             actualSocket,
             get(),
+            messageScheduler = Schedulers.trampoline(),
             quoteWebSocketStream = mock()
         )
 }
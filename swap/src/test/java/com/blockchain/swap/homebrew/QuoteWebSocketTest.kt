@@ -18,6 +18,7 @@ import com.nhaarman.mockito_kotlin.verify
 import com.nhaarman.mockito_kotlin.verifyNoMoreInteractions
 import info.blockchain.balance.CryptoCurrency
 import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
 import io.reactivex.subjects.PublishSubject
 import org.amshove.kluent.`it returns`
 import org.amshove.kluent.`should equal`
@@ -239,6 +240,7 @@ class QuoteWebSocketTest : AutoCloseKoinTest() {
         QuoteWebSocket(
             actualSocket,
             get(),
+            messageScheduler = Schedulers.trampoline(),
             exchangeRateStream = mock()
         )
 }
@@ -0,0 +1,90 @@
+package info.blockchain.wallet.bip44;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.params.BitcoinMainNetParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derives a run of receive addresses the way {@link info.blockchain.wallet.util.Tools} used to, one
+ * {@link HDAddress} at a time, against {@link HDChain#getAddressRange(int, int)} on a fresh chain
+ * (cold) and on a chain which already holds the keys (cached).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HDChainBenchmark {
+
+    private static final String SEED = "15e23aa73d25994f1921a1256f93f72c";
+
+    @Param({"1000", "10000"})
+    public int addressCount;
+
+    private NetworkParameters params;
+    private DeterministicKey accountKey;
+    private DeterministicKey chainKey;
+    private HDChain cachedChain;
+
+    @Setup
+    public void setUp() {
+        params = BitcoinMainNetParams.get();
+        accountKey = HDKeyDerivation.createMasterPrivateKey(SEED.getBytes());
+        chainKey = HDKeyDerivation.deriveChildKey(accountKey, HDChain.RECEIVE_CHAIN);
+        cachedChain = new HDChain(params, accountKey, true, addressCount);
+        cachedChain.getAddressRange(0, addressCount);
+    }
+
+    @Benchmark
+    public List<String> legacyAddressAt() {
+        List<String> addresses = new ArrayList<>(addressCount);
+        for (int i = 0; i < addressCount; i++) {
+            addresses.add(new HDAddress(params, chainKey, i).getAddressBase58());
+        }
+        return addresses;
+    }
+
+    @Benchmark
+    public List<String> coldAddressRange() {
+        return toStrings(new HDChain(params, accountKey, true, addressCount).getAddressRange(0, addressCount));
+    }
+
+    @Benchmark
+    public List<String> cachedAddressRange() {
+        return toStrings(cachedChain.getAddressRange(0, addressCount));
+    }
+
+    @Benchmark
+    public List<String> cachedAddressAt() {
+        List<String> addresses = new ArrayList<>(addressCount);
+        for (int i = 0; i < addressCount; i++) {
+            addresses.add(cachedChain.getAddressAt(i).getAddressBase58());
+        }
+        return addresses;
+    }
+
+    private static List<String> toStrings(List<HDAddress> range) {
+        List<String> addresses = new ArrayList<>(range.size());
+        for (HDAddress address : range) {
+            addresses.add(address.getAddressBase58());
+        }
+        return addresses;
+    }
+}
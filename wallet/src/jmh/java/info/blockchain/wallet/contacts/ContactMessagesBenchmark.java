@@ -0,0 +1,172 @@
+package info.blockchain.wallet.contacts;
+
+import info.blockchain.wallet.BlockchainFramework;
+import info.blockchain.wallet.FrameworkInterface;
+import info.blockchain.wallet.api.Environment;
+import info.blockchain.wallet.contacts.data.Contact;
+import info.blockchain.wallet.crypto.AESUtil;
+import info.blockchain.wallet.metadata.Metadata;
+import info.blockchain.wallet.metadata.SharedMetadata;
+import info.blockchain.wallet.metadata.data.Message;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.params.BitcoinCashMainNetParams;
+import org.bitcoinj.params.BitcoinMainNetParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Retrofit;
+
+/**
+ * Decrypts 500 messages from 50 contacts with {@link Contacts#decryptMessages(List)}, with the shared
+ * keys derived afresh (cold) and already known (warm), against the way each message was decrypted before:
+ * one at a time, scanning the contacts for the sender and deriving the shared key for every message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactMessagesBenchmark {
+
+    private static final String SEED = "15e23aa73d25994f1921a1256f93f72c";
+    private static final int CONTACT_COUNT = 50;
+    private static final int MESSAGE_COUNT = 500;
+
+    private SharedMetadata mine;
+    private Contacts contacts;
+    private String[] senders;
+    private String[] payloads;
+
+    @Setup
+    public void setUp() throws Exception {
+        BlockchainFramework.init(new BenchmarkFramework());
+
+        DeterministicKey masterKey = HDKeyDerivation.createMasterPrivateKey(SEED.getBytes());
+        mine = new SharedMetadata.Builder(HDKeyDerivation.deriveChildKey(masterKey, 0)).build();
+        contacts = new Contacts(
+            new Metadata.Builder(HDKeyDerivation.deriveChildKey(masterKey, 1),
+                Metadata.METADATA_TYPE_EXTERNAL_CONTACTS).buildWithoutFetch(),
+            mine);
+
+        SharedMetadata[] contactKeys = new SharedMetadata[CONTACT_COUNT];
+        for (int i = 0; i < CONTACT_COUNT; i++) {
+            contactKeys[i] = new SharedMetadata.Builder(HDKeyDerivation.deriveChildKey(masterKey, 100 + i))
+                .build();
+            Contact contact = new Contact();
+            contact.setMdid(contactKeys[i].getAddress());
+            contact.setXpub(contactKeys[i].getXpub());
+            contacts.getContactList().put(contact.getId(), contact);
+        }
+
+        senders = new String[MESSAGE_COUNT];
+        payloads = new String[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            SharedMetadata sender = contactKeys[i % CONTACT_COUNT];
+            senders[i] = sender.getAddress();
+            payloads[i] = sender.encryptFor(mine.getXpub(),
+                "{\"id\":\"" + i + "\",\"intended_amount\":17940000,\"note\":\"For the pizza\"}");
+        }
+    }
+
+    @Benchmark
+    public List<Message> legacySequential() throws Exception {
+        List<Message> messages = messages();
+        NetworkParameters params = BitcoinMainNetParams.get();
+        for (Message message : messages) {
+            Contact sender = null;
+            for (Contact contact : contacts.getContactList().values()) {
+                if (message.getSender().equals(contact.getMdid())) {
+                    sender = contact;
+                    break;
+                }
+            }
+            DeterministicKey otherKey = DeterministicKey.deserializeB58(null, sender.getXpub(), params);
+            byte[] sharedSecret = otherKey.getPubKeyPoint().multiply(mine.getNode().getPrivKey()).getEncoded();
+            message.setPayload(AESUtil.decryptWithKey(Sha256Hash.hash(sharedSecret), message.getPayload()));
+        }
+        return messages;
+    }
+
+    @Benchmark
+    public List<Message> decryptMessagesCold() {
+        mine.clearSharedKeys();
+        return contacts.decryptMessages(messages());
+    }
+
+    @Benchmark
+    public List<Message> decryptMessagesWarm() {
+        return contacts.decryptMessages(messages());
+    }
+
+    private List<Message> messages() {
+        List<Message> messages = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            Message message = new Message();
+            message.setId(String.valueOf(i));
+            message.setSender(senders[i]);
+            message.setPayload(payloads[i]);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static class BenchmarkFramework implements FrameworkInterface {
+
+        @Override
+        public Retrofit getRetrofitApiInstance() {
+            return null;
+        }
+
+        @Override
+        public Retrofit getRetrofitExplorerInstance() {
+            return null;
+        }
+
+        @Override
+        public Environment getEnvironment() {
+            return Environment.PRODUCTION;
+        }
+
+        @Override
+        public NetworkParameters getBitcoinParams() {
+            return BitcoinMainNetParams.get();
+        }
+
+        @Override
+        public NetworkParameters getBitcoinCashParams() {
+            return BitcoinCashMainNetParams.get();
+        }
+
+        @Override
+        public String getDevice() {
+            return null;
+        }
+
+        @Override
+        public String getAppVersion() {
+            return null;
+        }
+
+        @Override
+        public String getApiCode() {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package info.blockchain.wallet.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derives an AES key with each {@link KeyDerivation.Backend}, for the PIN (5000) and QR code
+ * (10) iteration counts, and decrypts a payload with the key cache disabled and enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyDerivationBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10", "5000"})
+    public int iterations;
+
+    private byte[] salt;
+    private String ciphertext;
+
+    @Setup
+    public void setUp() throws Exception {
+        salt = new byte[AESUtil.IV_LENGTH];
+        for (int i = 0; i < salt.length; i++) {
+            salt[i] = (byte) i;
+        }
+        ciphertext = AESUtil.encrypt("{\"guid\":\"a09910d9-1906-4ea1-a956-2508c3fe0661\"}", PASSWORD,
+            iterations);
+    }
+
+    @TearDown
+    public void tearDown() {
+        KeyDerivation.setCacheEnabled(false);
+    }
+
+    @Benchmark
+    public byte[] spongyCastle() {
+        return KeyDerivation.Backend.SPONGY_CASTLE.derive(PASSWORD, salt, iterations, 256);
+    }
+
+    @Benchmark
+    public byte[] jca() {
+        return KeyDerivation.Backend.JCA.derive(PASSWORD, salt, iterations, 256);
+    }
+
+    @Benchmark
+    public String decryptUncached() throws Exception {
+        KeyDerivation.setCacheEnabled(false);
+        return AESUtil.decrypt(ciphertext, PASSWORD, iterations);
+    }
+
+    @Benchmark
+    public String decryptCached() throws Exception {
+        KeyDerivation.setCacheEnabled(true);
+        return AESUtil.decrypt(ciphertext, PASSWORD, iterations);
+    }
+}
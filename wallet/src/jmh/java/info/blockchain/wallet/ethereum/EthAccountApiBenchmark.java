@@ -0,0 +1,129 @@
+package info.blockchain.wallet.ethereum;
+
+import info.blockchain.wallet.ApiCode;
+import info.blockchain.wallet.BlockchainFramework;
+import info.blockchain.wallet.FrameworkInterface;
+import info.blockchain.wallet.api.EndpointRegistry;
+import info.blockchain.wallet.api.Environment;
+import info.blockchain.wallet.ethereum.data.EthAddressResponseMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.BitcoinCashMainNetParams;
+import org.bitcoinj.params.BitcoinMainNetParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+/**
+ * Builds the {@link Observable} for {@link EthAccountApi#getEthAddress(List)}, without subscribing to
+ * it, with the endpoints taken from the {@link EndpointRegistry} against the way they were obtained
+ * before: a new {@link Retrofit#create(Class)} proxy for every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EthAccountApiBenchmark {
+
+    private static final List<String> ADDRESSES = Arrays.asList(
+            "0x879dbfde84b0464efe0b2a7f9eb36f6f3d4d7b3b",
+            "0xf85608f8fe3887dab333ec250a972c1dc19c6327"
+    );
+
+    private Retrofit retrofit;
+    private EthAccountApi accountApi;
+
+    @Setup
+    public void setUp() {
+        retrofit = new Retrofit.Builder()
+                .baseUrl("https://api.blockchain.info/")
+                .addConverterFactory(JacksonConverterFactory.create())
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .build();
+        BlockchainFramework.init(new BenchmarkFramework(retrofit));
+        accountApi = new EthAccountApi(new ApiCode() {
+            @Override
+            public String getApiCode() {
+                return "";
+            }
+        }, new EndpointRegistry());
+    }
+
+    @Benchmark
+    public Observable<EthAddressResponseMap> newProxyPerCall() {
+        return retrofit.create(EthEndpoints.class).getEthAccount(StringUtils.join(ADDRESSES, ","));
+    }
+
+    @Benchmark
+    public Observable<EthAddressResponseMap> registry() {
+        return accountApi.getEthAddress(ADDRESSES);
+    }
+
+    private static class BenchmarkFramework implements FrameworkInterface {
+
+        private final Retrofit retrofit;
+
+        BenchmarkFramework(Retrofit retrofit) {
+            this.retrofit = retrofit;
+        }
+
+        @Override
+        public Retrofit getRetrofitApiInstance() {
+            return retrofit;
+        }
+
+        @Override
+        public Retrofit getRetrofitExplorerInstance() {
+            return retrofit;
+        }
+
+        @Override
+        public Environment getEnvironment() {
+            return Environment.PRODUCTION;
+        }
+
+        @Override
+        public NetworkParameters getBitcoinParams() {
+            return BitcoinMainNetParams.get();
+        }
+
+        @Override
+        public NetworkParameters getBitcoinCashParams() {
+            return BitcoinCashMainNetParams.get();
+        }
+
+        @Override
+        public String getDevice() {
+            return null;
+        }
+
+        @Override
+        public String getAppVersion() {
+            return null;
+        }
+
+        @Override
+        public String getApiCode() {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package info.blockchain.wallet.payload.data;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.blockchain.wallet.bip44.HDAccount;
+import info.blockchain.wallet.bip44.HDWalletFactory;
+import info.blockchain.wallet.bip44.HDWalletFactory.Language;
+import info.blockchain.wallet.util.JsonMappers;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.BitcoinMainNetParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes and encodes a wallet body of about 1 MB, holding 5000 legacy addresses and an HD
+ * wallet with 200 accounts, with a new ObjectMapper per call and the HD wallets re-encoded
+ * during decoding (legacy), against the shared {@link JsonMappers} readers and writers.
+ *
+ * The decode benchmarks include restoring the HD wallet, which both paths do once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletJsonBenchmark {
+
+    private static final String SEED = "0660cc198330660cc198330660cc1983";
+    private static final int LEGACY_ADDRESSES = 5000;
+    private static final int ACCOUNTS = 200;
+
+    private NetworkParameters params;
+    private String json;
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() throws Exception {
+        params = BitcoinMainNetParams.get();
+        json = createWalletJson();
+        wallet = Wallet.fromJson(params, json);
+    }
+
+    @Benchmark
+    public Wallet legacyDecode() throws Exception {
+        Wallet decoded = legacyMapper().readValue(json, Wallet.class);
+        List<HDWallet> hdWallets = new ArrayList<>();
+        for (HDWallet hdWallet : decoded.getHdWallets()) {
+            HDWallet copy = legacyMapper().readValue(new ObjectMapper().writeValueAsString(hdWallet),
+                HDWallet.class);
+            copy.instantiateBip44Wallet(params);
+            hdWallets.add(copy);
+        }
+        decoded.setHdWallets(hdWallets);
+        return decoded;
+    }
+
+    @Benchmark
+    public Wallet decode() throws Exception {
+        return Wallet.fromJson(params, json);
+    }
+
+    @Benchmark
+    public Wallet legacyDecodeBodyOnly() throws Exception {
+        return legacyMapper().readValue(json, Wallet.class);
+    }
+
+    @Benchmark
+    public Wallet decodeBodyOnly() throws Exception {
+        return JsonMappers.fieldReader(Wallet.class).readValue(json);
+    }
+
+    @Benchmark
+    public String legacyEncode() throws Exception {
+        return new ObjectMapper().writeValueAsString(wallet);
+    }
+
+    @Benchmark
+    public String encode() throws Exception {
+        return wallet.toJson();
+    }
+
+    private static ObjectMapper legacyMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
+            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+        return mapper;
+    }
+
+    private String createWalletJson() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"guid\":\"a09910d9-1906-4ea1-a956-2508c3fe0661\",")
+            .append("\"sharedKey\":\"d14f3d2c-f883-40da-87e2-c8448521ee64\",")
+            .append("\"double_encryption\":false,")
+            .append("\"options\":{\"pbkdf2_iterations\":5000,\"fee_per_kb\":10000,")
+            .append("\"html5_notifications\":false,\"logout_time\":600000},");
+
+        sb.append("\"keys\":[");
+        for (int i = 0; i < LEGACY_ADDRESSES; i++) {
+            ECKey key = ECKey.fromPrivate(BigInteger.valueOf(i + 2), true);
+            sb.append(i == 0 ? "" : ",")
+                .append("{\"addr\":\"").append(key.toAddress(params).toBase58())
+                .append("\",\"priv\":\"").append(key.getPrivateKeyAsHex())
+                .append("\",\"tag\":0,\"label\":\"Imported address ").append(i)
+                .append("\",\"created_time\":1485365411000,\"created_device_name\":\"android\",")
+                .append("\"created_device_version\":\"6.3.1\"}");
+        }
+        sb.append("],");
+
+        info.blockchain.wallet.bip44.HDWallet bip44Wallet =
+            HDWalletFactory.restoreWallet(params, Language.US, SEED, "", ACCOUNTS);
+        sb.append("\"hd_wallets\":[{\"seed_hex\":\"").append(SEED)
+            .append("\",\"passphrase\":\"\",\"mnemonic_verified\":true,\"default_account_idx\":0,")
+            .append("\"accounts\":[");
+        List<HDAccount> accounts = bip44Wallet.getAccounts();
+        for (int i = 0; i < accounts.size(); i++) {
+            HDAccount account = accounts.get(i);
+            sb.append(i == 0 ? "" : ",")
+                .append("{\"label\":\"Account ").append(i)
+                .append("\",\"archived\":false,\"xpriv\":\"").append(account.getXPriv())
+                .append("\",\"xpub\":\"").append(account.getXpub())
+                .append("\",\"address_labels\":[{\"index\":0,\"label\":\"Label\"}],")
+                .append("\"cache\":{\"receiveAccount\":\"").append(account.getReceive().getPath())
+                .append("\",\"changeAccount\":\"").append(account.getChange().getPath()).append("\"}}");
+        }
+        sb.append("]}],\"address_book\":[]}");
+        return sb.toString();
+    }
+}
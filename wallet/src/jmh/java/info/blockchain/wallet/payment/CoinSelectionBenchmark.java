@@ -0,0 +1,85 @@
+package info.blockchain.wallet.payment;
+
+import info.blockchain.api.data.UnspentOutput;
+import info.blockchain.api.data.UnspentOutputs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AccumulatingCoinSelection} against {@link CoinSelection} and the legacy
+ * {@link Coins#getMinimumCoinsForPayment} path for wallets made of many small coins.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoinSelectionBenchmark {
+
+    private static final String P2PKH_SCRIPT = "76a91469dec09e9b32ffd447c80d413d58f0413e99208e88ac";
+    private static final BigInteger FEE_PER_BYTE = BigInteger.valueOf(20);
+    private static final BigInteger FEE_PER_KB = BigInteger.valueOf(20000);
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int coinCount;
+
+    private List<UnspentOutput> coins;
+    private BigInteger paymentAmount;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        coins = new ArrayList<>(coinCount);
+        BigInteger total = BigInteger.ZERO;
+        for (int i = 0; i < coinCount; i++) {
+            UnspentOutput coin = new UnspentOutput();
+            coin.setValue(BigInteger.valueOf(5000 + random.nextInt(100000)));
+            coin.setScript(P2PKH_SCRIPT);
+            coins.add(coin);
+            total = total.add(coin.getValue());
+        }
+        // Spend roughly half of the wallet so the selection has to walk a large share of the coins
+        paymentAmount = total.divide(BigInteger.valueOf(2));
+    }
+
+    @Benchmark
+    public SpendableUnspentOutputs coinSelection() {
+        return new CoinSelection(coins, FEE_PER_BYTE).select(paymentAmount, AscentDraw.INSTANCE);
+    }
+
+    @Benchmark
+    public SpendableUnspentOutputs accumulatingCoinSelection() {
+        return new AccumulatingCoinSelection(coins, FEE_PER_BYTE).select(paymentAmount, AscentDraw.INSTANCE);
+    }
+
+    @Benchmark
+    public SpendableUnspentOutputs accumulatingCoinSelectionBranchAndBound() {
+        return new AccumulatingCoinSelection(coins, FEE_PER_BYTE)
+                .select(paymentAmount, new BranchAndBound(AscentDraw.INSTANCE));
+    }
+
+    @Benchmark
+    public SpendableUnspentOutputs legacyMinimumCoinsForPayment() {
+        // The legacy path sorts the list in place, so give it its own copy
+        UnspentOutputs unspentOutputs = new UnspentOutputs();
+        unspentOutputs.setUnspentOutputs(new ArrayList<>(coins));
+        return Coins.getMinimumCoinsForPayment(unspentOutputs, paymentAmount, FEE_PER_KB, false, false);
+    }
+}
@@ -0,0 +1,90 @@
+package info.blockchain.wallet.payment;
+
+import info.blockchain.api.data.UnspentOutput;
+import info.blockchain.api.data.UnspentOutputs;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The legacy {@link Coins} selection ({@code useNewCoinSelection = false}) for wallets of 1k to
+ * 50k coins, with and without replay protection. Half of the coins are replayable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LegacyCoinsBenchmark {
+
+    private static final String P2PKH_SCRIPT = "76a91469dec09e9b32ffd447c80d413d58f0413e99208e88ac";
+    private static final BigInteger FEE_PER_KB = BigInteger.valueOf(20000);
+
+    @Param({"1000", "10000", "50000"})
+    public int coinCount;
+
+    @Param({"false", "true"})
+    public boolean replayProtection;
+
+    private List<UnspentOutput> coins;
+    private BigInteger paymentAmount;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        coins = new ArrayList<>(coinCount);
+        BigInteger total = BigInteger.ZERO;
+        for (int i = 0; i < coinCount; i++) {
+            UnspentOutput coin = new UnspentOutput();
+            coin.setValue(BigInteger.valueOf(5000 + random.nextInt(100000)));
+            coin.setScript(P2PKH_SCRIPT);
+            coin.setReplayable(random.nextBoolean());
+            coins.add(coin);
+            total = total.add(coin.getValue());
+        }
+        // Spend roughly half of the wallet so the selection has to walk a large share of the coins
+        paymentAmount = total.divide(BigInteger.valueOf(2));
+    }
+
+    @Benchmark
+    public SpendableUnspentOutputs minimumCoinsForPayment() {
+        return Coins.getMinimumCoinsForPayment(copy(), paymentAmount, FEE_PER_KB, replayProtection, false);
+    }
+
+    @Benchmark
+    public Pair<BigInteger, BigInteger> maximumAvailable() {
+        return Coins.getMaximumAvailable(copy(), FEE_PER_KB, replayProtection, false);
+    }
+
+    private UnspentOutputs copy() {
+        // Earlier versions sorted the list and flagged a coin in place, so every call gets fresh
+        // coins to keep the runs comparable
+        List<UnspentOutput> copy = new ArrayList<>(coins.size());
+        for (UnspentOutput coin : coins) {
+            UnspentOutput clone = new UnspentOutput();
+            clone.setValue(coin.getValue());
+            clone.setScript(coin.getScript());
+            clone.setReplayable(coin.isReplayable());
+            copy.add(clone);
+        }
+        UnspentOutputs unspentOutputs = new UnspentOutputs();
+        unspentOutputs.setUnspentOutputs(new ArrayList<>(copy));
+        return unspentOutputs;
+    }
+}
@@ -1,8 +1,10 @@
 package com.blockchain.koin
 
+import info.blockchain.wallet.api.EndpointRegistry
 import info.blockchain.wallet.api.dust.BchDustService
 import info.blockchain.wallet.api.dust.DustApi
 import info.blockchain.wallet.api.dust.DustService
+import info.blockchain.wallet.crypto.KeyDerivation
 import info.blockchain.wallet.multiaddress.MultiAddressFactory
 import info.blockchain.wallet.payload.BalanceManagerBch
 import info.blockchain.wallet.payload.BalanceManagerBtc
@@ -15,7 +17,6 @@ import info.blockchain.wallet.prices.toCachedIndicativeFiatPriceService
 import org.koin.KoinContext
 import org.koin.dsl.module.applicationContext
 import org.koin.standalone.StandAloneContext
-import retrofit2.Retrofit
 
 val walletModule = applicationContext {
 
@@ -30,20 +31,23 @@ val walletModule = applicationContext {
         factory { BalanceManagerBch(get()) }
     }
 
+    bean { EndpointRegistry.getInstance() }
+
     factory { PriceApi(get(), get()) }
 
-    bean { get<Retrofit>("api").create(PriceEndpoints::class.java) }
+    bean { get<EndpointRegistry>().get(get("api"), PriceEndpoints::class.java) }
 
     factory { get<PriceApi>() as CurrentPriceApi }
 
     factory { get<CurrentPriceApi>().toCachedIndicativeFiatPriceService() }
 
-    factory { BchDustService(get<Retrofit>("kotlin-api").create(DustApi::class.java), get()) as DustService }
+    factory { BchDustService(get<EndpointRegistry>().get(get("kotlin-api"), DustApi::class.java), get()) as DustService }
 
     bean {
         object : PayloadManagerWiper {
             override fun wipe() {
                 (StandAloneContext.koinContext as KoinContext).releaseContext("Payload")
+                KeyDerivation.wipeCache()
             }
         } as PayloadManagerWiper
     }
@@ -2,6 +2,7 @@ package info.blockchain.wallet
 
 import info.blockchain.api.blockexplorer.BlockExplorer
 import info.blockchain.api.data.UnspentOutput
+import info.blockchain.wallet.bip44.SigningKeyProvider
 import info.blockchain.wallet.crypto.DeterministicAccount
 import info.blockchain.wallet.crypto.DeterministicWallet
 import info.blockchain.wallet.exceptions.HDWalletException
@@ -10,13 +11,13 @@ import info.blockchain.wallet.multiaddress.TransactionSummary
 import info.blockchain.wallet.payload.BalanceManagerBch
 import info.blockchain.wallet.payload.data.LegacyAddress
 import io.reactivex.Completable
+import io.reactivex.Single
 import io.reactivex.schedulers.Schedulers
 import org.bitcoinj.core.ECKey
 import org.bitcoinj.core.NetworkParameters
 import org.bitcoinj.params.BitcoinCashTestNet3Params
 import org.slf4j.LoggerFactory
 import java.math.BigInteger
-import java.util.ArrayList
 
 @Suppress("unused")
 open class BitcoinCashWallet : DeterministicWallet {
@@ -83,6 +84,31 @@ open class BitcoinCashWallet : DeterministicWallet {
             }.subscribeOn(Schedulers.io())
         }
 
+    /**
+     * Applies the balance changes of a transaction pushed over the websocket ahead of the next
+     * [reconcileBalances].
+     *
+     * @param delta Signed amounts keyed by address or xPub
+     */
+    fun applyTransactionDelta(delta: Map<String, BigInteger>) =
+        balanceManager.applyTransactionDelta(delta)
+
+    /**
+     * Fetches all balances like [updateAllBalances] and emits whether they match the balances the
+     * applied transaction deltas led to.
+     */
+    fun reconcileBalances(
+        allAccountsAndAddresses: Set<String>,
+        legacyAddressList: Set<String>
+    ): Single<Boolean> =
+        if (isTestnet()) {
+            Single.just(true)
+        } else {
+            Single.fromCallable {
+                balanceManager.reconcileBalances(allAccountsAndAddresses, legacyAddressList, emptySet())
+            }.subscribeOn(Schedulers.io())
+        }
+
     fun getAddressBalance(address: String): BigInteger =
         balanceManager.getAddressBalance(address)
 
@@ -282,21 +308,11 @@ open class BitcoinCashWallet : DeterministicWallet {
         if (!account.node.hasPrivKey())
             throw HDWalletException("Wallet private key unavailable. First decrypt with second password.")
         else {
-            val keys = ArrayList<ECKey>()
-
-            for (unspentOutput in unspentOutputs) {
-                if (unspentOutput.xpub != null) {
-                    val split =
-                        unspentOutput.xpub.path.split("/".toRegex()).dropLastWhile { it.isEmpty() }
-                            .toTypedArray()
-                    val chain = Integer.parseInt(split[1])
-                    val addressIndex = Integer.parseInt(split[2])
-                    val address = account.chains[chain]!!.getAddressAt(addressIndex)
-                    keys.add(address.ecKey)
-                }
+            return SigningKeyProvider.getKeys(unspentOutputs) { chain, index ->
+                val chainKey = account.chains.getOrNull(chain)?.node
+                    ?: throw HDWalletException("Invalid chain $chain")
+                SigningKeyProvider.deriveSigningKey(chainKey, index)
             }
-
-            return keys
         }
     }
 
@@ -17,6 +17,10 @@ public final class BlockchainFramework {
         blockchainInterface = frameworkInterface;
     }
 
+    public static FrameworkInterface getFrameworkInterface() {
+        return blockchainInterface;
+    }
+
     @Deprecated
     public static Retrofit getRetrofitApiInstance() {
         return blockchainInterface.getRetrofitApiInstance();
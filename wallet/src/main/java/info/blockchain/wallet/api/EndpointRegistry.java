@@ -0,0 +1,119 @@
+package info.blockchain.wallet.api;
+
+import info.blockchain.wallet.BlockchainFramework;
+import retrofit2.Retrofit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates each Retrofit service interface once per {@link Retrofit} instance. {@link
+ * Retrofit#create(Class)} builds a new proxy every time, and a new proxy parses each service
+ * method's annotations again on its first call.
+ *
+ * Endpoints are kept for the life of the process, as the app only creates a fixed set of Retrofit
+ * instances and each endpoint holds on to the instance it was created on. Endpoints on the
+ * framework's own instances are dropped when {@link PersistentUrls} reports a different environment,
+ * so they are recreated against the new base urls.
+ */
+public class EndpointRegistry {
+
+    private static EndpointRegistry instance;
+
+    private final Map<Retrofit, ConcurrentMap<Class<?>, Object>> endpoints = new HashMap<>();
+
+    /**
+     * The services of the last instance looked up, read without locking since almost every lookup is
+     * on the same instance
+     */
+    private volatile Services recent;
+
+    private volatile Environment environment;
+
+    public static synchronized EndpointRegistry getInstance() {
+        if (instance == null) {
+            instance = new EndpointRegistry();
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return The implementation of {@code service} on {@code retrofit}, created on first use
+     */
+    public <T> T get(Retrofit retrofit, Class<T> service) {
+        ConcurrentMap<Class<?>, Object> services = servicesOf(retrofit);
+        Object endpoint = services.get(service);
+        if (endpoint == null) {
+            endpoint = retrofit.create(service);
+            Object existing = services.putIfAbsent(service, endpoint);
+            if (existing != null) {
+                endpoint = existing;
+            }
+        }
+        return service.cast(endpoint);
+    }
+
+    /**
+     * @return The implementation of {@code service} on {@link BlockchainFramework#getRetrofitApiInstance()}
+     */
+    public <T> T api(Class<T> service) {
+        invalidateOnEnvironmentChange();
+        return get(BlockchainFramework.getRetrofitApiInstance(), service);
+    }
+
+    /**
+     * @return The implementation of {@code service} on {@link BlockchainFramework#getRetrofitExplorerInstance()}
+     */
+    public <T> T explorer(Class<T> service) {
+        invalidateOnEnvironmentChange();
+        return get(BlockchainFramework.getRetrofitExplorerInstance(), service);
+    }
+
+    public synchronized void clear() {
+        endpoints.clear();
+        recent = null;
+    }
+
+    private ConcurrentMap<Class<?>, Object> servicesOf(Retrofit retrofit) {
+        Services recent = this.recent;
+        if (recent != null && recent.retrofit == retrofit) {
+            return recent.services;
+        }
+
+        synchronized (this) {
+            ConcurrentMap<Class<?>, Object> services = endpoints.get(retrofit);
+            if (services == null) {
+                services = new ConcurrentHashMap<>();
+                endpoints.put(retrofit, services);
+            }
+            this.recent = new Services(retrofit, services);
+            return services;
+        }
+    }
+
+    private void invalidateOnEnvironmentChange() {
+        Environment current = PersistentUrls.getInstance().getCurrentEnvironment();
+        if (current != environment) {
+            synchronized (this) {
+                if (current != environment) {
+                    clear();
+                    environment = current;
+                }
+            }
+        }
+    }
+
+    private static class Services {
+
+        private final Retrofit retrofit;
+        private final ConcurrentMap<Class<?>, Object> services;
+
+        Services(Retrofit retrofit, ConcurrentMap<Class<?>, Object> services) {
+            this.retrofit = retrofit;
+            this.services = services;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package info.blockchain.wallet.bip44;
+
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.crypto.ChildNumber;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDDerivationException;
+import org.spongycastle.crypto.digests.SHA512Digest;
+import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.FixedPointCombMultiplier;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Non-hardened BIP32 child key derivation for many children of the same parent. Gives the same
+ * keys as {@link org.bitcoinj.crypto.HDKeyDerivation#deriveChildKey(DeterministicKey, ChildNumber)},
+ * but sets up the HMAC and parent point once per batch and normalizes all derived points with a
+ * single field inversion rather than one per key.
+ */
+final class ChildKeyDerivation {
+
+    private static final int PUB_KEY_LENGTH = 33;
+
+    private ChildKeyDerivation() {
+        // no instances
+    }
+
+    /**
+     * @return The compressed public keys of the given children of parent, in the same order
+     */
+    static byte[][] derivePublicKeys(DeterministicKey parent, int[] indices) {
+        HMac hmac = createHmac(parent.getChainCode());
+        byte[] data = Arrays.copyOf(parent.getPubKey(), PUB_KEY_LENGTH + 4);
+        ECPoint parentPoint = parent.getPubKeyPoint();
+        FixedPointCombMultiplier multiplier = new FixedPointCombMultiplier();
+
+        ECPoint[] points = new ECPoint[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            BigInteger tweak = deriveTweak(hmac, data, indices[i]);
+            ECPoint point = multiplier.multiply(ECKey.CURVE.getG(), tweak).add(parentPoint);
+            if (point.isInfinity()) {
+                throw new HDDerivationException("Illegal derived key: derived public key equals infinity.");
+            }
+            points[i] = point;
+        }
+        ECKey.CURVE.getCurve().normalizeAll(points);
+
+        byte[][] pubKeys = new byte[indices.length][];
+        for (int i = 0; i < points.length; i++) {
+            pubKeys[i] = points[i].getEncoded(true);
+        }
+        return pubKeys;
+    }
+
+    /**
+     * @return The private key of the given child of parent, which must hold its private key
+     */
+    static BigInteger derivePrivateKey(DeterministicKey parent, int index) {
+        byte[] data = Arrays.copyOf(parent.getPubKey(), PUB_KEY_LENGTH + 4);
+        BigInteger tweak = deriveTweak(createHmac(parent.getChainCode()), data, index);
+
+        BigInteger privKey = parent.getPrivKey().add(tweak).mod(ECKey.CURVE.getN());
+        if (privKey.signum() == 0) {
+            throw new HDDerivationException("Illegal derived key: derived private key equals 0.");
+        }
+        return privKey;
+    }
+
+    private static HMac createHmac(byte[] chainCode) {
+        HMac hmac = new HMac(new SHA512Digest());
+        hmac.init(new KeyParameter(chainCode));
+        return hmac;
+    }
+
+    /**
+     * Computes I_L for the child at index. data holds the parent's public key followed by room for
+     * the index, and the HMAC is left ready for the next child.
+     */
+    private static BigInteger deriveTweak(HMac hmac, byte[] data, int index) {
+        if ((index & ChildNumber.HARDENED_BIT) != 0) {
+            throw new IllegalArgumentException("Hardened index " + index + " can't be derived from a public key");
+        }
+        data[PUB_KEY_LENGTH] = (byte) (index >>> 24);
+        data[PUB_KEY_LENGTH + 1] = (byte) (index >>> 16);
+        data[PUB_KEY_LENGTH + 2] = (byte) (index >>> 8);
+        data[PUB_KEY_LENGTH + 3] = (byte) index;
+
+        byte[] i64 = new byte[64];
+        hmac.update(data, 0, data.length);
+        hmac.doFinal(i64, 0);
+
+        BigInteger tweak = new BigInteger(1, Arrays.copyOfRange(i64, 0, 32));
+        if (tweak.compareTo(ECKey.CURVE.getN()) >= 0) {
+            throw new HDDerivationException("Illegal derived key: I_L >= n");
+        }
+        return tweak;
+    }
+}
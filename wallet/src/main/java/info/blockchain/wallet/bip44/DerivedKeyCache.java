@@ -0,0 +1,45 @@
+package info.blockchain.wallet.bip44;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least recently used cache of the public keys derived from a single chain, keyed by
+ * address index. Private keys are never cached.
+ */
+class DerivedKeyCache {
+
+    static class Entry {
+
+        final byte[] pubKey;
+        final byte[] pubKeyHash;
+
+        Entry(byte[] pubKey, byte[] pubKeyHash) {
+            this.pubKey = pubKey;
+            this.pubKeyHash = pubKeyHash;
+        }
+    }
+
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    DerivedKeyCache(final int maxSize) {
+        entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized Entry get(int index) {
+        return entries.get(index);
+    }
+
+    synchronized void put(int index, Entry entry) {
+        entries.put(index, entry);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
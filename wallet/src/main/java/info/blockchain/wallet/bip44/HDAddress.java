@@ -19,6 +19,8 @@ public class HDAddress {
     private int childNum;
     private String strPath;
     private ECKey ecKey;
+    // Set instead of ecKey when built from cached public keys, the private key is derived on demand
+    private DeterministicKey chainKey;
     private byte[] pubKey;
     private byte[] pubKeyHash;
 
@@ -53,6 +55,23 @@ public class HDAddress {
         strPath = dk.getPathAsString();
     }
 
+    /**
+     * Constructor for an HD address whose public key has already been derived.
+     *
+     * @param params     NetworkParameters
+     * @param cKey       deterministic key for the chain of this address
+     * @param child      index of this address in its chain
+     * @param pubKey     compressed public key of this address
+     * @param pubKeyHash hash160 of pubKey
+     */
+    HDAddress(NetworkParameters params, DeterministicKey cKey, int child, byte[] pubKey, byte[] pubKeyHash) {
+        this.params = params;
+        this.chainKey = cKey;
+        this.childNum = child;
+        this.pubKey = pubKey.clone();
+        this.pubKeyHash = pubKeyHash.clone();
+    }
+
     /**
      * Get pubKey as byte array.
      *
@@ -86,7 +105,7 @@ public class HDAddress {
     }
 
     public String getAddressBase58() {
-        return ecKey.toAddress(params).toBase58();
+        return getAddress().toBase58();
     }
 
     /**
@@ -96,8 +115,13 @@ public class HDAddress {
      */
     public String getPrivateKeyString() {
 
-        if (ecKey.hasPrivKey()) {
+        if (ecKey != null && ecKey.hasPrivKey()) {
             return ecKey.getPrivateKeyEncoded(params).toString();
+        } else if (chainKey != null && chainKey.hasPrivKey()) {
+            BigInteger privKey = ChildKeyDerivation.derivePrivateKey(chainKey, childNum);
+            return ECKey.fromPrivateAndPrecalculatedPublic(Utils.bigIntegerToBytes(privKey, 32), pubKey)
+                .getPrivateKeyEncoded(params)
+                .toString();
         } else {
             return null;
         }
@@ -110,7 +134,7 @@ public class HDAddress {
      * @return org.bitcoinj.core.HDAddress
      */
     public Address getAddress() {
-        return ecKey.toAddress(params);
+        return new Address(params, pubKeyHash);
     }
 
     /**
@@ -120,6 +144,9 @@ public class HDAddress {
      * @return String
      */
     public String getPath() {
+        if (strPath == null) {
+            strPath = chainKey.getPathAsString() + "/" + childNum;
+        }
         return strPath;
     }
 
@@ -1,9 +1,16 @@
 package info.blockchain.wallet.bip44;
 
+import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Utils;
 import org.bitcoinj.crypto.DeterministicKey;
 import org.bitcoinj.crypto.HDKeyDerivation;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * HDChain.java : a chain in a BIP44 wallet account
  */
@@ -22,6 +29,10 @@ public class HDChain {
     public static final int RECEIVE_CHAIN = 0;
     public static final int CHANGE_CHAIN = 1;
 
+    public static final int DEFAULT_KEY_CACHE_SIZE = 1024;
+
+    private final DerivedKeyCache keyCache;
+
     /**
      * Constructor for a chain.
      *
@@ -30,10 +41,23 @@ public class HDChain {
      * @param isReceive this is the receive chain
      */
     public HDChain(NetworkParameters params, DeterministicKey aKey, boolean isReceive) {
+        this(params, aKey, isReceive, DEFAULT_KEY_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor for a chain.
+     *
+     * @param params       NetworkParameters
+     * @param aKey         deterministic key for this chain
+     * @param isReceive    this is the receive chain
+     * @param keyCacheSize maximum number of derived public keys kept for reuse
+     */
+    public HDChain(NetworkParameters params, DeterministicKey aKey, boolean isReceive, int keyCacheSize) {
         this.params = params;
         this.isReceive = isReceive;
         int chain = isReceive ? RECEIVE_CHAIN : CHANGE_CHAIN;
         cKey = HDKeyDerivation.deriveChildKey(aKey, chain);
+        keyCache = new DerivedKeyCache(keyCacheSize);
 
         strPath = cKey.getPathAsString();
     }
@@ -48,12 +72,68 @@ public class HDChain {
     }
 
     /**
-     * Return HDAddress at provided index into chain.
+     * Return HDAddress at provided index into chain. Public keys are cached, the private key is only
+     * derived when asked for.
      *
      * @return HDAddress
      */
     public HDAddress getAddressAt(int addrIdx) {
-        return new HDAddress(params, cKey, addrIdx);
+        return getAddressRange(addrIdx, addrIdx + 1).get(0);
+    }
+
+    /**
+     * Return the HDAddresses from one index up to, but not including, another. Addresses which
+     * aren't cached are derived together, which is much cheaper than one at a time.
+     *
+     * @param fromIdx first index, inclusive
+     * @param toIdx   last index, exclusive
+     * @return List of HDAddress in index order
+     */
+    public List<HDAddress> getAddressRange(int fromIdx, int toIdx) {
+        int count = Math.max(0, toIdx - fromIdx);
+        DerivedKeyCache.Entry[] entries = new DerivedKeyCache.Entry[count];
+
+        int[] missing = new int[count];
+        int missingCount = 0;
+        for (int i = 0; i < count; i++) {
+            entries[i] = keyCache.get(fromIdx + i);
+            if (entries[i] == null) {
+                missing[missingCount++] = fromIdx + i;
+            }
+        }
+
+        if (missingCount > 0) {
+            int[] indices = missingCount == count ? missing : Arrays.copyOf(missing, missingCount);
+            byte[][] pubKeys = ChildKeyDerivation.derivePublicKeys(cKey, indices);
+            for (int i = 0; i < indices.length; i++) {
+                DerivedKeyCache.Entry entry =
+                    new DerivedKeyCache.Entry(pubKeys[i], Utils.sha256hash160(pubKeys[i]));
+                keyCache.put(indices[i], entry);
+                entries[indices[i] - fromIdx] = entry;
+            }
+        }
+
+        List<HDAddress> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            addresses.add(new HDAddress(params, cKey, fromIdx + i, entries[i].pubKey, entries[i].pubKeyHash));
+        }
+        return addresses;
+    }
+
+    /**
+     * Return the signing key of the address at provided index into chain. The private key is
+     * derived straight from the chain key and paired with the cached public key, so no WIF
+     * encoding or point multiplication is needed.
+     *
+     * @return compressed ECKey, or null if this chain holds no private key
+     */
+    public ECKey getSigningKeyAt(int addrIdx) {
+        if (!cKey.hasPrivKey()) {
+            return null;
+        }
+        byte[] pubKey = getAddressAt(addrIdx).getPubKey();
+        BigInteger privKey = ChildKeyDerivation.derivePrivateKey(cKey, addrIdx);
+        return ECKey.fromPrivateAndPrecalculatedPublic(Utils.bigIntegerToBytes(privKey, 32), pubKey);
     }
 
     /**
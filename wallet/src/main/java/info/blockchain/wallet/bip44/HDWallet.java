@@ -149,6 +149,27 @@ public class HDWallet {
         return account;
     }
 
+    /**
+     * Add an account previously derived with {@link #deriveAccount(int)}, which must be the next
+     * account of this wallet.
+     */
+    public void addAccount(HDAccount account) {
+        if (account.getId() != accounts.size()) {
+            throw new IllegalArgumentException("Expected account " + accounts.size() + " but got " + account.getId());
+        }
+        accounts.add(account);
+    }
+
+    /**
+     * Derive the account at the given index without adding it to this wallet. Safe to call from
+     * multiple threads.
+     *
+     * @return HDAccount
+     */
+    public HDAccount deriveAccount(int accountId) {
+        return new HDAccount(params, dkRoot, accountId);
+    }
+
     /**
      * Return BIP44 path for this wallet (m / purpose').
      *
@@ -0,0 +1,141 @@
+package info.blockchain.wallet.bip44;
+
+import info.blockchain.api.data.UnspentOutput;
+import info.blockchain.wallet.exceptions.HDWalletException;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.crypto.DeterministicKey;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the private keys needed to sign a set of HD unspent outputs. The xpub path of each
+ * output ("M/chain/index") is parsed once into a (chain, index) pair, outputs which share an
+ * address only produce one key, and each key is derived straight from its chain key.
+ */
+public final class SigningKeyProvider {
+
+    /**
+     * Source of the signing key for a (chain, index) pair of one account.
+     */
+    public interface KeySource {
+
+        /**
+         * @return the signing key, or null if the account holds no private key
+         */
+        ECKey getSigningKey(int chain, int index) throws HDWalletException;
+    }
+
+    private SigningKeyProvider() {
+        // no instances
+    }
+
+    /**
+     * @return One signing key per distinct HD address spent by unspentOutputs, in the order the
+     * addresses first appear. Outputs without an xpub path are skipped.
+     */
+    public static List<ECKey> getKeys(List<UnspentOutput> unspentOutputs, KeySource source)
+        throws HDWalletException {
+
+        long[] paths = parsePaths(unspentOutputs);
+        List<ECKey> keys = new ArrayList<>(paths.length);
+        for (long path : paths) {
+            int chain = (int) (path >>> 32);
+            int index = (int) path;
+            ECKey key = source.getSigningKey(chain, index);
+            if (key == null) {
+                throw new HDWalletException("No private key for M/" + chain + "/" + index);
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * @return a KeySource reading from the chains of an {@link HDAccount}
+     */
+    public static KeySource forAccount(final HDAccount account) {
+        return new KeySource() {
+            @Override
+            public ECKey getSigningKey(int chain, int index) throws HDWalletException {
+                HDChain hdChain = account.getChain(chain);
+                if (hdChain == null) {
+                    throw new HDWalletException("Invalid chain " + chain);
+                }
+                return hdChain.getSigningKeyAt(index);
+            }
+        };
+    }
+
+    /**
+     * Derive the compressed signing key of a non-hardened child of chainKey.
+     *
+     * @return ECKey, or null if chainKey holds no private key
+     */
+    public static ECKey deriveSigningKey(DeterministicKey chainKey, int index) {
+        if (!chainKey.hasPrivKey()) {
+            return null;
+        }
+        BigInteger privKey = ChildKeyDerivation.derivePrivateKey(chainKey, index);
+        return ECKey.fromPrivate(Utils.bigIntegerToBytes(privKey, 32), true);
+    }
+
+    /**
+     * @return the distinct (chain, index) pairs of unspentOutputs packed as chain << 32 | index
+     */
+    static long[] parsePaths(List<UnspentOutput> unspentOutputs) throws HDWalletException {
+        Set<Long> seen = new LinkedHashSet<>();
+        for (UnspentOutput unspent : unspentOutputs) {
+            if (unspent.getXpub() != null) {
+                seen.add(parsePath(unspent.getXpub().getPath()));
+            }
+        }
+
+        long[] paths = new long[seen.size()];
+        int i = 0;
+        for (Long path : seen) {
+            paths[i++] = path;
+        }
+        return paths;
+    }
+
+    /**
+     * Parse an xpub relative path of the form "M/chain/index".
+     */
+    static long parsePath(String path) throws HDWalletException {
+        int first = path != null ? path.indexOf('/') : -1;
+        int second = first >= 0 ? path.indexOf('/', first + 1) : -1;
+        if (second < 0) {
+            throw new HDWalletException("Invalid xpub path " + path);
+        }
+        int end = path.indexOf('/', second + 1);
+        if (end < 0) {
+            end = path.length();
+        }
+        long chain = parseIndex(path, first + 1, second);
+        long index = parseIndex(path, second + 1, end);
+        return chain << 32 | index;
+    }
+
+    private static long parseIndex(String path, int from, int to) throws HDWalletException {
+        if (from >= to || to - from > 10) {
+            throw new HDWalletException("Invalid xpub path " + path);
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = path.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new HDWalletException("Invalid xpub path " + path);
+            }
+            value = value * 10 + digit;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new HDWalletException("Invalid xpub path " + path);
+        }
+        return value;
+    }
+}
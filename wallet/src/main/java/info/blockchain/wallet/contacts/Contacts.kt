@@ -16,6 +16,9 @@ import info.blockchain.wallet.metadata.Metadata
 import info.blockchain.wallet.metadata.SharedMetadata
 import info.blockchain.wallet.metadata.data.Invitation
 import info.blockchain.wallet.metadata.data.Message
+import io.reactivex.Completable
+import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
 import java.io.IOException
 import java.net.URI
 import java.net.URLDecoder
@@ -29,15 +32,26 @@ import org.spongycastle.util.encoders.Base64
 
 @Suppress("unused")
 class Contacts constructor(
-    metaDataHDNode: DeterministicKey,
-    sharedMetaDataHDNode: DeterministicKey
+    private val metadata: Metadata,
+    private val sharedMetadata: SharedMetadata
 ) {
 
-    private val metadata: Metadata = Metadata.Builder(metaDataHDNode, Metadata.METADATA_TYPE_EXTERNAL_CONTACTS).build()
-    private val sharedMetadata: SharedMetadata = SharedMetadata.Builder(sharedMetaDataHDNode).build()
+    constructor(
+        metaDataHDNode: DeterministicKey,
+        sharedMetaDataHDNode: DeterministicKey
+    ) : this(
+        Metadata.Builder(metaDataHDNode, Metadata.METADATA_TYPE_EXTERNAL_CONTACTS).build(),
+        SharedMetadata.Builder(sharedMetaDataHDNode).build()
+    )
+
     private var contactList: HashMap<String, Contact> = HashMap()
     private val mapper = ObjectMapper()
 
+    /**
+     * Contacts by mdid, rebuilt from [contactList] when a lookup misses or finds a stale entry
+     */
+    private var contactsByMdid: Map<String, Contact> = emptyMap()
+
     /**
      * Returns your shared metadata mdid
      */
@@ -77,6 +91,8 @@ class Contacts constructor(
         log.info("Wiping contact list")
         metadata.putMetadata(mapper.writeValueAsString(HashMap<Any, Any>()))
         contactList = HashMap()
+        contactsByMdid = emptyMap()
+        sharedMetadata.clearSharedKeys()
     }
 
     /**
@@ -309,22 +325,22 @@ class Contacts constructor(
      */
     fun getMessages(onlyNew: Boolean): List<Message> {
         log.info("Fetching inter-wallet-comms messages")
-        val messages = sharedMetadata!!.getMessages(onlyNew)
+        return decryptMessages(sharedMetadata.getMessages(onlyNew))
+    }
+
+    /**
+     * Decrypts received messages in place, spread over up to one thread per processor. Messages
+     * from senders whose xpub is not known are marked as read and removed.
+     */
+    fun decryptMessages(messages: MutableList<Message>): List<Message> {
+        val readable = ArrayList<Pair<Message, String>>(messages.size)
 
         val i = messages.iterator()
         while (i.hasNext()) {
             val message = i.next()
-            val contactFromMdid = getContactFromMdid(message.sender)
-            if (contactFromMdid?.xpub != null) {
-                try {
-                    decryptMessageFrom(message, contactFromMdid.xpub!!)
-                } catch (e: IOException) {
-                    e.printStackTrace()
-                } catch (e: InvalidCipherTextException) {
-                    e.printStackTrace()
-                } catch (e: MetadataException) {
-                    e.printStackTrace()
-                }
+            val xpub = getContactFromMdid(message.sender)?.xpub
+            if (xpub != null) {
+                readable.add(message to xpub)
             } else {
                 // Edge case since Android will not allow contact invitation without a published xpub
                 log.warn("Unable to decrypt message - Sender's xpub might not be published")
@@ -333,6 +349,20 @@ class Contacts constructor(
             }
         }
 
+        log.info("Decrypting {} inter-wallet-comms messages", readable.size)
+        val batchSize = maxOf(MIN_DECRYPTION_BATCH, (readable.size + DECRYPTION_THREADS - 1) / DECRYPTION_THREADS)
+        val batches = readable.chunked(batchSize)
+        if (batches.size <= 1) {
+            batches.forEach { decryptMessagesFrom(it) }
+        } else {
+            Observable.fromIterable(batches)
+                .flatMapCompletable { batch ->
+                    Completable.fromAction { decryptMessagesFrom(batch) }
+                        .subscribeOn(Schedulers.io())
+                }
+                .blockingAwait()
+        }
+
         return messages
     }
 
@@ -349,9 +379,18 @@ class Contacts constructor(
     fun markMessageAsRead(messageId: String, markAsRead: Boolean) =
         sharedMetadata.processMessage(messageId, markAsRead)
 
-    private fun decryptMessageFrom(message: Message, xpub: String): Message {
-        log.info("Decrypting inter-wallet-comms message")
-        return message.apply { payload = sharedMetadata.decryptFrom(xpub, message.payload) }
+    private fun decryptMessagesFrom(messages: List<Pair<Message, String>>) {
+        for ((message, xpub) in messages) {
+            try {
+                message.payload = sharedMetadata.decryptFrom(xpub, message.payload)
+            } catch (e: IOException) {
+                e.printStackTrace()
+            } catch (e: InvalidCipherTextException) {
+                e.printStackTrace()
+            } catch (e: MetadataException) {
+                e.printStackTrace()
+            }
+        }
     }
 
     private fun getQueryParams(uri: String): Map<String, String> {
@@ -369,8 +408,18 @@ class Contacts constructor(
         return params
     }
 
-    private fun getContactFromMdid(mdid: String): Contact? =
-        contactList.values.firstOrNull { it.mdid == mdid }
+    private fun getContactFromMdid(mdid: String): Contact? {
+        contactsByMdid[mdid]?.let {
+            if (it.mdid == mdid && contactList[it.id] === it) return it
+        }
+
+        val index = HashMap<String, Contact>(contactList.size)
+        for (contact in contactList.values) {
+            contact.mdid?.let { index.getOrPut(it) { contact } }
+        }
+        contactsByMdid = index
+        return index[mdid]
+    }
 
     /**
      * Send request for payment request. (Ask recipient to send a bitcoin receive address)
@@ -621,6 +670,9 @@ class Contacts constructor(
         private const val TYPE_DECLINE_REQUEST = 3
         private const val TYPE_CANCEL_REQUEST = 4
 
+        private val DECRYPTION_THREADS = Runtime.getRuntime().availableProcessors()
+        private const val MIN_DECRYPTION_BATCH = 8
+
         private val log = LoggerFactory.getLogger(Contacts::class.java)
     }
 }
@@ -0,0 +1,195 @@
+package info.blockchain.wallet.crypto;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.io.CipherInputStream;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.BlockCipherPadding;
+import org.spongycastle.crypto.paddings.ISO10126d2Padding;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Streaming counterpart of {@link AESUtil}, for the same IV prefixed ciphertext format.
+ *
+ * Decryption reads Base64 ciphertext as it goes and decrypts it a chunk at a time, so plaintext
+ * can be handed straight to a parser without the intermediate copies of the String API:
+ * <pre>
+ * try (JsonParser parser = JsonMappers.createParser(AESStream.decrypt(payload, password, iterations))) {
+ *     ...
+ * }
+ * </pre>
+ * A wrong key or corrupt ciphertext shows up as garbage while reading or, for padded modes, as
+ * an {@link org.spongycastle.crypto.io.InvalidCipherTextIOException} at the end of the stream.
+ */
+public final class AESStream {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private AESStream() {
+        // no instances
+    }
+
+    /**
+     * AES 256 PBKDF2 CBC iso10126, as {@link AESUtil#decrypt(String, String, int)}.
+     *
+     * @param ciphertext Base64 encoded IV and ciphertext
+     */
+    public static InputStream decrypt(CharSequence ciphertext, String password, int iterations)
+        throws IOException {
+        return decrypt(ciphertext, password, iterations, AESUtil.MODE_CBC, new ISO10126d2Padding());
+    }
+
+    /**
+     * @param ciphertext Base64 encoded IV and ciphertext
+     */
+    public static InputStream decrypt(CharSequence ciphertext,
+                                      String password,
+                                      int iterations,
+                                      int mode,
+                                      @Nullable BlockCipherPadding padding) throws IOException {
+        return decrypt(new Base64InputStream(ciphertext), password, iterations, mode, padding);
+    }
+
+    /**
+     * @param ciphertext IV and ciphertext, as raw bytes
+     */
+    public static InputStream decrypt(InputStream ciphertext,
+                                      String password,
+                                      int iterations,
+                                      int mode,
+                                      @Nullable BlockCipherPadding padding) throws IOException {
+        byte[] iv = readIv(ciphertext);
+        KeyParameter key = AESUtil.deriveKey(password, iv, iterations);
+        return decrypt(ciphertext, key, iv, mode, padding);
+    }
+
+    /**
+     * AES 256 CBC iso10126 with a raw key, as {@link AESUtil#decryptWithKey(byte[], String)}.
+     *
+     * @param ciphertext Base64 encoded IV and ciphertext
+     */
+    public static InputStream decryptWithKey(byte[] key, CharSequence ciphertext) throws IOException {
+        InputStream input = new Base64InputStream(ciphertext);
+        byte[] iv = readIv(input);
+        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()),
+            new ISO10126d2Padding());
+        cipher.init(false, new ParametersWithIV(new KeyParameter(key), iv));
+        return new CipherInputStream(input, cipher);
+    }
+
+    /**
+     * AES 256 CBC iso10126 with a raw key, as {@link AESUtil#encryptWithKey(byte[], String)} but
+     * without Base64 encoding.
+     *
+     * @return a buffer holding the random IV followed by the ciphertext, positioned at 0
+     */
+    public static ByteBuffer encryptWithKey(byte[] key, ByteBuffer plaintext) {
+        byte[] iv = new byte[AESUtil.IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+
+        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()),
+            new ISO10126d2Padding());
+        cipher.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+
+        // One output array, IV first, which the cipher writes into directly
+        int length = plaintext.remaining();
+        byte[] out = new byte[iv.length + cipher.getOutputSize(length)];
+        System.arraycopy(iv, 0, out, 0, iv.length);
+
+        int written;
+        if (plaintext.hasArray()) {
+            written = cipher.processBytes(plaintext.array(), plaintext.arrayOffset() + plaintext.position(), length,
+                out, iv.length);
+        } else {
+            byte[] chunk = new byte[Math.min(length, 4096)];
+            written = 0;
+            ByteBuffer source = plaintext.duplicate();
+            while (source.hasRemaining()) {
+                int count = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, count);
+                written += cipher.processBytes(chunk, 0, count, out, iv.length + written);
+            }
+        }
+        try {
+            written += cipher.doFinal(out, iv.length + written);
+        } catch (InvalidCipherTextException e) {
+            // Can't happen when encrypting with padding
+            throw new IllegalStateException(e);
+        }
+        plaintext.position(plaintext.limit());
+        return ByteBuffer.wrap(out, 0, iv.length + written);
+    }
+
+    /**
+     * Read the rest of a plaintext stream as UTF-8 text.
+     *
+     * @param sizeHint expected number of bytes, to size the buffer
+     */
+    static String readUtf8(InputStream in, int sizeHint) throws IOException {
+        byte[] buf = new byte[Math.max(sizeHint, 64)];
+        int length = 0;
+        while (true) {
+            if (length == buf.length) {
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                buf[length++] = (byte) next;
+            }
+            int read = in.read(buf, length, buf.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return new String(buf, 0, length, UTF_8);
+    }
+
+    /**
+     * @return an upper bound of the decrypted size of Base64 ciphertext
+     */
+    static int plaintextSizeHint(CharSequence ciphertext) {
+        return Math.max(0, ciphertext.length() / 4 * 3 - AESUtil.IV_LENGTH);
+    }
+
+    private static InputStream decrypt(InputStream ciphertext,
+                                       KeyParameter key,
+                                       byte[] iv,
+                                       int mode,
+                                       @Nullable BlockCipherPadding padding) {
+        BufferedBlockCipher cipher;
+        if (padding != null) {
+            cipher = new PaddedBufferedBlockCipher(AESUtil.createCipherMode(mode), padding);
+        } else {
+            cipher = new BufferedBlockCipher(AESUtil.createCipherMode(mode));
+        }
+        cipher.init(false, new ParametersWithIV(key, iv));
+        return new CipherInputStream(ciphertext, cipher);
+    }
+
+    private static byte[] readIv(InputStream in) throws IOException {
+        byte[] iv = new byte[AESUtil.IV_LENGTH];
+        int length = 0;
+        while (length < iv.length) {
+            int read = in.read(iv, length, iv.length - length);
+            if (read == -1) {
+                throw new EOFException("Ciphertext is too short to hold an IV");
+            }
+            length += read;
+        }
+        return iv;
+    }
+}
@@ -2,18 +2,20 @@ package info.blockchain.wallet.crypto;
 
 import info.blockchain.wallet.exceptions.DecryptionException;
 import info.blockchain.wallet.exceptions.EncryptionException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Base64;
 import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.BufferedBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.InvalidCipherTextException;
-import org.spongycastle.crypto.PBEParametersGenerator;
 import org.spongycastle.crypto.engines.AESEngine;
-import org.spongycastle.crypto.engines.AESFastEngine;
-import org.spongycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.spongycastle.crypto.io.InvalidCipherTextIOException;
 import org.spongycastle.crypto.modes.CBCBlockCipher;
 import org.spongycastle.crypto.modes.OFBBlockCipher;
 import org.spongycastle.crypto.paddings.BlockCipherPadding;
@@ -33,14 +35,9 @@ public class AESUtil {
     public static final int MODE_OFB = 1;
 
     private static final int AESBlockSize = 4;
+    static final int IV_LENGTH = AESBlockSize * 4;
     private static final int KEY_BIT_LEN = 256;
 
-    private static byte[] copyOfRange(byte[] source, int from, int to) {
-        byte[] range = new byte[to - from];
-        System.arraycopy(source, from, range, 0, range.length);
-        return range;
-    }
-
     // AES 256 PBKDF2 CBC iso10126 decryption
     // 16 byte IV must be prepended to ciphertext - Compatible with crypto-js
     public static String decrypt(String ciphertext, String password, int iterations) throws UnsupportedEncodingException, InvalidCipherTextException, DecryptionException {
@@ -50,53 +47,37 @@ public class AESUtil {
 
     public static String decryptWithSetMode(String ciphertext, String password, int iterations, int mode, @Nullable BlockCipherPadding padding) throws InvalidCipherTextException, UnsupportedEncodingException, DecryptionException {
 
-        byte[] cipherdata = Base64.decodeBase64(ciphertext.getBytes());
+        String result;
+        try {
+            InputStream plaintext = AESStream.decrypt(ciphertext, password, iterations, mode, padding);
+            result = AESStream.readUtf8(plaintext, AESStream.plaintextSizeHint(ciphertext));
+        } catch (InvalidCipherTextIOException e) {
+            throw unwrap(e);
+        } catch (IOException e) {
+            throw new DecryptionException(e);
+        }
 
-        //Separate the IV and cipher data
-        byte[] iv = copyOfRange(cipherdata, 0, AESBlockSize * 4);
-        byte[] input = copyOfRange(cipherdata, AESBlockSize * 4, cipherdata.length);
+        if (result.isEmpty()) {
+            throw new DecryptionException("Decrypted string is empty.");
+        }
 
-        PBEParametersGenerator generator = new PKCS5S2ParametersGenerator();
-        generator.init(PBEParametersGenerator.PKCS5PasswordToUTF8Bytes(password.toCharArray()), iv, iterations);
-        KeyParameter keyParam = (KeyParameter) generator.generateDerivedParameters(256);
+        return result;
+    }
 
-        CipherParameters params = new ParametersWithIV(keyParam, iv);
+    /**
+     * PBKDF2 (HMAC-SHA1) derivation of a 256 bit AES key, salted with the IV.
+     */
+    static KeyParameter deriveKey(String password, byte[] salt, int iterations) {
+        return new KeyParameter(KeyDerivation.pbkdf2(password, salt, iterations, KEY_BIT_LEN));
+    }
 
-        BlockCipher cipherMode;
+    static BlockCipher createCipherMode(int mode) {
         if (mode == MODE_CBC) {
-            cipherMode = new CBCBlockCipher(new AESEngine());
-
+            return new CBCBlockCipher(new AESEngine());
         } else {
             //mode == MODE_OFB
-            cipherMode = new OFBBlockCipher(new AESEngine(), 128);
-        }
-
-        BufferedBlockCipher cipher;
-        if (padding != null) {
-            cipher = new PaddedBufferedBlockCipher(cipherMode, padding);
-        } else {
-            cipher = new BufferedBlockCipher(cipherMode);
-        }
-
-        cipher.reset();
-        cipher.init(false, params);
-
-        // create a temporary buffer to decode into (includes padding)
-        byte[] buf = new byte[cipher.getOutputSize(input.length)];
-        int len = cipher.processBytes(input, 0, input.length, buf, 0);
-        len += cipher.doFinal(buf, len);
-
-        // remove padding
-        byte[] out = new byte[len];
-        System.arraycopy(buf, 0, out, 0, len);
-
-        // return string representation of decoded bytes
-        String result = new String(out, "UTF-8");
-        if (result.isEmpty()) {
-            throw new DecryptionException("Decrypted string is empty.");
+            return new OFBBlockCipher(new AESEngine(), 128);
         }
-
-        return result;
     }
 
     // AES 256 PBKDF2 CBC iso10126 encryption
@@ -120,20 +101,11 @@ public class AESUtil {
 
         byte[] clearbytes = cleartext.getBytes("UTF-8");
 
-        PBEParametersGenerator generator = new PKCS5S2ParametersGenerator();
-        generator.init(PBEParametersGenerator.PKCS5PasswordToUTF8Bytes(password.toCharArray()), iv, iterations);
-        KeyParameter keyParam = (KeyParameter) generator.generateDerivedParameters(256);
+        KeyParameter keyParam = deriveKey(password, iv, iterations);
 
         CipherParameters params = new ParametersWithIV(keyParam, iv);
 
-        BlockCipher cipherMode;
-        if (mode == MODE_CBC) {
-            cipherMode = new CBCBlockCipher(new AESEngine());
-
-        } else {
-            //mode == MODE_OFB
-            cipherMode = new OFBBlockCipher(new AESEngine(), 128);
-        }
+        BlockCipher cipherMode = createCipherMode(mode);
 
         BufferedBlockCipher cipher;
         if (padding != null) {
@@ -176,19 +148,6 @@ public class AESUtil {
         return result;
     }
 
-    /**
-     * Use secure random to generate a 16 byte iv
-     * @return
-     */
-    private static byte[] getSalt() {
-
-        SecureRandom random = new SecureRandom();
-        byte iv[] = new byte[AESBlockSize * 4];
-        random.nextBytes(iv);
-
-        return iv;
-    }
-
     /**
      *
      * @param key AES key (256 bit Buffer)
@@ -198,27 +157,9 @@ public class AESUtil {
      */
     public static byte[] encryptWithKey(byte[] key, String data) throws InvalidCipherTextException, UnsupportedEncodingException {
 
-        byte[] iv = getSalt();
-        byte[] dataBytes = data.getBytes("utf-8");
-
-        KeyParameter keyParam = new KeyParameter(key);
-        CipherParameters params = new ParametersWithIV(keyParam, iv);
-
-        BlockCipher cipherMode = new CBCBlockCipher(new AESFastEngine());
-        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(cipherMode, new ISO10126d2Padding());
-        cipher.reset();
-        cipher.init(true, params);
-
-        byte[] outBuf = cipherData(cipher, dataBytes);
-
-        // Concatenate iv
-        int len1 = iv.length;
-        int len2 = outBuf.length;
-        byte[] ivAppended = new byte[len1 + len2];
-        System.arraycopy(iv, 0, ivAppended, 0, len1);
-        System.arraycopy(outBuf, 0, ivAppended, len1, len2);
-
-        return Base64.encodeBase64(ivAppended);
+        ByteBuffer encrypted = AESStream.encryptWithKey(key, ByteBuffer.wrap(data.getBytes("utf-8")));
+        byte[] raw = encrypted.array();
+        return Base64.encodeBase64(raw.length == encrypted.limit() ? raw : Arrays.copyOf(raw, encrypted.limit()));
     }
 
     /**
@@ -231,40 +172,27 @@ public class AESUtil {
      */
     public static String decryptWithKey(byte[] key, String ciphertext) throws InvalidCipherTextException, UnsupportedEncodingException {
 
-        byte[] dataBytesB64 = Base64.decodeBase64(ciphertext.getBytes("utf-8"));
-
-        //Separate the IV and cipher data
-        byte[] iv = copyOfRange(dataBytesB64, 0, AESBlockSize * 4);
-        byte[] dataBytes = copyOfRange(dataBytesB64, AESBlockSize * 4, dataBytesB64.length);
-
-        KeyParameter keyParam = new KeyParameter(key);
-        CipherParameters params = new ParametersWithIV(keyParam, iv);
-
-        BlockCipher cipherMode = new CBCBlockCipher(new AESFastEngine());
-        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(cipherMode, new ISO10126d2Padding());
-        cipher.reset();
-        cipher.init(false, params);
-
-        //Create a temporary buffer to decode into (includes padding)
-        byte[] buf = new byte[cipher.getOutputSize(dataBytes.length)];
-        int len = cipher.processBytes(dataBytes, 0, dataBytes.length, buf, 0);
-        len += cipher.doFinal(buf, len);
-
-        //Remove padding
-        byte[] out = new byte[len];
-        System.arraycopy(buf, 0, out, 0, len);
+        try {
+            return AESStream.readUtf8(AESStream.decryptWithKey(key, ciphertext),
+                AESStream.plaintextSizeHint(ciphertext));
+        } catch (InvalidCipherTextIOException e) {
+            throw unwrap(e);
+        } catch (IOException e) {
+            throw new InvalidCipherTextException(e.getMessage());
+        }
+    }
 
-        return new String(out, "UTF-8");
+    private static InvalidCipherTextException unwrap(InvalidCipherTextIOException e) {
+        if (e.getCause() instanceof InvalidCipherTextException) {
+            return (InvalidCipherTextException) e.getCause();
+        }
+        return new InvalidCipherTextException(e.getMessage());
     }
 
     public static byte[] stringToKey(String string, int iterations) throws UnsupportedEncodingException {
 
         byte[] salt = "salt".getBytes("utf-8");
 
-        PBEParametersGenerator generator = new PKCS5S2ParametersGenerator();
-        generator.init(PBEParametersGenerator.PKCS5PasswordToUTF8Bytes(string.toCharArray()), salt, iterations);
-        KeyParameter keyParam = (KeyParameter) generator.generateDerivedParameters(KEY_BIT_LEN);
-
-        return  keyParam.getKey();
+        return KeyDerivation.pbkdf2(string, salt, iterations, KEY_BIT_LEN);
     }
 }
\ No newline at end of file
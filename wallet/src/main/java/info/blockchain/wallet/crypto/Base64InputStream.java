@@ -0,0 +1,112 @@
+package info.blockchain.wallet.crypto;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes Base64 text as it is read, rather than decoding the whole of it into one array up
+ * front. Like commons-codec's {@code Base64.decodeBase64}, characters outside the Base64
+ * alphabet are skipped, a trailing incomplete group of characters is ignored and decoding stops
+ * at padding.
+ */
+final class Base64InputStream extends InputStream {
+
+    private static final char PAD = '=';
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final CharSequence source;
+    private int position;
+    private boolean finished;
+
+    private final char[] quad = new char[4];
+    private final byte[] decoded = new byte[3];
+    private int decodedPosition;
+    private int decodedLength;
+
+    Base64InputStream(CharSequence source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() {
+        if (decodedPosition == decodedLength && !decodeQuad()) {
+            return -1;
+        }
+        return decoded[decodedPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int written = 0;
+        while (written < len) {
+            if (decodedPosition == decodedLength && !decodeQuad()) {
+                break;
+            }
+            int count = Math.min(len - written, decodedLength - decodedPosition);
+            System.arraycopy(decoded, decodedPosition, b, off + written, count);
+            decodedPosition += count;
+            written += count;
+        }
+        return written == 0 ? -1 : written;
+    }
+
+    @Override
+    public int available() {
+        return decodedLength - decodedPosition;
+    }
+
+    /**
+     * Decode the next four significant characters.
+     *
+     * @return false at the end of the data
+     */
+    private boolean decodeQuad() {
+        if (finished) {
+            return false;
+        }
+
+        int count = 0;
+        int length = source.length();
+        while (count < 4 && position < length) {
+            char c = source.charAt(position++);
+            if (c == PAD || (c < DECODE.length && DECODE[c] >= 0)) {
+                quad[count++] = c;
+            }
+        }
+        if (count < 4 || quad[0] == PAD || quad[1] == PAD) {
+            finished = true;
+            return false;
+        }
+
+        int bits = DECODE[quad[0]] << 18 | DECODE[quad[1]] << 12;
+        decoded[0] = (byte) (bits >> 16);
+        decodedLength = 1;
+        if (quad[2] == PAD) {
+            finished = true;
+        } else {
+            bits |= DECODE[quad[2]] << 6;
+            decoded[1] = (byte) (bits >> 8);
+            decodedLength = 2;
+            if (quad[3] == PAD) {
+                finished = true;
+            } else {
+                bits |= DECODE[quad[3]];
+                decoded[2] = (byte) bits;
+                decodedLength = 3;
+            }
+        }
+        decodedPosition = 0;
+        return true;
+    }
+}
@@ -0,0 +1,278 @@
+package info.blockchain.wallet.crypto;
+
+import info.blockchain.wallet.exceptions.DecryptionException;
+import org.apache.commons.codec.binary.Base64;
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.paddings.BlockCipherPadding;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+import javax.annotation.Nullable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds which of several PBKDF2 iteration counts, cipher modes and paddings decrypt a payload
+ * written by {@link AESUtil}, for payloads such as V1 wallets whose parameters weren't stored.
+ *
+ * Gives the same answer as calling {@link AESUtil#decryptWithSetMode} for every combination in
+ * order and keeping the first one which validates, but:
+ * <ul>
+ * <li>each PBKDF2 key is derived once per iteration count rather than once per combination</li>
+ * <li>the payload is decrypted once per key and mode, the paddings are only stripped from the
+ * result</li>
+ * <li>a key and mode whose first block doesn't decrypt to the start of a JSON object is dropped
+ * without decrypting the rest</li>
+ * <li>the remaining key and mode candidates are decrypted in parallel, and once one validates the
+ * lower priority candidates are cancelled</li>
+ * </ul>
+ */
+public class DecryptionProber {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface Validator {
+
+        /**
+         * @return true if plaintext is the expected payload
+         */
+        boolean isValid(String plaintext);
+    }
+
+    public static class Result {
+
+        private final String plaintext;
+        private final int iterations;
+        private final int mode;
+        private final BlockCipherPadding padding;
+
+        Result(String plaintext, int iterations, int mode, @Nullable BlockCipherPadding padding) {
+            this.plaintext = plaintext;
+            this.iterations = iterations;
+            this.mode = mode;
+            this.padding = padding;
+        }
+
+        public String getPlaintext() {
+            return plaintext;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        /**
+         * @return the padding which validated, or null for no padding
+         */
+        @Nullable
+        public BlockCipherPadding getPadding() {
+            return padding;
+        }
+    }
+
+    private final int[] iterations;
+    private final int[] modes;
+    private final BlockCipherPadding[] paddings;
+
+    /**
+     * @param iterations PBKDF2 iteration counts, in order of preference
+     * @param modes      {@link AESUtil#MODE_CBC} and/or {@link AESUtil#MODE_OFB}, in order of
+     *                   preference
+     * @param paddings   paddings in order of preference, null meaning no padding
+     */
+    public DecryptionProber(int[] iterations, int[] modes, BlockCipherPadding[] paddings) {
+        this.iterations = iterations.clone();
+        this.modes = modes.clone();
+        this.paddings = paddings.clone();
+    }
+
+    public Result probe(String ciphertext, String password, Validator validator) throws DecryptionException {
+        byte[] cipherdata = Base64.decodeBase64(ciphertext.getBytes(UTF_8));
+        if (cipherdata.length < AESUtil.IV_LENGTH) {
+            throw new DecryptionException("Failed to decrypt");
+        }
+        byte[] iv = Arrays.copyOfRange(cipherdata, 0, AESUtil.IV_LENGTH);
+        byte[] input = Arrays.copyOfRange(cipherdata, AESUtil.IV_LENGTH, cipherdata.length);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int iteration : iterations) {
+            KeyParameter key = AESUtil.deriveKey(password, iv, iteration);
+            for (int mode : modes) {
+                Candidate candidate = new Candidate(iteration, mode, new ParametersWithIV(key, iv));
+                if (candidate.startsLikeJson(input)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+
+        Result result = candidates.size() > 1
+            ? probeInParallel(candidates, input, validator)
+            : probeInOrder(candidates, input, validator);
+        if (result == null) {
+            throw new DecryptionException("Failed to decrypt");
+        }
+        return result;
+    }
+
+    private Result probeInOrder(List<Candidate> candidates, byte[] input, Validator validator) {
+        for (Candidate candidate : candidates) {
+            Result result = candidate.decrypt(input, validator, new AtomicBoolean());
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private Result probeInParallel(List<Candidate> candidates, final byte[] input, final Validator validator)
+        throws DecryptionException {
+
+        ForkJoinPool pool = new ForkJoinPool(
+            Math.max(1, Math.min(candidates.size(), Runtime.getRuntime().availableProcessors())));
+        List<Future<Result>> futures = new ArrayList<>(candidates.size());
+        List<AtomicBoolean> cancelled = new ArrayList<>(candidates.size());
+        try {
+            for (final Candidate candidate : candidates) {
+                final AtomicBoolean flag = new AtomicBoolean();
+                cancelled.add(flag);
+                futures.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return candidate.decrypt(input, validator, flag);
+                    }
+                }));
+            }
+
+            // Take the results in order of preference, so the answer is the one a serial search
+            // would give, and stop everything after the first success
+            for (int i = 0; i < futures.size(); i++) {
+                Result result = futures.get(i).get();
+                if (result != null) {
+                    for (int j = i + 1; j < futures.size(); j++) {
+                        cancelled.get(j).set(true);
+                        futures.get(j).cancel(true);
+                    }
+                    return result;
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecryptionException(e);
+        } catch (ExecutionException e) {
+            throw new DecryptionException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private class Candidate {
+
+        private final int iterations;
+        private final int mode;
+        private final ParametersWithIV params;
+
+        Candidate(int iterations, int mode, ParametersWithIV params) {
+            this.iterations = iterations;
+            this.mode = mode;
+            this.params = params;
+        }
+
+        /**
+         * Decrypt only the first block and check it could be the start of a JSON object: any
+         * leading whitespace followed by '{'.
+         */
+        boolean startsLikeJson(byte[] input) {
+            BlockCipher cipher = AESUtil.createCipherMode(mode);
+            int blockSize = cipher.getBlockSize();
+            if (input.length < blockSize) {
+                // Too short to cut down, leave it to the full decryption
+                return true;
+            }
+            cipher.init(false, params);
+            byte[] block = new byte[blockSize];
+            cipher.processBlock(input, 0, block, 0);
+
+            for (byte b : block) {
+                if (b >= 1 && b <= ' ') {
+                    continue;
+                }
+                return b == '{';
+            }
+            return true;
+        }
+
+        /**
+         * Decrypt the whole input once and try each padding against the result.
+         *
+         * @return the first padding's result which validates, or null
+         */
+        @Nullable
+        Result decrypt(byte[] input, Validator validator, AtomicBoolean cancelled) {
+            byte[] raw = decryptRaw(input);
+            if (raw == null) {
+                return null;
+            }
+
+            int blockSize = AESUtil.createCipherMode(mode).getBlockSize();
+            for (BlockCipherPadding padding : paddings) {
+                if (cancelled.get()) {
+                    return null;
+                }
+
+                int length = raw.length;
+                if (padding != null) {
+                    // As PaddedBufferedBlockCipher, padded input has to be whole blocks
+                    if (raw.length == 0 || raw.length % blockSize != 0) {
+                        continue;
+                    }
+                    try {
+                        length -= padding.padCount(Arrays.copyOfRange(raw, raw.length - blockSize, raw.length));
+                    } catch (InvalidCipherTextException e) {
+                        continue;
+                    }
+                }
+                if (length <= 0) {
+                    continue;
+                }
+
+                String plaintext = new String(raw, 0, length, UTF_8);
+                if (validator.isValid(plaintext)) {
+                    return new Result(plaintext, iterations, mode, padding);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the input decrypted without removing any padding, or null if this mode can't
+         * decrypt input of that length
+         */
+        @Nullable
+        private byte[] decryptRaw(byte[] input) {
+            BufferedBlockCipher cipher = new BufferedBlockCipher(AESUtil.createCipherMode(mode));
+            cipher.init(false, params);
+            byte[] buf = new byte[cipher.getOutputSize(input.length)];
+            try {
+                int len = cipher.processBytes(input, 0, input.length, buf, 0);
+                len += cipher.doFinal(buf, len);
+                return len == buf.length ? buf : Arrays.copyOf(buf, len);
+            } catch (InvalidCipherTextException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package info.blockchain.wallet.crypto;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.spongycastle.crypto.PBEParametersGenerator;
+import org.spongycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PBKDF2 (HMAC-SHA1) key derivation for {@link AESUtil}.
+ *
+ * Keys are derived by whichever {@link Backend} was fastest in a short benchmark run on first
+ * use, among those giving identical output to SpongyCastle. Derived keys can optionally be kept
+ * in memory, so that decrypting the same payload again (second password checks, double
+ * encrypted private keys, the metadata node password) doesn't repeat the derivation. The cache
+ * is off by default, and should be wiped with {@link #wipeCache()} when the session ends.
+ */
+public final class KeyDerivation {
+
+    public enum Backend {
+
+        SPONGY_CASTLE {
+            @Override
+            public byte[] derive(String password, byte[] salt, int iterations, int keyBits) {
+                PBEParametersGenerator generator = new PKCS5S2ParametersGenerator();
+                generator.init(PBEParametersGenerator.PKCS5PasswordToUTF8Bytes(password.toCharArray()), salt,
+                    iterations);
+                return ((KeyParameter) generator.generateDerivedParameters(keyBits)).getKey();
+            }
+        },
+
+        /**
+         * The platform's PBKDF2WithHmacSHA1, usually a native implementation on Android. Falls
+         * back to SpongyCastle for passwords the platform may encode differently.
+         */
+        JCA {
+            @Override
+            public byte[] derive(String password, byte[] salt, int iterations, int keyBits) {
+                if (!isPlainPassword(password)) {
+                    return SPONGY_CASTLE.derive(password, salt, iterations, keyBits);
+                }
+                PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyBits);
+                try {
+                    return SecretKeyFactory.getInstance(JCA_ALGORITHM).generateSecret(spec).getEncoded();
+                } catch (GeneralSecurityException | IllegalArgumentException e) {
+                    return SPONGY_CASTLE.derive(password, salt, iterations, keyBits);
+                } finally {
+                    spec.clearPassword();
+                }
+            }
+        };
+
+        public abstract byte[] derive(String password, byte[] salt, int iterations, int keyBits);
+    }
+
+    private static final String JCA_ALGORITHM = "PBKDF2WithHmacSHA1";
+
+    /**
+     * Iterations used to time each backend when choosing one.
+     */
+    private static final int SELECTION_ITERATIONS = 1000;
+    private static final int SELECTION_RUNS = 3;
+
+    /**
+     * Number of derived keys kept when the cache is enabled, least recently used first out.
+     */
+    private static final int CACHE_SIZE = 32;
+
+    private static volatile Backend backend;
+    private static volatile boolean cacheEnabled;
+
+    private static final Map<CacheKey, byte[]> cache = new LinkedHashMap<CacheKey, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, byte[]> eldest) {
+            if (size() > CACHE_SIZE) {
+                Arrays.fill(eldest.getValue(), (byte) 0);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private KeyDerivation() {
+        // no instances
+    }
+
+    /**
+     * @return the PBKDF2 (HMAC-SHA1) key of keyBits bits for password, encoded as UTF-8
+     */
+    public static byte[] pbkdf2(String password, byte[] salt, int iterations, int keyBits) {
+        if (!cacheEnabled) {
+            return getBackend().derive(password, salt, iterations, keyBits);
+        }
+
+        CacheKey cacheKey = new CacheKey(password, salt, iterations, keyBits);
+        byte[] key;
+        synchronized (cache) {
+            key = cache.get(cacheKey);
+        }
+        if (key == null) {
+            key = getBackend().derive(password, salt, iterations, keyBits);
+            synchronized (cache) {
+                if (cacheEnabled) {
+                    cache.put(cacheKey, key.clone());
+                }
+            }
+            return key;
+        }
+        return key.clone();
+    }
+
+    /**
+     * Keep derived keys in memory until {@link #wipeCache()}. Disabling the cache also wipes it.
+     */
+    public static void setCacheEnabled(boolean enabled) {
+        cacheEnabled = enabled;
+        if (!enabled) {
+            wipeCache();
+        }
+    }
+
+    public static boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * Zero and drop every cached key. Call on logout.
+     */
+    public static void wipeCache() {
+        synchronized (cache) {
+            Iterator<byte[]> keys = cache.values().iterator();
+            while (keys.hasNext()) {
+                Arrays.fill(keys.next(), (byte) 0);
+                keys.remove();
+            }
+        }
+    }
+
+    static int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the backend in use, choosing one first if none has been chosen or set
+     */
+    public static Backend getBackend() {
+        Backend current = backend;
+        if (current == null) {
+            synchronized (KeyDerivation.class) {
+                current = backend;
+                if (current == null) {
+                    current = selectBackend();
+                    backend = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public static void setBackend(Backend backend) {
+        KeyDerivation.backend = backend;
+    }
+
+    /**
+     * Time each backend deriving a key, after checking it gives the same keys as SpongyCastle.
+     *
+     * @return the fastest backend
+     */
+    static Backend selectBackend() {
+        Backend fastest = Backend.SPONGY_CASTLE;
+        long fastestTime = time(Backend.SPONGY_CASTLE);
+        for (Backend candidate : Backend.values()) {
+            if (candidate == Backend.SPONGY_CASTLE || !matchesSpongyCastle(candidate)) {
+                continue;
+            }
+            long candidateTime = time(candidate);
+            if (candidateTime < fastestTime) {
+                fastest = candidate;
+                fastestTime = candidateTime;
+            }
+        }
+        return fastest;
+    }
+
+    private static boolean matchesSpongyCastle(Backend candidate) {
+        byte[] salt = new byte[AESUtil.IV_LENGTH];
+        for (int i = 0; i < salt.length; i++) {
+            salt[i] = (byte) (i * 31);
+        }
+        for (String password : new String[]{"password", "pa\u00dfw\u00f6rd \u20ac\u4e2d"}) {
+            if (!Arrays.equals(Backend.SPONGY_CASTLE.derive(password, salt, 10, 256),
+                candidate.derive(password, salt, 10, 256))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long time(Backend candidate) {
+        byte[] salt = new byte[AESUtil.IV_LENGTH];
+        candidate.derive("password", salt, SELECTION_ITERATIONS, 256);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SELECTION_RUNS; i++) {
+            long start = System.nanoTime();
+            candidate.derive("password", salt, SELECTION_ITERATIONS, 256);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * @return true if password is non empty and has no surrogate chars, so every PBKDF2
+     * implementation encodes it to the same UTF-8 bytes
+     */
+    private static boolean isPlainPassword(String password) {
+        if (password.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < password.length(); i++) {
+            if (Character.isSurrogate(password.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Identifies a derived key by a digest of the password rather than the password itself.
+     */
+    private static final class CacheKey {
+
+        private final byte[] passwordHash;
+        private final byte[] salt;
+        private final int iterations;
+        private final int keyBits;
+        private final int hashCode;
+
+        CacheKey(String password, byte[] salt, int iterations, int keyBits) {
+            this.passwordHash = Sha256Hash.hash(PBEParametersGenerator.PKCS5PasswordToUTF8Bytes(
+                password.toCharArray()));
+            this.salt = salt.clone();
+            this.iterations = iterations;
+            this.keyBits = keyBits;
+            this.hashCode = 31 * (31 * (31 * Arrays.hashCode(passwordHash) + Arrays.hashCode(salt)) + iterations)
+                + keyBits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return iterations == other.iterations
+                && keyBits == other.keyBits
+                && Arrays.equals(passwordHash, other.passwordHash)
+                && Arrays.equals(salt, other.salt);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package info.blockchain.wallet.ethereum
 
 import info.blockchain.wallet.ApiCode
-import info.blockchain.wallet.BlockchainFramework
+import info.blockchain.wallet.api.EndpointRegistry
 import info.blockchain.wallet.ethereum.data.Erc20AddressResponse
 import info.blockchain.wallet.ethereum.data.EthAddressResponse
 import info.blockchain.wallet.ethereum.data.EthAddressResponseMap
@@ -12,9 +12,10 @@ import info.blockchain.wallet.ethereum.data.EthTransaction
 import io.reactivex.Observable
 import org.apache.commons.lang3.StringUtils
 
-class EthAccountApi(private val apiCode: ApiCode) {
-
-    private var endpoints: EthEndpoints? = null
+class EthAccountApi @JvmOverloads constructor(
+    private val apiCode: ApiCode,
+    private val endpointRegistry: EndpointRegistry = EndpointRegistry.getInstance()
+) {
 
     /**
      * Returns information about the latest block via a [EthLatestBlock] object.
@@ -28,10 +29,10 @@ class EthAccountApi(private val apiCode: ApiCode) {
         get() = apiInstance.latestBlockNumber
 
     /**
-     * Lazily evaluates an instance of [EthEndpoints].
+     * The registry's instance of [EthEndpoints], created once for the current environment.
      */
     private val apiInstance: EthEndpoints
-        get() = endpoints ?: BlockchainFramework.getRetrofitApiInstance().create(EthEndpoints::class.java)
+        get() = endpointRegistry.api(EthEndpoints::class.java)
 
     /**
      * Returns an [EthAddressResponse] object for a list of given ETH addresses as an [ ].
@@ -3,11 +3,13 @@ package info.blockchain.wallet.metadata
 import com.google.common.annotations.VisibleForTesting
 import com.google.common.base.Optional
 
-import info.blockchain.wallet.BlockchainFramework
+import info.blockchain.wallet.api.EndpointRegistry
 import info.blockchain.wallet.api.PersistentUrls
+import info.blockchain.wallet.crypto.AESStream
 import info.blockchain.wallet.crypto.AESUtil
 import info.blockchain.wallet.exceptions.MetadataException
 import info.blockchain.wallet.metadata.data.MetadataRequest
+import info.blockchain.wallet.metadata.data.MetadataResponse
 import info.blockchain.wallet.util.FormatsUtil
 import info.blockchain.wallet.util.MetadataUtil
 
@@ -20,25 +22,34 @@ import org.spongycastle.util.encoders.Base64
 import org.spongycastle.util.encoders.Hex
 
 import java.io.IOException
+import java.nio.ByteBuffer
 import java.nio.charset.StandardCharsets
 
-class Metadata(
+class Metadata @JvmOverloads constructor(
     @VisibleForTesting
     val address: String,
     private val node: ECKey,
     private val encryptionKey: ByteArray? = null,
     private val isEncrypted: Boolean = true,
-    private val type: Int = 0
+    private val type: Int = 0,
+    private val endpointRegistry: EndpointRegistry = EndpointRegistry.getInstance()
 ) {
     var magicHash: ByteArray? = null
     @VisibleForTesting
-        set
+        set(value) {
+            field = value
+            isMagicHashKnown = true
+        }
+
+    /**
+     * False until the entry has been fetched once, either by [fetchMagic] or by reading it
+     */
+    private var isMagicHashKnown = false
 
     private var attempt: Short = FETCH_MAGIC_HASH_ATTEMPT_LIMIT
 
-    private val apiInstance: MetadataEndpoints by lazy {
-        BlockchainFramework.getRetrofitApiInstance().create(MetadataEndpoints::class.java)
-    }
+    private val apiInstance: MetadataEndpoints
+        get() = endpointRegistry.api(MetadataEndpoints::class.java)
 
     val metadata: String?
         @Throws(MetadataException::class, IOException::class, InvalidCipherTextException::class)
@@ -51,27 +62,41 @@ class Metadata(
 
     @Throws(IOException::class, MetadataException::class)
     fun fetchMagic() {
-        val response = apiInstance.getMetadata(address)
+        fetchEntry(address)
+    }
 
-        val exe = response.execute()
+    /**
+     * Reads the entry at [address], and takes the magic hash from the same response when it is this
+     * entry's own.
+     *
+     * @return The entry, or null if there is none
+     */
+    @Throws(IOException::class, MetadataException::class)
+    private fun fetchEntry(address: String?): MetadataResponse? {
+        val exe = apiInstance.getMetadata(address).execute()
+
+        val body = if (exe.isSuccessful) {
+            exe.body()!!
+        } else if (exe.code() == 404) {
+            null
+        } else {
+            throw MetadataException(exe.code().toString() + " " + exe.message())
+        }
 
-        if (exe.isSuccessful) {
-            val body = exe.body()!!
+        if (address == this.address) {
+            magicHash = body?.let { magicOf(it) }
+        }
+        return body
+    }
 
-            val encryptedPayloadBytes = Base64.decode(body.payload.toByteArray(charset("utf-8")))
+    private fun magicOf(body: MetadataResponse): ByteArray {
+        val encryptedPayloadBytes = Base64.decode(body.payload.toByteArray(charset("utf-8")))
 
-            magicHash = if (body.prevMagicHash != null) {
-                val prevMagicBytes = Hex.decode(body.prevMagicHash)
-                MetadataUtil.magic(encryptedPayloadBytes, prevMagicBytes)
-            } else {
-                MetadataUtil.magic(encryptedPayloadBytes, null)
-            }
+        return if (body.prevMagicHash != null) {
+            val prevMagicBytes = Hex.decode(body.prevMagicHash)
+            MetadataUtil.magic(encryptedPayloadBytes, prevMagicBytes)
         } else {
-            if (exe.code() == 404) {
-                magicHash = null
-            } else {
-                throw MetadataException(exe.code().toString() + " " + exe.message())
-            }
+            MetadataUtil.magic(encryptedPayloadBytes, null)
         }
     }
 
@@ -82,9 +107,12 @@ class Metadata(
         if (!FormatsUtil.isValidJson(payloadJson))
             throw JSONException("Payload is not a valid json object.")
 
+        if (!isMagicHashKnown) {
+            fetchMagic()
+        }
+
         val encryptedPayloadBytes: ByteArray = if (isEncrypted) {
-            // base64 to buffer
-            Base64.decode(AESUtil.encryptWithKey(encryptionKey, payloadJson))
+            encryptWithKey(payloadJson)
         } else {
             payloadJson.toByteArray(charset("utf-8"))
         }
@@ -129,23 +157,12 @@ class Metadata(
 
     @Throws(MetadataException::class, IOException::class, InvalidCipherTextException::class)
     private fun getMetadataEntry(address: String?, isEncrypted: Boolean): Optional<String> {
+        val body = fetchEntry(address) ?: return Optional.absent()
 
-        val response = apiInstance.getMetadata(address)
-        val exe = response.execute()
-
-        return if (exe.isSuccessful) {
-            val body = exe.body()!!
-            if (isEncrypted) {
-                Optional.of(AESUtil.decryptWithKey(encryptionKey, body.payload))
-            } else {
-                Optional.of(String(Base64.decode(body.payload)))
-            }
+        return if (isEncrypted) {
+            Optional.of(AESUtil.decryptWithKey(encryptionKey, body.payload))
         } else {
-            if (exe.code() == 404) {
-                Optional.absent()
-            } else {
-                throw MetadataException(exe.code().toString() + " " + exe.message())
-            }
+            Optional.of(String(Base64.decode(body.payload)))
         }
     }
 
@@ -156,8 +173,7 @@ class Metadata(
     fun deleteMetadata(payload: String) {
 
         val encryptedPayloadBytes = if (isEncrypted) {
-            // base64 to buffer
-            Base64.decode(AESUtil.encryptWithKey(encryptionKey, payload))
+            encryptWithKey(payload)
         } else {
             payload.toByteArray(StandardCharsets.UTF_8)
         }
@@ -176,6 +192,15 @@ class Metadata(
         }
     }
 
+    /**
+     * IV and ciphertext of payload, without the Base64 round trip of [AESUtil.encryptWithKey]
+     */
+    private fun encryptWithKey(payload: String): ByteArray {
+        val encrypted = AESStream.encryptWithKey(encryptionKey, ByteBuffer.wrap(payload.toByteArray(Charsets.UTF_8)))
+        val bytes = encrypted.array()
+        return if (bytes.size == encrypted.limit()) bytes else bytes.copyOf(encrypted.limit())
+    }
+
     class Builder(
         private val metaDataHDNode: DeterministicKey, // Required
         private val type: Int = -1
@@ -183,18 +208,32 @@ class Metadata(
         // Optional Override
         private var isEncrypted = true // default
         private var encryptionKey: ByteArray? = null
+        private var endpointRegistry = EndpointRegistry.getInstance()
 
         fun setEncrypted(isEncrypted: Boolean): Builder {
             this.isEncrypted = isEncrypted
             return this
         }
 
+        fun setEndpointRegistry(endpointRegistry: EndpointRegistry): Builder {
+            this.endpointRegistry = endpointRegistry
+            return this
+        }
+
         /**
          * purpose' / type' / 0' : https://meta.blockchain.info/{address} - signature used to
          * authorize purpose' / type' / 1' : sha256(private key) used as 256 bit AES key
          */
         @Throws(IOException::class, MetadataException::class)
-        fun build(): Metadata {
+        fun build(): Metadata = buildWithoutFetch().apply {
+            fetchMagic()
+        }
+
+        /**
+         * Derives the entry's keys without calling the metadata service. The magic hash is taken
+         * from the first read of the entry, or fetched before the first write if it has not been read.
+         */
+        fun buildWithoutFetch(): Metadata {
 
             val payloadTypeNode = MetadataUtil.deriveHardened(metaDataHDNode, type)
             val newNode = MetadataUtil.deriveHardened(payloadTypeNode, 0)
@@ -210,10 +249,9 @@ class Metadata(
                 node = newNode,
                 encryptionKey = encryptionKey,
                 isEncrypted = isEncrypted,
-                type = type
-            ).apply {
-                fetchMagic()
-            }
+                type = type,
+                endpointRegistry = endpointRegistry
+            )
         }
     }
 
@@ -3,7 +3,7 @@ package info.blockchain.wallet.metadata;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import info.blockchain.wallet.BlockchainFramework;
+import info.blockchain.wallet.api.EndpointRegistry;
 import info.blockchain.wallet.api.PersistentUrls;
 import info.blockchain.wallet.crypto.AESUtil;
 import info.blockchain.wallet.exceptions.SharedMetadataException;
@@ -19,7 +19,9 @@ import java.security.SignatureException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import okhttp3.ResponseBody;
 import org.bitcoinj.core.ECKey;
@@ -36,8 +38,10 @@ public class SharedMetadata {
 
     private String token;
     private MetadataEndpoints endpoints;
+    private EndpointRegistry endpointRegistry = EndpointRegistry.getInstance();
     private String address;
     private DeterministicKey node;
+    private final Map<String, byte[]> sharedKeys = new ConcurrentHashMap<>();
 
     public SharedMetadata() {
         // Empty constructor
@@ -47,12 +51,17 @@ public class SharedMetadata {
         this.endpoints = endpoints;
     }
 
+    public void setEndpointRegistry(EndpointRegistry endpointRegistry) {
+        this.endpointRegistry = endpointRegistry;
+    }
+
     public void setAddress(String address) {
         this.address = address;
     }
 
     public void setNode(DeterministicKey node) {
         this.node = node;
+        sharedKeys.clear();
     }
 
     public DeterministicKey getNode() {
@@ -72,12 +81,10 @@ public class SharedMetadata {
     }
 
     private MetadataEndpoints getApiInstance() {
-        if (endpoints == null) {
-            endpoints = BlockchainFramework
-                    .getRetrofitApiInstance()
-                    .create(MetadataEndpoints.class);
+        if (endpoints != null) {
+            return endpoints;
         }
-        return endpoints;
+        return endpointRegistry.api(MetadataEndpoints.class);
     }
 
     /**
@@ -377,24 +384,37 @@ public class SharedMetadata {
     public String encryptFor(String xpub, String payload) throws
             UnsupportedEncodingException,
             InvalidCipherTextException {
-        ECKey myKey = getNode();
-        DeterministicKey otherKey = DeterministicKey.deserializeB58(null, xpub, PersistentUrls.getInstance().getBitcoinParams());
-
-        byte[] sharedSecret = otherKey.getPubKeyPoint().multiply(myKey.getPrivKey()).getEncoded();
-        byte[] sharedKey = Sha256Hash.hash(sharedSecret);
-        return new String(AESUtil.encryptWithKey(sharedKey, payload));
+        return new String(AESUtil.encryptWithKey(getSharedKey(xpub), payload));
     }
 
     public String decryptFrom(String xpub, String payload) throws
             UnsupportedEncodingException,
             InvalidCipherTextException {
+        return AESUtil.decryptWithKey(getSharedKey(xpub), payload);
+    }
 
-        ECKey myKey = getNode();
-        DeterministicKey otherKey = DeterministicKey.deserializeB58(null, xpub, PersistentUrls.getInstance().getBitcoinParams());
+    /**
+     * Forgets the keys shared with counterparties, which are otherwise kept for as long as this
+     * instance.
+     */
+    public void clearSharedKeys() {
+        sharedKeys.clear();
+    }
 
-        byte[] sharedSecret = otherKey.getPubKeyPoint().multiply(myKey.getPrivKey()).getEncoded();
-        byte[] sharedKey = Sha256Hash.hash(sharedSecret);
-        return AESUtil.decryptWithKey(sharedKey, payload);
+    /**
+     * The ECDH key shared with the owner of xpub, derived once per counterparty.
+     */
+    private byte[] getSharedKey(String xpub) {
+        byte[] sharedKey = sharedKeys.get(xpub);
+        if (sharedKey == null) {
+            ECKey myKey = getNode();
+            DeterministicKey otherKey = DeterministicKey.deserializeB58(null, xpub, PersistentUrls.getInstance().getBitcoinParams());
+
+            byte[] sharedSecret = otherKey.getPubKeyPoint().multiply(myKey.getPrivKey()).getEncoded();
+            sharedKey = Sha256Hash.hash(sharedSecret);
+            sharedKeys.put(xpub, sharedKey);
+        }
+        return sharedKey;
     }
 
     public static class Builder {
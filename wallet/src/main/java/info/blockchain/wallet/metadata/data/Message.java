@@ -4,7 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import info.blockchain.wallet.util.JsonMappers;
 import java.io.IOException;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -95,11 +95,11 @@ public class Message {
 
     @JsonIgnore
     public static Message fromJson(String json) throws IOException {
-        return new ObjectMapper().readValue(json, Message.class);
+        return JsonMappers.fromJson(json, Message.class);
     }
 
     @JsonIgnore
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 }
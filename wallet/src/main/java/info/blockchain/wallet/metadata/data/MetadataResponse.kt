@@ -6,7 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties
 import com.fasterxml.jackson.annotation.JsonInclude
 import com.fasterxml.jackson.annotation.JsonProperty
 import com.fasterxml.jackson.core.JsonProcessingException
-import com.fasterxml.jackson.databind.ObjectMapper
+import info.blockchain.wallet.util.JsonMappers
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -33,6 +33,6 @@ data class MetadataResponse(
     @JsonIgnore
     @Throws(JsonProcessingException::class)
     fun toJson(): String {
-        return ObjectMapper().writeValueAsString(this)
+        return JsonMappers.toJson(this)
     }
 }
@@ -0,0 +1,85 @@
+package info.blockchain.wallet.multiaddress;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Per-address satoshi totals for the inputs, outputs or change of a single transaction. Amounts are
+ * accumulated as longs and only boxed into {@link BigInteger} once the transaction is summarized.
+ * Instances are cleared and reused between transactions.
+ */
+final class AddressAmounts {
+
+    private final HashMap<String, Integer> slots = new HashMap<>();
+    private String[] addresses = new String[8];
+    private long[] amounts = new long[8];
+    private int size;
+
+    void clear() {
+        slots.clear();
+        Arrays.fill(addresses, 0, size, null);
+        size = 0;
+    }
+
+    boolean contains(String address) {
+        return slots.containsKey(address);
+    }
+
+    /**
+     * Adds the amount to any amount already held for the address.
+     */
+    void add(String address, long amount) {
+        amounts[slotOf(address)] += amount;
+    }
+
+    /**
+     * Replaces any amount already held for the address.
+     */
+    void put(String address, long amount) {
+        amounts[slotOf(address)] = amount;
+    }
+
+    /**
+     * @param ownedOnly if not null, only addresses owned according to this index are counted
+     */
+    long sum(@Nullable AddressOwnershipIndex ownedOnly) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if (ownedOnly == null || ownedOnly.isOwned(addresses[i])) {
+                total += amounts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param ownedOnly if not null, only addresses owned according to this index are included
+     */
+    HashMap<String, BigInteger> toMap(@Nullable AddressOwnershipIndex ownedOnly) {
+        HashMap<String, BigInteger> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (ownedOnly == null || ownedOnly.isOwned(addresses[i])) {
+                map.put(addresses[i], BigInteger.valueOf(amounts[i]));
+            }
+        }
+        return map;
+    }
+
+    private int slotOf(String address) {
+        Integer slot = slots.get(address);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        addresses[size] = address;
+        amounts[size] = 0;
+        slots.put(address, size);
+        return size++;
+    }
+}
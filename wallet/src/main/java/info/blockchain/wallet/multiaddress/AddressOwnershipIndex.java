@@ -0,0 +1,113 @@
+package info.blockchain.wallet.multiaddress;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Interns every address and xpub of a wallet to a small int id, with the owned, watch-only and legacy
+ * flags held in {@link BitSet}s, so that membership checks while summarizing transactions are O(1).
+ * Addresses discovered to belong to one of our xpubs are added as owned, and are remembered for
+ * following pages as long as the wallet's address lists don't change.
+ */
+final class AddressOwnershipIndex {
+
+    static final int NOT_FOUND = -1;
+
+    private final List<String> sourceOwned;
+    private final List<String> sourceWatchOnly;
+    @Nullable
+    private final List<String> sourceLegacy;
+
+    private final HashMap<String, Integer> ids;
+    private final BitSet owned = new BitSet();
+    private final BitSet watchOnly = new BitSet();
+    private final BitSet legacy = new BitSet();
+
+    AddressOwnershipIndex(List<String> ownAddressesAndXpubs,
+                          List<String> watchOnlyAddresses,
+                          @Nullable List<String> legacyAddresses) {
+        sourceOwned = new ArrayList<>(ownAddressesAndXpubs);
+        sourceWatchOnly = new ArrayList<>(watchOnlyAddresses);
+        sourceLegacy = legacyAddresses != null ? new ArrayList<>(legacyAddresses) : null;
+
+        int expectedSize = ownAddressesAndXpubs.size() + watchOnlyAddresses.size();
+        ids = new HashMap<>(Math.max(16, expectedSize * 2));
+
+        for (String address : ownAddressesAndXpubs) {
+            owned.set(intern(address));
+        }
+        for (String address : watchOnlyAddresses) {
+            watchOnly.set(intern(address));
+        }
+        if (legacyAddresses != null) {
+            for (String address : legacyAddresses) {
+                legacy.set(intern(address));
+            }
+        }
+    }
+
+    /**
+     * @return true if this index was built from the same address lists, and can be reused for them
+     */
+    boolean isBuiltFrom(List<String> ownAddressesAndXpubs,
+                        List<String> watchOnlyAddresses,
+                        @Nullable List<String> legacyAddresses) {
+        if (legacyAddresses == null ? sourceLegacy != null : !legacyAddresses.equals(sourceLegacy)) {
+            return false;
+        }
+        return sourceOwned.equals(ownAddressesAndXpubs) && sourceWatchOnly.equals(watchOnlyAddresses);
+    }
+
+    /**
+     * @return true if transactions are being filtered to those touching legacy addresses
+     */
+    boolean filtersLegacy() {
+        return sourceLegacy != null;
+    }
+
+    /**
+     * @return the id of the address, or {@link #NOT_FOUND} if it is unknown to this wallet
+     */
+    int idOf(String address) {
+        Integer id = ids.get(address);
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * Marks an address as belonging to this wallet, returning its id.
+     */
+    int addOwned(String address) {
+        int id = intern(address);
+        owned.set(id);
+        return id;
+    }
+
+    boolean isOwned(int id) {
+        return id != NOT_FOUND && owned.get(id);
+    }
+
+    boolean isOwned(String address) {
+        return isOwned(idOf(address));
+    }
+
+    boolean isWatchOnly(int id) {
+        return id != NOT_FOUND && watchOnly.get(id);
+    }
+
+    boolean isLegacy(int id) {
+        return id != NOT_FOUND && legacy.get(id);
+    }
+
+    private int intern(String address) {
+        Integer id = ids.get(address);
+        if (id == null) {
+            id = ids.size();
+            ids.put(address, id);
+        }
+        return id;
+    }
+}
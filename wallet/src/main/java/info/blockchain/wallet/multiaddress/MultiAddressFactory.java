@@ -22,9 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
 
 import retrofit2.Call;
 import retrofit2.Response;
@@ -39,8 +37,13 @@ public class MultiAddressFactory {
     //Field for testing if address belongs to us - Quicker than derivation
     private HashMap<String, String> addressToXpubMap;
 
+    //Interned wallet addresses, kept across pages of the same wallet
+    private AddressOwnershipIndex ownershipIndex;
+
     public static final String ADDRESS_DECODE_ERROR = "[--address_decode_error--]";
 
+    private static final String RECEIVE_PATH_PREFIX = "M/" + HDChain.RECEIVE_CHAIN + "/";
+
     public MultiAddressFactory(BlockExplorer blockExplorer) {
         this.blockExplorer = blockExplorer;
         this.addressToXpubMap = new HashMap<>();
@@ -198,6 +201,11 @@ public class MultiAddressFactory {
             return summaryList;
         }
 
+        AddressOwnershipIndex index = getOwnershipIndex(ownAddressesAndXpubs, watchOnlyAddresses, legacy);
+        AddressAmounts inputs = new AddressAmounts();
+        AddressAmounts outputs = new AddressAmounts();
+        AddressAmounts change = new AddressAmounts();
+
         for (Transaction tx : txs) {
 
             if (tx.getBlockHeight() != 0 && tx.getBlockHeight() < startingBlockHeight) {
@@ -207,10 +215,11 @@ public class MultiAddressFactory {
             }
 
             boolean isLegacy = false;
+            inputs.clear();
+            outputs.clear();
+            change.clear();
 
             TransactionSummary txSummary = new TransactionSummary();
-            txSummary.inputsMap = new HashMap<>();
-            txSummary.outputsMap = new HashMap<>();
 
             //Map which address belongs to which xpub.
             txSummary.inputsXpubMap = new HashMap<>();
@@ -225,44 +234,43 @@ public class MultiAddressFactory {
             }
 
             //Inputs
-            String inputAddr;
-            BigInteger inputValue;
             for (Input input : tx.getInputs()) {
 
                 Output prevOut = input.getPrevOut();
                 if (prevOut != null) {
 
-                    inputAddr = prevOut.getAddr();
-                    inputValue = prevOut.getValue();
+                    String inputAddr = prevOut.getAddr();
+                    long inputValue = prevOut.getValue().longValue();
                     if (inputAddr != null) {
 
+                        int id;
                         //Transaction from HD account
                         Xpub xpubBody = prevOut.getXpub();
                         if (xpubBody != null) {
                             //xpubBody will only show if it belongs to our account
                             //inputAddr belongs to our own account - add it, it's a transfer/send
-                            ownAddressesAndXpubs.add(inputAddr);
+                            id = index.addOwned(inputAddr);
                             txSummary.inputsXpubMap.put(inputAddr, xpubBody.getM());
+                        } else {
+                            id = index.idOf(inputAddr);
                         }
 
                         //Flag as watch only
-                        if (watchOnlyAddresses.contains(inputAddr)) {
+                        if (index.isWatchOnly(id)) {
                             txSummary.setWatchOnly(true);
                         }
 
                         //Flag as imported legacy address
-                        if (legacy != null && legacy.contains(inputAddr)) {
+                        if (index.isLegacy(id)) {
                             isLegacy = true;
                         }
 
                         //Keep track of inputs
-                        BigInteger existingBalance = txSummary.inputsMap.containsKey(inputAddr)
-                                ? txSummary.inputsMap.get(inputAddr) : BigInteger.ZERO;
-                        txSummary.inputsMap.put(inputAddr, existingBalance.add(inputValue));
+                        inputs.add(inputAddr, inputValue);
 
                     } else {
                         //No input address available
-                        txSummary.inputsMap.put(ADDRESS_DECODE_ERROR, inputValue);
+                        inputs.put(ADDRESS_DECODE_ERROR, inputValue);
                     }
 
                 } else {
@@ -270,106 +278,89 @@ public class MultiAddressFactory {
                 }
             }
 
-            HashMap<String, BigInteger> changeMap = new HashMap<>();
-            String outputAddr;
-            BigInteger outputValue;
             for (Output output : tx.getOut()) {
 
-                outputAddr = output.getAddr();
-                outputValue = output.getValue();
+                String outputAddr = output.getAddr();
+                long outputValue = output.getValue().longValue();
                 if (outputAddr != null) {
 
+                    int id;
                     Xpub xpubBody = output.getXpub();
                     if (xpubBody != null) {
 
                         //inputAddr belongs to our own account - add it
-                        ownAddressesAndXpubs.add(outputAddr);
-                        if (xpubBody.getPath().startsWith("M/" + HDChain.RECEIVE_CHAIN + "/")) {
-                            BigInteger existingBalance = txSummary.outputsMap.containsKey(outputAddr)
-                                    ? txSummary.outputsMap.get(outputAddr) : BigInteger.ZERO;
-                            txSummary.outputsMap.put(outputAddr, existingBalance.add(outputValue));
+                        id = index.addOwned(outputAddr);
+                        if (xpubBody.getPath().startsWith(RECEIVE_PATH_PREFIX)) {
+                            outputs.add(outputAddr, outputValue);
                             txSummary.outputsXpubMap.put(outputAddr, xpubBody.getM());
                         } else {
                             //Change
-                            changeMap.put(outputAddr, outputValue);
+                            change.put(outputAddr, outputValue);
                         }
 
                     } else {
-                        //If we own this address and it's not change coming back, it's a transfer
-                        if (ownAddressesAndXpubs.contains(outputAddr)
-                                && !txSummary.inputsMap.keySet().contains(outputAddr)) {
-
+                        id = index.idOf(outputAddr);
+                        if (inputs.contains(outputAddr)) {
+                            //Our change
+                            change.put(outputAddr, outputValue);
+                        } else if (index.isOwned(id)) {
+                            //If we own this address and it's not change coming back, it's a transfer
                             if (txSummary.getDirection() == Direction.SENT) {
                                 txSummary.setDirection(Direction.TRANSFERRED);
                             }
-
-                            //Don't add change coming back
-                            if (!txSummary.inputsMap.containsKey(outputAddr)) {
-                                BigInteger existingBalance = txSummary.outputsMap.containsKey(outputAddr)
-                                        ? txSummary.outputsMap.get(outputAddr) : BigInteger.ZERO;
-                                txSummary.outputsMap.put(outputAddr, existingBalance.add(outputValue));
-                            } else {
-                                changeMap.put(outputAddr, outputValue);
-                            }
-
-                        } else if (txSummary.inputsMap.keySet().contains(outputAddr)) {
-                            //Our change
-                            changeMap.put(outputAddr, outputValue);
+                            outputs.add(outputAddr, outputValue);
                         } else {
                             //Address does not belong to us
-                            BigInteger existingBalance = txSummary.outputsMap.containsKey(outputAddr)
-                                    ? txSummary.outputsMap.get(outputAddr) : BigInteger.ZERO;
-                            txSummary.outputsMap.put(outputAddr, existingBalance.add(outputValue));
+                            outputs.add(outputAddr, outputValue);
                         }
                     }
 
                     //Flag as watch only
-                    if (watchOnlyAddresses.contains(outputAddr)) {
+                    if (index.isWatchOnly(id)) {
                         txSummary.setWatchOnly(true);
                     }
 
                     //Flag as imported legacy address
-                    if (legacy != null && legacy.contains(outputAddr)) {
+                    if (index.isLegacy(id)) {
                         isLegacy = true;
                     }
                 } else {
                     //No output address available
-                    txSummary.outputsMap.put(ADDRESS_DECODE_ERROR, outputValue);
+                    outputs.put(ADDRESS_DECODE_ERROR, outputValue);
                 }
             }
 
             //If we are filtering for legacy and nothing found
-            if (legacy != null && !isLegacy) {
+            if (index.filtersLegacy() && !isLegacy) {
                 continue;
             }
 
-            //Remove input addresses not ours
-            filterOwnedAddresses(
-                    ownAddressesAndXpubs,
-                    txSummary.inputsMap,
-                    txSummary.outputsMap,
-                    txSummary.getDirection());
+            //Remove input addresses not ours when sending, output addresses not ours when receiving
+            Direction direction = txSummary.getDirection();
+            AddressOwnershipIndex ownedInputs = direction == Direction.SENT ? index : null;
+            AddressOwnershipIndex ownedOutputs = direction == Direction.RECEIVED ? index : null;
+            txSummary.inputsMap = inputs.toMap(ownedInputs);
+            txSummary.outputsMap = outputs.toMap(ownedOutputs);
 
             txSummary.setHash(tx.getHash());
             txSummary.setTime(tx.getTime());
             txSummary.setDoubleSpend(tx.isDoubleSpend());
             txSummary.setFee(tx.getFee());
 
-            if (txSummary.getDirection() == Direction.RECEIVED) {
-                BigInteger total = calculateTotalReceived(txSummary.outputsMap);
-                txSummary.setTotal(total);
+            if (direction == Direction.RECEIVED) {
+                txSummary.setTotal(BigInteger.valueOf(outputs.sum(ownedOutputs)));
             } else {
-                BigInteger total = calculateTotalSent(
-                        txSummary.inputsMap,
-                        changeMap,
-                        tx.getFee(),
-                        txSummary.getDirection());
-                txSummary.setTotal(total);
+                long total = inputs.sum(ownedInputs) - change.sum(null);
+                if (direction == Direction.TRANSFERRED) {
+                    total -= tx.getFee().longValue();
+                }
+                txSummary.setTotal(BigInteger.valueOf(total));
             }
 
             //Set confirmations
             long latestBlock = multiAddress.getInfo().getLatestBlock().getHeight();
             long txBlockHeight = tx.getBlockHeight();
+            txSummary.setBlockHeight(txBlockHeight);
             if (latestBlock > 0 && txBlockHeight > 0) {
                 txSummary.setConfirmations((int) ((latestBlock - txBlockHeight) + 1));
             } else {
@@ -385,57 +376,18 @@ public class MultiAddressFactory {
         return summaryList;
     }
 
-    private void filterOwnedAddresses(List<String> ownAddressesAndXpubs,
-                                      HashMap<String, BigInteger> inputsMap,
-                                      HashMap<String, BigInteger> outputsMap, Direction direction) {
-
-        Iterator<Entry<String, BigInteger>> iterator = inputsMap.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Entry<String, BigInteger> item = iterator.next();
-            if (!ownAddressesAndXpubs.contains(item.getKey()) && direction.equals(Direction.SENT)) {
-                iterator.remove();
-            }
-        }
-
-        iterator = outputsMap.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Entry<String, BigInteger> item = iterator.next();
-            if (!ownAddressesAndXpubs.contains(item.getKey()) && direction.equals(Direction.RECEIVED)) {
-                iterator.remove();
-            }
-        }
-    }
-
-    private BigInteger calculateTotalReceived(HashMap<String, BigInteger> outputsMap) {
-
-        BigInteger total = BigInteger.ZERO;
-
-        for (BigInteger output : outputsMap.values()) {
-            total = total.add(output);
-        }
-
-        return total;
-    }
-
-    private BigInteger calculateTotalSent(HashMap<String, BigInteger> inputsMap,
-                                          HashMap<String, BigInteger> changeMap,
-                                          BigInteger fee, Direction direction) {
-
-        BigInteger total = BigInteger.ZERO;
-
-        for (BigInteger input : inputsMap.values()) {
-            total = total.add(input);
-        }
-
-        for (BigInteger change : changeMap.values()) {
-            total = total.subtract(change);
-        }
-
-        if (direction == Direction.TRANSFERRED) {
-            total = total.subtract(fee);
+    /**
+     * Returns the ownership index for these address lists, reusing the previous one when the lists
+     * haven't changed so that pages of the same wallet share it.
+     */
+    private AddressOwnershipIndex getOwnershipIndex(List<String> ownAddressesAndXpubs,
+                                                    List<String> watchOnlyAddresses,
+                                                    List<String> legacy) {
+        if (ownershipIndex == null
+                || !ownershipIndex.isBuiltFrom(ownAddressesAndXpubs, watchOnlyAddresses, legacy)) {
+            ownershipIndex = new AddressOwnershipIndex(ownAddressesAndXpubs, watchOnlyAddresses, legacy);
         }
-
-        return total;
+        return ownershipIndex;
     }
 
-}
\ No newline at end of file
+}
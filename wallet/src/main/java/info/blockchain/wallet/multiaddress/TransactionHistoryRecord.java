@@ -0,0 +1,130 @@
+package info.blockchain.wallet.multiaddress;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+
+/**
+ * A single line of a {@link TransactionHistoryStore} file. Either a transaction summary, a removed
+ * transaction (hash and removed flag only) or, when there is no hash, the store's own state.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonAutoDetect(fieldVisibility = Visibility.NONE,
+    getterVisibility = Visibility.NONE,
+    setterVisibility = Visibility.NONE,
+    creatorVisibility = Visibility.NONE,
+    isGetterVisibility = Visibility.NONE)
+class TransactionHistoryRecord {
+
+    @JsonProperty("hash")
+    String hash;
+
+    @JsonProperty("removed")
+    Boolean removed;
+
+    @JsonProperty("direction")
+    String direction;
+
+    @JsonProperty("time")
+    long time;
+
+    @JsonProperty("block_height")
+    long blockHeight;
+
+    @JsonProperty("confirmations")
+    int confirmations;
+
+    @JsonProperty("total")
+    BigInteger total;
+
+    @JsonProperty("fee")
+    BigInteger fee;
+
+    @JsonProperty("watch_only")
+    boolean watchOnly;
+
+    @JsonProperty("double_spend")
+    boolean doubleSpend;
+
+    @JsonProperty("inputs")
+    HashMap<String, BigInteger> inputs;
+
+    @JsonProperty("outputs")
+    HashMap<String, BigInteger> outputs;
+
+    @JsonProperty("inputs_xpub")
+    HashMap<String, String> inputsXpub;
+
+    @JsonProperty("outputs_xpub")
+    HashMap<String, String> outputsXpub;
+
+    @JsonProperty("complete")
+    Boolean complete;
+
+    @JsonProperty("latest_block")
+    Long latestBlock;
+
+    static TransactionHistoryRecord of(TransactionSummary summary) {
+        TransactionHistoryRecord record = new TransactionHistoryRecord();
+        record.hash = summary.getHash();
+        record.direction = summary.getDirection().name();
+        record.time = summary.getTime();
+        record.blockHeight = summary.getBlockHeight();
+        record.confirmations = summary.getConfirmations();
+        record.total = summary.getTotal();
+        record.fee = summary.getFee();
+        record.watchOnly = summary.isWatchOnly();
+        record.doubleSpend = summary.isDoubleSpend();
+        record.inputs = summary.getInputsMap();
+        record.outputs = summary.getOutputsMap();
+        record.inputsXpub = summary.getInputsXpubMap();
+        record.outputsXpub = summary.getOutputsXpubMap();
+        return record;
+    }
+
+    static TransactionHistoryRecord removal(String hash) {
+        TransactionHistoryRecord record = new TransactionHistoryRecord();
+        record.hash = hash;
+        record.removed = true;
+        return record;
+    }
+
+    static TransactionHistoryRecord state(boolean complete, long latestBlock) {
+        TransactionHistoryRecord record = new TransactionHistoryRecord();
+        record.complete = complete;
+        record.latestBlock = latestBlock;
+        return record;
+    }
+
+    boolean isState() {
+        return hash == null;
+    }
+
+    boolean isRemoval() {
+        return removed != null && removed;
+    }
+
+    TransactionSummary toSummary() {
+        TransactionSummary summary = new TransactionSummary();
+        summary.setHash(hash);
+        summary.setDirection(TransactionSummary.Direction.valueOf(direction));
+        summary.setTime(time);
+        summary.setBlockHeight(blockHeight);
+        summary.setConfirmations(confirmations);
+        summary.setTotal(total);
+        summary.setFee(fee);
+        summary.setWatchOnly(watchOnly);
+        summary.setDoubleSpend(doubleSpend);
+        summary.setInputsMap(inputs != null ? inputs : new HashMap<String, BigInteger>());
+        summary.setOutputsMap(outputs != null ? outputs : new HashMap<String, BigInteger>());
+        summary.setInputsXpubMap(inputsXpub != null ? inputsXpub : new HashMap<String, String>());
+        summary.setOutputsXpubMap(outputsXpub != null ? outputsXpub : new HashMap<String, String>());
+        return summary;
+    }
+}
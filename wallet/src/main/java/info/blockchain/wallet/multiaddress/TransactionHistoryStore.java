@@ -0,0 +1,435 @@
+package info.blockchain.wallet.multiaddress;
+
+import info.blockchain.wallet.crypto.AESUtil;
+import info.blockchain.wallet.crypto.KeyDerivation;
+import info.blockchain.wallet.exceptions.ApiException;
+import info.blockchain.wallet.util.JsonMappers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.crypto.InvalidCipherTextException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persistent transaction history for a single context, i.e. all accounts, imported addresses or a
+ * single xpub of one coin. Transaction summaries fetched through {@link MultiAddressFactory} are
+ * merged in keyed by hash and appended to a file, one encrypted JSON record per line, where later
+ * records replace earlier ones. The file is rewritten once it holds mostly replaced records.
+ *
+ * Records are encrypted with a key derived from the wallet password, so lines written under an
+ * earlier password are skipped like any other unreadable line and the history is fetched again.
+ *
+ * The store always holds an unbroken run of the newest confirmed transactions, so a refresh only
+ * fetches pages until it reaches a transaction that was already stored as confirmed. A store
+ * without confirmed transactions only fetches the newest page, older pages are fetched as they are
+ * read. Stored history is read back by time cursor rather than by offset.
+ */
+public class TransactionHistoryStore {
+
+    /**
+     * Fetches a page of transaction summaries, newest first. Blocking.
+     */
+    public interface PageFetcher {
+        List<TransactionSummary> fetch(int limit, int offset) throws IOException, ApiException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionHistoryStore.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Upper bound on pages fetched by a single refresh before the stored history is dropped
+    static final int MAX_SYNC_PAGES = 10;
+    // Slack allowed before replaced records are compacted out of the file
+    private static final int COMPACTION_SLACK = 100;
+
+    private static final int KEY_BITS = 256;
+
+    private final File file;
+    private final String password;
+    private byte[] key;
+
+    private final HashMap<String, TransactionSummary> transactions = new HashMap<>();
+    // Newest first, null whenever transactions changed since it was last built
+    private List<TransactionSummary> sorted;
+    private boolean complete;
+    private long latestBlock;
+    private int recordCount;
+    private boolean loaded;
+
+    /**
+     * @param password The wallet password, from which the key the records are encrypted with is
+     *                 derived when the store is first used
+     */
+    public TransactionHistoryStore(File file, String password) {
+        this.file = file;
+        this.password = password;
+    }
+
+    /**
+     * Fetches the newest transactions, page by page until they join up with the stored history, and
+     * merges them in. Only the newest page is fetched while no confirmed transaction is stored.
+     *
+     * @param fetcher  Fetches pages of transactions from the API
+     * @param pageSize Amount of transactions per page
+     * @return The number of transactions which were not stored before
+     */
+    public synchronized int sync(PageFetcher fetcher, int pageSize) throws IOException, ApiException {
+        ensureLoaded();
+
+        // Pending transactions, e.g. pushed over a websocket, can't be joined on
+        boolean hasHistory = confirmedCount() > 0;
+        int maxPages = hasHistory ? MAX_SYNC_PAGES : 1;
+        List<TransactionSummary> fetched = new ArrayList<>();
+        boolean joined = false;
+        boolean reachedEnd = false;
+
+        for (int page = 0; page < maxPages && !joined && !reachedEnd; page++) {
+            List<TransactionSummary> txs = fetcher.fetch(pageSize, page * pageSize);
+            fetched.addAll(txs);
+            reachedEnd = txs.isEmpty() || txs.size() < pageSize;
+
+            for (TransactionSummary tx : txs) {
+                TransactionSummary stored = transactions.get(tx.getHash());
+                if (stored != null && stored.getBlockHeight() > 0) {
+                    joined = true;
+                    break;
+                }
+            }
+        }
+
+        List<TransactionHistoryRecord> records = new ArrayList<>();
+        if (!joined && !reachedEnd && hasHistory) {
+            // Too much happened since the last refresh to fill the gap, start over from the newest
+            log.info("Transaction history too far behind, discarding {} stored transactions", transactions.size());
+            transactions.clear();
+            complete = false;
+            recordCount = 0;
+            sorted = null;
+            file.delete();
+        } else if (!fetched.isEmpty()) {
+            records.addAll(removeDroppedPending(fetched));
+        }
+
+        if (reachedEnd) {
+            complete = true;
+        }
+        int added = merge(fetched, records);
+        append(records);
+        return added;
+    }
+
+    /**
+     * Fetches the page of transactions following the stored history and merges it in.
+     *
+     * @return The number of transactions which were not stored before
+     */
+    public synchronized int fetchOlder(PageFetcher fetcher, int pageSize) throws IOException, ApiException {
+        ensureLoaded();
+        if (complete) {
+            return 0;
+        }
+
+        // Pending transactions may not be part of the API's history yet, so they aren't counted
+        List<TransactionSummary> txs = fetcher.fetch(pageSize, confirmedCount());
+        if (txs.isEmpty() || txs.size() < pageSize) {
+            complete = true;
+        }
+
+        List<TransactionHistoryRecord> records = new ArrayList<>();
+        int added = merge(txs, records);
+        append(records);
+        return added;
+    }
+
+    /**
+     * Adds a transaction which isn't in a block yet ahead of the next sync, e.g. one pushed over a
+     * websocket. Like any unconfirmed transaction it is dropped by a later sync which doesn't return
+     * it. Nothing changes if the transaction is stored already.
+     *
+     * @return True if the transaction was added
+     */
+    public synchronized boolean addPending(TransactionSummary tx) throws IOException {
+        ensureLoaded();
+        if (transactions.containsKey(tx.getHash())) {
+            return false;
+        }
+
+        List<TransactionHistoryRecord> records = new ArrayList<>();
+        merge(Collections.singletonList(tx), records);
+        append(records);
+        return true;
+    }
+
+    /**
+     * Returns stored transactions, newest first, without touching the network.
+     *
+     * @param beforeTime Only transactions strictly older than this time are returned. Use
+     *                   {@link Long#MAX_VALUE} for the first page.
+     * @param limit      Maximum amount of transactions returned
+     */
+    public synchronized List<TransactionSummary> getTransactions(long beforeTime, int limit) throws IOException {
+        ensureLoaded();
+        List<TransactionSummary> list = getSorted();
+
+        int from = firstIndexBefore(list, beforeTime);
+        int to = Math.min(list.size(), from + limit);
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    /**
+     * Returns stored transactions, newest first, fetching older pages from the network while fewer
+     * than limit are stored before the cursor.
+     */
+    public synchronized List<TransactionSummary> getTransactions(long beforeTime,
+                                                              int limit,
+                                                              PageFetcher fetcher) throws IOException, ApiException {
+        List<TransactionSummary> page = getTransactions(beforeTime, limit);
+        while (page.size() < limit && !complete) {
+            if (fetchOlder(fetcher, limit) == 0) {
+                break;
+            }
+            page = getTransactions(beforeTime, limit);
+        }
+        return page;
+    }
+
+    /**
+     * @return True if the store holds the whole history back to the first transaction
+     */
+    public synchronized boolean isComplete() throws IOException {
+        ensureLoaded();
+        return complete;
+    }
+
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return transactions.size();
+    }
+
+    /**
+     * Removes all stored transactions, both in memory and on disk.
+     */
+    public synchronized void clear() {
+        transactions.clear();
+        sorted = null;
+        complete = false;
+        latestBlock = 0;
+        recordCount = 0;
+        loaded = true;
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete transaction history {}", file);
+        }
+    }
+
+    private int confirmedCount() {
+        int count = 0;
+        for (TransactionSummary tx : transactions.values()) {
+            if (tx.getBlockHeight() > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                recordCount++;
+                TransactionHistoryRecord record;
+                try {
+                    record = JsonMappers.fromJson(AESUtil.decryptWithKey(key(), line), TransactionHistoryRecord.class);
+                } catch (Exception e) {
+                    // A line cut short by the process dying mid-write, or written under an earlier password
+                    log.warn("Skipping unreadable transaction history record");
+                    continue;
+                }
+                if (record.isState()) {
+                    complete = record.complete != null && record.complete;
+                    latestBlock = record.latestBlock != null ? record.latestBlock : 0;
+                } else if (record.isRemoval()) {
+                    transactions.remove(record.hash);
+                } else {
+                    transactions.put(record.hash, record.toSummary());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        updateConfirmations(transactions.values());
+    }
+
+    /**
+     * Unconfirmed transactions which are newer than the oldest fetched but weren't fetched have been
+     * dropped by the network, e.g. double spends.
+     */
+    private List<TransactionHistoryRecord> removeDroppedPending(List<TransactionSummary> fetched) {
+        Set<String> fetchedHashes = new HashSet<>();
+        long oldestFetched = Long.MAX_VALUE;
+        for (TransactionSummary tx : fetched) {
+            fetchedHashes.add(tx.getHash());
+            oldestFetched = Math.min(oldestFetched, tx.getTime());
+        }
+
+        List<TransactionHistoryRecord> removals = new ArrayList<>();
+        for (TransactionSummary stored : new ArrayList<>(transactions.values())) {
+            if (stored.getBlockHeight() == 0
+                    && stored.getTime() >= oldestFetched
+                    && !fetchedHashes.contains(stored.getHash())) {
+                transactions.remove(stored.getHash());
+                removals.add(TransactionHistoryRecord.removal(stored.getHash()));
+            }
+        }
+        if (!removals.isEmpty()) {
+            sorted = null;
+        }
+        return removals;
+    }
+
+    private int merge(List<TransactionSummary> fetched, List<TransactionHistoryRecord> records) {
+        int added = 0;
+        for (TransactionSummary tx : fetched) {
+            // Confirmations are implied by the latest block: height + confirmations - 1
+            if (tx.getBlockHeight() > 0 && tx.getConfirmations() > 0) {
+                latestBlock = Math.max(latestBlock, tx.getBlockHeight() + tx.getConfirmations() - 1);
+            }
+            if (transactions.put(tx.getHash(), tx) == null) {
+                added++;
+            }
+            records.add(TransactionHistoryRecord.of(tx));
+        }
+        if (!fetched.isEmpty()) {
+            sorted = null;
+        }
+        updateConfirmations(transactions.values());
+        records.add(TransactionHistoryRecord.state(complete, latestBlock));
+        return added;
+    }
+
+    private void updateConfirmations(Collection<TransactionSummary> txs) {
+        if (latestBlock <= 0) {
+            return;
+        }
+        for (TransactionSummary tx : txs) {
+            if (tx.getBlockHeight() > 0) {
+                tx.setConfirmations((int) (latestBlock - tx.getBlockHeight() + 1));
+            }
+        }
+    }
+
+    private void append(List<TransactionHistoryRecord> records) throws IOException {
+        if (recordCount + records.size() > transactions.size() * 2 + COMPACTION_SLACK) {
+            compact();
+            return;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        write(records, new FileOutputStream(file, true));
+        recordCount += records.size();
+    }
+
+    private void compact() throws IOException {
+        List<TransactionHistoryRecord> records = new ArrayList<>();
+        for (TransactionSummary tx : getSorted()) {
+            records.add(TransactionHistoryRecord.of(tx));
+        }
+        records.add(TransactionHistoryRecord.state(complete, latestBlock));
+
+        File temp = new File(file.getPath() + ".tmp");
+        write(records, new FileOutputStream(temp, false));
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+        recordCount = records.size();
+    }
+
+    private void write(List<TransactionHistoryRecord> records, FileOutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+        try {
+            for (TransactionHistoryRecord record : records) {
+                writer.write(new String(AESUtil.encryptWithKey(key(), JsonMappers.toJson(record)), UTF_8));
+                writer.write('\n');
+            }
+        } catch (InvalidCipherTextException e) {
+            throw new IOException(e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private byte[] key() {
+        if (key == null) {
+            key = KeyDerivation.pbkdf2(password, file.getName().getBytes(UTF_8),
+                    AESUtil.PIN_PBKDF2_ITERATIONS, KEY_BITS);
+        }
+        return key;
+    }
+
+    private List<TransactionSummary> getSorted() {
+        if (sorted == null) {
+            sorted = new ArrayList<>(transactions.values());
+            Collections.sort(sorted, new MostRecentFirstComparator());
+        }
+        return sorted;
+    }
+
+    private static int firstIndexBefore(List<TransactionSummary> list, long beforeTime) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid).getTime() >= beforeTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static class MostRecentFirstComparator implements Comparator<TransactionSummary> {
+
+        @Override
+        public int compare(TransactionSummary t1, TransactionSummary t2) {
+            //noinspection UseCompareMethod -> Long.compare() can break on specific Android versions
+            if (t1.getTime() > t2.getTime()) {
+                return -1;
+            } else if (t1.getTime() < t2.getTime()) {
+                return 1;
+            } else {
+                return t1.getHash().compareTo(t2.getHash());
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class TransactionSummary {
 
     private Direction direction;
     private long time;
+    private long blockHeight;//0 until included in a block
     private int confirmations;
     private boolean isWatchOnly;
     private boolean isDoubleSpend;
@@ -52,6 +53,14 @@ public class TransactionSummary {
         this.time = time;
     }
 
+    public long getBlockHeight() {
+        return blockHeight;
+    }
+
+    public void setBlockHeight(long blockHeight) {
+        this.blockHeight = blockHeight;
+    }
+
     public int getConfirmations() {
         return confirmations;
     }
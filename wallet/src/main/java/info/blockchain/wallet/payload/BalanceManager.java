@@ -11,6 +11,7 @@ import javax.annotation.Nonnull;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class BalanceManager {
@@ -19,7 +20,7 @@ public abstract class BalanceManager {
     private CryptoCurrency cryptoCurrency;
 
     @Nonnull
-    private CryptoBalanceMap balanceMap;
+    private volatile CryptoBalanceMap balanceMap;
 
     BalanceManager(@Nonnull BlockExplorer blockExplorer, @Nonnull CryptoCurrency cryptoCurrency) {
         this.blockExplorer = blockExplorer;
@@ -27,7 +28,7 @@ public abstract class BalanceManager {
         balanceMap = CryptoBalanceMap.zero(cryptoCurrency);
     }
 
-    public void subtractAmountFromAddressBalance(String address, BigInteger amount) {
+    public synchronized void subtractAmountFromAddressBalance(String address, BigInteger amount) {
         balanceMap = balanceMap.subtractAmountFromAddress(address, new CryptoValue(cryptoCurrency, amount));
     }
 
@@ -65,6 +66,40 @@ public abstract class BalanceManager {
         );
     }
 
+    /**
+     * Applies the balance changes of a transaction ahead of the next balance fetch, e.g. one pushed
+     * over a websocket.
+     *
+     * @param delta Signed amounts keyed by address or xpub
+     */
+    public synchronized void applyTransactionDelta(Map<String, BigInteger> delta) {
+        balanceMap = balanceMap.applyDelta(delta);
+    }
+
+    /**
+     * Fetches all balances and replaces the current ones, as {@link #updateAllBalances} does.
+     *
+     * @return True if the fetched balances match the current ones, so no change has been missed
+     */
+    public boolean reconcileBalances(
+            Set<String> xpubs,
+            Set<String> legacyAddresses,
+            Set<String> legacyWatchOnlyAddresses
+    ) {
+        CryptoBalanceMap fetched = CryptoBalanceMapKt.calculateCryptoBalanceMap(
+                cryptoCurrency,
+                getBalanceQuery(),
+                xpubs,
+                legacyAddresses,
+                legacyWatchOnlyAddresses
+        );
+        synchronized (this) {
+            boolean matches = fetched.matches(balanceMap);
+            balanceMap = fetched;
+            return matches;
+        }
+    }
+
     private BalanceCall getBalanceQuery() {
         return new BalanceCall(blockExplorer, cryptoCurrency);
     }
@@ -25,6 +25,33 @@ data class CryptoBalanceMap(
         return copy(balances = newBalances)
     }
 
+    /**
+     * Adds the signed amounts in [delta], keyed by address or xpub, to the balances. Entries which
+     * aren't tracked here are ignored.
+     */
+    fun applyDelta(delta: Map<String, BigInteger>): CryptoBalanceMap {
+        val tracked = delta.filterKeys { it in xpubs || it in legacy || it in watchOnlyLegacy }
+        if (tracked.isEmpty()) return this
+        val newBalances = balances.toMutableMap()
+            .apply {
+                tracked.forEach { (address, amount) ->
+                    set(address, (get(address) ?: BigInteger.ZERO) + amount)
+                }
+            }
+        return copy(balances = newBalances)
+    }
+
+    /**
+     * True if both maps track the same addresses and xpubs with the same balances. A missing
+     * balance counts as zero.
+     */
+    fun matches(other: CryptoBalanceMap): Boolean =
+        cryptoCurrency == other.cryptoCurrency &&
+            xpubs == other.xpubs &&
+            legacy == other.legacy &&
+            watchOnlyLegacy == other.watchOnlyLegacy &&
+            (xpubs + legacy + watchOnlyLegacy).all { this[it] == other[it] }
+
     operator fun get(address: String) =
         CryptoValue(cryptoCurrency, balances[address] ?: BigInteger.ZERO)
 
@@ -0,0 +1,250 @@
+package info.blockchain.wallet.payload;
+
+import info.blockchain.api.blockexplorer.BlockExplorer;
+import info.blockchain.api.blockexplorer.FilterType;
+import info.blockchain.api.data.Balance;
+import retrofit2.Call;
+import retrofit2.Response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds how far a run of deterministic keys (accounts of a wallet, or addresses of a chain) is in
+ * use by looking them up in batches until a number of unused keys in a row is seen.
+ *
+ * Keys are derived in parallel on a fork-join pool, and the next batch is derived while the
+ * lookup for the current one is in flight. Lookups are made one at a time and in index order, the
+ * first one of initialBatchSize keys and each following one twice as large up to maxBatchSize.
+ */
+public class GapLimitDiscovery<T> {
+
+    public interface Deriver<T> {
+
+        /**
+         * Derives the node at index. Called concurrently from pool threads.
+         */
+        T derive(int index) throws Exception;
+
+        /**
+         * @return The xpub or address which is looked up for node
+         */
+        String keyOf(T node);
+    }
+
+    public interface UsageLookup {
+
+        /**
+         * @return The subset of keys which have any transactions
+         */
+        Set<String> findUsed(List<String> keys) throws Exception;
+    }
+
+    public static class Result<T> {
+
+        private final List<T> nodes;
+        private final int usedCount;
+        private final int lastUsedIndex;
+
+        Result(List<T> nodes, int usedCount, int lastUsedIndex) {
+            this.nodes = nodes;
+            this.usedCount = usedCount;
+            this.lastUsedIndex = lastUsedIndex;
+        }
+
+        /**
+         * @return Every node scanned, in index order from the start index
+         */
+        public List<T> getNodes() {
+            return nodes;
+        }
+
+        public int getUsedCount() {
+            return usedCount;
+        }
+
+        /**
+         * @return The index of the last used node, or -1 if none was used
+         */
+        public int getLastUsedIndex() {
+            return lastUsedIndex;
+        }
+    }
+
+    private final Deriver<T> deriver;
+    private final UsageLookup usageLookup;
+    private final int gapLimit;
+    private final int initialBatchSize;
+    private final int maxBatchSize;
+
+    public GapLimitDiscovery(Deriver<T> deriver,
+                             UsageLookup usageLookup,
+                             int gapLimit,
+                             int initialBatchSize,
+                             int maxBatchSize) {
+        this.deriver = deriver;
+        this.usageLookup = usageLookup;
+        this.gapLimit = gapLimit;
+        this.initialBatchSize = initialBatchSize;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Scans from startIndex until gapLimit unused nodes in a row have been seen.
+     */
+    public Result<T> discover(int startIndex) throws Exception {
+        ForkJoinPool pool = createPool();
+        try {
+            List<T> nodes = new ArrayList<>();
+            int usedCount = 0;
+            int lastUsedIndex = -1;
+            int gap = 0;
+
+            int index = startIndex;
+            int batchSize = initialBatchSize;
+            ForkJoinTask<List<T>> pending = pool.submit(new DeriveTask<>(deriver, index, index + batchSize));
+
+            while (true) {
+                List<T> batch = join(pending);
+
+                // Derive the next batch while this one is looked up
+                int nextIndex = index + batchSize;
+                int nextBatchSize = Math.min(batchSize * 2, maxBatchSize);
+                pending = pool.submit(new DeriveTask<>(deriver, nextIndex, nextIndex + nextBatchSize));
+
+                List<String> keys = new ArrayList<>(batch.size());
+                for (T node : batch) {
+                    keys.add(deriver.keyOf(node));
+                }
+                Set<String> used = usageLookup.findUsed(keys);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    nodes.add(batch.get(i));
+                    if (used.contains(keys.get(i))) {
+                        usedCount++;
+                        lastUsedIndex = index + i;
+                        gap = 0;
+                    } else {
+                        gap++;
+                    }
+
+                    if (gap >= gapLimit) {
+                        pending.cancel(true);
+                        return new Result<>(nodes, usedCount, lastUsedIndex);
+                    }
+                }
+
+                index = nextIndex;
+                batchSize = nextBatchSize;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Derives the nodes from fromIndex up to, but not including, toIndex in parallel.
+     */
+    public List<T> derive(int fromIndex, int toIndex) throws Exception {
+        if (toIndex <= fromIndex) {
+            return Collections.emptyList();
+        }
+        ForkJoinPool pool = createPool();
+        try {
+            return join(pool.submit(new DeriveTask<>(deriver, fromIndex, toIndex)));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Looks bitcoin keys up with the balance endpoint, a key counting as used if it has any
+     * transactions.
+     */
+    public static UsageLookup balanceLookup(final BlockExplorer blockExplorer) {
+        return new UsageLookup() {
+            @Override
+            public Set<String> findUsed(List<String> keys) throws Exception {
+                Call<HashMap<String, Balance>> call =
+                    blockExplorer.getBalance(keys, FilterType.RemoveUnspendable);
+                Response<HashMap<String, Balance>> exe = call.execute();
+
+                if (!exe.isSuccessful()) {
+                    throw new Exception(exe.code() + " " + exe.errorBody().string());
+                }
+
+                Set<String> used = new HashSet<>();
+                for (Map.Entry<String, Balance> entry : exe.body().entrySet()) {
+                    if (entry.getValue().getTxCount() > 0L) {
+                        used.add(entry.getKey());
+                    }
+                }
+                return used;
+            }
+        };
+    }
+
+    private static ForkJoinPool createPool() {
+        return new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static <T> List<T> join(ForkJoinTask<List<T>> task) throws Exception {
+        try {
+            return task.join();
+        } catch (DerivationException e) {
+            // The pool may rethrow a copy of the exception wrapping the original
+            Throwable cause = e.getCause();
+            while (cause instanceof DerivationException) {
+                cause = cause.getCause();
+            }
+            throw (Exception) cause;
+        }
+    }
+
+    private static class DeriveTask<T> extends RecursiveTask<List<T>> {
+
+        private final Deriver<T> deriver;
+        private final int fromIndex;
+        private final int toIndex;
+
+        DeriveTask(Deriver<T> deriver, int fromIndex, int toIndex) {
+            this.deriver = deriver;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (toIndex - fromIndex == 1) {
+                try {
+                    return Collections.singletonList(deriver.derive(fromIndex));
+                } catch (Exception e) {
+                    throw new DerivationException(e);
+                }
+            }
+
+            int middle = (fromIndex + toIndex) >>> 1;
+            DeriveTask<T> upper = new DeriveTask<>(deriver, middle, toIndex);
+            upper.fork();
+            List<T> nodes = new ArrayList<>(toIndex - fromIndex);
+            nodes.addAll(new DeriveTask<>(deriver, fromIndex, middle).compute());
+            nodes.addAll(upper.join());
+            return nodes;
+        }
+    }
+
+    private static class DerivationException extends RuntimeException {
+
+        DerivationException(Exception cause) {
+            super(cause);
+        }
+    }
+}
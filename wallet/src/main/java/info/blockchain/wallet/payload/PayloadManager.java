@@ -54,6 +54,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @SuppressWarnings("ALL")
@@ -974,6 +975,31 @@ public class PayloadManager {
         balanceManager.updateAllBalances(xpubs, allLegacy, watchOnlyLegacy);
     }
 
+    /**
+     * Applies the balance changes of a transaction pushed over the websocket, so the balances
+     * reflect it before the next {@link #reconcileBalances()}.
+     *
+     * @param delta Signed amounts keyed by address or xpub
+     */
+    public void applyTransactionDelta(Map<String, BigInteger> delta) {
+        balanceManager.applyTransactionDelta(delta);
+    }
+
+    /**
+     * Fetches all balances like {@link #updateAllBalances()} and compares them with the balances
+     * the applied transaction deltas led to.
+     *
+     * @return True if they match, false if a change was missed and transactions should be refreshed
+     */
+    public boolean reconcileBalances() throws ServerConnectionException, IOException {
+        Wallet wallet = getPayload();
+        Set<String> xpubs = WalletExtensionsKt.activeXpubs(wallet);
+        Set<String> allLegacy = WalletExtensionsKt.nonArchivedLegacyAddressStrings(wallet);
+        Set<String> watchOnlyLegacy = WalletExtensionsKt.nonArchivedWatchOnlyLegacyAddressStrings(wallet);
+
+        return balanceManager.reconcileBalances(xpubs, allLegacy, watchOnlyLegacy);
+    }
+
     /**
      * Updates address balance as well as wallet balance.
      * This is used to immediately update balances after a successful transaction which speeds
@@ -7,7 +7,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import info.blockchain.wallet.util.JsonMappers;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -93,11 +93,11 @@ public class Account implements JsonSerializableAccount {
     }
 
     public static Account fromJson(String json) throws IOException {
-        return new ObjectMapper().readValue(json, Account.class);
+        return JsonMappers.fromJson(json, Account.class);
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 
     public void addAddressLabel(int index, String reserveLabel) {
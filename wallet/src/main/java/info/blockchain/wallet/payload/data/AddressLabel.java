@@ -6,7 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import info.blockchain.wallet.util.JsonMappers;
 import java.io.IOException;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -41,10 +41,10 @@ public class AddressLabel {
     }
 
     public static AddressLabel fromJson(String json) throws IOException {
-        return new ObjectMapper().readValue(json, AddressLabel.class);
+        return JsonMappers.fromJson(json, AddressLabel.class);
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 }
@@ -6,7 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import info.blockchain.wallet.util.JsonMappers;
 import java.io.IOException;
 
 /*
@@ -44,10 +44,10 @@ public class Cache {
     }
 
     public static Cache fromJson(String json) throws IOException {
-        return new ObjectMapper().readValue(json, Cache.class);
+        return JsonMappers.fromJson(json, Cache.class);
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 }
@@ -6,25 +6,24 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import info.blockchain.api.blockexplorer.BlockExplorer;
 import info.blockchain.api.blockexplorer.FilterType;
 import info.blockchain.api.data.Balance;
-import info.blockchain.api.data.UnspentOutput;
 import info.blockchain.wallet.BlockchainFramework;
 import info.blockchain.wallet.api.PersistentUrls;
 import info.blockchain.wallet.bip44.HDAccount;
-import info.blockchain.wallet.bip44.HDAddress;
 import info.blockchain.wallet.bip44.HDWalletFactory;
 import info.blockchain.wallet.bip44.HDWalletFactory.Language;
+import info.blockchain.wallet.bip44.SigningKeyProvider;
 import info.blockchain.wallet.exceptions.DecryptionException;
 import info.blockchain.wallet.exceptions.HDWalletException;
+import info.blockchain.wallet.payload.GapLimitDiscovery;
 import info.blockchain.wallet.payment.SpendableUnspentOutputs;
 import info.blockchain.wallet.stx.STXAccount;
 import info.blockchain.wallet.util.DoubleEncryptionFactory;
-import info.blockchain.wallet.util.PrivateKeyFactory;
+import info.blockchain.wallet.util.JsonMappers;
 import org.apache.commons.codec.DecoderException;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
@@ -52,6 +51,10 @@ public class HDWallet {
     private static final int DEFAULT_MNEMONIC_LENGTH = 12;
     private static final int DEFAULT_NEW_WALLET_SIZE = 1;
     private static final String DEFAULT_PASSPHRASE = "";
+    //Unused accounts in a row after which recovery stops looking
+    private static final int ACCOUNT_LOOKAHEAD = 10;
+    private static final int ACCOUNT_DISCOVERY_FIRST_BATCH = 5;
+    private static final int ACCOUNT_DISCOVERY_MAX_BATCH = 20;
 
     @JsonProperty("accounts")
     private List<Account> accounts;
@@ -218,21 +221,14 @@ public class HDWallet {
     }
 
     public static HDWallet fromJson(NetworkParameters networkParameters, String json) throws IOException, HDWalletException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
-
-        HDWallet hdWallet = mapper.readValue(json, HDWallet.class);
+        HDWallet hdWallet = JsonMappers.fieldReader(HDWallet.class).readValue(json);
         hdWallet.instantiateBip44Wallet(networkParameters);
 
         return hdWallet;
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 
     /**
@@ -318,7 +314,7 @@ public class HDWallet {
 
         //Start with initial wallet size of 1.
         //After wallet is recovered we'll check how many accounts to restore
-        info.blockchain.wallet.bip44.HDWallet bip44Wallet = HDWalletFactory
+        final info.blockchain.wallet.bip44.HDWallet bip44Wallet = HDWalletFactory
             .restoreWallet(PersistentUrls.getInstance().getBitcoinParams(), Language.US,
                 mnemonic, passphrase, DEFAULT_NEW_WALLET_SIZE);
 
@@ -330,13 +326,36 @@ public class HDWallet {
         HDWallet hdWalletBody = new HDWallet();
         hdWalletBody.setAccounts(new ArrayList<Account>());
 
+        //Accounts derived while sizing the wallet are kept rather than derived again
+        GapLimitDiscovery<HDAccount> discovery = new GapLimitDiscovery<>(
+            new GapLimitDiscovery.Deriver<HDAccount>() {
+                @Override
+                public HDAccount derive(int index) {
+                    return bip44Wallet.deriveAccount(index);
+                }
+
+                @Override
+                public String keyOf(HDAccount account) {
+                    return account.getXpub();
+                }
+            },
+            GapLimitDiscovery.balanceLookup(blockExplorer),
+            ACCOUNT_LOOKAHEAD,
+            ACCOUNT_DISCOVERY_FIRST_BATCH,
+            ACCOUNT_DISCOVERY_MAX_BATCH);
+
+        //The first account is always kept, look for used ones after it
+        List<HDAccount> derived = new ArrayList<>(bip44Wallet.getAccounts());
         if(walletSize <= 0) {
-            walletSize = getDeterminedSize(1, 5, 0, blockExplorer, bip44Wallet);
+            GapLimitDiscovery.Result<HDAccount> result = discovery.discover(DEFAULT_NEW_WALLET_SIZE);
+            walletSize = DEFAULT_NEW_WALLET_SIZE + result.getUsedCount();
+            derived.addAll(result.getNodes());
         }
+        derived.addAll(discovery.derive(derived.size(), walletSize));
 
-        bip44Wallet = HDWalletFactory
-            .restoreWallet(PersistentUrls.getInstance().getBitcoinParams(), Language.US,
-                mnemonic, passphrase, walletSize);
+        for (int i = bip44Wallet.getAccounts().size(); i < walletSize; i++) {
+            bip44Wallet.addAccount(derived.get(i));
+        }
 
         //Set accounts
         int accountNumber = 1;
@@ -360,43 +379,6 @@ public class HDWallet {
         return hdWalletBody;
     }
 
-    private static int getDeterminedSize(int walletSize, int trySize, int currentGap, BlockExplorer blockExplorer, info.blockchain.wallet.bip44.HDWallet bip44Wallet) throws Exception {
-
-        LinkedList<String> xpubs = new LinkedList<>();
-
-        for(int i = 0; i < trySize; i++) {
-            HDAccount account = bip44Wallet.addAccount();
-            xpubs.add(account.getXpub());
-        }
-
-        Response<HashMap<String, Balance>> exe = blockExplorer
-            .getBalance(xpubs, FilterType.RemoveUnspendable).execute();
-
-        if(!exe.isSuccessful()) {
-            throw new Exception(exe.code() + " " + exe.errorBody().string());
-        }
-
-        HashMap<String, Balance> map = exe.body();
-
-        final int lookAheadTotal = 10;
-        for (String xpub : xpubs) {
-
-            //If account has txs
-            if(map.get(xpub).getTxCount() > 0L) {
-                walletSize++;
-                currentGap = 0;
-            } else {
-                currentGap++;
-            }
-
-            if(currentGap >= lookAheadTotal) {
-                return walletSize;
-            }
-        }
-
-        return getDeterminedSize(walletSize, trySize*2, currentGap, blockExplorer, bip44Wallet);
-    }
-
     public static boolean hasTransactions(BlockExplorer blockExplorer, String xpub)
         throws Exception {
 
@@ -417,25 +399,13 @@ public class HDWallet {
 
         validateHD();
 
-        List<ECKey> keys = new ArrayList<>();
-
         HDAccount hdAccount = getHDAccountFromAccountBody(account);
-        if (hdAccount != null) {
-            for (UnspentOutput unspent : unspentOutputBundle.getSpendableOutputs()) {
-                if(unspent.getXpub() != null) {
-                    String[] split = unspent.getXpub().getPath().split("/");
-                    int chain = Integer.parseInt(split[1]);
-                    int addressIndex = Integer.parseInt(split[2]);
-
-                    HDAddress hdAddress = hdAccount.getChain(chain).getAddressAt(addressIndex);
-                    ECKey walletKey = new PrivateKeyFactory()
-                        .getKey(PrivateKeyFactory.WIF_COMPRESSED, hdAddress.getPrivateKeyString());
-                    keys.add(walletKey);
-                }
-            }
+        if (hdAccount == null) {
+            return new ArrayList<>();
         }
 
-        return keys;
+        return SigningKeyProvider.getKeys(unspentOutputBundle.getSpendableOutputs(),
+            SigningKeyProvider.forAccount(hdAccount));
     }
 
     public HDAccount getHDAccountFromAccountBody(Account accountBody) throws HDWalletException {
@@ -6,8 +6,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.google.common.annotations.VisibleForTesting;
 import info.blockchain.wallet.api.PersistentUrls;
 import info.blockchain.wallet.exceptions.DecryptionException;
@@ -16,6 +17,7 @@ import info.blockchain.wallet.exceptions.HDWalletException;
 import info.blockchain.wallet.exceptions.NoSuchAddressException;
 import info.blockchain.wallet.util.DoubleEncryptionFactory;
 import info.blockchain.wallet.util.FormatsUtil;
+import info.blockchain.wallet.util.JsonMappers;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.lang3.StringUtils;
 import org.bitcoinj.core.Base58;
@@ -31,7 +33,6 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -217,33 +218,34 @@ public class Wallet {
 
     public static Wallet fromJson(NetworkParameters networkParameters, String json)
         throws IOException, HDWalletException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+        try (JsonParser parser = JsonMappers.createParser(json)) {
+            return fromJson(networkParameters, parser);
+        }
+    }
 
-        Wallet wallet = mapper.readValue(json, Wallet.class);
+    /**
+     * Decode a wallet body straight from a streaming parser, without building an intermediate
+     * tree or re-encoding the HD wallets.
+     */
+    public static Wallet fromJson(NetworkParameters networkParameters, JsonParser parser)
+        throws IOException, HDWalletException {
+        Wallet wallet = JsonMappers.fieldReader(Wallet.class).readValue(parser);
+        if (wallet == null) {
+            throw JsonMappingException.from(parser, "No wallet body");
+        }
 
         if(wallet.getHdWallets() != null) {
             //V3 Wallets only
-            Iterator<HDWallet> iterator = wallet.getHdWallets().iterator();
-
-            ArrayList<HDWallet> hdWalletList = new ArrayList<>();
-            while (iterator.hasNext()) {
-                HDWallet nextHd = iterator.next();
-                hdWalletList.add(HDWallet.fromJson(networkParameters, nextHd.toJson()));
-
+            for (HDWallet hdWallet : wallet.getHdWallets()) {
+                hdWallet.instantiateBip44Wallet(networkParameters);
             }
-            wallet.setHdWallets(hdWalletList);
         }
 
         return wallet;
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 
     void addHDWallet(HDWallet hdWallet) {
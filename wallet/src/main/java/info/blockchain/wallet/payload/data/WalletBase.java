@@ -6,13 +6,14 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import info.blockchain.wallet.crypto.AESUtil;
+import info.blockchain.wallet.crypto.DecryptionProber;
 import info.blockchain.wallet.exceptions.DecryptionException;
 import info.blockchain.wallet.exceptions.EncryptionException;
 import info.blockchain.wallet.exceptions.HDWalletException;
 import info.blockchain.wallet.exceptions.UnsupportedVersionException;
 import info.blockchain.wallet.util.FormatsUtil;
+import info.blockchain.wallet.util.JsonMappers;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
@@ -24,6 +25,7 @@ import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.crypto.MnemonicException.MnemonicChecksumException;
 import org.bitcoinj.crypto.MnemonicException.MnemonicLengthException;
 import org.bitcoinj.crypto.MnemonicException.MnemonicWordException;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.paddings.BlockCipherPadding;
@@ -111,9 +113,6 @@ public class WalletBase {
     private Wallet decryptV1Wallet(NetworkParameters networkParameters, String password)
         throws DecryptionException, IOException, HDWalletException {
 
-        String decrypted = null;
-        int succeededIterations = -1000;
-
         int iterations[] = {DEFAULT_PBKDF2_ITERATIONS_V1_A, DEFAULT_PBKDF2_ITERATIONS_V1_B};
         int modes[] = {AESUtil.MODE_CBC, AESUtil.MODE_OFB};
         BlockCipherPadding[] paddings = {
@@ -122,33 +121,21 @@ public class WalletBase {
             new ZeroBytePadding(),
             null};//NoPadding
 
-        outerloop:
-        for (int iteration : iterations) {
-            for (int mode : modes) {
-                for (BlockCipherPadding padding : paddings) {
-                    try {
-                        decrypted = AESUtil
-                            .decryptWithSetMode(payload, password, iteration, mode,
-                                padding);
-                        //Ensure it's parsable
-                        new JSONObject(decrypted);
-
-                        succeededIterations = iteration;
-                        break outerloop;
-
-                    } catch (Exception e) {
-//                        e.printStackTrace();
-                    }
+        DecryptionProber prober = new DecryptionProber(iterations, modes, paddings);
+        String decrypted = prober.probe(payload, password, new DecryptionProber.Validator() {
+            @Override
+            public boolean isValid(String plaintext) {
+                //Ensure it's parsable
+                try {
+                    new JSONObject(plaintext);
+                    return true;
+                } catch (JSONException e) {
+                    return false;
                 }
             }
-        }
+        }).getPlaintext();
 
-        if (decrypted == null || succeededIterations < 0) {
-            throw new DecryptionException("Failed to decrypt");
-        }
-
-        String decryptedPayload = decrypted;
-        walletBody = Wallet.fromJson(networkParameters, decryptedPayload);
+        walletBody = Wallet.fromJson(networkParameters, decrypted);
         return walletBody;
     }
 
@@ -206,18 +193,11 @@ public class WalletBase {
 
     public static WalletBase fromJson(String json) throws IOException {
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
-
-        return mapper.readValue(json, WalletBase.class);
+        return JsonMappers.fieldReader(WalletBase.class).readValue(json);
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 
     public Pair encryptAndWrapPayload(String password)
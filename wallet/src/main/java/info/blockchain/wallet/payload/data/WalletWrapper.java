@@ -5,13 +5,14 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import info.blockchain.wallet.crypto.AESUtil;
+import com.fasterxml.jackson.core.JsonToken;
+import info.blockchain.wallet.crypto.AESStream;
 import info.blockchain.wallet.exceptions.DecryptionException;
 import info.blockchain.wallet.exceptions.HDWalletException;
 import info.blockchain.wallet.exceptions.UnsupportedVersionException;
-import info.blockchain.wallet.util.FormatsUtil;
+import info.blockchain.wallet.util.JsonMappers;
 import org.bitcoinj.core.NetworkParameters;
 
 import java.io.IOException;
@@ -62,11 +63,11 @@ public class WalletWrapper {
     }
 
     public static WalletWrapper fromJson(String json) throws IOException {
-        return new ObjectMapper().readValue(json, WalletWrapper.class);
+        return JsonMappers.fromJson(json, WalletWrapper.class);
     }
 
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return JsonMappers.toJson(this);
     }
 
     private void validateVersion() throws UnsupportedVersionException {
@@ -93,18 +94,28 @@ public class WalletWrapper {
         validateVersion();
         validatePbkdf2Iterations();
 
-        String decryptedPayload;
-        try {
-            decryptedPayload = AESUtil.decrypt(getPayload(), password, getPbkdf2Iterations());
-        } catch (Exception e) {
-            throw new DecryptionException(e);
-        }
-
-        if (decryptedPayload == null || !FormatsUtil.isValidJson(decryptedPayload)) {
+        String payload = getPayload();
+        if (payload == null || payload.isEmpty()) {
             throw new DecryptionException("Decryption failed.");
         }
 
-        return Wallet.fromJson(networkParameters, decryptedPayload);
+        // The plaintext is parsed as it is decrypted. A wrong password gives garbage rather than
+        // a JSON object, which the parser rejects while decoding instead of in a separate
+        // validation pass, or fails the padding check once the parser reaches the end. The
+        // stream is in memory, so any IOException here means the payload could not be read
+        try (JsonParser parser = JsonMappers.createParser(
+            AESStream.decrypt(payload, password, getPbkdf2Iterations()))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecryptionException("Decryption failed.");
+            }
+            Wallet wallet = Wallet.fromJson(networkParameters, parser);
+            if (parser.nextToken() != null) {
+                throw new DecryptionException("Decryption failed.");
+            }
+            return wallet;
+        } catch (IOException e) {
+            throw new DecryptionException(e);
+        }
     }
 
     public static WalletWrapper wrap(String encryptedPayload, int iterations) {
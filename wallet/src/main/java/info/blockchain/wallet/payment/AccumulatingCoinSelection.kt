@@ -0,0 +1,191 @@
+package info.blockchain.wallet.payment
+
+import info.blockchain.api.data.UnspentOutput
+import java.math.BigInteger
+
+private const val BYTES_BASE = 10L
+private const val BYTES_PER_INPUT = 149L
+private const val BYTES_PER_OUTPUT = 34L
+
+/**
+ * Coin selection over a primitive snapshot of the coins. Coin values are read once into a `long` array and the
+ * selected value and fee are kept as running totals, so a selection is linear in the number of coins after sorting.
+ *
+ * Gives the same result as [CoinSelection] for the same [CoinSortingMethod]. When given [BranchAndBound] it first
+ * searches for a set of coins which needs no change output, and accumulates in the fallback order otherwise.
+ */
+class AccumulatingCoinSelection(
+    private val coins: List<UnspentOutput>,
+    feePerByte: BigInteger
+) {
+    private val feePerByte: Long = feePerByte.toLong()
+
+    fun select(
+        outputAmount: BigInteger,
+        coinSortingMethod: CoinSortingMethod
+    ): SpendableUnspentOutputs {
+        val effectiveCoins = EffectiveCoins(coinSortingMethod.sort(coins), feePerByte)
+        val target = outputAmount.toLong()
+
+        if (coinSortingMethod is BranchAndBound) {
+            effectiveCoins.branchAndBound(target, coinSortingMethod.maxTries)?.let { return it }
+        }
+        return effectiveCoins.accumulate(target)
+    }
+
+    fun selectAll(coinSortingMethod: CoinSortingMethod? = null): SpendableUnspentOutputs {
+        val effectiveCoins = EffectiveCoins(coinSortingMethod?.sort(coins) ?: coins, feePerByte)
+        val effectiveValue = effectiveCoins.values.sum()
+        val fee = transactionBytes(effectiveCoins.size, outputs = 1) * feePerByte
+        val effectiveBalance = Math.max(effectiveValue - fee, 0L)
+
+        return SpendableUnspentOutputs(
+            spendableOutputs = effectiveCoins.coins,
+            absoluteFee = (effectiveValue - effectiveBalance).toBigInteger(),
+            isReplayProtected = effectiveCoins.coins.firstOrNull()?.isReplayable != true
+        )
+    }
+}
+
+/**
+ * The sorted coins worth spending at [feePerByte], with their values and force-include flags held in arrays.
+ */
+private class EffectiveCoins(sortedCoins: List<UnspentOutput>, private val feePerByte: Long) {
+
+    private val inputCost = BYTES_PER_INPUT * feePerByte
+    private val dust = (BYTES_PER_INPUT + BYTES_PER_OUTPUT) * feePerByte
+
+    val coins: List<UnspentOutput> = sortedCoins.filter { it.isForceInclude || it.value.toLong() - inputCost > 0 }
+    val size = coins.size
+    val values = LongArray(size) { coins[it].value.toLong() }
+    private val forced = BooleanArray(size) { coins[it].isForceInclude }
+
+    fun accumulate(target: Long): SpendableUnspentOutputs {
+        val selected = ArrayList<UnspentOutput>()
+        var accumulatedValue = 0L
+        var accumulatedFee = 0L
+
+        for (i in 0 until size) {
+            if (!forced[i] && accumulatedValue >= target + accumulatedFee) {
+                continue
+            }
+            selected += coins[i]
+            accumulatedValue += values[i]
+            accumulatedFee = transactionBytes(selected.size, outputs = 1) * feePerByte
+        }
+        return spendable(selected, accumulatedValue, accumulatedFee, target)
+    }
+
+    /**
+     * Depth-first search over the unforced coins, largest effective value first, for a selection whose value
+     * after fees lands between [target] and [target] plus the cost of a change output. Returns null if no such
+     * selection was found within [maxTries] steps.
+     */
+    fun branchAndBound(target: Long, maxTries: Int): SpendableUnspentOutputs? {
+        // Effective values already pay for their own input, so only the base and the single output remain
+        val effectiveTarget = target + (BYTES_BASE + BYTES_PER_OUTPUT) * feePerByte
+
+        var currentValue = 0L
+        var availableValue = 0L
+        var candidateCount = 0
+        for (i in 0 until size) {
+            if (forced[i]) {
+                currentValue += values[i] - inputCost
+            } else {
+                availableValue += values[i] - inputCost
+                candidateCount++
+            }
+        }
+
+        val candidates = (0 until size).filter { !forced[it] }.sortedByDescending { values[it] }.toIntArray()
+        val effectiveValues = LongArray(candidateCount) { values[candidates[it]] - inputCost }
+        val selection = BooleanArray(candidateCount)
+        var depth = 0
+        var best: BooleanArray? = null
+        var bestWaste = Long.MAX_VALUE
+
+        for (tries in 0 until maxTries) {
+            var backtrack = false
+            if (currentValue + availableValue < effectiveTarget || currentValue >= effectiveTarget + dust) {
+                backtrack = true
+            } else if (currentValue >= effectiveTarget) {
+                val waste = currentValue - effectiveTarget
+                if (waste <= bestWaste) {
+                    best = selection.copyOf()
+                    bestWaste = waste
+                    if (waste == 0L) break
+                }
+                backtrack = true
+            }
+
+            if (backtrack) {
+                // Drop trailing omissions, then omit the most recent inclusion instead
+                while (depth > 0 && !selection[depth - 1]) {
+                    depth--
+                    availableValue += effectiveValues[depth]
+                }
+                if (depth == 0) break
+                selection[depth - 1] = false
+                currentValue -= effectiveValues[depth - 1]
+            } else {
+                availableValue -= effectiveValues[depth]
+                currentValue += effectiveValues[depth]
+                selection[depth] = true
+                depth++
+            }
+        }
+
+        val chosen = best ?: return null
+        val included = forced.copyOf()
+        for (i in 0 until candidateCount) {
+            if (chosen[i]) included[candidates[i]] = true
+        }
+
+        val selected = ArrayList<UnspentOutput>()
+        var selectedValue = 0L
+        for (i in 0 until size) {
+            if (included[i]) {
+                selected += coins[i]
+                selectedValue += values[i]
+            }
+        }
+        if (selected.isEmpty()) return null
+
+        val fee = transactionBytes(selected.size, outputs = 1) * feePerByte
+        return spendable(selected, selectedValue, fee, target)
+    }
+
+    private fun spendable(
+        selected: List<UnspentOutput>,
+        accumulatedValue: Long,
+        accumulatedFee: Long,
+        target: Long
+    ): SpendableUnspentOutputs {
+        val remainingValue = accumulatedValue - (target + accumulatedFee)
+        val isReplayProtected = selected.firstOrNull()?.isReplayable != true
+
+        return when {
+            // Either there were no effective coins or we were not able to meet the target value
+            selected.isEmpty() || remainingValue < 0 -> {
+                SpendableUnspentOutputs(isReplayProtected = isReplayProtected)
+            }
+            // Remaining value is worth keeping, add change output
+            remainingValue >= dust -> {
+                val fee = transactionBytes(selected.size, outputs = 2) * feePerByte
+                SpendableUnspentOutputs(selected, fee.toBigInteger(), isReplayProtected = isReplayProtected)
+            }
+            // Remaining value is not worth keeping, consume it as part of the fee
+            else -> {
+                SpendableUnspentOutputs(
+                    selected,
+                    (accumulatedFee + remainingValue).toBigInteger(),
+                    remainingValue.toBigInteger(),
+                    isReplayProtected
+                )
+            }
+        }
+    }
+}
+
+private fun transactionBytes(inputs: Int, outputs: Int): Long =
+    BYTES_BASE + BYTES_PER_INPUT * inputs + BYTES_PER_OUTPUT * outputs
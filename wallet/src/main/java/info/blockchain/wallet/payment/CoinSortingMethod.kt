@@ -40,3 +40,20 @@ class ReplayProtection(private val nonReplayableInput: UnspentOutput) : CoinSort
                 DescentDraw.sort(nonReplayable.drop(1))
     }
 }
+
+/**
+ * Looks for a set of coins that pays the target without a change output, using a depth-first branch-and-bound
+ * search bounded by [maxTries] steps. Falls back to accumulating coins in [fallback] order when no such set is
+ * found. Selected coins keep their [fallback] order. Only [AccumulatingCoinSelection] runs the search, other
+ * selections treat this as [fallback].
+ */
+class BranchAndBound @JvmOverloads constructor(
+    private val fallback: CoinSortingMethod = DescentDraw,
+    val maxTries: Int = DEFAULT_BRANCH_AND_BOUND_TRIES
+) : CoinSortingMethod {
+    override fun sort(coins: List<UnspentOutput>) = fallback.sort(coins)
+
+    companion object {
+        const val DEFAULT_BRANCH_AND_BOUND_TRIES = 100000
+    }
+}
@@ -18,10 +18,13 @@ class Fees {
     }
 
     public static BigInteger calculateFee(int size, BigInteger feePerKb) {
+        return BigInteger.valueOf(calculateFee(size, feePerKb.longValue()));
+    }
+
+    public static long calculateFee(int size, long feePerKb) {
 
         double txBytes = ((double) size / 1000.0);
-        long absoluteFee = (long) Math.ceil(feePerKb.doubleValue() * txBytes);
-        return BigInteger.valueOf(absoluteFee);
+        return (long) Math.ceil(feePerKb * txBytes);
     }
 
     public static boolean isAdequateFee(int inputs, int outputs, BigInteger absoluteFee) {
@@ -0,0 +1,147 @@
+package info.blockchain.wallet.payment;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.Transaction.SigHash;
+import org.bitcoinj.crypto.TransactionSignature;
+import org.bitcoinj.script.Script;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Signs the inputs of a transaction in parallel. Gives the same result as bitcoinj's
+ * {@link org.bitcoinj.signers.LocalTransactionSigner}: the signature hash of an input doesn't
+ * depend on the script sigs of the other inputs and signatures are deterministic (RFC 6979), so
+ * each worker signs against its own copy of the transaction and the script sigs are applied to
+ * the original once every signature is done.
+ */
+class InputSigner {
+
+    /**
+     * Transactions with fewer inputs than this are signed on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 4;
+
+    /**
+     * Number of inputs signed by one task against one copy of the transaction.
+     */
+    private static final int INPUTS_PER_TASK = 2;
+
+    /**
+     * An input to be signed with a private key.
+     */
+    static class Input {
+
+        private final int index;
+        private final ECKey key;
+        private final byte[] redeemScript;
+        private final Coin value;
+        private final Script scriptPubKey;
+
+        Input(int index, ECKey key, byte[] redeemScript, Coin value, Script scriptPubKey) {
+            this.index = index;
+            this.key = key;
+            this.redeemScript = redeemScript;
+            this.value = value;
+            this.scriptPubKey = scriptPubKey;
+        }
+    }
+
+    private InputSigner() {
+        // no instances
+    }
+
+    /**
+     * Sign inputs and set their script sigs, which must hold the empty input script.
+     */
+    static void sign(NetworkParameters networkParameters,
+                     Transaction tx,
+                     List<Input> inputs,
+                     boolean useForkId) {
+
+        TransactionSignature[] signatures = new TransactionSignature[inputs.size()];
+
+        int parallelism = Math.min(Runtime.getRuntime().availableProcessors(),
+            (inputs.size() + INPUTS_PER_TASK - 1) / INPUTS_PER_TASK);
+        if (inputs.size() < PARALLEL_THRESHOLD || parallelism < 2) {
+            signRange(tx, inputs, 0, inputs.size(), useForkId, signatures);
+        } else {
+            byte[] unsigned = tx.bitcoinSerialize();
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new SignTask(networkParameters, unsigned, inputs, 0, inputs.size(), useForkId,
+                    signatures));
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        for (int i = 0; i < inputs.size(); i++) {
+            Input input = inputs.get(i);
+            Script scriptSig = tx.getInput(input.index).getScriptSig();
+            tx.getInput(input.index).setScriptSig(
+                input.scriptPubKey.getScriptSigWithSignature(scriptSig, signatures[i].encodeToBitcoin(), 0));
+        }
+    }
+
+    private static void signRange(Transaction tx,
+                                  List<Input> inputs,
+                                  int from,
+                                  int to,
+                                  boolean useForkId,
+                                  TransactionSignature[] signatures) {
+        for (int i = from; i < to; i++) {
+            Input input = inputs.get(i);
+            if (useForkId) {
+                signatures[i] = tx.calculateWitnessSignature(input.index, input.key, input.redeemScript,
+                    input.value, SigHash.ALL, false);
+            } else {
+                signatures[i] = tx.calculateSignature(input.index, input.key, input.redeemScript,
+                    SigHash.ALL, false);
+            }
+        }
+    }
+
+    private static class SignTask extends RecursiveAction {
+
+        private final NetworkParameters networkParameters;
+        private final byte[] unsigned;
+        private final List<Input> inputs;
+        private final int from;
+        private final int to;
+        private final boolean useForkId;
+        private final TransactionSignature[] signatures;
+
+        SignTask(NetworkParameters networkParameters,
+                 byte[] unsigned,
+                 List<Input> inputs,
+                 int from,
+                 int to,
+                 boolean useForkId,
+                 TransactionSignature[] signatures) {
+            this.networkParameters = networkParameters;
+            this.unsigned = unsigned;
+            this.inputs = inputs;
+            this.from = from;
+            this.to = to;
+            this.useForkId = useForkId;
+            this.signatures = signatures;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= INPUTS_PER_TASK) {
+                Transaction copy = new Transaction(networkParameters, unsigned);
+                signRange(copy, inputs, from, to, useForkId, signatures);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SignTask(networkParameters, unsigned, inputs, from, mid, useForkId, signatures),
+                new SignTask(networkParameters, unsigned, inputs, mid, to, useForkId, signatures));
+        }
+    }
+}
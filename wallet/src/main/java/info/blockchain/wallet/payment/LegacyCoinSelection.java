@@ -0,0 +1,303 @@
+package info.blockchain.wallet.payment;
+
+import info.blockchain.api.data.UnspentOutput;
+import org.apache.commons.lang3.tuple.Pair;
+import org.bitcoinj.script.Script;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The coin selection {@link Coins} uses when the new coin selection is off.
+ *
+ * Works on a snapshot of the coins' values and flags taken up front, so the caller's list and
+ * coins are left as they are, and orders the coins with one sort and one partitioning pass.
+ * Amounts and fees are in satoshis as longs, with fees rounded as {@link Fees} does.
+ */
+class LegacyCoinSelection {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyCoinSelection.class);
+
+    private static final byte REPLAYABLE = 1;
+    private static final byte FORCE_INCLUDE = 2;
+
+    /**
+     * Index standing for the placeholder dust input, ahead of the coins.
+     */
+    private static final int DUST_INPUT = -1;
+
+    private final List<UnspentOutput> coins;
+    private final long[] values;
+    private final byte[] flags;
+
+    LegacyCoinSelection(List<UnspentOutput> coins) {
+        this.coins = coins;
+        int count = coins.size();
+        values = new long[count];
+        flags = new byte[count];
+        for (int i = 0; i < count; i++) {
+            UnspentOutput coin = coins.get(i);
+            values[i] = coin.getValue().longValue();
+            flags[i] = (byte) ((coin.isReplayable() ? REPLAYABLE : 0) | (coin.isForceInclude() ? FORCE_INCLUDE : 0));
+        }
+    }
+
+    /**
+     * @return the maximum available amount to send and the associated fee
+     */
+    Pair<BigInteger, BigInteger> getMaximumAvailable(BigInteger feePerKb, boolean addReplayProtection) {
+        long fee = feePerKb.longValue();
+        Selection selection = sort(addReplayProtection);
+
+        final boolean includesReplayDust = addReplayProtection && selection.requiresReplayProtection();
+        if (includesReplayDust) {
+            log.info("Calculating maximum available with non-replayable dust included.");
+        }
+
+        long inputCost = inputCost(fee);
+        long sweepBalance = 0;
+        int usableCoins = 0;
+        int[] order = selection.order(includesReplayDust);
+        for (int index : order) {
+            // Filter usable coins
+            if (selection.isForceInclude(index) || valueOf(index) > inputCost) {
+                usableCoins++;
+                sweepBalance += valueOf(index);
+            }
+        }
+
+        // All inputs, 1 output = no change. (Correct way)
+        long sweepFee = calculateFee(usableCoins, 1, fee, includesReplayDust);
+        sweepBalance = Math.max(sweepBalance - sweepFee, 0);
+
+        log.info("Filtering sweepable coins. Sweepable Balance = {}, Fee required for sweep = {}", sweepBalance,
+            sweepFee);
+        return Pair.of(BigInteger.valueOf(sweepBalance), BigInteger.valueOf(sweepFee));
+    }
+
+    /**
+     * @return the spendable coins provided the desired amount to send
+     */
+    SpendableUnspentOutputs getMinimumCoinsForPayment(BigInteger paymentAmount,
+                                                      BigInteger feePerKb,
+                                                      boolean addReplayProtection) {
+        log.info("Select the minimum number of outputs necessary for payment");
+        long payment = paymentAmount.longValue();
+        long fee = feePerKb.longValue();
+        Selection selection = sort(addReplayProtection);
+
+        final boolean requiresReplayProtection = selection.requiresReplayProtection();
+        final boolean includesReplayDust = addReplayProtection && requiresReplayProtection;
+        if (includesReplayDust) {
+            log.info("Adding non-replayable dust to selected coins.");
+        }
+
+        long inputCost = inputCost(fee);
+        long dust = Payment.DUST.longValue();
+        long collectedAmount = 0;
+        long consumedAmount = 0;
+        List<UnspentOutput> spendWorthyList = new ArrayList<>();
+
+        // initially assume change
+        int outputCount = 2;
+        for (int index : selection.order(includesReplayDust)) {
+            boolean forceInclude = selection.isForceInclude(index);
+
+            // Filter coins not worth spending
+            if (valueOf(index) < inputCost && !forceInclude) {
+                continue;
+            }
+
+            // Skip script with no type
+            if (!forceInclude && new Script(Hex.decode(coins.get(index).getScript().getBytes())).getScriptType()
+                == Script.ScriptType.NO_TYPE) {
+                continue;
+            }
+
+            // Collect coin
+            spendWorthyList.add(index == DUST_INPUT ? Coins.getPlaceholderDustInput() : coins.get(index));
+            collectedAmount += valueOf(index);
+
+            // Fee
+            int coinCount = spendWorthyList.size();
+            long paymentAmountNoChange = payment + Fees.calculateFee(Fees.estimatedSize(coinCount, 1), fee);
+            long paymentAmountWithChange = payment + Fees.calculateFee(Fees.estimatedSize(coinCount, 2), fee);
+
+            // No change = 1 output (Exact amount)
+            if (paymentAmountNoChange == collectedAmount) {
+                outputCount = 1;
+                break;
+            }
+
+            // No change = 1 output (Don't allow dust to be sent back as change - consume it rather)
+            if (paymentAmountNoChange < collectedAmount && paymentAmountNoChange >= collectedAmount - dust) {
+                consumedAmount += paymentAmountNoChange - collectedAmount;
+                outputCount = 1;
+                break;
+            }
+
+            // Expect change = 2 outputs
+            if (collectedAmount >= paymentAmountWithChange) {
+                // [multiple inputs, 2 outputs] - assume change
+                outputCount = 2;
+                break;
+            }
+        }
+
+        long absoluteFee = calculateFee(spendWorthyList.size(), outputCount, fee, includesReplayDust);
+
+        SpendableUnspentOutputs paymentBundle = new SpendableUnspentOutputs();
+        paymentBundle.setSpendableOutputs(spendWorthyList);
+        paymentBundle.setAbsoluteFee(BigInteger.valueOf(absoluteFee));
+        paymentBundle.setConsumedAmount(BigInteger.valueOf(consumedAmount));
+        paymentBundle.setReplayProtected(!requiresReplayProtection);
+        return paymentBundle;
+    }
+
+    private long valueOf(int index) {
+        return index == DUST_INPUT ? Payment.DUST.longValue() : values[index];
+    }
+
+    /**
+     * Without replay protection coins are taken in descending value, equal values in list order.
+     *
+     * With replay protection the order is the smallest non-replayable coin, which is always
+     * spent, then the replayable coins in descending value, then the other non-replayable coins
+     * in descending value. Equal values are in reverse list order, as the ascending sort this
+     * replaces was reversed to get descending values.
+     */
+    private Selection sort(boolean addReplayProtection) {
+        int count = values.length;
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = i;
+        }
+        sortDescending(sorted, values, !addReplayProtection);
+        if (!addReplayProtection) {
+            return new Selection(sorted, -1);
+        }
+
+        // The last non-replayable coin in descending order is the smallest
+        int smallestNonReplayable = -1;
+        for (int i = count - 1; i >= 0; i--) {
+            if ((flags[sorted[i]] & REPLAYABLE) == 0) {
+                smallestNonReplayable = sorted[i];
+                break;
+            }
+        }
+
+        int[] order = new int[count];
+        int position = 0;
+        if (smallestNonReplayable != -1) {
+            order[position++] = smallestNonReplayable;
+        }
+        for (int index : sorted) {
+            if ((flags[index] & REPLAYABLE) != 0) {
+                order[position++] = index;
+            }
+        }
+        for (int index : sorted) {
+            if ((flags[index] & REPLAYABLE) == 0 && index != smallestNonReplayable) {
+                order[position++] = index;
+            }
+        }
+        return new Selection(order, smallestNonReplayable);
+    }
+
+    /**
+     * The coins in selection order.
+     */
+    private class Selection {
+
+        private final int[] order;
+        private final int forcedIndex;
+
+        Selection(int[] order, int forcedIndex) {
+            this.order = order;
+            this.forcedIndex = forcedIndex;
+        }
+
+        boolean requiresReplayProtection() {
+            return order.length > 0 && (flags[order[0]] & REPLAYABLE) != 0;
+        }
+
+        boolean isForceInclude(int index) {
+            return index == DUST_INPUT || index == forcedIndex || (flags[index] & FORCE_INCLUDE) != 0;
+        }
+
+        /**
+         * @param withDustInput put the placeholder dust input first
+         */
+        int[] order(boolean withDustInput) {
+            if (!withDustInput) {
+                return order;
+            }
+            int[] withDust = new int[order.length + 1];
+            withDust[0] = DUST_INPUT;
+            System.arraycopy(order, 0, withDust, 1, order.length);
+            return withDust;
+        }
+    }
+
+    /**
+     * Stable merge sort of indices by descending value, equal values by ascending index if
+     * ascendingTies, otherwise by descending index.
+     */
+    private static void sortDescending(int[] indices, long[] values, boolean ascendingTies) {
+        int[] buffer = new int[indices.length];
+        int[] from = indices;
+        int[] to = buffer;
+        for (int width = 1; width < indices.length; width *= 2) {
+            for (int low = 0; low < indices.length; low += 2 * width) {
+                int mid = Math.min(low + width, indices.length);
+                int high = Math.min(low + 2 * width, indices.length);
+                int left = low;
+                int right = mid;
+                for (int k = low; k < high; k++) {
+                    if (right >= high || (left < mid && before(from[left], from[right], values, ascendingTies))) {
+                        to[k] = from[left++];
+                    } else {
+                        to[k] = from[right++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != indices) {
+            System.arraycopy(from, 0, indices, 0, indices.length);
+        }
+    }
+
+    private static boolean before(int a, int b, long[] values, boolean ascendingTies) {
+        if (values[a] != values[b]) {
+            return values[a] > values[b];
+        }
+        return ascendingTies ? a < b : a > b;
+    }
+
+    private static long calculateFee(int inputCount, int outputCount, long feePerKb, boolean includesReplayDust) {
+        if (inputCount == 0) {
+            return 0;
+        }
+        int size = Fees.estimatedSize(inputCount, outputCount);
+        if (includesReplayDust) {
+            // No non-replayable outputs in wallet - a dust input and output will be added to tx later
+            log.info("Modifying tx size for fee calculation.");
+            size += Coins.DUST_INPUT_TX_SIZE_ADAPT;
+        }
+        return Fees.calculateFee(size, feePerKb);
+    }
+
+    /**
+     * Fee of spending one compressed key input, ceil(feePerKb * 148 / 1000)
+     */
+    private static long inputCost(long feePerKb) {
+        return (feePerKb * 148 + 999) / 1000;
+    }
+}
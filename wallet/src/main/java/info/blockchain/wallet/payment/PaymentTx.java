@@ -24,8 +24,6 @@ import org.bitcoinj.core.TransactionOutput;
 import org.bitcoinj.script.Script;
 import org.bitcoinj.script.ScriptBuilder;
 import org.bitcoinj.script.ScriptException;
-import org.bitcoinj.signers.LocalTransactionSigner;
-import org.bitcoinj.signers.TransactionSigner;
 import org.bitcoinj.wallet.DecryptingKeyBag;
 import org.bitcoinj.wallet.KeyBag;
 import org.bitcoinj.wallet.KeyChainGroup;
@@ -37,6 +35,7 @@ import retrofit2.Call;
 
 import javax.annotation.Nullable;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
@@ -187,10 +186,10 @@ class PaymentTx {
         }
     }
 
-    public static synchronized void signSimpleTransaction(NetworkParameters networkParameters,
-                                                          Transaction tx,
-                                                          List<ECKey> keys,
-                                                          boolean useForkId) {
+    public static void signSimpleTransaction(NetworkParameters networkParameters,
+                                             Transaction tx,
+                                             List<ECKey> keys,
+                                             boolean useForkId) {
 
         KeyChainGroup keybag = new KeyChainGroup(networkParameters);
         keybag.importKeys(keys);
@@ -202,6 +201,7 @@ class PaymentTx {
         checkState(inputs.size() > 0);
         checkState(outputs.size() > 0);
 
+        List<InputSigner.Input> toSign = new ArrayList<>();
         int numInputs = tx.getInputs().size();
         for (int i = 0; i < numInputs; i++) {
             TransactionInput txIn = tx.getInput(i);
@@ -246,13 +246,24 @@ class PaymentTx {
                     txIn.getOutpoint().getHash());
             txIn.setScriptSig(scriptPubKey
                     .createEmptyInputScript(redeemData.keys.get(0), redeemData.redeemScript));
-        }
 
-        TransactionSigner.ProposedTransaction proposal = new TransactionSigner.ProposedTransaction(tx, useForkId);
-        LocalTransactionSigner signer = new LocalTransactionSigner();
-        if (!signer.signInputs(proposal, maybeDecryptingKeyBag)) {
-            log.info("{} returned false for the tx", signer.getClass().getName());
+            ECKey key = redeemData.getFullKey();
+            if (key == null) {
+                log.warn("No local key found for input {}", i);
+                continue;
+            }
+            if (!key.hasPrivKey()) {
+                log.warn("No private key in keypair for input {}", i);
+                continue;
+            }
+            toSign.add(new InputSigner.Input(i,
+                    key,
+                    redeemData.redeemScript.getProgram(),
+                    txIn.getConnectedOutput().getValue(),
+                    scriptPubKey));
         }
+
+        InputSigner.sign(networkParameters, tx, toSign, useForkId);
     }
 
     public static synchronized Call<ResponseBody> publishSimpleBtcTransaction(Transaction transaction, String apiCode) {
@@ -0,0 +1,120 @@
+package info.blockchain.wallet.util;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared Jackson readers and writers for the payload and metadata data classes.
+ *
+ * A new ObjectMapper introspects every bean class again on first use, so creating one per
+ * fromJson/toJson call redoes that work every time. The mappers here are configured once and
+ * the readers and writers, which are immutable and thread safe, are kept per class with their
+ * root (de)serializer already resolved.
+ */
+public final class JsonMappers {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Default bean visibility, as used by a plain {@code new ObjectMapper()}.
+     */
+    private static final ObjectMapper DEFAULT = new ObjectMapper(FACTORY);
+
+    /**
+     * Field only visibility, used to read the wallet payload classes.
+     */
+    private static final ObjectMapper FIELDS = new ObjectMapper(FACTORY);
+
+    static {
+        FIELDS.setVisibility(FIELDS.getSerializationConfig().getDefaultVisibilityChecker()
+            .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+            .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+            .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+    }
+
+    private static final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectReader> fieldReaders = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private JsonMappers() {
+        // no instances
+    }
+
+    /**
+     * @return a reader for type using default bean visibility
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return cached(readers, DEFAULT, type);
+    }
+
+    /**
+     * @return a reader for type which only looks at fields, ignoring getters, setters and
+     * creators
+     */
+    public static ObjectReader fieldReader(Class<?> type) {
+        return cached(fieldReaders, FIELDS, type);
+    }
+
+    /**
+     * @return a writer for values of type, using default bean visibility
+     */
+    public static ObjectWriter writer(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = DEFAULT.writerFor(type);
+            ObjectWriter existing = writers.putIfAbsent(type, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    public static <T> T fromJson(String json, Class<T> type) throws IOException {
+        return reader(type).readValue(json);
+    }
+
+    public static String toJson(Object value) throws JsonProcessingException {
+        return writer(value.getClass()).writeValueAsString(value);
+    }
+
+    /**
+     * @return a streaming parser over json, for callers which decode large documents token by
+     * token
+     */
+    public static JsonParser createParser(String json) throws IOException {
+        return FACTORY.createParser(json);
+    }
+
+    /**
+     * @return a streaming parser over UTF-8 json read from in, which the parser closes
+     */
+    public static JsonParser createParser(InputStream in) throws IOException {
+        return FACTORY.createParser(in);
+    }
+
+    private static ObjectReader cached(ConcurrentMap<Class<?>, ObjectReader> cache,
+                                       ObjectMapper mapper,
+                                       Class<?> type) {
+        ObjectReader reader = cache.get(type);
+        if (reader == null) {
+            reader = mapper.readerFor(type);
+            ObjectReader existing = cache.putIfAbsent(type, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+}
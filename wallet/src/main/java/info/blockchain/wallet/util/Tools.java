@@ -2,6 +2,7 @@ package info.blockchain.wallet.util;
 
 import info.blockchain.wallet.api.PersistentUrls;
 import info.blockchain.wallet.bip44.HDAccount;
+import info.blockchain.wallet.bip44.HDAddress;
 import info.blockchain.wallet.payload.data.LegacyAddress;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -129,8 +130,8 @@ public class Tools {
 
         List<String> list = new ArrayList<>();
 
-        for (int i = startIndex; i < endIndex; i++) {
-            list.add(hdAccount.getChain(chain).getAddressAt(i).getAddressString());
+        for (HDAddress address : hdAccount.getChain(chain).getAddressRange(startIndex, endIndex)) {
+            list.add(address.getAddressString());
         }
 
         return list;
@@ -147,8 +148,8 @@ public class Tools {
     public static List<String> getReceiveAddressList(HDAccount account, int startIndex, int endIndex) {
         List<String> list = new ArrayList<>();
 
-        for (int i = startIndex; i < endIndex; i++) {
-            list.add(account.getReceive().getAddressAt(i).getAddressString());
+        for (HDAddress address : account.getReceive().getAddressRange(startIndex, endIndex)) {
+            list.add(address.getAddressString());
         }
 
         return list;
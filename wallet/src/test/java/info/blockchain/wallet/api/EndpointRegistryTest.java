@@ -0,0 +1,123 @@
+package info.blockchain.wallet.api;
+
+import info.blockchain.wallet.BlockchainFramework;
+import info.blockchain.wallet.FrameworkInterface;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.BitcoinCashMainNetParams;
+import org.bitcoinj.params.BitcoinMainNetParams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Retrofit;
+
+public class EndpointRegistryTest {
+
+    private final TestFramework framework = new TestFramework();
+    private final EndpointRegistry registry = new EndpointRegistry();
+    private FrameworkInterface previousFramework;
+
+    @Before
+    public void setUp() {
+        previousFramework = BlockchainFramework.getFrameworkInterface();
+        BlockchainFramework.init(framework);
+    }
+
+    @After
+    public void tearDown() {
+        BlockchainFramework.init(previousFramework);
+    }
+
+    @Test
+    public void endpointsAreCreatedOncePerRetrofitInstance() {
+        Retrofit retrofit = retrofit();
+
+        FeeEndpoints endpoints = registry.get(retrofit, FeeEndpoints.class);
+
+        Assert.assertSame(endpoints, registry.get(retrofit, FeeEndpoints.class));
+        Assert.assertNotSame(endpoints, registry.get(retrofit(), FeeEndpoints.class));
+    }
+
+    @Test
+    public void eachServiceHasItsOwnEndpoints() {
+        Retrofit retrofit = retrofit();
+
+        Assert.assertNotNull(registry.get(retrofit, FeeEndpoints.class));
+        Assert.assertNotNull(registry.get(retrofit, WalletExplorerEndpoints.class));
+        Assert.assertNotSame(
+                registry.get(retrofit, FeeEndpoints.class),
+                registry.get(retrofit, WalletExplorerEndpoints.class));
+    }
+
+    @Test
+    public void frameworkEndpointsAreRecreatedWhenTheEnvironmentChanges() {
+        FeeEndpoints production = registry.api(FeeEndpoints.class);
+        Assert.assertSame(production, registry.api(FeeEndpoints.class));
+
+        framework.environment = Environment.STAGING;
+
+        FeeEndpoints staging = registry.api(FeeEndpoints.class);
+        Assert.assertNotSame(production, staging);
+        Assert.assertSame(staging, registry.api(FeeEndpoints.class));
+    }
+
+    @Test
+    public void apiAndExplorerInstancesAreSeparate() {
+        Assert.assertNotSame(
+                registry.api(WalletExplorerEndpoints.class),
+                registry.explorer(WalletExplorerEndpoints.class));
+    }
+
+    private static Retrofit retrofit() {
+        return new Retrofit.Builder()
+                .baseUrl("https://api.blockchain.info/")
+                .build();
+    }
+
+    private static class TestFramework implements FrameworkInterface {
+
+        private final Retrofit api = retrofit();
+        private final Retrofit explorer = retrofit();
+        Environment environment = Environment.PRODUCTION;
+
+        @Override
+        public Retrofit getRetrofitApiInstance() {
+            return api;
+        }
+
+        @Override
+        public Retrofit getRetrofitExplorerInstance() {
+            return explorer;
+        }
+
+        @Override
+        public Environment getEnvironment() {
+            return environment;
+        }
+
+        @Override
+        public NetworkParameters getBitcoinParams() {
+            return BitcoinMainNetParams.get();
+        }
+
+        @Override
+        public NetworkParameters getBitcoinCashParams() {
+            return BitcoinCashMainNetParams.get();
+        }
+
+        @Override
+        public String getDevice() {
+            return null;
+        }
+
+        @Override
+        public String getAppVersion() {
+            return null;
+        }
+
+        @Override
+        public String getApiCode() {
+            return "";
+        }
+    }
+}
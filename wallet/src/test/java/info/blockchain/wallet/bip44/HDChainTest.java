@@ -1,5 +1,6 @@
 package info.blockchain.wallet.bip44;
 
+import org.bitcoinj.core.ECKey;
 import org.bitcoinj.crypto.DeterministicKey;
 import org.bitcoinj.crypto.HDKeyDerivation;
 import org.bitcoinj.params.BitcoinMainNetParams;
@@ -7,6 +8,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
 /**
  * Created by riaanvos on 27/01/2017.
  */
@@ -36,6 +39,65 @@ public class HDChainTest {
         Assert.assertEquals("1HxBEXhu5LPibpTAQ1EoNTJavDSbwajJTg", chain.getAddressAt(0).getAddressString());
     }
 
+    @Test
+    public void getAddressRangeMatchesSingleDerivation() throws Exception {
+        HDChain chain = new HDChain(BitcoinMainNetParams.get(), key, true);
+        DeterministicKey chainKey = HDKeyDerivation.deriveChildKey(key, HDChain.RECEIVE_CHAIN);
+
+        List<HDAddress> range = chain.getAddressRange(0, 25);
+
+        Assert.assertEquals(25, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            HDAddress expected = new HDAddress(BitcoinMainNetParams.get(), chainKey, i);
+            HDAddress actual = range.get(i);
+            Assert.assertEquals(i, actual.getChildNum());
+            Assert.assertEquals(expected.getAddressString(), actual.getAddressString());
+            Assert.assertArrayEquals(expected.getPubKey(), actual.getPubKey());
+            Assert.assertEquals(expected.getPrivateKeyString(), actual.getPrivateKeyString());
+            Assert.assertEquals(expected.getPath(), actual.getPath());
+        }
+    }
+
+    @Test
+    public void getAddressRangeReusesCachedKeys() throws Exception {
+        HDChain chain = new HDChain(BitcoinMainNetParams.get(), key, true, 4);
+
+        String third = chain.getAddressAt(2).getAddressString();
+        List<HDAddress> range = chain.getAddressRange(0, 10);
+
+        Assert.assertEquals(third, range.get(2).getAddressString());
+        Assert.assertEquals(range.get(9).getAddressString(), chain.getAddressAt(9).getAddressString());
+        Assert.assertEquals(range.get(0).getAddressString(), chain.getAddressAt(0).getAddressString());
+        Assert.assertTrue(chain.getAddressRange(5, 5).isEmpty());
+    }
+
+    @Test
+    public void watchOnlyChainHasNoPrivateKey() throws Exception {
+        HDChain chain = new HDChain(BitcoinMainNetParams.get(), key.dropPrivateBytes().dropParent(), true);
+
+        HDAddress address = chain.getAddressAt(0);
+
+        Assert.assertEquals("1HxBEXhu5LPibpTAQ1EoNTJavDSbwajJTg", address.getAddressString());
+        Assert.assertNull(address.getPrivateKeyString());
+    }
+
+    @Test
+    public void getSigningKeyAtMatchesPrivateKeyString() throws Exception {
+        HDChain chain = new HDChain(BitcoinMainNetParams.get(), key, true);
+
+        for (int i = 0; i < 5; i++) {
+            ECKey signingKey = chain.getSigningKeyAt(i);
+            HDAddress address = chain.getAddressAt(i);
+            Assert.assertTrue(signingKey.isCompressed());
+            Assert.assertArrayEquals(address.getPubKey(), signingKey.getPubKey());
+            Assert.assertEquals(address.getPrivateKeyString(),
+                signingKey.getPrivateKeyEncoded(BitcoinMainNetParams.get()).toString());
+        }
+
+        HDChain watchOnly = new HDChain(BitcoinMainNetParams.get(), key.dropPrivateBytes().dropParent(), true);
+        Assert.assertNull(watchOnly.getSigningKeyAt(0));
+    }
+
     @Test
     public void getPath() throws Exception {
         HDChain chain = new HDChain(BitcoinMainNetParams.get(), key, true);
@@ -15,11 +15,14 @@ import info.blockchain.wallet.contacts.data.PaymentRequest
 import info.blockchain.wallet.contacts.data.RequestForPaymentRequest
 import info.blockchain.wallet.exceptions.MetadataException
 import info.blockchain.wallet.exceptions.SharedMetadataException
+import info.blockchain.wallet.metadata.Metadata
+import info.blockchain.wallet.metadata.SharedMetadata
 import info.blockchain.wallet.metadata.data.Message
 import info.blockchain.wallet.util.MetadataUtil
 import info.blockchain.wallet.util.RestClient
 
 import org.bitcoinj.core.NetworkParameters
+import org.bitcoinj.crypto.HDKeyDerivation
 import org.bitcoinj.params.BitcoinCashMainNetParams
 import org.bitcoinj.params.BitcoinMainNetParams
 import org.junit.Assert
@@ -609,4 +612,55 @@ class ContactsTest {
             Assert.assertEquals(pr.address, ftx?.getAddress())
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun decryptMessages() {
+        val masterKey = wallet.masterKey
+        val mine = SharedMetadata.Builder(MetadataUtil.deriveSharedMetadataNode(masterKey)).build()
+        val contacts = Contacts(
+            Metadata.Builder(
+                MetadataUtil.deriveMetadataNode(masterKey),
+                Metadata.METADATA_TYPE_EXTERNAL_CONTACTS
+            ).buildWithoutFetch(),
+            mine
+        )
+
+        val senders = (0 until 4).map {
+            SharedMetadata.Builder(HDKeyDerivation.deriveChildKey(masterKey, 100 + it)).build()
+        }
+        senders.forEach {
+            val contact = Contact()
+            contact.mdid = it.address
+            contact.xpub = it.xpub
+            contacts.getContactList()[contact.id] = contact
+        }
+
+        val messages = (0 until 40).mapTo(ArrayList()) {
+            val sender = senders[it % senders.size]
+            Message().apply {
+                id = "message $it"
+                this.sender = sender.address
+                payload = sender.encryptFor(mine.xpub, "payload $it")
+            }
+        }
+
+        val decrypted = contacts.decryptMessages(messages)
+
+        Assert.assertEquals((0 until 40).map { "payload $it" }, decrypted.map { it.payload })
+
+        // A contact's mdid changing after it has been looked up
+        val moved = SharedMetadata.Builder(HDKeyDerivation.deriveChildKey(masterKey, 200)).build()
+        contacts.getContactList().values.first().apply {
+            mdid = moved.address
+            xpub = moved.xpub
+        }
+        val message = Message().apply {
+            id = "moved"
+            sender = moved.address
+            payload = moved.encryptFor(mine.xpub, "moved")
+        }
+
+        Assert.assertEquals("moved", contacts.decryptMessages(mutableListOf(message)).single().payload)
+    }
+}
+
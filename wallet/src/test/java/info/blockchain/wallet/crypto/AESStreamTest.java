@@ -0,0 +1,117 @@
+package info.blockchain.wallet.crypto;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.crypto.io.InvalidCipherTextIOException;
+import org.spongycastle.crypto.paddings.ISO7816d4Padding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+public class AESStreamTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void base64MatchesCommonsCodec() throws Exception {
+        Random random = new Random(42);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String encoded = new String(Base64.encodeBase64(data), UTF_8);
+
+            Assert.assertArrayEquals(data, readAll(new Base64InputStream(encoded)));
+            // Line breaks and other characters outside the alphabet are skipped
+            String wrapped = encoded.replaceAll("(.{7})", "$1\r\n");
+            Assert.assertArrayEquals(Base64.decodeBase64(wrapped.getBytes(UTF_8)),
+                readAll(new Base64InputStream(wrapped)));
+        }
+    }
+
+    @Test
+    public void decryptLargePayload() throws Exception {
+        StringBuilder sb = new StringBuilder("{\"keys\":[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"label\":\"\u00e9tiquette ").append(i).append("\"}");
+        }
+        String json = sb.append("]}").toString();
+        String encrypted = AESUtil.encrypt(json, "password", 10);
+
+        InputStream plaintext = AESStream.decrypt(encrypted, "password", 10);
+
+        Assert.assertEquals(json, new String(readAll(plaintext), UTF_8));
+        Assert.assertEquals(json, AESUtil.decrypt(encrypted, "password", 10));
+    }
+
+    @Test
+    public void decryptSetMode() throws Exception {
+        String encrypted = AESUtil.encryptWithSetMode("test data", "password", 10, AESUtil.MODE_OFB,
+            new ISO7816d4Padding());
+
+        InputStream plaintext = AESStream.decrypt(encrypted, "password", 10, AESUtil.MODE_OFB,
+            new ISO7816d4Padding());
+
+        Assert.assertEquals("test data", new String(readAll(plaintext), UTF_8));
+    }
+
+    @Test(expected = InvalidCipherTextIOException.class)
+    public void decryptWrongPasswordFailsPadding() throws Exception {
+        String encrypted = AESUtil.encryptWithSetMode("test data", "password", 10, AESUtil.MODE_CBC,
+            new ISO7816d4Padding());
+        readAll(AESStream.decrypt(encrypted, "bogus", 10, AESUtil.MODE_CBC, new ISO7816d4Padding()));
+    }
+
+    @Test
+    public void encryptWithKeyRoundTrip() throws Exception {
+        byte[] key = new byte[32];
+        new Random(1).nextBytes(key);
+        ByteBuffer plaintext = ByteBuffer.wrap("{\"aaa\":\"bbb\"}".getBytes(UTF_8));
+
+        ByteBuffer encrypted = AESStream.encryptWithKey(key, plaintext);
+        Assert.assertFalse(plaintext.hasRemaining());
+        Assert.assertEquals(AESUtil.IV_LENGTH + 16, encrypted.remaining());
+
+        byte[] raw = new byte[encrypted.remaining()];
+        encrypted.get(raw);
+        String base64 = new String(Base64.encodeBase64(raw), UTF_8);
+        Assert.assertEquals("{\"aaa\":\"bbb\"}", AESUtil.decryptWithKey(key, base64));
+        Assert.assertEquals("{\"aaa\":\"bbb\"}",
+            new String(readAll(AESStream.decryptWithKey(key, base64)), UTF_8));
+    }
+
+    @Test
+    public void encryptWithKeyFromDirectBuffer() throws Exception {
+        byte[] key = new byte[32];
+        byte[] data = new byte[10000];
+        new Random(2).nextBytes(data);
+        ByteBuffer plaintext = ByteBuffer.allocateDirect(data.length);
+        plaintext.put(data).flip();
+
+        ByteBuffer encrypted = AESStream.encryptWithKey(key, plaintext);
+        byte[] raw = new byte[encrypted.remaining()];
+        encrypted.get(raw);
+
+        Assert.assertArrayEquals(data,
+            readAll(AESStream.decryptWithKey(key, new String(Base64.encodeBase64(raw), UTF_8))));
+    }
+
+    @Test(expected = IOException.class)
+    public void decryptTooShort() throws Exception {
+        AESStream.decrypt("AAAA", "password", 10);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int read;
+        while ((read = in.read(buf)) != -1) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
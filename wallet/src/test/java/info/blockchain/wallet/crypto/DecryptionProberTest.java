@@ -0,0 +1,112 @@
+package info.blockchain.wallet.crypto;
+
+import info.blockchain.wallet.exceptions.DecryptionException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.crypto.paddings.BlockCipherPadding;
+import org.spongycastle.crypto.paddings.ISO10126d2Padding;
+import org.spongycastle.crypto.paddings.ISO7816d4Padding;
+import org.spongycastle.crypto.paddings.ZeroBytePadding;
+
+public class DecryptionProberTest {
+
+    private static final String PASSWORD = "mypassword";
+    private static final String JSON = "{\"guid\":\"a09910d9-1906-4ea1-a956-2508c3fe0661\",\"keys\":[]}";
+
+    private final int[] iterations = {1, 10};
+    private final int[] modes = {AESUtil.MODE_CBC, AESUtil.MODE_OFB};
+    private final BlockCipherPadding[] paddings = {
+        new ISO10126d2Padding(),
+        new ISO7816d4Padding(),
+        new ZeroBytePadding(),
+        null};
+
+    private final DecryptionProber.Validator jsonValidator = new DecryptionProber.Validator() {
+        @Override
+        public boolean isValid(String plaintext) {
+            try {
+                new JSONObject(plaintext);
+                return true;
+            } catch (JSONException e) {
+                return false;
+            }
+        }
+    };
+
+    @Test
+    public void probeFindsEveryCombination() throws Exception {
+        DecryptionProber prober = new DecryptionProber(iterations, modes, paddings);
+
+        for (int iteration : iterations) {
+            for (int mode : modes) {
+                for (BlockCipherPadding padding : new BlockCipherPadding[]{
+                    new ISO10126d2Padding(), new ISO7816d4Padding()}) {
+
+                    String encrypted = AESUtil.encryptWithSetMode(JSON, PASSWORD, iteration, mode, padding);
+                    DecryptionProber.Result result = prober.probe(encrypted, PASSWORD, jsonValidator);
+
+                    Assert.assertEquals(serialSearch(encrypted), result.getPlaintext());
+                    Assert.assertTrue(result.getPlaintext().startsWith(JSON));
+                    Assert.assertEquals(iteration, result.getIterations());
+                    Assert.assertEquals(mode, result.getMode());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void probeMatchesSerialSearch() throws Exception {
+        DecryptionProber prober = new DecryptionProber(iterations, modes, paddings);
+
+        for (int mode : modes) {
+            for (BlockCipherPadding padding : paddings) {
+                // Without padding the cleartext has to be whole blocks
+                String cleartext = padding != null ? JSON : String.format("%-64s", JSON);
+                String encrypted = AESUtil.encryptWithSetMode(cleartext, PASSWORD, 10, mode, padding);
+                DecryptionProber.Result result = prober.probe(encrypted, PASSWORD, jsonValidator);
+
+                Assert.assertEquals(serialSearch(encrypted), result.getPlaintext());
+            }
+        }
+    }
+
+    @Test(expected = DecryptionException.class)
+    public void probeFailsWithWrongPassword() throws Exception {
+        String encrypted = AESUtil.encryptWithSetMode(JSON, PASSWORD, 10, AESUtil.MODE_OFB, null);
+        new DecryptionProber(iterations, modes, paddings).probe(encrypted, "bogus", jsonValidator);
+    }
+
+    @Test(expected = DecryptionException.class)
+    public void probeFailsWhenNothingValidates() throws Exception {
+        String encrypted = AESUtil.encryptWithSetMode(JSON, PASSWORD, 1, AESUtil.MODE_CBC,
+            new ISO10126d2Padding());
+        new DecryptionProber(iterations, modes, paddings).probe(encrypted, PASSWORD,
+            new DecryptionProber.Validator() {
+                @Override
+                public boolean isValid(String plaintext) {
+                    return false;
+                }
+            });
+    }
+
+    private String serialSearch(String encrypted) throws DecryptionException {
+        for (int iteration : iterations) {
+            for (int mode : modes) {
+                for (BlockCipherPadding padding : paddings) {
+                    try {
+                        String decrypted = AESUtil.decryptWithSetMode(encrypted, PASSWORD, iteration, mode,
+                            padding);
+                        if (jsonValidator.isValid(decrypted)) {
+                            return decrypted;
+                        }
+                    } catch (Exception e) {
+                        // try the next combination
+                    }
+                }
+            }
+        }
+        throw new DecryptionException("Failed to decrypt");
+    }
+}
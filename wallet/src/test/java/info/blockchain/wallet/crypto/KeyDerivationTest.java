@@ -0,0 +1,81 @@
+package info.blockchain.wallet.crypto;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+public class KeyDerivationTest {
+
+    private final byte[] salt = Hex.decode("000102030405060708090a0b0c0d0e0f");
+
+    @After
+    public void tearDown() {
+        KeyDerivation.setCacheEnabled(false);
+    }
+
+    @Test
+    public void backendsDeriveTheSameKeys() {
+        for (String password : new String[]{"password", "", "pa\u00dfw\u00f6rd \u20ac\u4e2d", "\ud83d\udd11"}) {
+            for (int iterations : new int[]{1, 10, 5000}) {
+                Assert.assertArrayEquals(
+                    KeyDerivation.Backend.SPONGY_CASTLE.derive(password, salt, iterations, 256),
+                    KeyDerivation.Backend.JCA.derive(password, salt, iterations, 256));
+            }
+        }
+    }
+
+    @Test
+    public void knownAnswer() {
+        // RFC 6070, test vector 2
+        Assert.assertEquals("ea6c014dc72d6f8ccd1ed92ace1d41f0d8de8957",
+            Hex.toHexString(KeyDerivation.pbkdf2("password", "salt".getBytes(), 2, 160)));
+    }
+
+    @Test
+    public void cachedKeysAreReusedAndWiped() {
+        KeyDerivation.setCacheEnabled(true);
+
+        byte[] first = KeyDerivation.pbkdf2("password", salt, 10, 256);
+        byte[] second = KeyDerivation.pbkdf2("password", salt, 10, 256);
+        Assert.assertArrayEquals(first, second);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, KeyDerivation.cacheSize());
+
+        KeyDerivation.pbkdf2("password", salt, 11, 256);
+        KeyDerivation.pbkdf2("other", salt, 10, 256);
+        Assert.assertEquals(3, KeyDerivation.cacheSize());
+
+        // Callers can't change what's cached
+        first[0]++;
+        Assert.assertArrayEquals(second, KeyDerivation.pbkdf2("password", salt, 10, 256));
+
+        KeyDerivation.wipeCache();
+        Assert.assertEquals(0, KeyDerivation.cacheSize());
+        Assert.assertArrayEquals(second, KeyDerivation.pbkdf2("password", salt, 10, 256));
+    }
+
+    @Test
+    public void nothingIsCachedWhenDisabled() {
+        KeyDerivation.pbkdf2("password", salt, 10, 256);
+        Assert.assertEquals(0, KeyDerivation.cacheSize());
+    }
+
+    @Test
+    public void decryptWithCachedKey() throws Exception {
+        KeyDerivation.setCacheEnabled(true);
+        String encrypted = AESUtil.encrypt("test data", "password", 5000);
+
+        Assert.assertEquals("test data", AESUtil.decrypt(encrypted, "password", 5000));
+        Assert.assertEquals("test data", AESUtil.decrypt(encrypted, "password", 5000));
+        Assert.assertNotEquals("test data", decryptOrNull(encrypted, "bogus"));
+    }
+
+    private static String decryptOrNull(String encrypted, String password) {
+        try {
+            return AESUtil.decrypt(encrypted, password, 5000);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -154,4 +154,33 @@ public final class MetadataTest {
         mockInterceptor.setResponseCode(404);
         Assert.assertNull(metadata.getMetadata());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMagicHashTakenFromRead() throws Exception {
+
+        mockInterceptor.setResponseString("{\"message\":\"Internal Server Error\"}");
+        mockInterceptor.setResponseCode(500);//Fails if anything is fetched while building
+
+        DeterministicKey metaDataHDNode = MetadataUtil.INSTANCE.deriveMetadataNode(getWallet().getMasterKey());
+
+        Metadata metadata = new Metadata.Builder(metaDataHDNode, 2)
+                .setEncrypted(isEncrypted)
+                .buildWithoutFetch();
+
+        Assert.assertNull(metadata.getMagicHash());
+
+        mockInterceptor.setResponseString("{\"payload\":\"UmFnZSByYWdl\",\"version\":1,\"type_id\":1,\"signature\":\"HwIx4Cs+1pB+8iCDREC1PiDqkDnEDhfcto6bQjxzo3RrHB562kg8nTjbFoaydlUI6tDkl3WnZahrmFZ8ErNqmBY=\",\"created_at\":1480592845000,\"updated_at\":1480592845000,\"address\":\"1ErzrzB1FE1YyQ7LADMzye9J3Q8QeR1mja\"}");
+        mockInterceptor.setResponseCode(200);
+        Assert.assertEquals("Rage rage", metadata.getMetadata());
+
+        mockInterceptor.setResponseString("{\"payload\":\"UmFnZSByYWdl\",\"version\":1,\"type_id\":1,\"signature\":\"HwIx4Cs+1pB+8iCDREC1PiDqkDnEDhfcto6bQjxzo3RrHB562kg8nTjbFoaydlUI6tDkl3WnZahrmFZ8ErNqmBY=\",\"created_at\":1480592845000,\"updated_at\":1480592845000,\"address\":\"1ErzrzB1FE1YyQ7LADMzye9J3Q8QeR1mja\"}");
+        mockInterceptor.setResponseCode(200);
+        Metadata fetched = new Metadata.Builder(metaDataHDNode, 2)
+                .setEncrypted(isEncrypted)
+                .build();
+
+        Assert.assertNotNull(metadata.getMagicHash());
+        Assert.assertArrayEquals(fetched.getMagicHash(), metadata.getMagicHash());
+    }
+}
+
@@ -0,0 +1,73 @@
+package info.blockchain.wallet.multiaddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class AddressOwnershipIndexTest {
+
+    private final List<String> own = Arrays.asList("xpub1", "1Legacy", "1WatchOnly");
+    private final List<String> watchOnly = Collections.singletonList("1WatchOnly");
+    private final List<String> legacy = Arrays.asList("1Legacy", "1WatchOnly");
+
+    @Test
+    public void flagsAddresses() {
+        AddressOwnershipIndex index = new AddressOwnershipIndex(own, watchOnly, legacy);
+
+        Assert.assertTrue(index.isOwned("xpub1"));
+        Assert.assertTrue(index.isOwned("1Legacy"));
+        Assert.assertFalse(index.isOwned("1SomeoneElse"));
+        Assert.assertTrue(index.isWatchOnly(index.idOf("1WatchOnly")));
+        Assert.assertFalse(index.isWatchOnly(index.idOf("1Legacy")));
+        Assert.assertTrue(index.isLegacy(index.idOf("1Legacy")));
+        Assert.assertFalse(index.isLegacy(index.idOf("xpub1")));
+        Assert.assertEquals(AddressOwnershipIndex.NOT_FOUND, index.idOf("1SomeoneElse"));
+        Assert.assertFalse(index.isLegacy(AddressOwnershipIndex.NOT_FOUND));
+        Assert.assertTrue(index.filtersLegacy());
+    }
+
+    @Test
+    public void addOwned() {
+        AddressOwnershipIndex index = new AddressOwnershipIndex(own, watchOnly, null);
+
+        int id = index.addOwned("1Derived");
+
+        Assert.assertEquals(id, index.idOf("1Derived"));
+        Assert.assertTrue(index.isOwned("1Derived"));
+        Assert.assertFalse(index.filtersLegacy());
+    }
+
+    @Test
+    public void isBuiltFrom() {
+        AddressOwnershipIndex index = new AddressOwnershipIndex(own, watchOnly, null);
+
+        Assert.assertTrue(index.isBuiltFrom(Arrays.asList("xpub1", "1Legacy", "1WatchOnly"), watchOnly, null));
+        Assert.assertFalse(index.isBuiltFrom(own, watchOnly, legacy));
+        Assert.assertFalse(index.isBuiltFrom(Collections.singletonList("xpub1"), watchOnly, null));
+        Assert.assertFalse(index.isBuiltFrom(own, Collections.<String>emptyList(), null));
+    }
+
+    @Test
+    public void addressAmounts() {
+        AddressOwnershipIndex index = new AddressOwnershipIndex(own, watchOnly, null);
+        AddressAmounts amounts = new AddressAmounts();
+
+        amounts.add("1Legacy", 1000L);
+        amounts.add("1Legacy", 500L);
+        amounts.add("1SomeoneElse", 200L);
+        amounts.put("1SomeoneElse", 300L);
+
+        Assert.assertEquals(1800L, amounts.sum(null));
+        Assert.assertEquals(1500L, amounts.sum(index));
+        Assert.assertEquals(2, amounts.toMap(null).size());
+        Assert.assertEquals(1500L, amounts.toMap(index).get("1Legacy").longValue());
+
+        amounts.clear();
+
+        Assert.assertFalse(amounts.contains("1Legacy"));
+        Assert.assertEquals(0L, amounts.sum(null));
+    }
+}
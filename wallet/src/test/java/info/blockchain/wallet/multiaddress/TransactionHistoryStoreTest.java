@@ -0,0 +1,281 @@
+package info.blockchain.wallet.multiaddress;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionHistoryStoreTest {
+
+    private File file;
+    private FakeApi api;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("tx_history", ".jsonl");
+        file.delete();
+        api = new FakeApi();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void firstSyncFetchesNewestPageOnly() throws Exception {
+        api.addConfirmed(5, 100);
+        TransactionHistoryStore store = store();
+
+        Assert.assertEquals(2, store.sync(api, 2));
+
+        Assert.assertEquals(1, api.calls);
+        Assert.assertFalse(store.isComplete());
+    }
+
+    @Test
+    public void storeHoldingOnlyPendingFetchesNewestPageOnly() throws Exception {
+        api.addConfirmed(30, 100);
+        TransactionSummary pushed = api.addPending();
+        TransactionHistoryStore store = store();
+        store.addPending(pushed);
+
+        Assert.assertEquals(1, store.sync(api, 2));
+
+        Assert.assertEquals(1, api.calls);
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(pushed.getHash(), store.getTransactions(Long.MAX_VALUE, 1).get(0).getHash());
+    }
+
+    @Test
+    public void pendingIsNotCountedInTheOffsetOfOlderPages() throws Exception {
+        api.addConfirmed(8, 100);
+        TransactionHistoryStore store = store();
+        store.sync(api, 3);
+        TransactionSummary pushed = api.addPending();
+        api.newestFirst.remove(pushed);
+        store.addPending(pushed);
+
+        Assert.assertEquals(3, store.fetchOlder(api, 3));
+
+        List<TransactionSummary> stored = store.getTransactions(Long.MAX_VALUE, 10);
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(api.newestFirst.get(i).getHash(), stored.get(i + 1).getHash());
+        }
+    }
+
+    @Test
+    public void olderPagesAreFetchedAsTheyAreRead() throws Exception {
+        api.addConfirmed(5, 100);
+        TransactionHistoryStore store = store();
+        store.sync(api, 2);
+
+        Assert.assertEquals(5, store.getTransactions(Long.MAX_VALUE, 5, api).size());
+
+        Assert.assertEquals(2, api.calls);
+        Assert.assertTrue(store.isComplete());
+    }
+
+    @Test
+    public void syncStopsAtStoredHistory() throws Exception {
+        api.addConfirmed(10, 100);
+        TransactionHistoryStore store = store();
+        store.sync(api, 4);
+
+        api.addConfirmed(2, 110);
+        api.calls = 0;
+
+        Assert.assertEquals(2, store.sync(api, 4));
+        Assert.assertEquals(1, api.calls);
+        Assert.assertEquals(6, store.size());
+    }
+
+    @Test
+    public void historySurvivesReload() throws Exception {
+        api.addConfirmed(3, 100);
+        api.addPending();
+        store().sync(api, 10);
+
+        TransactionHistoryStore reloaded = store();
+        List<TransactionSummary> txs = reloaded.getTransactions(Long.MAX_VALUE, 10);
+
+        Assert.assertEquals(4, txs.size());
+        Assert.assertTrue(reloaded.isComplete());
+        Assert.assertEquals(0, txs.get(0).getBlockHeight());
+        Assert.assertEquals(BigInteger.TEN, txs.get(1).getTotal());
+        Assert.assertEquals(1, txs.get(1).getConfirmations());
+        Assert.assertEquals(3, txs.get(3).getConfirmations());
+        Assert.assertEquals(TransactionSummary.Direction.RECEIVED, txs.get(3).getDirection());
+    }
+
+    @Test
+    public void droppedPendingIsRemoved() throws Exception {
+        api.addConfirmed(2, 100);
+        TransactionSummary pending = api.addPending();
+        TransactionHistoryStore store = store();
+        store.sync(api, 10);
+
+        api.newestFirst.remove(pending);
+        store.sync(api, 10);
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(2, store().size());
+    }
+
+    @Test
+    public void addPendingIsKeptUntilSyncDropsIt() throws Exception {
+        api.addConfirmed(2, 100);
+        TransactionHistoryStore store = store();
+        store.sync(api, 10);
+
+        TransactionSummary pushed = api.addPending();
+        Assert.assertTrue(store.addPending(pushed));
+        Assert.assertFalse(store.addPending(pushed));
+        Assert.assertEquals(pushed.getHash(), store.getTransactions(Long.MAX_VALUE, 1).get(0).getHash());
+        Assert.assertEquals(3, store().size());
+
+        store.sync(api, 10);
+        Assert.assertEquals(3, store.size());
+
+        api.newestFirst.remove(pushed);
+        store.sync(api, 10);
+        Assert.assertEquals(2, store.size());
+    }
+
+    @Test
+    public void pagesByTimeCursor() throws Exception {
+        api.addConfirmed(10, 100);
+        TransactionHistoryStore store = store();
+        store.sync(api, 3);
+        store.getTransactions(Long.MAX_VALUE, 6, api);
+        api.calls = 0;
+
+        List<TransactionSummary> first = store.getTransactions(Long.MAX_VALUE, 3, api);
+        long cursor = first.get(first.size() - 1).getTime();
+        List<TransactionSummary> second = store.getTransactions(cursor, 3, api);
+
+        Assert.assertEquals(3, second.size());
+        Assert.assertTrue(second.get(0).getTime() < cursor);
+        Assert.assertEquals(0, api.calls);
+    }
+
+    @Test
+    public void pagingFetchesOlderHistory() throws Exception {
+        api.addConfirmed(8, 100);
+        TransactionHistoryStore store = store();
+        store.fetchOlder(api, 3);
+
+        List<TransactionSummary> page = store.getTransactions(api.newestFirst.get(2).getTime(), 5, api);
+
+        Assert.assertEquals(5, page.size());
+        Assert.assertEquals(api.newestFirst.get(3).getHash(), page.get(0).getHash());
+        Assert.assertEquals(8, store.size());
+        Assert.assertFalse(store.isComplete());
+    }
+
+    @Test
+    public void clearRemovesFile() throws Exception {
+        api.addConfirmed(2, 100);
+        TransactionHistoryStore store = store();
+        store.sync(api, 10);
+
+        store.clear();
+
+        Assert.assertFalse(file.exists());
+        Assert.assertEquals(0, store.size());
+        Assert.assertFalse(store.isComplete());
+    }
+
+    @Test
+    public void recordsAreEncrypted() throws Exception {
+        api.addConfirmed(2, 100);
+        store().sync(api, 10);
+
+        String contents = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        Assert.assertFalse(contents.contains(api.newestFirst.get(0).getHash()));
+        Assert.assertFalse(contents.contains("1From"));
+        Assert.assertEquals(2, store().size());
+    }
+
+    @Test
+    public void recordsWrittenUnderAnotherPasswordAreSkipped() throws Exception {
+        api.addConfirmed(2, 100);
+        store().sync(api, 10);
+
+        TransactionHistoryStore store = new TransactionHistoryStore(file, "changed password");
+
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(2, store.sync(api, 10));
+        Assert.assertEquals(2, new TransactionHistoryStore(file, "changed password").size());
+    }
+
+    private TransactionHistoryStore store() {
+        return new TransactionHistoryStore(file, "password");
+    }
+
+    private static class FakeApi implements TransactionHistoryStore.PageFetcher {
+
+        final List<TransactionSummary> newestFirst = new ArrayList<>();
+        int calls;
+        private long time = 1000;
+
+        void addConfirmed(int count, long firstHeight) {
+            for (int i = 0; i < count; i++) {
+                TransactionSummary tx = create();
+                tx.setBlockHeight(firstHeight + i);
+                newestFirst.add(0, tx);
+            }
+            long latest = newestFirst.get(0).getBlockHeight();
+            for (TransactionSummary tx : newestFirst) {
+                if (tx.getBlockHeight() > 0) {
+                    tx.setConfirmations((int) (latest - tx.getBlockHeight() + 1));
+                }
+            }
+        }
+
+        TransactionSummary addPending() {
+            TransactionSummary tx = create();
+            newestFirst.add(0, tx);
+            return tx;
+        }
+
+        private TransactionSummary create() {
+            TransactionSummary tx = new TransactionSummary();
+            tx.setHash("hash" + time);
+            tx.setTime(time++);
+            tx.setDirection(TransactionSummary.Direction.RECEIVED);
+            tx.setTotal(BigInteger.TEN);
+            tx.setFee(BigInteger.ONE);
+            tx.inputsMap.put("1From", BigInteger.TEN);
+            tx.outputsMap.put("1To", BigInteger.TEN);
+            return tx;
+        }
+
+        @Override
+        public List<TransactionSummary> fetch(int limit, int offset) {
+            calls++;
+            List<TransactionSummary> page = new ArrayList<>();
+            for (int i = offset; i < Math.min(newestFirst.size(), offset + limit); i++) {
+                page.add(copy(newestFirst.get(i)));
+            }
+            return page;
+        }
+
+        private TransactionSummary copy(TransactionSummary tx) {
+            TransactionSummary copy = create();
+            time--;
+            copy.setHash(tx.getHash());
+            copy.setTime(tx.getTime());
+            copy.setBlockHeight(tx.getBlockHeight());
+            copy.setConfirmations(tx.getConfirmations());
+            return copy;
+        }
+    }
+}
@@ -242,6 +242,54 @@ class CryptoBalanceMapTest {
                 "No info for this address. updateAllBalances should be called first."
         }
     }
+
+    @Test
+    fun `applies a transaction delta to tracked entries only`() {
+        calculateCryptoBalanceMap(
+            CryptoCurrency.BTC,
+            { mapOf("A" to 100L, "B" to 200L) }.toBalanceQuery(),
+            xpubs = setOf("A"),
+            legacy = setOf("B", "New"),
+            watchOnlyLegacy = emptySet()
+        ).run {
+            applyDelta(mapOf("A" to (-30L).toBigInteger(), "New" to 50L.toBigInteger(), "Other" to 1L.toBigInteger()))
+        }.apply {
+            totalSpendable `should equal` CryptoValue.bitcoinFromSatoshis(320L)
+            totalSpendableLegacy `should equal` CryptoValue.bitcoinFromSatoshis(250L)
+            get("A") `should equal` CryptoValue.bitcoinFromSatoshis(70L)
+            get("New") `should equal` CryptoValue.bitcoinFromSatoshis(50L)
+            get("Other") `should equal` CryptoValue.ZeroBtc
+        }
+    }
+
+    @Test
+    fun `matches after the delta of the fetched balances`() {
+        val before = calculateCryptoBalanceMap(
+            CryptoCurrency.BTC,
+            { mapOf("A" to 100L) }.toBalanceQuery(),
+            xpubs = setOf("A"),
+            legacy = setOf("B"),
+            watchOnlyLegacy = emptySet()
+        )
+        val fetched = calculateCryptoBalanceMap(
+            CryptoCurrency.BTC,
+            { mapOf("A" to 100L, "B" to 0L) }.toBalanceQuery(),
+            xpubs = setOf("A"),
+            legacy = setOf("B"),
+            watchOnlyLegacy = emptySet()
+        )
+        val afterPayment = calculateCryptoBalanceMap(
+            CryptoCurrency.BTC,
+            { mapOf("A" to 100L, "B" to 25L) }.toBalanceQuery(),
+            xpubs = setOf("A"),
+            legacy = setOf("B"),
+            watchOnlyLegacy = emptySet()
+        )
+
+        before.matches(fetched) `should equal` true
+        before.matches(afterPayment) `should equal` false
+        before.applyDelta(mapOf("B" to 25L.toBigInteger())).matches(afterPayment) `should equal` true
+    }
 }
 
 private fun (() -> Map<String, Long>).toBalanceQuery() =
@@ -0,0 +1,100 @@
+package info.blockchain.wallet.payload;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class GapLimitDiscoveryTest {
+
+    private final GapLimitDiscovery.Deriver<String> deriver = new GapLimitDiscovery.Deriver<String>() {
+        @Override
+        public String derive(int index) {
+            return "key" + index;
+        }
+
+        @Override
+        public String keyOf(String node) {
+            return node;
+        }
+    };
+
+    @Test
+    public void stopsAfterGap() throws Exception {
+        RecordingLookup lookup = new RecordingLookup("key0", "key1", "key4", "key7");
+
+        GapLimitDiscovery.Result<String> result =
+            new GapLimitDiscovery<>(deriver, lookup, 5, 2, 4).discover(0);
+
+        Assert.assertEquals(4, result.getUsedCount());
+        Assert.assertEquals(7, result.getLastUsedIndex());
+        Assert.assertEquals(13, result.getNodes().size());
+        Assert.assertEquals("key12", result.getNodes().get(12));
+        // Batches of 2, 4, 4, 4
+        Assert.assertEquals(Arrays.asList(2, 4, 4, 4), lookup.batchSizes);
+    }
+
+    @Test
+    public void nothingUsed() throws Exception {
+        RecordingLookup lookup = new RecordingLookup();
+
+        GapLimitDiscovery.Result<String> result =
+            new GapLimitDiscovery<>(deriver, lookup, 3, 5, 10).discover(0);
+
+        Assert.assertEquals(0, result.getUsedCount());
+        Assert.assertEquals(-1, result.getLastUsedIndex());
+        Assert.assertEquals(Arrays.asList("key0", "key1", "key2"), result.getNodes());
+        Assert.assertEquals(Collections.singletonList(5), lookup.batchSizes);
+    }
+
+    @Test
+    public void deriveKeepsIndexOrder() throws Exception {
+        List<String> nodes = new GapLimitDiscovery<>(deriver, new RecordingLookup(), 3, 5, 10).derive(3, 40);
+
+        Assert.assertEquals(37, nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            Assert.assertEquals("key" + (i + 3), nodes.get(i));
+        }
+        Assert.assertTrue(new GapLimitDiscovery<>(deriver, new RecordingLookup(), 3, 5, 10).derive(3, 3).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void derivationFailureIsRethrown() throws Exception {
+        GapLimitDiscovery.Deriver<String> failing = new GapLimitDiscovery.Deriver<String>() {
+            @Override
+            public String derive(int index) {
+                throw new IllegalStateException("No key");
+            }
+
+            @Override
+            public String keyOf(String node) {
+                return node;
+            }
+        };
+
+        new GapLimitDiscovery<>(failing, new RecordingLookup(), 3, 5, 10).discover(0);
+    }
+
+    private static class RecordingLookup implements GapLimitDiscovery.UsageLookup {
+
+        private final Set<String> used;
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        RecordingLookup(String... used) {
+            this.used = new HashSet<>(Arrays.asList(used));
+        }
+
+        @Override
+        public Set<String> findUsed(List<String> keys) {
+            batchSizes.add(keys.size());
+            Set<String> found = new HashSet<>(keys);
+            found.retainAll(used);
+            return found;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package info.blockchain.wallet.payload.data;
 
 import info.blockchain.wallet.MockedResponseTest;
+import info.blockchain.wallet.crypto.AESUtil;
+import info.blockchain.wallet.exceptions.DecryptionException;
 import org.apache.commons.lang3.tuple.Pair;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.params.BitcoinMainNetParams;
@@ -210,6 +212,13 @@ public class WalletBaseTest extends MockedResponseTest {
         Assert.assertEquals("a09910d9-1906-4ea1-a956-2508c3fe0661", walletBody.getGuid());
     }
 
+    @Test(expected = DecryptionException.class)
+    public void decryptPayload_notAWallet() throws Exception {
+        String payload = AESUtil.encrypt("{\"guid\":{\"not\":\"a string\"}}", "MyTestWallet", 5000);
+
+        WalletWrapper.wrap(payload, 5000).decryptPayload(networkParameters, "MyTestWallet");
+    }
+
     @Test
     public void testToJSON() throws Exception {
 
@@ -0,0 +1,123 @@
+package info.blockchain.wallet.payment
+
+import info.blockchain.api.data.UnspentOutput
+import org.amshove.kluent.`should equal`
+import org.junit.Test
+import java.math.BigInteger
+import java.util.Random
+
+class AccumulatingCoinSelectionTest {
+    private fun unspent(value: Long, forceInclude: Boolean = false) =
+        UnspentOutput().apply {
+            this.value = value.toBigInteger()
+            this.isForceInclude = forceInclude
+        }
+
+    private fun unspents(vararg unspents: Long) = unspents.map { unspent(it) }
+
+    private fun List<UnspentOutput>.values() = map { it.value }
+
+    private val feePerByte = 55.toBigInteger()
+
+    @Test
+    fun `accumulating selection matches coin selection`() {
+        val random = Random(1234)
+        repeat(200) {
+            val coins = (0 until random.nextInt(60)).map {
+                unspent(random.nextInt(500000).toLong(), forceInclude = random.nextInt(50) == 0)
+            }
+            val outputAmount = random.nextInt(2000000).toBigInteger()
+            val feePerByte = random.nextInt(120).toBigInteger()
+
+            listOf(AscentDraw, DescentDraw, ReplayProtection(unspent(546, forceInclude = true))).forEach { sorting ->
+                val expected = CoinSelection(coins, feePerByte).select(outputAmount, sorting)
+                AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, sorting)
+                    .assertSameAs(expected)
+            }
+            AccumulatingCoinSelection(coins, feePerByte).selectAll()
+                .assertSameAs(CoinSelection(coins, feePerByte).selectAll())
+        }
+    }
+
+    @Test
+    fun `branch and bound finds selection without change`() {
+        val coins = unspents(100000, 70000, 50000, 25000, 12000)
+        val outputAmount = 75000.toBigInteger() - (10 + 149 * 2 + 34).toBigInteger() * feePerByte
+
+        AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, BranchAndBound()).also {
+            it.spendableOutputs.values() `should equal` unspents(50000, 25000).values()
+            it.absoluteFee `should equal` 18810.toBigInteger()
+            it.consumedAmount `should equal` BigInteger.ZERO
+        }
+    }
+
+    @Test
+    fun `branch and bound keeps fallback order`() {
+        val coins = unspents(100000, 70000, 50000, 25000, 12000)
+        val outputAmount = 75000.toBigInteger() - (10 + 149 * 2 + 34).toBigInteger() * feePerByte
+
+        AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, BranchAndBound(AscentDraw)).also {
+            it.spendableOutputs.values() `should equal` unspents(25000, 50000).values()
+        }
+    }
+
+    @Test
+    fun `branch and bound consumes remainder below dust`() {
+        val coins = unspents(100000, 60000, 50000, 25000)
+        val outputAmount = 75000.toBigInteger() - (10 + 149 * 2 + 34).toBigInteger() * feePerByte - 1000.toBigInteger()
+
+        AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, BranchAndBound()).also {
+            it.spendableOutputs.values() `should equal` unspents(50000, 25000).values()
+            it.absoluteFee `should equal` 19810.toBigInteger()
+            it.consumedAmount `should equal` 1000.toBigInteger()
+        }
+    }
+
+    @Test
+    fun `branch and bound always includes forced coins`() {
+        val coins = listOf(unspent(546, forceInclude = true)) + unspents(100000, 60000, 50000, 25000)
+        val outputAmount = 75546.toBigInteger() - (10 + 149 * 3 + 34).toBigInteger() * feePerByte
+
+        AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, BranchAndBound()).also {
+            it.spendableOutputs.values() `should equal` unspents(50000, 25000, 546).values()
+            it.consumedAmount `should equal` BigInteger.ZERO
+        }
+    }
+
+    @Test
+    fun `branch and bound falls back to accumulating when no exact match`() {
+        val coins = unspents(1, 20000, 0, 0, 300000, 50000, 30000)
+        val outputAmount = 100000.toBigInteger()
+
+        AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, BranchAndBound()).also {
+            it.spendableOutputs.values() `should equal` unspents(300000).values()
+            it.absoluteFee `should equal` 12485.toBigInteger()
+            it.consumedAmount `should equal` BigInteger.ZERO
+        }
+    }
+
+    @Test
+    fun `branch and bound gives up after max tries`() {
+        val coins = unspents(100000, 70000, 50000, 25000, 12000)
+        val outputAmount = 75000.toBigInteger() - (10 + 149 * 2 + 34).toBigInteger() * feePerByte
+
+        AccumulatingCoinSelection(coins, feePerByte).select(outputAmount, BranchAndBound(maxTries = 1)).also {
+            it.spendableOutputs.values() `should equal` unspents(100000).values()
+        }
+    }
+
+    @Test
+    fun `select all with no inputs`() {
+        AccumulatingCoinSelection(emptyList(), feePerByte).selectAll().also {
+            it.spendableOutputs.values() `should equal` emptyList<BigInteger>()
+            it.absoluteFee `should equal` 0.toBigInteger()
+        }
+    }
+
+    private fun SpendableUnspentOutputs.assertSameAs(expected: SpendableUnspentOutputs) {
+        spendableOutputs `should equal` expected.spendableOutputs
+        absoluteFee `should equal` expected.absoluteFee
+        consumedAmount `should equal` expected.consumedAmount
+        isReplayProtected `should equal` expected.isReplayProtected
+    }
+}
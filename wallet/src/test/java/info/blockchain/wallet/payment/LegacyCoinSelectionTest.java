@@ -0,0 +1,106 @@
+package info.blockchain.wallet.payment;
+
+import info.blockchain.api.data.UnspentOutput;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class LegacyCoinSelectionTest {
+
+    private static final String SCRIPT = "76a914641ad5051edd97029a003fe9efb29359fcee409d88ac";
+
+    private static final BigInteger FEE_PER_KB = BigInteger.valueOf(10000);
+
+    private UnspentOutput coin(long value, boolean replayable) {
+        UnspentOutput coin = new UnspentOutput();
+        coin.setValue(BigInteger.valueOf(value));
+        coin.setReplayable(replayable);
+        coin.setScript(SCRIPT);
+        return coin;
+    }
+
+    @Test
+    public void minimumCoins_descendingValue_equalValuesInListOrder() {
+        UnspentOutput first = coin(20000, true);
+        UnspentOutput second = coin(20000, true);
+        UnspentOutput largest = coin(30000, true);
+        List<UnspentOutput> coins = Arrays.asList(first, second, largest);
+
+        SpendableUnspentOutputs selection = new LegacyCoinSelection(coins)
+            .getMinimumCoinsForPayment(BigInteger.valueOf(45000), FEE_PER_KB, false);
+
+        assertEquals(Arrays.asList(largest, first), selection.getSpendableOutputs());
+        assertEquals(Fees.calculateFee(Fees.estimatedSize(2, 2), 10000L),
+            selection.getAbsoluteFee().longValue());
+    }
+
+    @Test
+    public void minimumCoins_replayProtection_smallestNonReplayableFirst() {
+        UnspentOutput large = coin(50000, false);
+        UnspentOutput small = coin(1000, false);
+        UnspentOutput replayable = coin(70000, true);
+        List<UnspentOutput> coins = Arrays.asList(large, replayable, small);
+
+        SpendableUnspentOutputs selection = new LegacyCoinSelection(coins)
+            .getMinimumCoinsForPayment(BigInteger.valueOf(60000), FEE_PER_KB, true);
+
+        // The small coin is always spent even though it costs more than it adds
+        assertEquals(Arrays.asList(small, replayable), selection.getSpendableOutputs());
+        assertTrue(selection.isReplayProtected());
+    }
+
+    @Test
+    public void minimumCoins_replayProtection_dustInputWithoutNonReplayableCoins() {
+        UnspentOutput replayable = coin(70000, true);
+
+        SpendableUnspentOutputs selection = new LegacyCoinSelection(Arrays.asList(replayable))
+            .getMinimumCoinsForPayment(BigInteger.valueOf(60000), FEE_PER_KB, true);
+
+        List<UnspentOutput> spendable = selection.getSpendableOutputs();
+        assertEquals(2, spendable.size());
+        assertEquals(Payment.DUST, spendable.get(0).getValue());
+        assertTrue(spendable.get(0).isForceInclude());
+        assertSame(replayable, spendable.get(1));
+        assertFalse(selection.isReplayProtected());
+        assertEquals(Fees.calculateFee(Fees.estimatedSize(2, 2) + Coins.DUST_INPUT_TX_SIZE_ADAPT, 10000L),
+            selection.getAbsoluteFee().longValue());
+    }
+
+    @Test
+    public void callerCoinsAreLeftUntouched() {
+        List<UnspentOutput> coins = new ArrayList<>(Arrays.asList(
+            coin(1000, true), coin(50000, false), coin(20000, false), coin(70000, true)));
+        List<UnspentOutput> before = new ArrayList<>(coins);
+
+        LegacyCoinSelection selection = new LegacyCoinSelection(coins);
+        selection.getMinimumCoinsForPayment(BigInteger.valueOf(60000), FEE_PER_KB, true);
+        selection.getMaximumAvailable(FEE_PER_KB, true);
+
+        assertEquals(before, coins);
+        for (UnspentOutput coin : coins) {
+            assertFalse(coin.isForceInclude());
+        }
+    }
+
+    @Test
+    public void maximumAvailable_skipsCoinsNotWorthSpending() {
+        // An input costs 1480 satoshis at this fee
+        List<UnspentOutput> coins = Arrays.asList(coin(1480, true), coin(1481, true), coin(10000, true));
+
+        Pair<BigInteger, BigInteger> available = new LegacyCoinSelection(coins)
+            .getMaximumAvailable(FEE_PER_KB, false);
+
+        long fee = Fees.calculateFee(Fees.estimatedSize(2, 1), 10000L);
+        assertEquals(fee, available.getRight().longValue());
+        assertEquals(11481 - fee, available.getLeft().longValue());
+    }
+}
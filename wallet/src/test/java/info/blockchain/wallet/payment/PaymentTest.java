@@ -9,9 +9,15 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
 import org.bitcoinj.params.BitcoinCashMainNetParams;
 import org.bitcoinj.params.BitcoinMainNetParams;
+import org.bitcoinj.signers.LocalTransactionSigner;
+import org.bitcoinj.signers.TransactionSigner;
+import org.bitcoinj.wallet.KeyChainGroup;
+import org.bitcoinj.wallet.RedeemData;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 import retrofit2.Call;
@@ -397,6 +403,56 @@ public class PaymentTest extends MockedResponseTest {
         assertTrue(call.execute().errorBody().string().contains("An outpoint is already spent in"));
     }
 
+    @Test
+    public void signTransactionWithManyInputsMatchesBitcoinjSigner() throws Exception {
+        List<ECKey> keys = new ArrayList<>();
+        StringBuilder json = new StringBuilder("{\"unspent_outputs\":[");
+        for (int i = 0; i < 12; i++) {
+            ECKey key = ECKey.fromPrivate(BigInteger.valueOf(1000 + i), true);
+            keys.add(key);
+            String script = "76a914" + Hex.toHexString(key.getPubKeyHash()) + "88ac";
+            String hash = Hex.toHexString(Sha256Hash.hash(new byte[]{(byte) i}));
+            json.append(i == 0 ? "" : ",")
+                .append("{\"tx_hash\":\"").append(hash)
+                .append("\",\"tx_output_n\":").append(i % 3)
+                .append(",\"script\":\"").append(script)
+                .append("\",\"value\":").append(100000 + i)
+                .append(",\"confirmations\":1}");
+        }
+        UnspentOutputs unspentOutputs = UnspentOutputs.fromJson(json.append("]}").toString());
+
+        final HashMap<String, BigInteger> receivers = new HashMap<>();
+        receivers.put("1NNDb5uQU32CtQnBxnrfvJSjkWcREoFWe7", BigInteger.valueOf(1100000L));
+
+        for (NetworkParameters params : new NetworkParameters[]{bitcoinMainNetParams, bitcoinCashMainNetParams}) {
+            boolean useForkId = params == bitcoinCashMainNetParams;
+            Transaction parallel = subject.makeSimpleTransaction(params,
+                    unspentOutputs.getUnspentOutputs(), receivers, BigInteger.valueOf(10000L), null);
+            Transaction expected = subject.makeSimpleTransaction(params,
+                    unspentOutputs.getUnspentOutputs(), receivers, BigInteger.valueOf(10000L), null);
+            assertEquals(12, parallel.getInputs().size());
+
+            PaymentTx.signSimpleTransaction(params, parallel, keys, useForkId);
+            signWithBitcoinj(params, expected, keys, useForkId);
+
+            assertEquals(Hex.toHexString(expected.bitcoinSerialize()), Hex.toHexString(parallel.bitcoinSerialize()));
+        }
+    }
+
+    private static void signWithBitcoinj(NetworkParameters params,
+                                         Transaction tx,
+                                         List<ECKey> keys,
+                                         boolean useForkId) {
+        KeyChainGroup keyBag = new KeyChainGroup(params);
+        keyBag.importKeys(keys);
+        for (TransactionInput input : tx.getInputs()) {
+            RedeemData redeemData = input.getConnectedRedeemData(keyBag);
+            input.setScriptSig(input.getConnectedOutput().getScriptPubKey()
+                    .createEmptyInputScript(redeemData.keys.get(0), redeemData.redeemScript));
+        }
+        new LocalTransactionSigner().signInputs(new TransactionSigner.ProposedTransaction(tx, useForkId), keyBag);
+    }
+
     @Test(expected = InsufficientMoneyException.class)
     public void InsufficientMoneyException() throws Exception {
         UnspentOutputs unspentOutputs = null;
@@ -0,0 +1,38 @@
+package info.blockchain.wallet.util;
+
+import info.blockchain.wallet.payload.data.HDWallet;
+import info.blockchain.wallet.payload.data.Options;
+import info.blockchain.wallet.payload.data.Wallet;
+import org.bitcoinj.params.BitcoinMainNetParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class JsonMappersTest {
+
+    @Test
+    public void readersAndWritersAreShared() {
+        Assert.assertSame(JsonMappers.reader(Options.class), JsonMappers.reader(Options.class));
+        Assert.assertSame(JsonMappers.fieldReader(Wallet.class), JsonMappers.fieldReader(Wallet.class));
+        Assert.assertSame(JsonMappers.writer(Options.class), JsonMappers.writer(Options.class));
+        Assert.assertNotSame(JsonMappers.reader(Wallet.class), JsonMappers.fieldReader(Wallet.class));
+    }
+
+    @Test
+    public void walletBodyRoundTrip() throws Exception {
+        URI uri = getClass().getClassLoader().getResource("wallet_body_1.txt").toURI();
+        String body = new String(Files.readAllBytes(Paths.get(uri)), Charset.forName("utf-8"));
+
+        Wallet wallet = Wallet.fromJson(BitcoinMainNetParams.get(), body);
+        Wallet decoded = Wallet.fromJson(BitcoinMainNetParams.get(), wallet.toJson());
+
+        Assert.assertEquals(wallet.toJson(), decoded.toJson());
+        HDWallet hdWallet = decoded.getHdWallets().get(0);
+        Assert.assertEquals(wallet.getHdWallets().get(0).getAccounts().size(), hdWallet.getAccounts().size());
+        Assert.assertNotNull(hdWallet.getHDAccountFromAccountBody(hdWallet.getAccount(0)));
+    }
+}